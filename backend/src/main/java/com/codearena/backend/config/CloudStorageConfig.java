@@ -1,13 +1,31 @@
 package com.codearena.backend.config;
 
+import com.codearena.backend.service.GcsTestCaseStorage;
+import com.codearena.backend.service.LocalDiskTestCaseStorage;
+import com.codearena.backend.service.LocalUrlSigner;
+import com.codearena.backend.service.TestCaseStorage;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Clock;
+
 /**
- * Configuration for Google Cloud Storage.
- * Provides the Storage bean required by CloudStorageService.
+ * Configuration for test case file storage.
+ * Provides the TestCaseStorage backend used by CloudStorageService.
+ *
+ * The backend is selected with testcase.storage.backend:
+ * - gcs (default): Google Cloud Storage bucket named by gcs.bucket
+ * - local: local directory named by testcase.storage.local.root, for on-prem judge
+ *   nodes, integration tests and benchmarks; signed download URLs are HMAC-signed with
+ *   testcase.storage.local.signing-key and served by this application
  */
 @Configuration
 public class CloudStorageConfig {
@@ -15,11 +33,62 @@ public class CloudStorageConfig {
     /**
      * Creates and configures the Google Cloud Storage client.
      * Uses Application Default Credentials from GOOGLE_APPLICATION_CREDENTIALS environment variable.
-     * 
+     *
      * @return Configured Storage client
      */
     @Bean
+    @ConditionalOnProperty(name = "testcase.storage.backend", havingValue = "gcs", matchIfMissing = true)
     public Storage storage() {
         return StorageOptions.getDefaultInstance().getService();
     }
-} 
\ No newline at end of file
+
+    /**
+     * Creates the Cloud Storage backed test case storage.
+     * @param storage Cloud Storage client
+     * @param bucketName Bucket holding test case files
+     * @return GCS test case storage
+     */
+    @Bean
+    @ConditionalOnProperty(name = "testcase.storage.backend", havingValue = "gcs", matchIfMissing = true)
+    public TestCaseStorage gcsTestCaseStorage(Storage storage,
+                                              @Value("${gcs.bucket:codearena-testcases}") String bucketName) {
+        return new GcsTestCaseStorage(storage, bucketName);
+    }
+
+    /**
+     * Creates the signer for download URLs of the local-disk storage.
+     * Without a configured key a random one is used, so URLs only work on this node until it restarts.
+     * @param signingKey Shared HMAC key of all nodes serving signed URLs
+     * @param publicUrl Public URL of this service that signed URLs start with; empty for relative URLs
+     * @return Local URL signer
+     */
+    @Bean
+    @ConditionalOnProperty(name = "testcase.storage.backend", havingValue = "local")
+    public LocalUrlSigner localUrlSigner(@Value("${testcase.storage.local.signing-key:}") String signingKey,
+                                         @Value("${testcase.storage.local.public-url:}") String publicUrl) {
+        byte[] key;
+        if (signingKey.isBlank()) {
+            System.out.println("No testcase.storage.local.signing-key set; using a random key for signed URLs");
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        } else {
+            key = signingKey.getBytes(StandardCharsets.UTF_8);
+        }
+        return new LocalUrlSigner(key, publicUrl, Clock.systemUTC());
+    }
+
+    /**
+     * Creates the local-disk test case storage.
+     * @param root Directory holding test case files
+     * @param urlSigner Signer for download URLs
+     * @return Local-disk test case storage
+     * @throws IOException If the root directory cannot be created
+     */
+    @Bean
+    @ConditionalOnProperty(name = "testcase.storage.backend", havingValue = "local")
+    public TestCaseStorage localTestCaseStorage(
+            @Value("${testcase.storage.local.root:${java.io.tmpdir}/codearena-testcases}") String root,
+            LocalUrlSigner urlSigner) throws IOException {
+        return new LocalDiskTestCaseStorage(Path.of(root), urlSigner);
+    }
+}
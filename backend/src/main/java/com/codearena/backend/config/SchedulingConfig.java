@@ -0,0 +1,12 @@
+package com.codearena.backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables scheduled background jobs, such as the storage reconciler.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -32,6 +32,8 @@ public class SecurityConfig {
                     "/api/auth/verify", "/api/auth/register",
                     "/api/test/health", "/api/test/firebase-status",
                     "/h2-console/**",
+                    // Signed local storage downloads; the URL signature is checked by the controller
+                    "/api/testcases/signed/**",
                     // Swagger/OpenAPI endpoints
                     "/swagger-ui/**", "/swagger-ui.html", "/v3/api-docs/**", "/v3/api-docs.yaml", "/swagger-resources/**", "/webjars/**"
                 ).permitAll()
@@ -0,0 +1,79 @@
+package com.codearena.backend.controller;
+
+import com.codearena.backend.exception.ApiException;
+import com.codearena.backend.service.CloudStorageService;
+import com.codearena.backend.service.LocalUrlSigner;
+import com.codearena.backend.service.TestCaseCodec;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * REST controller serving signed download URLs of the local storage backend.
+ * 
+ * With Cloud Storage, clients download signed URLs straight from the bucket. The local
+ * backend has no such server, so its signed URLs point here instead. Requests carry no
+ * credentials: the HMAC signature in the URL is the authorization, and it was only issued
+ * after the usual test case permission checks.
+ */
+@RestController
+@RequestMapping("/api/testcases/signed")
+@ConditionalOnProperty(name = "testcase.storage.backend", havingValue = "local")
+public class SignedDownloadController {
+    private final LocalUrlSigner urlSigner;
+    private final CloudStorageService cloudStorageService;
+
+    public SignedDownloadController(LocalUrlSigner urlSigner, CloudStorageService cloudStorageService) {
+        this.urlSigner = urlSigner;
+        this.cloudStorageService = cloudStorageService;
+    }
+
+    /**
+     * Streams an object as stored. Compressed objects are sent with a matching
+     * Content-Encoding, which HTTP clients decode transparently.
+     * 
+     * @param objectName The object name from the URL path
+     * @param expires Expiry time of the URL, in epoch seconds
+     * @param signature HMAC signature of the object name and expiry time
+     * @return The object content
+     * @throws IOException If the object cannot be read
+     * 
+     * Access: Anyone holding a valid, unexpired signed URL
+     */
+    @GetMapping("/{*objectName}")
+    public ResponseEntity<StreamingResponseBody> download(
+            @PathVariable String objectName,
+            @RequestParam long expires,
+            @RequestParam String signature) throws IOException {
+        String name = objectName.startsWith("/") ? objectName.substring(1) : objectName;
+        if (!urlSigner.verify(name, expires, signature)) {
+            throw ApiException.forbidden("Download link is invalid or has expired");
+        }
+        TestCaseCodec codec;
+        try {
+            codec = cloudStorageService.detectStoredCodec(name);
+        } catch (NoSuchFileException e) {
+            throw ApiException.notFound("Test case file not found");
+        }
+        StreamingResponseBody body = out -> cloudStorageService.streamStoredObject(name, out);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.TEXT_PLAIN)
+                // Objects are immutable; the URL itself expires
+                .header(HttpHeaders.CACHE_CONTROL, "private, max-age="
+                        + Math.max(0, expires - System.currentTimeMillis() / 1000));
+        if (codec != TestCaseCodec.NONE) {
+            response.header(HttpHeaders.CONTENT_ENCODING, codec.getContentEncoding());
+        }
+        return response.body(body);
+    }
+}
@@ -0,0 +1,67 @@
+package com.codearena.backend.controller;
+
+import com.codearena.backend.dto.ApiResponse;
+import com.codearena.backend.dto.SubmissionCreateDTO;
+import com.codearena.backend.dto.SubmissionResponseDTO;
+import com.codearena.backend.entity.User;
+import com.codearena.backend.service.SubmissionService;
+import com.codearena.backend.service.UserService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import jakarta.validation.Valid;
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * REST controller for submission endpoints.
+ * Submitting returns at once with a QUEUED submission; clients poll it for the verdict.
+ */
+@RestController
+@RequestMapping("/api")
+public class SubmissionController {
+    private final SubmissionService submissionService;
+    private final UserService userService;
+
+    public SubmissionController(SubmissionService submissionService, UserService userService) {
+        this.submissionService = submissionService;
+        this.userService = userService;
+    }
+
+    /**
+     * Submits a solution to a problem for judging (anyone who can view the problem).
+     * Responds 202 Accepted with the queued submission, or 503 if the judge queue is full.
+     */
+    @PostMapping("/problems/{problemId}/submissions")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse<SubmissionResponseDTO>> submit(@PathVariable Long problemId,
+                                                                     @Valid @RequestBody SubmissionCreateDTO dto,
+                                                                     Principal principal) {
+        User user = userService.findByUid(principal.getName()).orElseThrow();
+        SubmissionResponseDTO queued = submissionService.submit(problemId, dto, user);
+        return ResponseEntity.accepted().body(ApiResponse.success(queued, "Submission queued for judging."));
+    }
+
+    /**
+     * Lists the caller's submissions to a problem, newest first.
+     */
+    @GetMapping("/problems/{problemId}/submissions")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse<List<SubmissionResponseDTO>>> listSubmissions(@PathVariable Long problemId,
+                                                                                    Principal principal) {
+        User user = userService.findByUid(principal.getName()).orElseThrow();
+        List<SubmissionResponseDTO> list = submissionService.listSubmissions(problemId, user);
+        return ResponseEntity.ok(ApiResponse.success(list, "Submissions listed successfully."));
+    }
+
+    /**
+     * Gets a submission with its per-test verdicts (author, problem creator, TESTER or ADMIN).
+     */
+    @GetMapping("/submissions/{id}")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse<SubmissionResponseDTO>> getSubmission(@PathVariable Long id, Principal principal) {
+        User user = userService.findByUid(principal.getName()).orElseThrow();
+        SubmissionResponseDTO dto = submissionService.getSubmission(id, user);
+        return ResponseEntity.ok(ApiResponse.success(dto, "Submission retrieved successfully."));
+    }
+}
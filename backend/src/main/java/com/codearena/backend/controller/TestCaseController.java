@@ -1,13 +1,21 @@
 package com.codearena.backend.controller;
 
 import com.codearena.backend.dto.*;
+import com.codearena.backend.entity.TestCase;
 import com.codearena.backend.entity.User;
+import com.codearena.backend.service.TestCaseCodec;
 import com.codearena.backend.service.TestCaseService;
 import com.codearena.backend.service.UserService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.security.Principal;
 import java.util.List;
 
@@ -51,6 +59,29 @@ public class TestCaseController {
         return ResponseEntity.ok(ApiResponse.success(created, "Test case created successfully."));
     }
 
+    /**
+     * Creates a generated test case for a problem.
+     * The input is produced by running the generator with the given arguments and seed, and
+     * the output by running the reference solution on it, when a judge first needs them.
+     * 
+     * @param problemId The ID of the problem to create the test case for
+     * @param dto The generator and reference solution sources with the generator arguments
+     * @param principal The authenticated user making the request
+     * @return The created test case with metadata
+     * 
+     * Access: PROBLEM_SETTER, TESTER, or ADMIN only
+     */
+    @PostMapping("/problems/{problemId}/generated")
+    @PreAuthorize("hasAnyRole('ADMIN', 'PROBLEM_SETTER', 'TESTER')")
+    public ResponseEntity<ApiResponse<TestCaseResponseDTO>> createGeneratedTestCase(
+            @PathVariable Long problemId,
+            @Valid @RequestBody TestCaseGeneratorDTO dto,
+            Principal principal) {
+        User creator = userService.findByUid(principal.getName()).orElseThrow();
+        TestCaseResponseDTO created = testCaseService.createGeneratedTestCase(problemId, dto, creator);
+        return ResponseEntity.ok(ApiResponse.success(created, "Generated test case created successfully."));
+    }
+
     /**
      * Creates multiple test cases for a problem in a single operation.
      * 
@@ -74,6 +105,173 @@ public class TestCaseController {
         return ResponseEntity.ok(ApiResponse.success(created, "Test cases created successfully."));
     }
 
+    /**
+     * Creates a new test case from multipart input and output files.
+     * Files are streamed into storage instead of being inlined as JSON strings,
+     * so large tests do not have to fit in memory.
+     * 
+     * @param problemId The ID of the problem to create the test case for
+     * @param dto The test case metadata (form fields)
+     * @param input The input file part
+     * @param output The output file part
+     * @param principal The authenticated user making the request
+     * @return The created test case with metadata
+     * 
+     * Access: PROBLEM_SETTER, TESTER, or ADMIN only
+     */
+    @PostMapping(value = "/problems/{problemId}/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'PROBLEM_SETTER', 'TESTER')")
+    public ResponseEntity<ApiResponse<TestCaseResponseDTO>> uploadTestCase(
+            @PathVariable Long problemId,
+            @Valid @ModelAttribute TestCaseUploadDTO dto,
+            @RequestParam("input") MultipartFile input,
+            @RequestParam("output") MultipartFile output,
+            Principal principal) throws IOException {
+        User creator = userService.findByUid(principal.getName()).orElseThrow();
+        TestCaseResponseDTO created;
+        try (InputStream inputStream = input.getInputStream();
+             InputStream outputStream = output.getInputStream()) {
+            created = testCaseService.createTestCaseFromFiles(problemId, dto, inputStream, outputStream, creator);
+        }
+        return ResponseEntity.ok(ApiResponse.success(created, "Test case created successfully."));
+    }
+
+    /**
+     * Starts a resumable upload session for a test case with very large files.
+     * Chunks are then sent with PUT /uploads/{sessionId}/files/{file}?offset=N, and the
+     * test case is created by POST /uploads/{sessionId}/finalize.
+     * 
+     * @param problemId The ID of the problem to create the test case for
+     * @param dto The test case metadata
+     * @param principal The authenticated user making the request
+     * @return The new upload session
+     * 
+     * Access: PROBLEM_SETTER, TESTER, or ADMIN only
+     */
+    @PostMapping("/problems/{problemId}/uploads")
+    @PreAuthorize("hasAnyRole('ADMIN', 'PROBLEM_SETTER', 'TESTER')")
+    public ResponseEntity<ApiResponse<TestCaseUploadSessionDTO>> startUploadSession(
+            @PathVariable Long problemId,
+            @Valid @RequestBody TestCaseUploadDTO dto,
+            Principal principal) {
+        User creator = userService.findByUid(principal.getName()).orElseThrow();
+        TestCaseUploadSessionDTO session = testCaseService.startUploadSession(problemId, dto, creator);
+        return ResponseEntity.ok(ApiResponse.success(session, "Upload session started successfully."));
+    }
+
+    /**
+     * Retrieves the state of an upload session; after a dropped connection, each file
+     * resumes at its reported size.
+     * 
+     * @param sessionId The ID of the upload session
+     * @param principal The authenticated user making the request
+     * @return The upload session
+     * 
+     * Access: The user who started the session
+     */
+    @GetMapping("/uploads/{sessionId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'PROBLEM_SETTER', 'TESTER')")
+    public ResponseEntity<ApiResponse<TestCaseUploadSessionDTO>> getUploadSession(
+            @PathVariable String sessionId,
+            Principal principal) {
+        User user = userService.findByUid(principal.getName()).orElseThrow();
+        TestCaseUploadSessionDTO session = testCaseService.getUploadSession(sessionId, user);
+        return ResponseEntity.ok(ApiResponse.success(session, "Upload session retrieved successfully."));
+    }
+
+    /**
+     * Appends a chunk to the input or output file of an upload session.
+     * The raw request body is streamed into storage without buffering. An offset that
+     * does not match the bytes received so far is rejected with 409 Conflict.
+     * 
+     * @param sessionId The ID of the upload session
+     * @param file Which file the chunk belongs to: "input" or "output"
+     * @param offset Position of the chunk within the file
+     * @param content The raw request body
+     * @param principal The authenticated user making the request
+     * @return The upload session after the chunk
+     * 
+     * Access: The user who started the session
+     */
+    @PutMapping(value = "/uploads/{sessionId}/files/{file}", consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    @PreAuthorize("hasAnyRole('ADMIN', 'PROBLEM_SETTER', 'TESTER')")
+    public ResponseEntity<ApiResponse<TestCaseUploadSessionDTO>> appendUploadChunk(
+            @PathVariable String sessionId,
+            @PathVariable String file,
+            @RequestParam long offset,
+            InputStream content,
+            Principal principal) throws IOException {
+        User user = userService.findByUid(principal.getName()).orElseThrow();
+        TestCaseUploadSessionDTO session = testCaseService.appendUploadChunk(sessionId, file, offset, content, user);
+        return ResponseEntity.ok(ApiResponse.success(session, "Chunk uploaded successfully."));
+    }
+
+    /**
+     * Finishes an upload session and creates its test case.
+     * 
+     * @param sessionId The ID of the upload session
+     * @param principal The authenticated user making the request
+     * @return The created test case with metadata
+     * 
+     * Access: The user who started the session
+     */
+    @PostMapping("/uploads/{sessionId}/finalize")
+    @PreAuthorize("hasAnyRole('ADMIN', 'PROBLEM_SETTER', 'TESTER')")
+    public ResponseEntity<ApiResponse<TestCaseResponseDTO>> finalizeUploadSession(
+            @PathVariable String sessionId,
+            Principal principal) throws IOException {
+        User user = userService.findByUid(principal.getName()).orElseThrow();
+        TestCaseResponseDTO created = testCaseService.finalizeUploadSession(sessionId, user);
+        return ResponseEntity.ok(ApiResponse.success(created, "Test case created successfully."));
+    }
+
+    /**
+     * Discards an upload session and the content uploaded through it.
+     * 
+     * @param sessionId The ID of the upload session
+     * @param principal The authenticated user making the request
+     * @return Success response with confirmation message
+     * 
+     * Access: The user who started the session
+     */
+    @DeleteMapping("/uploads/{sessionId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'PROBLEM_SETTER', 'TESTER')")
+    public ResponseEntity<ApiResponse<Void>> abortUploadSession(
+            @PathVariable String sessionId,
+            Principal principal) {
+        User user = userService.findByUid(principal.getName()).orElseThrow();
+        testCaseService.abortUploadSession(sessionId, user);
+        return ResponseEntity.ok(ApiResponse.success("Upload session discarded successfully."));
+    }
+
+    /**
+     * Imports a whole test set from a zip, tar.gz or tar archive.
+     * Tests are detected as NN.in / NN.out (or NN.ans) pairs while the archive streams, each
+     * file goes straight to storage as it is read, and the test cases are inserted in batches.
+     * 
+     * @param problemId The ID of the problem to import test cases for
+     * @param dto Options applied to every imported test case (form fields)
+     * @param archive The archive file part
+     * @param principal The authenticated user making the request
+     * @return Summary of the imported tests and skipped archive entries
+     * 
+     * Access: PROBLEM_SETTER, TESTER, or ADMIN only
+     */
+    @PostMapping(value = "/problems/{problemId}/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'PROBLEM_SETTER', 'TESTER')")
+    public ResponseEntity<ApiResponse<TestCaseImportResultDTO>> importTestCaseArchive(
+            @PathVariable Long problemId,
+            @Valid @ModelAttribute TestCaseArchiveImportDTO dto,
+            @RequestParam("archive") MultipartFile archive,
+            Principal principal) throws IOException {
+        User creator = userService.findByUid(principal.getName()).orElseThrow();
+        TestCaseImportResultDTO result;
+        try (InputStream archiveStream = archive.getInputStream()) {
+            result = testCaseService.importTestCaseArchive(problemId, dto, archiveStream, creator);
+        }
+        return ResponseEntity.ok(ApiResponse.success(result, "Test cases imported successfully."));
+    }
+
     /**
      * Updates an existing test case.
      * 
@@ -95,6 +293,30 @@ public class TestCaseController {
         return ResponseEntity.ok(ApiResponse.success(updated, "Test case updated successfully."));
     }
 
+    /**
+     * Replaces the input or output file of a test case with the raw request body.
+     * The body is streamed into storage without buffering.
+     * 
+     * @param testCaseId The ID of the test case to update
+     * @param file Which file to replace: "input" or "output"
+     * @param content The raw request body
+     * @param principal The authenticated user making the request
+     * @return The updated test case with metadata
+     * 
+     * Access: Test case creator, problem creator, TESTER, or ADMIN only
+     */
+    @PutMapping(value = "/{testCaseId}/files/{file}", consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, MediaType.TEXT_PLAIN_VALUE})
+    @PreAuthorize("hasAnyRole('ADMIN', 'PROBLEM_SETTER', 'TESTER')")
+    public ResponseEntity<ApiResponse<TestCaseResponseDTO>> replaceTestCaseFile(
+            @PathVariable Long testCaseId,
+            @PathVariable String file,
+            InputStream content,
+            Principal principal) throws IOException {
+        User updater = userService.findByUid(principal.getName()).orElseThrow();
+        TestCaseResponseDTO updated = testCaseService.replaceTestCaseFile(testCaseId, file, content, updater);
+        return ResponseEntity.ok(ApiResponse.success(updated, "Test case file updated successfully."));
+    }
+
     /**
      * Deletes a test case and its associated files from Cloud Storage.
      * 
@@ -118,6 +340,9 @@ public class TestCaseController {
      * Retrieves a test case by ID with appropriate content access based on user permissions.
      * 
      * @param testCaseId The ID of the test case to retrieve
+     * @param previewBytes Bytes of each file to include (default 4 KiB, at most 1 MiB)
+     * @param full Whether to include the full file content instead of a preview
+     * @param signedUrls Whether to return short-lived download URLs instead of content
      * @param principal The authenticated user making the request
      * @return The test case with metadata and content (if user has appropriate permissions)
      * 
@@ -127,16 +352,114 @@ public class TestCaseController {
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<ApiResponse<TestCaseResponseDTO>> getTestCase(
             @PathVariable Long testCaseId,
+            @RequestParam(required = false) Integer previewBytes,
+            @RequestParam(defaultValue = "false") boolean full,
+            @RequestParam(defaultValue = "false") boolean signedUrls,
             Principal principal) {
         User user = userService.findByUid(principal.getName()).orElseThrow();
-        TestCaseResponseDTO dto = testCaseService.getTestCase(testCaseId, user);
+        TestCaseResponseDTO dto = testCaseService.getTestCase(testCaseId, user, previewBytes,
+                TestCaseService.ContentMode.of(full, signedUrls));
         return ResponseEntity.ok(ApiResponse.success(dto, "Test case retrieved successfully."));
     }
 
+    /**
+     * Streams the input or output file of a test case.
+     * The file is copied from storage to the response through a bounded buffer. When the
+     * client accepts the codec the file is stored with, the compressed bytes are sent as-is
+     * with a matching Content-Encoding; otherwise the file is decoded on the fly.
+     * 
+     * @param testCaseId The ID of the test case
+     * @param file Which file to download: "input" or "output"
+     * @param acceptEncoding The client's Accept-Encoding header, if any
+     * @param principal The authenticated user making the request
+     * @return The file content
+     * 
+     * Access: Any authenticated user (sample files), or users who can manage the problem's test cases
+     */
+    @GetMapping("/{testCaseId}/files/{file}")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<StreamingResponseBody> downloadTestCaseFile(
+            @PathVariable Long testCaseId,
+            @PathVariable String file,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            Principal principal) {
+        User user = userService.findByUid(principal.getName()).orElseThrow();
+        TestCase testCase = testCaseService.getTestCaseForDownload(testCaseId, file, user);
+        TestCaseCodec codec = testCaseService.getStorageCodec(testCase);
+        boolean passThrough = codec != TestCaseCodec.NONE && acceptEncoding != null
+                && acceptEncoding.toLowerCase().contains(codec.getContentEncoding());
+        StreamingResponseBody body = out -> testCaseService.streamTestCaseFile(testCase, file, out, passThrough);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.TEXT_PLAIN)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + testCaseId + "-" + file + ".txt\"");
+        if (passThrough) {
+            response.header(HttpHeaders.CONTENT_ENCODING, codec.getContentEncoding());
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Returns a window of the input or output file of a test case.
+     * Only the requested byte range is read from storage, so the first lines of a huge
+     * file come back quickly; later windows are fetched by passing the returned nextOffset.
+     * 
+     * @param testCaseId The ID of the test case
+     * @param file Which file to read: "input" or "output"
+     * @param offset Byte offset to start at
+     * @param bytes Maximum number of bytes to return (default 4 KiB, at most 1 MiB)
+     * @param lines Maximum number of lines to return, if any
+     * @param principal The authenticated user making the request
+     * @return The window with its offset, the total file size, and whether more follows
+     * 
+     * Access: Any authenticated user (sample files), or users who can manage the problem's test cases
+     */
+    @GetMapping("/{testCaseId}/files/{file}/preview")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse<TestCaseFilePreviewDTO>> previewTestCaseFile(
+            @PathVariable Long testCaseId,
+            @PathVariable String file,
+            @RequestParam(defaultValue = "0") long offset,
+            @RequestParam(required = false) Integer bytes,
+            @RequestParam(required = false) Integer lines,
+            Principal principal) throws IOException {
+        User user = userService.findByUid(principal.getName()).orElseThrow();
+        TestCaseFilePreviewDTO preview = testCaseService.getTestCaseFileRange(testCaseId, file, offset, bytes, lines, user);
+        return ResponseEntity.ok(ApiResponse.success(preview, "Test case file preview retrieved successfully."));
+    }
+
+    /**
+     * Streams all test cases of a problem as a zip archive built on the fly.
+     * Entries are NAME.in / NAME.out in test order, the layout accepted by the import
+     * endpoint, so the archive doubles as a backup and as a judge node sync package.
+     * 
+     * @param problemId The ID of the problem to export test cases for
+     * @param principal The authenticated user making the request
+     * @return The zip archive
+     * 
+     * Access: Problem creator, TESTER, or ADMIN only
+     */
+    @GetMapping("/problems/{problemId}/archive")
+    @PreAuthorize("hasAnyRole('ADMIN', 'PROBLEM_SETTER', 'TESTER')")
+    public ResponseEntity<StreamingResponseBody> exportTestCaseArchive(
+            @PathVariable Long problemId,
+            Principal principal) {
+        User user = userService.findByUid(principal.getName()).orElseThrow();
+        List<TestCase> testCases = testCaseService.getTestCasesForExport(problemId, user);
+        StreamingResponseBody body = out -> testCaseService.writeTestCaseArchive(testCases, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"problem-" + problemId + "-tests.zip\"")
+                .body(body);
+    }
+
     /**
      * Lists all test cases for a problem with appropriate content access based on user permissions.
      * 
      * @param problemId The ID of the problem to list test cases for
+     * @param previewBytes Bytes of each file to include (default 4 KiB, at most 1 MiB)
+     * @param full Whether to include the full file content instead of previews
+     * @param signedUrls Whether to return short-lived download URLs instead of content
      * @param principal The authenticated user making the request
      * @return List of test cases with metadata and content (if user has appropriate permissions)
      * 
@@ -146,9 +469,13 @@ public class TestCaseController {
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<ApiResponse<List<TestCaseResponseDTO>>> listTestCases(
             @PathVariable Long problemId,
+            @RequestParam(required = false) Integer previewBytes,
+            @RequestParam(defaultValue = "false") boolean full,
+            @RequestParam(defaultValue = "false") boolean signedUrls,
             Principal principal) {
         User user = userService.findByUid(principal.getName()).orElseThrow();
-        List<TestCaseResponseDTO> list = testCaseService.listTestCases(problemId, user);
+        List<TestCaseResponseDTO> list = testCaseService.listTestCases(problemId, user, previewBytes,
+                TestCaseService.ContentMode.of(full, signedUrls));
         return ResponseEntity.ok(ApiResponse.success(list, "Test cases listed successfully."));
     }
 
@@ -156,14 +483,18 @@ public class TestCaseController {
      * Retrieves sample test cases for a problem that are publicly accessible to all users.
      * 
      * @param problemId The ID of the problem to get sample test cases for
+     * @param previewBytes Bytes of each file to include (default 4 KiB, at most 1 MiB)
+     * @param full Whether to include the full file content instead of previews
      * @return List of sample test cases with content (publicly accessible)
      * 
      * Access: Public (no authentication required)
      */
     @GetMapping("/problems/{problemId}/samples")
     public ResponseEntity<ApiResponse<List<TestCaseResponseDTO>>> getSampleTestCases(
-            @PathVariable Long problemId) {
-        List<TestCaseResponseDTO> samples = testCaseService.getSampleTestCases(problemId);
+            @PathVariable Long problemId,
+            @RequestParam(required = false) Integer previewBytes,
+            @RequestParam(defaultValue = "false") boolean full) {
+        List<TestCaseResponseDTO> samples = testCaseService.getSampleTestCases(problemId, previewBytes, full);
         return ResponseEntity.ok(ApiResponse.success(samples, "Sample test cases retrieved successfully."));
     }
 } 
\ No newline at end of file
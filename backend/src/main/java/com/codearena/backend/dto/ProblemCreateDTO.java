@@ -28,6 +28,9 @@ public class ProblemCreateDTO {
     @Max(2048)
     private Integer memoryLimitMB;
 
+    @Pattern(regexp = "(?i)icpc|ioi", message = "Scoring mode must be icpc or ioi")
+    private String scoringMode; // icpc (default) or ioi
+
     private Set<@NotBlank String> tags;
 
     private Boolean isPublic = false;
@@ -14,6 +14,7 @@ public class ProblemResponseDTO {
     private String difficulty;
     private Integer timeLimitMillis;
     private Integer memoryLimitMB;
+    private String scoringMode; // ICPC or IOI
     private Set<String> tags;
     private Boolean isPublic;
     private String createdBy;
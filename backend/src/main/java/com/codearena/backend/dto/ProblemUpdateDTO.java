@@ -28,6 +28,9 @@ public class ProblemUpdateDTO {
     @Max(2048)
     private Integer memoryLimitMB;
 
+    @Pattern(regexp = "(?i)icpc|ioi", message = "Scoring mode must be icpc or ioi")
+    private String scoringMode; // icpc or ioi; unchanged when null
+
     private Set<@NotBlank String> tags;
 
     private Boolean isPublic;
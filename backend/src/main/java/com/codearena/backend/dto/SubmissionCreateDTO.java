@@ -0,0 +1,17 @@
+package com.codearena.backend.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.Data;
+
+/**
+ * DTO for submitting a solution to a problem.
+ */
+@Data
+public class SubmissionCreateDTO {
+    @NotBlank(message = "Language is required")
+    private String language; // c, cpp, java or python3
+
+    @NotBlank(message = "Source code is required")
+    @Size(max = 65536, message = "Source code must not exceed 65536 characters")
+    private String sourceCode;
+}
@@ -0,0 +1,28 @@
+package com.codearena.backend.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * DTO for returning a submission and, once judged, its verdict to the frontend.
+ */
+@Data
+public class SubmissionResponseDTO {
+    private Long id;
+    private Long problemId;
+    private String user;
+    private String language;
+    private String status; // QUEUED, JUDGING or FINISHED
+    private String verdict; // Null until FINISHED
+    private Integer passedTests;
+    private Integer totalTests;
+    private Long maxTimeMillis;
+    private Long maxMemoryBytes;
+    private String message;
+    private String createdAt;
+    private String startedAt;
+    private String finishedAt;
+
+    // Per-test outcomes in test order; only included when a single submission is requested
+    private List<SubmissionTestResultDTO> testResults;
+}
@@ -0,0 +1,16 @@
+package com.codearena.backend.dto;
+
+import lombok.Data;
+
+/**
+ * DTO for returning the outcome of a submission on one test case.
+ */
+@Data
+public class SubmissionTestResultDTO {
+    private Long testCaseId;
+    private String testCaseName;
+    private String verdict;
+    private Long timeMillis;
+    private Long memoryBytes;
+    private String message;
+}
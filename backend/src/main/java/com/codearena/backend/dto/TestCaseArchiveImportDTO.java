@@ -0,0 +1,20 @@
+package com.codearena.backend.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.Data;
+
+/**
+ * DTO for options sent alongside a test set archive upload.
+ * The flags apply to every test case imported from the archive.
+ */
+@Data
+public class TestCaseArchiveImportDTO {
+    @Size(max = 500, message = "Description must not exceed 500 characters")
+    private String description;
+
+    @NotNull(message = "Hidden flag is required")
+    private Boolean isHidden = true;
+
+    @NotNull(message = "Sample flag is required")
+    private Boolean isSample = false;
+}
@@ -0,0 +1,20 @@
+package com.codearena.backend.dto;
+
+import lombok.Data;
+
+/**
+ * DTO for returning a window of a test case file to the frontend.
+ * Large files are paged through by requesting the next window at nextOffset
+ * while hasMore is true.
+ */
+@Data
+public class TestCaseFilePreviewDTO {
+    private Long testCaseId;
+    private String file; // "input" or "output"
+    private Long offset; // Byte offset of the window within the file
+    private Integer length; // Window length in bytes
+    private Long nextOffset; // Offset to request the following window from
+    private Long totalSize; // Size of the whole file in bytes, if known
+    private Boolean hasMore;
+    private String content;
+}
@@ -0,0 +1,15 @@
+package com.codearena.backend.dto;
+
+import lombok.Data;
+
+/**
+ * DTO for returning a signed download URL of a test case file to the frontend.
+ * The URL serves the file as stored; when contentEncoding is set, the body is compressed
+ * with that codec and has to be decoded by the client.
+ */
+@Data
+public class TestCaseFileUrlDTO {
+    private String url;
+    private String expiresAt; // When the URL stops working
+    private String contentEncoding; // "gzip" or "zstd" for compressed files, null for plain text
+}
@@ -0,0 +1,41 @@
+package com.codearena.backend.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.Data;
+
+/**
+ * DTO for creating a generated test case: its input is produced by a generator program and
+ * its output by a reference solution when a judge first needs them.
+ */
+@Data
+public class TestCaseGeneratorDTO {
+    @NotBlank(message = "Test case name is required")
+    @Size(min = 1, max = 100, message = "Test case name must be between 1 and 100 characters")
+    private String name;
+
+    @Size(max = 500, message = "Description must not exceed 500 characters")
+    private String description;
+
+    @NotBlank(message = "Generator language is required")
+    private String generatorLanguage; // c, cpp, java or python3
+
+    @NotBlank(message = "Generator source is required")
+    private String generatorSource;
+
+    @Size(max = 1000, message = "Generator arguments must not exceed 1000 characters")
+    private String generatorArgs; // Whitespace-separated
+
+    private Long generatorSeed; // Passed as the last generator argument when set
+
+    @NotBlank(message = "Solution language is required")
+    private String solutionLanguage;
+
+    @NotBlank(message = "Solution source is required")
+    private String solutionSource;
+
+    @NotNull(message = "Hidden flag is required")
+    private Boolean isHidden = true;
+
+    @NotNull(message = "Sample flag is required")
+    private Boolean isSample = false;
+}
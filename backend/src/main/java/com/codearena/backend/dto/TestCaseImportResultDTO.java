@@ -0,0 +1,15 @@
+package com.codearena.backend.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * DTO for returning the outcome of a test set archive import to the frontend.
+ */
+@Data
+public class TestCaseImportResultDTO {
+    private Integer importedCount;
+    private List<String> testCaseNames; // Imported tests, in test order
+    private List<String> skippedEntries; // Archive entries that were not part of an input/output pair
+    private Long totalFileSize; // Raw size of all imported files in bytes
+}
@@ -13,14 +13,36 @@ public class TestCaseResponseDTO {
     private String description;
     private String inputFileName;
     private String outputFileName;
+    private String inputSha256;
+    private String outputSha256;
+    private Long inputCrc32c;
+    private Long outputCrc32c;
     private Long fileSize;
+    private Long inputFileSize;
+    private Long outputFileSize;
+    private Long storedFileSize;
+    private String storageCodec;
+    private Boolean generated; // Input and output are produced by programs; sizes are known once materialized
+    private String generatorLanguage;
+    private String generatorArgs;
+    private Long generatorSeed;
+    private String solutionLanguage;
     private Boolean isHidden;
     private Boolean isSample;
     private String createdBy;
     private String createdAt;
     private String updatedAt;
     
-    // Optional: Include actual content for sample test cases
+    // Optional: Include actual content for sample test cases. Content is a preview of the
+    // first bytes of each file unless the full content was requested; the truncated flags
+    // tell whether the rest has to be fetched through the file preview endpoint
     private String inputContent;
     private String outputContent;
+    private Boolean inputContentTruncated;
+    private Boolean outputContentTruncated;
+
+    // Optional: Signed download URLs instead of content, for clients that fetch files
+    // straight from storage
+    private TestCaseFileUrlDTO inputUrl;
+    private TestCaseFileUrlDTO outputUrl;
 } 
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.codearena.backend.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.Data;
+
+/**
+ * DTO for test case metadata sent alongside multipart input/output file uploads.
+ */
+@Data
+public class TestCaseUploadDTO {
+    @NotBlank(message = "Test case name is required")
+    @Size(min = 1, max = 100, message = "Test case name must be between 1 and 100 characters")
+    private String name;
+
+    @Size(max = 500, message = "Description must not exceed 500 characters")
+    private String description;
+
+    @NotNull(message = "Hidden flag is required")
+    private Boolean isHidden = false;
+
+    @NotNull(message = "Sample flag is required")
+    private Boolean isSample = false;
+}
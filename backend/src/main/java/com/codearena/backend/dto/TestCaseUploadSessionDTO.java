@@ -0,0 +1,17 @@
+package com.codearena.backend.dto;
+
+import lombok.Data;
+
+/**
+ * DTO for returning the state of a resumable test case upload session to the frontend.
+ * After a dropped connection, a client reads the session and resumes each file at its size.
+ */
+@Data
+public class TestCaseUploadSessionDTO {
+    private String sessionId;
+    private Long problemId;
+    private String name;
+    private Long inputSize; // Bytes of the input received so far; the offset of the next input chunk
+    private Long outputSize; // Bytes of the output received so far; the offset of the next output chunk
+    private String expiresAt; // When the session is discarded if no further chunk arrives
+}
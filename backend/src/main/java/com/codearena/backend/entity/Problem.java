@@ -35,6 +35,11 @@ public class Problem {
     @Column(nullable = false)
     private Integer memoryLimitMB;
 
+    @Enumerated(EnumType.STRING)
+    @Column(length = 8)
+    @Builder.Default
+    private ScoringMode scoringMode = ScoringMode.ICPC; // Null for problems created before scoring modes, judged as ICPC
+
     @ElementCollection
     @CollectionTable(name = "problem_tags", joinColumns = @JoinColumn(name = "problem_id"))
     @Column(name = "tag")
@@ -57,6 +62,22 @@ public class Problem {
     @Builder.Default
     private LocalDateTime updatedAt = LocalDateTime.now();
 
+    // Test bundle state is changed only through ProblemRepository updates: the columns are
+    // not updatable, so saving an edited problem never rolls back a concurrent change
+
+    /** Incremented on every change to the problem's test cases. */
+    @Column(updatable = false)
+    @Builder.Default
+    private Long testSetRevision = 0L;
+
+    /** Test set revision the current packed test bundle was built from. */
+    @Column(updatable = false)
+    private Long testBundleRevision;
+
+    /** Object name of the current packed test bundle, or null if none was built. */
+    @Column(updatable = false)
+    private String testBundleName;
+
     @OneToMany(mappedBy = "problem", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @Builder.Default
     private Set<TestCase> testCases = new HashSet<>();
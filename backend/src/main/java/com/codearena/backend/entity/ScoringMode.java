@@ -0,0 +1,9 @@
+package com.codearena.backend.entity;
+
+/**
+ * How submissions to a problem are judged.
+ */
+public enum ScoringMode {
+    ICPC, // Judging stops at the first test that is not accepted
+    IOI   // Every test is run, so passed tests count toward partial credit
+}
@@ -0,0 +1,50 @@
+package com.codearena.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * JPA entity representing a content-addressed test case blob.
+ *
+ * Test case files are stored once per distinct content under blobs/{sha256}, where the hash
+ * is taken over the raw (uncompressed) content. Test cases point at blobs by hash, and the
+ * reference count tracks how many test case files share a blob; the blob is deleted from
+ * storage when its last reference goes away.
+ *
+ * The version column makes saves of new rows plain inserts, so two concurrent first
+ * uploads of the same content cannot both register the blob.
+ */
+@Entity
+@Table(name = "stored_blobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoredBlob {
+    @Id
+    @Column(length = 64)
+    private String sha256; // Hex SHA-256 of the raw content
+
+    @Column(nullable = false)
+    private Long rawSize; // Size in bytes before compression
+
+    @Column(nullable = false)
+    private Long storedSize; // Size in bytes at rest
+
+    @Column(nullable = false, length = 16)
+    private String codec; // TestCaseCodec the blob was written with
+
+    private Long crc32c; // CRC32C of the raw content; null for blobs stored before checksums were recorded
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long refCount = 1L; // Number of test case files pointing at this blob
+
+    @Version
+    private Long version;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -0,0 +1,77 @@
+package com.codearena.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * JPA entity representing a solution submitted to a problem.
+ *
+ * A submission is stored as QUEUED and judged asynchronously by a judge worker, which moves
+ * it to JUDGING and then FINISHED with a verdict. Per-test outcomes are kept as
+ * SubmissionTestResult rows, written as each test finishes so clients can follow progress.
+ *
+ * The overall verdict is that of the first test case, in test order, that did not pass.
+ */
+@Entity
+@Table(name = "submissions", indexes = {
+        @Index(name = "idx_submissions_problem_user", columnList = "problem_id, user_id"),
+        @Index(name = "idx_submissions_status", columnList = "status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Submission {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "problem_id", nullable = false)
+    private Problem problem;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(nullable = false, length = 16)
+    private String language; // c, cpp, java or python3
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String sourceCode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    @Builder.Default
+    private SubmissionStatus status = SubmissionStatus.QUEUED;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32)
+    private Verdict verdict; // Null until judged
+
+    @Column
+    private Integer passedTests;
+
+    @Column
+    private Integer totalTests;
+
+    @Column
+    private Long maxTimeMillis; // Longest run over all tests
+
+    @Column
+    private Long maxMemoryBytes; // Highest memory peak over all tests, when measured
+
+    @Column(columnDefinition = "TEXT")
+    private String message; // Compiler output, or what failed on the first failing test
+
+    @Column(nullable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column
+    private LocalDateTime startedAt;
+
+    @Column
+    private LocalDateTime finishedAt;
+}
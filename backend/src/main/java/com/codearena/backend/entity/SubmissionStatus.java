@@ -0,0 +1,10 @@
+package com.codearena.backend.entity;
+
+/**
+ * Where a submission is in the judging pipeline.
+ */
+public enum SubmissionStatus {
+    QUEUED,   // Accepted and waiting for a judge worker
+    JUDGING,  // Being compiled or run against the test cases
+    FINISHED  // Verdict recorded
+}
@@ -0,0 +1,45 @@
+package com.codearena.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * JPA entity representing the outcome of running a submission on one test case.
+ * The test case is referenced by ID and name only, so results outlive edits to the test set.
+ */
+@Entity
+@Table(name = "submission_test_results", indexes = {
+        @Index(name = "idx_submission_test_results_submission", columnList = "submission_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SubmissionTestResult {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "submission_id", nullable = false)
+    private Submission submission;
+
+    @Column(nullable = false)
+    private Long testCaseId;
+
+    @Column(nullable = false)
+    private String testCaseName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Verdict verdict;
+
+    @Column(nullable = false)
+    private Long timeMillis; // CPU time of the run in the sandbox, wall time otherwise
+
+    @Column
+    private Long memoryBytes; // Peak memory of the run, when the sandbox measured it
+
+    @Column(columnDefinition = "TEXT")
+    private String message; // First difference from the expected output, or how the run failed
+}
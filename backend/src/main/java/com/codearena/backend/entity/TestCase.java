@@ -18,9 +18,20 @@ import java.time.LocalDateTime;
  * - Uses lazy loading for performance optimization
  * 
  * File storage strategy:
- * - Input files: testcases/{problemId}/{testCaseId}/input.txt
- * - Output files: testcases/{problemId}/{testCaseId}/output.txt
- * - File sizes tracked for storage monitoring and billing
+ * - Input and output files: content-addressed blobs/{sha256}, referenced by inputSha256/outputSha256
+ *   and shared between test cases with identical content
+ * - Test cases without hashes (created before content addressing) use
+ *   testcases/{problemId}/{testCaseId}/input.txt and output.txt
+ * - File sizes tracked for storage monitoring and billing: fileSize is the raw total,
+ *   storedFileSize the compressed total at rest, storageCodec the codec both files share
+ * - Content generation bumped on every file rewrite, used to version cached content
+ * - CRC32C of each file verified when it is read in full; together with the SHA-256 it lets
+ *   updates skip re-uploading unchanged content
+ *
+ * Generated test cases store no input or output files. They reference a generator program
+ * (a blob holding its source) with arguments and a seed, and a reference solution. Judges
+ * materialize the input by running the generator and the output by running the solution on
+ * it, and keep both in their local test data cache. fileSize counts what was materialized.
  */
 @Entity
 @Table(name = "test_cases")
@@ -45,9 +56,62 @@ public class TestCase {
     @Column(nullable = false)
     private String outputFileName;
 
+    @Column(length = 64)
+    private String inputSha256; // Blob holding the input; null for legacy per-test-case files
+
+    @Column(length = 64)
+    private String outputSha256; // Blob holding the output; null for legacy per-test-case files
+
+    @Column
+    private Long inputCrc32c; // CRC32C of the raw input, checked on full reads; null when not recorded
+
+    @Column
+    private Long outputCrc32c; // CRC32C of the raw output, checked on full reads; null when not recorded
+
     @Column(nullable = false)
     private Long fileSize; // Size in bytes
 
+    @Column
+    private Long inputFileSize; // Raw input size in bytes
+
+    @Column
+    private Long outputFileSize; // Raw output size in bytes
+
+    @Column
+    private Long storedFileSize; // Total size at rest (after compression) in bytes
+
+    @Column(length = 16)
+    private String storageCodec; // Codec of both files (NONE, GZIP, ZSTD); null when unknown or mixed
+
+    @Column
+    @Builder.Default
+    private Long contentGeneration = 0L; // Incremented whenever input/output files are rewritten
+
+    // Saves are conditional on this version, so of two concurrent file replacements only one
+    // releases the blobs both read. Null until first saved, so new test cases are persisted;
+    // rows that predate it start at 0
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
+    @Column(length = 64)
+    private String generatorSha256; // Blob holding the generator source; null unless the input is generated
+
+    @Column(length = 16)
+    private String generatorLanguage; // ProgramLanguage of the generator
+
+    @Column(columnDefinition = "TEXT")
+    private String generatorArgs; // Whitespace-separated generator arguments
+
+    @Column
+    private Long generatorSeed; // Passed to the generator after its arguments; null for none
+
+    @Column(length = 64)
+    private String solutionSha256; // Blob holding the reference solution that produces the output
+
+    @Column(length = 16)
+    private String solutionLanguage; // ProgramLanguage of the reference solution
+
     @Column(nullable = false)
     @Builder.Default
     private Boolean isHidden = false; // Hidden test cases are not shown to users
@@ -56,6 +120,12 @@ public class TestCase {
     @Builder.Default
     private Boolean isSample = false; // Sample test cases are shown to users
 
+    // Changed only through TestCaseRepository.incrementFailureCounts: the column is not
+    // updatable, so saving an edited test case never loses a concurrent judge's count
+    @Column(updatable = false)
+    @Builder.Default
+    private Long failureCount = 0L; // Submissions not accepted on this test (null counts as 0); judges run the highest first
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "problem_id", nullable = false)
     private Problem problem;
@@ -71,4 +141,12 @@ public class TestCase {
     @Column(nullable = false)
     @Builder.Default
     private LocalDateTime updatedAt = LocalDateTime.now();
-} 
\ No newline at end of file
+
+    /**
+     * Tells whether the files of this test case are generated instead of stored.
+     * @return Whether a generator is set
+     */
+    public boolean isGenerated() {
+        return generatorSha256 != null;
+    }
+}
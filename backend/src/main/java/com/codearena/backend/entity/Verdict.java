@@ -0,0 +1,15 @@
+package com.codearena.backend.entity;
+
+/**
+ * Outcome of judging a submission, overall or on one test case.
+ */
+public enum Verdict {
+    ACCEPTED,
+    WRONG_ANSWER,
+    TIME_LIMIT_EXCEEDED,
+    MEMORY_LIMIT_EXCEEDED,
+    OUTPUT_LIMIT_EXCEEDED,
+    RUNTIME_ERROR,
+    COMPILATION_ERROR,
+    INTERNAL_ERROR // The judge failed, not the submission
+}
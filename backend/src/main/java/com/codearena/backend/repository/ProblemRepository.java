@@ -2,6 +2,11 @@ package com.codearena.backend.repository;
 
 import com.codearena.backend.entity.Problem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
 import java.util.Optional;
 
 /**
@@ -10,4 +15,43 @@ import java.util.Optional;
  */
 public interface ProblemRepository extends JpaRepository<Problem, Long> {
     Optional<Problem> findByTitle(String title);
-} 
\ No newline at end of file
+
+    /**
+     * Test set revision of a problem and the packed test bundle built for it.
+     */
+    interface TestBundleState {
+        Long getTestSetRevision();
+
+        Long getTestBundleRevision();
+
+        String getTestBundleName();
+    }
+
+    /**
+     * Find the test bundle state of a problem without loading the row.
+     */
+    @Query("select coalesce(p.testSetRevision, 0) as testSetRevision, p.testBundleRevision as testBundleRevision, "
+            + "p.testBundleName as testBundleName from Problem p where p.id = :problemId")
+    Optional<TestBundleState> findTestBundleState(@Param("problemId") Long problemId);
+
+    /**
+     * Record a change to the test cases of a problem.
+     * @return 1 if the problem exists, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("update Problem p set p.testSetRevision = coalesce(p.testSetRevision, 0) + 1 where p.id = :problemId")
+    int incrementTestSetRevision(@Param("problemId") Long problemId);
+
+    /**
+     * Point a problem at a newly built test bundle, unless a bundle of the same or a later
+     * revision was recorded meanwhile.
+     * @return 1 if the bundle was recorded, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("update Problem p set p.testBundleName = :name, p.testBundleRevision = :revision "
+            + "where p.id = :problemId and (p.testBundleRevision is null or p.testBundleRevision < :revision)")
+    int updateTestBundle(@Param("problemId") Long problemId, @Param("name") String name,
+                         @Param("revision") long revision);
+}
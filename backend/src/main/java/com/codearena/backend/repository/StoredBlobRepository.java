@@ -0,0 +1,45 @@
+package com.codearena.backend.repository;
+
+import com.codearena.backend.entity.StoredBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository for content-addressed StoredBlob rows.
+ */
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    /**
+     * Adds a reference to an existing blob in a single statement.
+     * Blocks while a release holds the row lock, so a blob that is being deleted
+     * is never re-referenced.
+     * @return 1 if the blob exists and was referenced, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("update StoredBlob b set b.refCount = b.refCount + 1 where b.sha256 = :sha256")
+    int incrementRefCount(@Param("sha256") String sha256);
+
+    /**
+     * Find blobs and lock their rows, in hash order, until the surrounding transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from StoredBlob b where b.sha256 in :sha256s order by b.sha256")
+    List<StoredBlob> findAllForUpdate(@Param("sha256s") Collection<String> sha256s);
+
+    /**
+     * Find the next page of blobs in hash order, after the given hash (keyset pagination).
+     */
+    List<StoredBlob> findBySha256GreaterThanOrderBySha256Asc(String sha256, Pageable pageable);
+}
@@ -0,0 +1,48 @@
+package com.codearena.backend.repository;
+
+import com.codearena.backend.entity.Submission;
+import com.codearena.backend.entity.SubmissionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository interface for Submission entity.
+ */
+public interface SubmissionRepository extends JpaRepository<Submission, Long> {
+
+    /**
+     * Find a submission with its problem, the problem's creator and its author loaded, for
+     * use outside a persistence context (judge workers, response mapping).
+     */
+    @Query("select s from Submission s join fetch s.problem p left join fetch p.createdBy join fetch s.user "
+            + "where s.id = :id")
+    Optional<Submission> findWithProblemById(@Param("id") Long id);
+
+    /**
+     * Find a user's submissions to a problem, newest first.
+     */
+    @Query("select s from Submission s join fetch s.user u where s.problem.id = :problemId and u.firebaseUid = :uid "
+            + "order by s.id desc")
+    List<Submission> findByProblemAndUser(@Param("problemId") Long problemId, @Param("uid") String firebaseUid);
+
+    /**
+     * Find the IDs of submissions in the given states, oldest first.
+     */
+    @Query("select s.id from Submission s where s.status in :statuses order by s.id")
+    List<Long> findIdsByStatusIn(@Param("statuses") Collection<SubmissionStatus> statuses);
+
+    /**
+     * Delete the submissions to a problem; their test results must be deleted first.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from Submission s where s.problem.id = :problemId")
+    int deleteByProblemId(@Param("problemId") Long problemId);
+}
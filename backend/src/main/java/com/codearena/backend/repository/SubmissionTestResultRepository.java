@@ -0,0 +1,38 @@
+package com.codearena.backend.repository;
+
+import com.codearena.backend.entity.SubmissionTestResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Repository interface for SubmissionTestResult entity.
+ */
+public interface SubmissionTestResultRepository extends JpaRepository<SubmissionTestResult, Long> {
+
+    /**
+     * Find the test results of a submission in the order they were judged.
+     */
+    List<SubmissionTestResult> findBySubmissionIdOrderByIdAsc(Long submissionId);
+
+    /**
+     * Delete the test results of a submission, before it is judged again.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from SubmissionTestResult r where r.submission.id = :submissionId")
+    int deleteBySubmissionId(@Param("submissionId") Long submissionId);
+
+    /**
+     * Delete the test results of every submission to a problem.
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from SubmissionTestResult r where r.submission.id in "
+            + "(select s.id from Submission s where s.problem.id = :problemId)")
+    int deleteByProblemId(@Param("problemId") Long problemId);
+}
@@ -1,10 +1,13 @@
 package com.codearena.backend.repository;
 
 import com.codearena.backend.entity.TestCase;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -13,7 +16,7 @@ import java.util.Optional;
  * Repository for TestCase entity operations.
  */
 @Repository
-public interface TestCaseRepository extends JpaRepository<TestCase, Long> {
+public interface TestCaseRepository extends JpaRepository<TestCase, Long>, TestCaseRepositoryCustom {
     
     /**
      * Find all test cases for a specific problem.
@@ -35,6 +38,66 @@ public interface TestCaseRepository extends JpaRepository<TestCase, Long> {
      */
     Optional<TestCase> findByProblemIdAndName(Long problemId, String name);
     
+    /**
+     * Find the names of all test cases for a problem without loading the rows.
+     */
+    @Query("select t.name from TestCase t where t.problem.id = :problemId")
+    List<String> findNamesByProblemId(@Param("problemId") Long problemId);
+    
+    /**
+     * Find the next page of stored (not generated) test cases that keep at least one file in
+     * the legacy testcases/{problemId}/{testCaseId}/ layout, ordered by that prefix as a string so the
+     * order matches a storage listing, after the given "{problemId}/{testCaseId}/" key.
+     */
+    @Query("select t from TestCase t where (t.inputSha256 is null or t.outputSha256 is null) "
+            + "and t.generatorSha256 is null "
+            + "and concat(cast(t.problem.id as String), '/', cast(t.id as String), '/') > :after "
+            + "order by concat(cast(t.problem.id as String), '/', cast(t.id as String), '/')")
+    List<TestCase> findLegacyAfter(@Param("after") String after, Pageable pageable);
+    
+    /**
+     * Correct the recorded sizes of a test case, unless its files were rewritten since
+     * the given content generation was read.
+     * @return 1 if the sizes were updated, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("update TestCase t set t.inputFileSize = :inputSize, t.outputFileSize = :outputSize, "
+            + "t.fileSize = :fileSize, t.storedFileSize = :storedSize "
+            + "where t.id = :id and coalesce(t.contentGeneration, 0) = :generation")
+    int updateFileSizes(@Param("id") Long id, @Param("generation") long generation,
+                        @Param("inputSize") Long inputSize, @Param("outputSize") Long outputSize,
+                        @Param("fileSize") Long fileSize, @Param("storedSize") long storedSize);
+    
+    /**
+     * Record the size of a generated input once it was materialized.
+     * @return 1 if the test case exists, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("update TestCase t set t.inputFileSize = :size, t.fileSize = :size + coalesce(t.outputFileSize, 0) "
+            + "where t.id = :id")
+    int updateGeneratedInputSize(@Param("id") Long id, @Param("size") long size);
+    
+    /**
+     * Record the size of a generated output once it was materialized.
+     * @return 1 if the test case exists, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("update TestCase t set t.outputFileSize = :size, t.fileSize = :size + coalesce(t.inputFileSize, 0) "
+            + "where t.id = :id")
+    int updateGeneratedOutputSize(@Param("id") Long id, @Param("size") long size);
+    
+    /**
+     * Record that submissions were not accepted on the given test cases.
+     * @return The number of test cases updated
+     */
+    @Modifying
+    @Transactional
+    @Query("update TestCase t set t.failureCount = coalesce(t.failureCount, 0) + 1 where t.id in :ids")
+    int incrementFailureCounts(@Param("ids") List<Long> ids);
+    
     /**
      * Count test cases for a problem.
      */
@@ -0,0 +1,18 @@
+package com.codearena.backend.repository;
+
+import com.codearena.backend.entity.TestCase;
+
+import java.util.List;
+
+/**
+ * Custom TestCase operations that Spring Data cannot derive.
+ */
+public interface TestCaseRepositoryCustom {
+    
+    /**
+     * Insert new test cases with batched JDBC statements in a single transaction.
+     * Identity-generated IDs keep Hibernate from batching inserts, so large imports
+     * bypass the persistence context; the given entities are not assigned IDs.
+     */
+    void insertAll(List<TestCase> testCases);
+}
@@ -0,0 +1,58 @@
+package com.codearena.backend.repository;
+
+import com.codearena.backend.entity.TestCase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * JDBC implementation of TestCaseRepositoryCustom.
+ * With rewriteBatchedStatements enabled on the MySQL connection, each batch is sent
+ * as a single multi-row insert.
+ */
+public class TestCaseRepositoryImpl implements TestCaseRepositoryCustom {
+
+    /** Rows per JDBC batch. */
+    static final int BATCH_SIZE = 100;
+
+    private static final String INSERT_SQL = "insert into test_cases (name, description, input_file_name, "
+            + "output_file_name, input_sha256, output_sha256, input_crc32c, output_crc32c, file_size, input_file_size, "
+            + "output_file_size, stored_file_size, storage_codec, content_generation, is_hidden, is_sample, problem_id, "
+            + "created_by, created_at, updated_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TestCaseRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void insertAll(List<TestCase> testCases) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, testCases, BATCH_SIZE, (ps, testCase) -> {
+            ps.setString(1, testCase.getName());
+            ps.setString(2, testCase.getDescription());
+            ps.setString(3, testCase.getInputFileName());
+            ps.setString(4, testCase.getOutputFileName());
+            ps.setString(5, testCase.getInputSha256());
+            ps.setString(6, testCase.getOutputSha256());
+            ps.setObject(7, testCase.getInputCrc32c(), Types.BIGINT);
+            ps.setObject(8, testCase.getOutputCrc32c(), Types.BIGINT);
+            ps.setLong(9, testCase.getFileSize());
+            ps.setObject(10, testCase.getInputFileSize(), Types.BIGINT);
+            ps.setObject(11, testCase.getOutputFileSize(), Types.BIGINT);
+            ps.setObject(12, testCase.getStoredFileSize(), Types.BIGINT);
+            ps.setString(13, testCase.getStorageCodec());
+            ps.setObject(14, testCase.getContentGeneration(), Types.BIGINT);
+            ps.setBoolean(15, testCase.getIsHidden());
+            ps.setBoolean(16, testCase.getIsSample());
+            ps.setLong(17, testCase.getProblem().getId());
+            ps.setString(18, testCase.getCreatedBy().getFirebaseUid());
+            ps.setTimestamp(19, Timestamp.valueOf(testCase.getCreatedAt()));
+            ps.setTimestamp(20, Timestamp.valueOf(testCase.getUpdatedAt()));
+        });
+    }
+}
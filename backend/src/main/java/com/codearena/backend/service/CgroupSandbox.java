@@ -0,0 +1,232 @@
+package com.codearena.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs programs in their own cgroup v2 group on Linux judge nodes, so their CPU time,
+ * memory and process count are accounted and bounded by the kernel.
+ *
+ * Each run gets a fresh child group of judge.sandbox.cgroup.root with
+ * - cpu.max capping it at one CPU, so CPU time never runs ahead of wall time and a
+ *   multithreaded program cannot buy time with extra cores
+ * - memory.max at the memory limit (and memory.swap.max at 0), so the kernel kills the
+ *   group past it instead of letting it swap
+ * - pids.max at judge.sandbox.cgroup.pids-max, against fork bombs
+ * The program joins the group from a shell that writes its own PID to cgroup.procs and
+ * then execs the program, so everything it starts is accounted from its first instruction.
+ * There is no daemon or container in between: a run costs a mkdir, a few small writes and
+ * one extra exec. After the run the group reports usage_usec from cpu.stat, memory.peak
+ * and whether the kernel OOM-killed anything, and the group is removed.
+ *
+ * The root is created if needed and must be a cgroup v2 group this process may manage,
+ * whose parent passes down the cpu, memory and pids controllers: under systemd, a unit
+ * with Delegate=yes (for example /sys/fs/cgroup/system.slice/codearena.service/judge).
+ * Only one backend per root.
+ */
+@Component
+public class CgroupSandbox {
+
+    private static final long CPU_PERIOD_MICROS = 100_000;
+    private static final List<String> CONTROLLERS = List.of("cpu", "memory", "pids");
+    private static final String GROUP_PREFIX = "run-";
+
+    private final boolean enabled;
+    private final Path root;
+    private final int pidsMax;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public CgroupSandbox(@Value("${judge.sandbox.cgroup.enabled:false}") boolean enabled,
+                         @Value("${judge.sandbox.cgroup.root:/sys/fs/cgroup/codearena}") String root,
+                         @Value("${judge.sandbox.cgroup.pids-max:128}") int pidsMax) throws IOException {
+        if (pidsMax < 1) {
+            throw new IllegalArgumentException("judge.sandbox.cgroup.pids-max must be at least 1");
+        }
+        this.enabled = enabled;
+        this.root = Path.of(root);
+        this.pidsMax = pidsMax;
+        if (enabled) {
+            prepareRoot();
+        }
+    }
+
+    /**
+     * Tells whether runs go through the sandbox.
+     * @return Whether the sandbox is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Creates the group for one run. Limits apply as soon as a process joins it.
+     * @param memoryLimitBytes Memory limit in bytes, or 0 for none
+     * @return The group; close it after the run to kill what is left and remove it
+     * @throws IOException If the group cannot be created
+     */
+    public Group createGroup(long memoryLimitBytes) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("The cgroup sandbox is not enabled");
+        }
+        Path path = root.resolve(GROUP_PREFIX + sequence.incrementAndGet());
+        Files.createDirectory(path);
+        Group group = new Group(path);
+        try {
+            write(path.resolve("cpu.max"), CPU_PERIOD_MICROS + " " + CPU_PERIOD_MICROS);
+            write(path.resolve("pids.max"), String.valueOf(pidsMax));
+            if (memoryLimitBytes > 0) {
+                write(path.resolve("memory.max"), String.valueOf(memoryLimitBytes));
+                if (Files.exists(path.resolve("memory.swap.max"))) { // Absent without swap accounting
+                    write(path.resolve("memory.swap.max"), "0");
+                }
+            }
+            return group;
+        } catch (IOException | RuntimeException e) {
+            group.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The group of one run.
+     */
+    public static final class Group implements AutoCloseable {
+        private final Path path;
+
+        private Group(Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Wraps a command so that its process joins this group before the program starts.
+         * @param command The command
+         * @return The wrapped command
+         */
+        public List<String> wrap(List<String> command) {
+            List<String> wrapped = new ArrayList<>(List.of("sh", "-c",
+                    "echo $$ > \"$0/cgroup.procs\" && exec \"$@\"", path.toString()));
+            wrapped.addAll(command);
+            return wrapped;
+        }
+
+        /**
+         * Gets the CPU time, user and system, used by the group so far.
+         * @return The CPU time
+         * @throws IOException If cpu.stat cannot be read
+         */
+        public Duration cpuTime() throws IOException {
+            return Duration.ofNanos(stat(path.resolve("cpu.stat"), "usage_usec") * 1000);
+        }
+
+        /**
+         * Gets the most memory the group has used at once.
+         * @return The peak in bytes, or -1 if the kernel does not report it (before Linux 5.19)
+         * @throws IOException If memory.peak cannot be read
+         */
+        public long memoryPeakBytes() throws IOException {
+            Path peak = path.resolve("memory.peak");
+            return Files.exists(peak) ? Long.parseLong(Files.readString(peak).trim()) : -1;
+        }
+
+        /**
+         * Tells whether the kernel killed a process of the group for going past memory.max.
+         * @return Whether the group ran out of memory
+         * @throws IOException If memory.events cannot be read
+         */
+        public boolean outOfMemory() throws IOException {
+            return stat(path.resolve("memory.events"), "oom_kill") > 0;
+        }
+
+        /**
+         * Kills every process left in the group and removes it.
+         */
+        @Override
+        public void close() {
+            try {
+                removeGroup(path);
+            } catch (IOException e) {
+                System.err.println("Failed to remove cgroup " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void prepareRoot() throws IOException {
+        Path parent = root.getParent();
+        if (parent == null || !Files.exists(parent.resolve("cgroup.controllers"))) {
+            throw new IllegalStateException(root + " is not inside a cgroup v2 hierarchy");
+        }
+        Files.createDirectories(root);
+        Set<String> available = Set.of(Files.readString(root.resolve("cgroup.controllers")).trim().split("\\s+"));
+        for (String controller : CONTROLLERS) {
+            if (!available.contains(controller)) {
+                throw new IllegalStateException("The " + controller + " controller is not enabled for " + root
+                        + "; add it to " + parent.resolve("cgroup.subtree_control"));
+            }
+        }
+        // Groups of runs interrupted by a restart
+        try (DirectoryStream<Path> groups = Files.newDirectoryStream(root, GROUP_PREFIX + "*")) {
+            for (Path group : groups) {
+                removeGroup(group);
+            }
+        }
+        write(root.resolve("cgroup.subtree_control"), "+cpu +memory +pids");
+        System.out.println("Judge runs are sandboxed in cgroup " + root);
+    }
+
+    private static void removeGroup(Path group) throws IOException {
+        Path kill = group.resolve("cgroup.kill");
+        if (Files.exists(kill)) {
+            write(kill, "1");
+        } else { // Before Linux 5.14
+            for (String pid : Files.readAllLines(group.resolve("cgroup.procs"))) {
+                ProcessHandle.of(Long.parseLong(pid.trim())).ifPresent(ProcessHandle::destroyForcibly);
+            }
+        }
+        // A group can only be removed once the killed processes are gone
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (true) {
+            try {
+                Files.deleteIfExists(group);
+                return;
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static long stat(Path file, String key) throws IOException {
+        for (String line : Files.readAllLines(file)) {
+            if (line.startsWith(key + " ")) {
+                return Long.parseLong(line.substring(key.length() + 1).trim());
+            }
+        }
+        return 0;
+    }
+
+    private static void write(Path file, String value) throws IOException {
+        try {
+            Files.writeString(file, value);
+        } catch (NoSuchFileException e) {
+            throw new IOException("cgroup file " + file + " is missing; is its controller enabled?", e);
+        }
+    }
+}
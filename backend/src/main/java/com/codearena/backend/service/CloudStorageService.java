@@ -1,185 +1,1563 @@
 package com.codearena.backend.service;
 
-import com.google.cloud.storage.*;
+import com.codearena.backend.entity.StoredBlob;
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.repository.StoredBlobRepository;
+import com.google.common.base.Utf8;
+import com.google.common.io.CountingInputStream;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
- * Service for managing test case files in Google Cloud Storage.
+ * Service for managing test case files in the configured TestCaseStorage backend.
  * 
  * Handles file storage operations for test case input and output files.
- * Uses a structured path format: testcases/{problemId}/{testCaseId}/{fileName}
+ * Files are content-addressed: each distinct content is stored once as blobs/{sha256}
+ * and shared by reference-counted StoredBlob rows. Test cases created before content
+ * addressing keep the legacy testcases/{problemId}/{testCaseId}/{fileName} layout.
  * 
  * Features:
- * - Secure file storage with Google Cloud Storage
- * - Automatic file organization by problem and test case
+ * - Pluggable storage backend (Google Cloud Storage or local disk)
+ * - Tiered read-through content cache, invalidated on upload and delete
+ * - Concurrent input/output uploads on a bounded I/O executor
+ * - Transparent streaming compression at rest (testcase.storage.codec: none, gzip, zstd)
+ * - Deduplication: re-uploading known content costs a hash and a row update, not a PUT
+ * - Batched deletes, and a background purge of all files of a deleted problem
+ * - Ranged reads for previews: only the requested window is fetched from storage
+ * - Streaming zip export with a bounded window of files prefetched in parallel
+ * - Incremental uploads for files that arrive in chunks over several requests
+ * - CRC32C of the raw content recorded on upload and verified on every full read
+ * - Short-lived signed URLs, so clients download large files straight from storage
+ * - Objects concatenated from ranges of other objects, for packed test bundles
+ * - Pre-tokenized indexes of expected outputs, stored as tokens/{sha256} next to their blob
  * - Support for text-based input/output files
  * - File size tracking for storage monitoring
  * - Error handling for missing or corrupted files
  * 
- * This service abstracts Cloud Storage operations and provides a clean interface
+ * This service abstracts storage operations and provides a clean interface
  * for the TestCaseService to manage file storage.
  */
 @Service
 public class CloudStorageService {
     
-    private final Storage storage;
-    private final String bucketName;
+    /** Buffer size for streaming downloads; memory per download stays constant. */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
     
-    public CloudStorageService(Storage storage, @Value("${gcs.bucket:codearena-testcases}") String bucketName) {
-        this.storage = storage;
-        this.bucketName = bucketName;
+    /** Object names per batch delete task; matches the GCS batch request limit. */
+    private static final int DELETE_BATCH_SIZE = 100;
+    
+    /** Object names listed per page while purging a problem prefix. */
+    private static final int PURGE_PAGE_SIZE = 1000;
+    
+    /** Blob references released per transaction, bounding how many rows are locked at once. */
+    private static final int RELEASE_BATCH_SIZE = 500;
+    
+    /** Leading bytes of each file fetched ahead while an archive is written; the rest is streamed in place. */
+    private static final int ARCHIVE_PREFETCH_BYTES = 256 * 1024;
+    
+    /** Lifetime of signed download URLs: long enough to start a download, short enough not to be shared. */
+    public static final Duration SIGNED_URL_TTL = Duration.ofMinutes(15);
+    
+    private final TestCaseStorage testCaseStorage;
+    private final TestCaseContentCache contentCache;
+    private final StoredBlobRepository storedBlobRepository;
+    private final TransactionOperations transactionOperations;
+    private final ExecutorService ioExecutor;
+    private final ExecutorService purgeExecutor;
+    private final TestCaseCodec codec;
+    private final int archivePrefetchWindow;
+    
+    /**
+     * A stored test case file.
+     * @param sha256 Hex SHA-256 of the raw content, or null for a legacy file
+     * @param rawSize Size of the content as uploaded, in bytes
+     * @param storedSize Size of the object at rest after compression, in bytes
+     * @param codec Codec the object is stored with, or null if unknown
+     * @param crc32c CRC32C of the raw content, or null if not recorded
+     */
+    public record StoredFile(String sha256, long rawSize, long storedSize, TestCaseCodec codec, Long crc32c) {
+    }
+    
+    /**
+     * A window of a test case file's raw (decoded) content.
+     * @param content The bytes in the window
+     * @param offset Position of the first byte within the file
+     * @param hasMore Whether the file continues after the window
+     */
+    public record FileRange(byte[] content, long offset, boolean hasMore) {
+        
+        /**
+         * Decodes the window as UTF-8.
+         * @return The window text
+         */
+        public String text() {
+            return new String(content, StandardCharsets.UTF_8);
+        }
+        
+        /**
+         * Gets the offset just after the window, where a follow-up read continues.
+         * @return The next offset
+         */
+        public long nextOffset() {
+            return offset + content.length;
+        }
+    }
+    
+    /**
+     * A test case file to be written to an archive.
+     * @param entryName Name of the archive entry
+     * @param testCase The test case
+     * @param fileName The file name (input.txt or output.txt)
+     */
+    public record ArchiveFile(String entryName, TestCase testCase, String fileName) {
+    }
+    
+    /**
+     * A signed URL from which a client downloads a test case file directly from storage.
+     * @param url The URL; it serves the file as stored
+     * @param expiresAt When the URL stops working
+     * @param codec Codec of the served bytes, which the client must decode; NONE for plain text
+     */
+    public record SignedFileUrl(URI url, Instant expiresAt, TestCaseCodec codec) {
+    }
+    
+    /**
+     * A byte range of a stored object.
+     * @param objectName The object name
+     * @param offset Position of the first byte
+     * @param length Number of bytes
+     */
+    public record ObjectRange(String objectName, long offset, long length) {
     }
     
     /**
-     * Gets the bucket name.
-     * @return The Cloud Storage bucket name
+     * The leading bytes of a file read ahead of time, and the open stream for the rest.
      */
-    private String getBucketName() {
-        return bucketName;
+    private record PrefetchedFile(byte[] head, InputStream rest) {
     }
     
     /**
-     * Uploads a test case file to Cloud Storage.
+     * Result of a combined input/output upload.
+     * @param input The stored input file, or null if no input was uploaded
+     * @param output The stored output file, or null if no output was uploaded
+     */
+    public record UploadedFiles(StoredFile input, StoredFile output) {
+    }
+    
+    public CloudStorageService(TestCaseStorage testCaseStorage,
+                               TestCaseContentCache contentCache,
+                               StoredBlobRepository storedBlobRepository,
+                               TransactionOperations transactionOperations,
+                               @Value("${testcase.storage.io-threads:8}") int ioThreads,
+                               @Value("${testcase.storage.codec:gzip}") String codec) {
+        this.testCaseStorage = testCaseStorage;
+        this.contentCache = contentCache;
+        this.storedBlobRepository = storedBlobRepository;
+        this.transactionOperations = transactionOperations;
+        this.codec = TestCaseCodec.fromName(codec);
+        this.archivePrefetchWindow = ioThreads;
+        // Bounded pool and queue; when saturated the caller runs the task itself
+        this.ioExecutor = new ThreadPoolExecutor(ioThreads, ioThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(ioThreads * 32),
+                new CustomizableThreadFactory("testcase-storage-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        // Purges are queued and run one at a time; each fans its deletes out on the I/O executor
+        this.purgeExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("testcase-purge-"));
+    }
+    
+    /**
+     * Stops the storage executors on shutdown.
+     */
+    @PreDestroy
+    public void shutdown() {
+        purgeExecutor.shutdown();
+        ioExecutor.shutdown();
+    }
+    
+    /**
+     * Gets the codec applied to newly written files.
+     * @return The configured codec
+     */
+    public TestCaseCodec getCodec() {
+        return codec;
+    }
+    
+    /**
+     * Builds the object name of a content-addressed blob.
+     * @param sha256 Hex SHA-256 of the raw content
+     * @return The object name
+     */
+    public static String blobName(String sha256) {
+        return "blobs/" + sha256;
+    }
+    
+    /**
+     * Builds the object name of the token index derived from a blob.
+     * @param sha256 Hex SHA-256 of the blob's raw content
+     * @return The object name
+     */
+    public static String tokenIndexName(String sha256) {
+        return "tokens/" + sha256;
+    }
+    
+    /**
+     * Builds the legacy object name of a test case file.
      * @param problemId The problem ID
      * @param testCaseId The test case ID
      * @param fileName The file name (input.txt or output.txt)
-     * @param content The file content
-     * @return The Cloud Storage blob name
+     * @return The object name
+     */
+    public static String objectName(Long problemId, Long testCaseId, String fileName) {
+        return String.format("testcases/%d/%d/%s", problemId, testCaseId, fileName);
+    }
+    
+    /**
+     * Resolves the object holding a test case file: its blob if the test case points at one,
+     * the legacy per-test-case object otherwise.
+     * @param testCase The test case
+     * @param fileName The file name (the test case's input or output file name)
+     * @return The object name
      */
-    public String uploadTestCaseFile(Long problemId, Long testCaseId, String fileName, String content) {
+    public static String objectName(TestCase testCase, String fileName) {
+        String sha256 = fileName.equals(testCase.getInputFileName())
+                ? testCase.getInputSha256() : testCase.getOutputSha256();
+        if (sha256 != null) {
+            return blobName(sha256);
+        }
+        return objectName(testCase.getProblem().getId(), testCase.getId(), fileName);
+    }
+    
+    /**
+     * Stores the input and output files of a test case concurrently.
+     * Each stored file holds one blob reference that the caller must eventually release.
+     * Content that is already stored is not uploaded again.
+     * @param inputContent The input content, or null to skip
+     * @param outputContent The output content, or null to skip
+     * @return The stored files
+     * @throws IllegalStateException If a file cannot be stored; no reference is left behind
+     */
+    public UploadedFiles uploadTestCaseFiles(String inputContent, String outputContent) {
+        CompletableFuture<StoredFile> inputUpload = inputContent == null
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(() -> storeContent(inputContent), ioExecutor);
+        // The output upload runs on the calling thread while the input upload is in flight
+        StoredFile output;
         try {
-            String blobName = String.format("testcases/%d/%d/%s", problemId, testCaseId, fileName);
-            String bucketName = getBucketName();
-            
-            System.out.println("Uploading to Cloud Storage - Bucket: " + bucketName + ", Blob: " + blobName);
-            System.out.println("Content length: " + (content != null ? content.length() : "null"));
-            
-            BlobId blobId = BlobId.of(bucketName, blobName);
-            BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                    .setContentType("text/plain")
-                    .build();
-            
-            Blob blob = storage.create(blobInfo, content.getBytes(StandardCharsets.UTF_8));
-            System.out.println("Successfully uploaded to Cloud Storage: " + blob.getName() + ", Size: " + blob.getSize());
-            return blob.getName();
-        } catch (Exception e) {
-            // Log the error but don't fail the request
-            System.err.println("Failed to upload test case file to Cloud Storage: " + e.getMessage());
-            e.printStackTrace();
-            // For now, return a dummy name to allow the test case to be created
-            return String.format("testcases/%d/%d/%s", problemId, testCaseId, fileName);
+            output = outputContent == null ? null : storeContent(outputContent);
+        } catch (RuntimeException e) {
+            StoredFile input = inputUpload.exceptionally(t -> null).join();
+            if (input != null) {
+                releaseBlob(input.sha256());
+            }
+            throw e;
         }
+        StoredFile input;
+        try {
+            input = inputUpload.join();
+        } catch (CompletionException e) {
+            if (output != null) {
+                releaseBlob(output.sha256());
+            }
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+        return new UploadedFiles(input, output);
     }
     
     /**
-     * Downloads a test case file from Cloud Storage.
-     * @param problemId The problem ID
-     * @param testCaseId The test case ID
+     * Stores a test case file from a stream without holding it in memory.
+     * The stream is written to a staging object while it is hashed, then moved to its blob,
+     * or discarded if the blob already exists.
+     * @param content The file content stream (not closed)
+     * @return The stored file, holding one blob reference
+     * @throws IOException If reading the stream or writing to storage fails
+     */
+    public StoredFile uploadTestCaseFile(InputStream content) throws IOException {
+        String staging = "staging/" + UUID.randomUUID();
+        MessageDigest digest = sha256Digest();
+        CRC32C crc = new CRC32C();
+        CountingInputStream counting = new CountingInputStream(
+                new CheckedInputStream(new DigestInputStream(content, digest), crc));
+        try {
+            TestCaseStorage.StoredObject stored = testCaseStorage.write(staging, codec.encode(counting));
+            return promote(staging, HexFormat.of().formatHex(digest.digest()), crc.getValue(),
+                    counting.getCount(), stored.size());
+        } finally {
+            // Gone after a successful move; left behind by a duplicate or a failure
+            deleteQuietly(staging);
+        }
+    }
+    
+    /**
+     * Starts a test case file upload whose content arrives in several pieces, possibly over
+     * several requests. Content is hashed, compressed, and sent to storage as it is appended,
+     * so at most one storage chunk per upload is held in memory.
+     * @return The upload in progress
+     * @throws IOException If the storage upload cannot be started
+     */
+    public FileUpload startFileUpload() throws IOException {
+        String staging = "staging/" + UUID.randomUUID();
+        return new FileUpload(staging, testCaseStorage.startUpload(staging));
+    }
+    
+    /**
+     * A test case file being uploaded in pieces. Appends are serialized, and the
+     * size counts every byte accepted so far, including those of an append whose source
+     * failed partway; a client resumes from that size. A storage failure breaks the upload.
+     */
+    public final class FileUpload {
+        private final String staging;
+        private final TestCaseStorage.ObjectUpload upload;
+        private final MessageDigest digest = sha256Digest();
+        private final CRC32C crc = new CRC32C();
+        private OutputStream encoder;
+        private long size;
+        private boolean closed;
+        private boolean failed;
+        
+        private FileUpload(String staging, TestCaseStorage.ObjectUpload upload) {
+            this.staging = staging;
+            this.upload = upload;
+        }
+        
+        /**
+         * Appends content at the end of the file.
+         * @param content The content; read to its end
+         * @return The file size after the append
+         * @throws IOException If the content cannot be read (bytes read before the failure
+         *                     stay appended) or cannot be stored (the upload is broken)
+         */
+        public synchronized long append(InputStream content) throws IOException {
+            OutputStream out = encoder();
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int n;
+            while ((n = content.read(buffer)) != -1) {
+                try {
+                    out.write(buffer, 0, n);
+                } catch (IOException | RuntimeException e) {
+                    failed = true;
+                    throw e;
+                }
+                size += n;
+            }
+            return size;
+        }
+        
+        /**
+         * Gets the number of raw bytes appended so far.
+         * @return The file size
+         */
+        public synchronized long size() {
+            return size;
+        }
+        
+        /**
+         * Tells whether a storage failure broke the upload; it can then only be aborted.
+         * @return Whether the upload failed
+         */
+        public synchronized boolean isFailed() {
+            return failed;
+        }
+        
+        /**
+         * Finishes the file and stores it as a content-addressed blob.
+         * @return The stored file, holding one reference
+         * @throws IOException If the file cannot be stored
+         */
+        public synchronized StoredFile finish() throws IOException {
+            OutputStream out = encoder();
+            closed = true;
+            try {
+                out.close(); // Writes the codec trailer
+                TestCaseStorage.StoredObject stored = upload.commit();
+                return promote(staging, HexFormat.of().formatHex(digest.digest()), crc.getValue(), size, stored.size());
+            } catch (IOException | RuntimeException e) {
+                upload.abort();
+                throw e;
+            } finally {
+                deleteQuietly(staging);
+            }
+        }
+        
+        /**
+         * Discards the file; nothing is stored.
+         */
+        public synchronized void abort() {
+            if (!closed) {
+                closed = true;
+                upload.abort();
+            }
+        }
+        
+        private OutputStream encoder() throws IOException {
+            if (closed || failed) {
+                throw new IllegalStateException(closed ? "Upload is already finished" : "Upload failed; start a new one");
+            }
+            if (encoder == null) {
+                encoder = new CheckedOutputStream(
+                        new DigestOutputStream(codec.newEncoder(upload.stream()), digest), crc);
+            }
+            return encoder;
+        }
+    }
+    
+    /**
+     * Looks up a stored blob without adding a reference.
+     * @param sha256 Hex SHA-256 of the raw content
+     * @return The stored file, or null if no such blob is registered
+     */
+    public StoredFile describeBlob(String sha256) {
+        return storedBlobRepository.findById(sha256).map(CloudStorageService::toStoredFile).orElse(null);
+    }
+    
+    /**
+     * Looks up stored blobs in one query without adding references.
+     * @param sha256s Hex SHA-256 hashes of raw content
+     * @return The registered blobs by hash; unregistered hashes are absent
+     */
+    public Map<String, StoredFile> describeBlobs(Collection<String> sha256s) {
+        Map<String, StoredFile> files = new HashMap<>();
+        if (!sha256s.isEmpty()) {
+            for (StoredBlob blob : storedBlobRepository.findAllById(sha256s)) {
+                files.put(blob.getSha256(), toStoredFile(blob));
+            }
+        }
+        return files;
+    }
+    
+    /**
+     * Tells whether a test case file already holds the given content, so that writing it
+     * again can be skipped. The size and CRC32C rule out most changes cheaply; a match is
+     * confirmed against the SHA-256. Legacy files without a hash never match.
+     * @param testCase The test case
+     * @param fileName The file name (input.txt or output.txt)
+     * @param content The candidate content
+     * @return Whether the stored file has exactly this content
+     */
+    public static boolean hasContent(TestCase testCase, String fileName, String content) {
+        boolean isInput = fileName.equals(testCase.getInputFileName());
+        String sha256 = isInput ? testCase.getInputSha256() : testCase.getOutputSha256();
+        Long rawSize = isInput ? testCase.getInputFileSize() : testCase.getOutputFileSize();
+        if (sha256 == null || (rawSize != null && rawSize != utf8Length(content))) {
+            return false;
+        }
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        Long expected = expectedCrc32c(testCase, fileName);
+        if (expected != null && expected != crc32c(raw)) {
+            return false;
+        }
+        return sha256.equals(HexFormat.of().formatHex(sha256Digest().digest(raw)));
+    }
+    
+    /**
+     * Computes the CRC32C of raw content (hardware-accelerated on current JVMs).
+     * @param raw The content
+     * @return The checksum as an unsigned 32-bit value
+     */
+    public static long crc32c(byte[] raw) {
+        CRC32C crc = new CRC32C();
+        crc.update(raw, 0, raw.length);
+        return crc.getValue();
+    }
+    
+    /**
+     * Gets the checksum recorded for a test case file.
+     * @return The CRC32C, or null if none was recorded
+     */
+    private static Long expectedCrc32c(TestCase testCase, String fileName) {
+        return fileName.equals(testCase.getInputFileName()) ? testCase.getInputCrc32c() : testCase.getOutputCrc32c();
+    }
+    
+    /**
+     * Drops one reference to a blob, deleting the blob from storage with its last reference.
+     * @param sha256 Hex SHA-256 of the raw content
+     */
+    public void releaseBlob(String sha256) {
+        releaseBlobs(List.of(sha256));
+    }
+    
+    /**
+     * Drops one reference per listed hash (a hash may be listed more than once), deleting
+     * blobs whose last reference goes away with batched storage deletes.
+     * The rows stay locked while their objects are deleted, so a concurrent upload of the
+     * same content waits and then stores it afresh.
+     * @param sha256s Hex SHA-256 hashes of the released blobs
+     */
+    public void releaseBlobs(Collection<String> sha256s) {
+        // Lock rows in a fixed order so concurrent releases cannot deadlock
+        Map<String, Long> releases = new TreeMap<>();
+        for (String sha256 : sha256s) {
+            releases.merge(sha256, 1L, Long::sum);
+        }
+        List<String> hashes = new ArrayList<>(releases.keySet());
+        for (int from = 0; from < hashes.size(); from += RELEASE_BATCH_SIZE) {
+            List<String> chunk = hashes.subList(from, Math.min(from + RELEASE_BATCH_SIZE, hashes.size()));
+            transactionOperations.executeWithoutResult(status -> releaseLocked(chunk, releases));
+        }
+    }
+    
+    private void releaseLocked(List<String> hashes, Map<String, Long> releases) {
+        List<StoredBlob> unreferenced = new ArrayList<>();
+        List<StoredBlob> blobs = storedBlobRepository.findAllForUpdate(hashes);
+        if (blobs.size() < hashes.size()) {
+            System.err.println("Released " + (hashes.size() - blobs.size()) + " unknown blob(s)");
+        }
+        for (StoredBlob blob : blobs) {
+            long remaining = blob.getRefCount() - releases.get(blob.getSha256());
+            if (remaining > 0) {
+                blob.setRefCount(remaining);
+                storedBlobRepository.save(blob);
+            } else {
+                unreferenced.add(blob);
+            }
+        }
+        if (!unreferenced.isEmpty()) {
+            // Derived token indexes go with their blob; deleting a missing one is a no-op
+            deleteObjectsQuietly(unreferenced.stream()
+                    .flatMap(blob -> Stream.of(blobName(blob.getSha256()), tokenIndexName(blob.getSha256())))
+                    .toList());
+            storedBlobRepository.deleteAll(unreferenced);
+        }
+    }
+    
+    /**
+     * Downloads a test case file through the content cache.
+     * The test case's content generation changes whenever its files are rewritten,
+     * so stale entries on other nodes are never served.
+     * @param testCase The test case
      * @param fileName The file name (input.txt or output.txt)
      * @return The file content
      */
-    public String downloadTestCaseFile(Long problemId, Long testCaseId, String fileName) {
+    public String downloadTestCaseFile(TestCase testCase, String fileName) {
+        long generation = testCase.getContentGeneration() != null ? testCase.getContentGeneration() : 0L;
+        TestCaseContentCache.Key key = new TestCaseContentCache.Key(
+                testCase.getProblem().getId(), testCase.getId(), fileName, generation);
+        String cached = contentCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            String blobName = String.format("testcases/%d/%d/%s", problemId, testCaseId, fileName);
-            
-            Blob blob = storage.get(BlobId.of(getBucketName(), blobName));
-            if (blob == null) {
-                throw new RuntimeException("Test case file not found: " + blobName);
-            }
-            
-            return new String(blob.getContent(), StandardCharsets.UTF_8);
+            DecodedText content = readText(objectName(testCase, fileName), expectedCrc32c(testCase, fileName));
+            contentCache.put(key, content.text(), content.rawSize());
+            return content.text();
         } catch (Exception e) {
-            // Log the error but don't fail the request
-            System.err.println("Failed to download test case file from Cloud Storage: " + e.getMessage());
-            // Return a default content for now
+            // Log the error but don't fail the request; the placeholder is never cached
+            System.err.println("Failed to download test case file: " + e.getMessage());
             return "File content not available due to Cloud Storage error";
         }
     }
     
     /**
-     * Updates a test case file in Cloud Storage.
-     * @param problemId The problem ID
-     * @param testCaseId The test case ID
+     * Reads a window of a test case file.
+     * Windows are served from the content cache when present, so repeated previews (test case
+     * lists and sample views) do not go to storage. On a miss, uncompressed files are read with
+     * a ranged request for exactly the window; compressed files are decoded from the start and
+     * the stream is closed as soon as the window was read, since a decoder can only emit a
+     * block once it has all of it.
+     * @param testCase The test case
      * @param fileName The file name (input.txt or output.txt)
-     * @param content The new file content
+     * @param offset Position of the first raw byte to read
+     * @param maxBytes Maximum number of bytes to return
+     * @param maxLines Maximum number of lines to return, or 0 for no line limit
+     * @return The window; cut after the last complete line or UTF-8 character that fits
+     * @throws IOException If the file cannot be read
      */
-    public void updateTestCaseFile(Long problemId, Long testCaseId, String fileName, String content) {
-        uploadTestCaseFile(problemId, testCaseId, fileName, content); // Overwrite existing file
+    public FileRange readTestCaseFileRange(TestCase testCase, String fileName, long offset, int maxBytes, int maxLines)
+            throws IOException {
+        TestCaseContentCache.Key key = windowKey(testCase, fileName, offset, maxBytes);
+        String cached = contentCache.get(key);
+        if (cached != null) {
+            return sliceRange(cached.getBytes(StandardCharsets.ISO_8859_1), offset, maxBytes, maxLines);
+        }
+        return readAndCacheRange(key, testCase, fileName, offset, maxBytes, maxLines);
     }
     
     /**
-     * Deletes a test case file from Cloud Storage.
-     * @param problemId The problem ID
-     * @param testCaseId The test case ID
+     * Reads a window of a test case file, on the storage I/O executor unless it is cached.
+     * @param testCase The test case
+     * @param fileName The file name (input.txt or output.txt)
+     * @param offset Position of the first raw byte to read
+     * @param maxBytes Maximum number of bytes to return
+     * @param maxLines Maximum number of lines to return, or 0 for no line limit
+     * @return Completes with the window
+     */
+    public CompletableFuture<FileRange> readTestCaseFileRangeAsync(TestCase testCase, String fileName, long offset,
+                                                                   int maxBytes, int maxLines) {
+        TestCaseContentCache.Key key = windowKey(testCase, fileName, offset, maxBytes);
+        String cached = contentCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(
+                    sliceRange(cached.getBytes(StandardCharsets.ISO_8859_1), offset, maxBytes, maxLines));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return readAndCacheRange(key, testCase, fileName, offset, maxBytes, maxLines);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ioExecutor);
+    }
+    
+    /**
+     * Cache key of a window of a test case file. The window may end inside a UTF-8 character,
+     * so it is cached as raw bytes, one ISO-8859-1 character each. It is dropped with the rest
+     * of the test case's entries when its files change.
+     */
+    private static TestCaseContentCache.Key windowKey(TestCase testCase, String fileName, long offset, int maxBytes) {
+        long generation = testCase.getContentGeneration() != null ? testCase.getContentGeneration() : 0L;
+        return new TestCaseContentCache.Key(testCase.getProblem().getId(), testCase.getId(),
+                fileName + "@" + offset + "+" + maxBytes, generation);
+    }
+    
+    private FileRange readAndCacheRange(TestCaseContentCache.Key key, TestCase testCase, String fileName, long offset,
+                                        int maxBytes, int maxLines) throws IOException {
+        String blobName = objectName(testCase, fileName);
+        // One byte past the window tells whether the file continues
+        int want = maxBytes + 1;
+        byte[] window;
+        if (codecOf(testCase, fileName) == TestCaseCodec.NONE) {
+            try (InputStream in = Channels.newInputStream(testCaseStorage.openReader(blobName, offset, want))) {
+                window = in.readNBytes(want);
+            }
+        } else {
+            try (InputStream in = TestCaseCodec.decode(Channels.newInputStream(testCaseStorage.openReader(blobName)))) {
+                window = skipFully(in, offset) ? in.readNBytes(want) : new byte[0];
+            }
+        }
+        contentCache.put(key, new String(window, StandardCharsets.ISO_8859_1), window.length);
+        return sliceRange(window, offset, maxBytes, maxLines);
+    }
+    
+    /**
+     * Streams a decoded test case file to an output stream through bounded buffers.
+     * The recorded checksum is verified at the end of the file; on a mismatch the copy
+     * fails after the last byte, so a consumer never sees a completed corrupt transfer.
+     * @param testCase The test case
+     * @param fileName The file name (input.txt or output.txt)
+     * @param out The destination stream (not closed)
+     * @return The number of raw bytes copied
+     * @throws IOException If the file cannot be read, fails its integrity check, or the destination fails
+     */
+    public long streamTestCaseFile(TestCase testCase, String fileName, OutputStream out) throws IOException {
+        try (ReadableByteChannel reader = testCaseStorage.openReader(objectName(testCase, fileName));
+             InputStream in = verified(TestCaseCodec.decode(Channels.newInputStream(reader)), testCase, fileName)) {
+            return in.transferTo(out);
+        }
+    }
+    
+    /**
+     * Copies a decoded test case file into a local file, verifying its recorded checksum.
+     * Used to fill node-local caches; the target is overwritten.
+     * @param testCase The test case
+     * @param fileName The file name (input.txt or output.txt)
+     * @param target The local file
+     * @return The number of stored bytes fetched from storage
+     * @throws IOException If the file cannot be read, fails its integrity check, or cannot be written
+     */
+    public long copyTestCaseFile(TestCase testCase, String fileName, Path target) throws IOException {
+        try (CountingInputStream stored = new CountingInputStream(Channels.newInputStream(
+                     testCaseStorage.openReader(objectName(testCase, fileName))));
+             InputStream in = verified(TestCaseCodec.decode(stored), testCase, fileName);
+             OutputStream out = Files.newOutputStream(target)) {
+            in.transferTo(out);
+            return stored.getCount();
+        }
+    }
+    
+    /**
+     * Copies the decoded content of a blob into a local file, verifying its recorded checksum.
+     * @param sha256 Hex SHA-256 of the raw content
+     * @param target The local file
+     * @return The number of stored bytes fetched from storage
+     * @throws NoSuchFileException If the blob is not registered
+     * @throws IOException If the blob cannot be read, fails its integrity check, or cannot be written
+     */
+    public long copyBlob(String sha256, Path target) throws IOException {
+        StoredFile blob = describeBlob(sha256);
+        if (blob == null) {
+            throw new NoSuchFileException(blobName(sha256));
+        }
+        try (CountingInputStream stored = new CountingInputStream(Channels.newInputStream(
+                     testCaseStorage.openReader(blobName(sha256))));
+             InputStream in = verifiedContent(TestCaseCodec.decode(stored), blobName(sha256), blob.crc32c());
+             OutputStream out = Files.newOutputStream(target)) {
+            in.transferTo(out);
+            return stored.getCount();
+        }
+    }
+    
+    /**
+     * Opens the decoded content of a blob, verifying its recorded checksum at the end.
+     * The caller must close the stream.
+     * @param sha256 Hex SHA-256 of the raw content
+     * @return The content stream
+     * @throws NoSuchFileException If the blob is not registered
+     * @throws IOException If the blob cannot be opened
+     */
+    public InputStream openBlob(String sha256) throws IOException {
+        StoredFile blob = describeBlob(sha256);
+        if (blob == null) {
+            throw new NoSuchFileException(blobName(sha256));
+        }
+        return verifiedContent(TestCaseCodec.decode(Channels.newInputStream(testCaseStorage.openReader(blobName(sha256)))),
+                blobName(sha256), blob.crc32c());
+    }
+    
+    /**
+     * Tells whether the token index of a blob has been stored.
+     * @param sha256 Hex SHA-256 of the blob's raw content
+     * @return Whether the index exists
+     * @throws IOException If storage cannot be queried
+     */
+    public boolean hasTokenIndex(String sha256) throws IOException {
+        return testCaseStorage.stat(tokenIndexName(sha256)) != null;
+    }
+    
+    /**
+     * Stores the token index of a blob next to it. Indexes are kept uncompressed, so a
+     * judge's copy can be memory-mapped as fetched.
+     * @param sha256 Hex SHA-256 of the blob's raw content
+     * @param index The local index file
+     * @throws IOException If the index cannot be written
+     */
+    public void writeTokenIndex(String sha256, Path index) throws IOException {
+        try (InputStream in = Files.newInputStream(index)) {
+            testCaseStorage.write(tokenIndexName(sha256), in);
+        }
+    }
+    
+    /**
+     * Copies the token index of a blob into a local file.
+     * @param sha256 Hex SHA-256 of the blob's raw content
+     * @param target The local file
+     * @return The number of bytes fetched
+     * @throws NoSuchFileException If no index has been stored
+     * @throws IOException If the index cannot be read or written
+     */
+    public long copyTokenIndex(String sha256, Path target) throws IOException {
+        // Checked first: not every backend reports a missing object when the reader opens
+        if (!hasTokenIndex(sha256)) {
+            throw new NoSuchFileException(tokenIndexName(sha256));
+        }
+        try (InputStream in = Channels.newInputStream(testCaseStorage.openReader(tokenIndexName(sha256)))) {
+            return Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Looks up the stored object of a test case file without reading it.
+     * @param testCase The test case
+     * @param fileName The file name (input.txt or output.txt)
+     * @return The object metadata, or null if the object does not exist
+     * @throws IOException If storage cannot be queried
+     */
+    public TestCaseStorage.StoredObject statTestCaseFile(TestCase testCase, String fileName) throws IOException {
+        return testCaseStorage.stat(objectName(testCase, fileName));
+    }
+    
+    /**
+     * Streams a test case file exactly as stored (possibly compressed) through a bounded buffer.
+     * Used when the client accepts the stored codec as its Content-Encoding.
+     * @param testCase The test case
      * @param fileName The file name (input.txt or output.txt)
+     * @param out The destination stream (not closed)
+     * @return The number of stored bytes copied
+     * @throws IOException If the file cannot be read or the destination fails
      */
-    public void deleteTestCaseFile(Long problemId, Long testCaseId, String fileName) {
+    public long streamStoredTestCaseFile(TestCase testCase, String fileName, OutputStream out) throws IOException {
+        return streamStoredObject(objectName(testCase, fileName), out);
+    }
+    
+    /**
+     * Streams an object exactly as stored through a bounded buffer.
+     * Used to serve signed URLs of the local storage backend.
+     * @param objectName The object name
+     * @param out The destination stream (not closed)
+     * @return The number of stored bytes copied
+     * @throws IOException If the object cannot be read or the destination fails
+     */
+    public long streamStoredObject(String objectName, OutputStream out) throws IOException {
+        try (ReadableByteChannel reader = testCaseStorage.openReader(objectName)) {
+            ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+            long total = 0;
+            while (reader.read(buffer) != -1) {
+                buffer.flip();
+                out.write(buffer.array(), buffer.position(), buffer.remaining());
+                total += buffer.remaining();
+                buffer.clear();
+            }
+            return total;
+        }
+    }
+    
+    /**
+     * Reads an object exactly as stored in a single request.
+     * @param objectName The object name
+     * @return The stored bytes, positioned at zero
+     * @throws java.nio.file.NoSuchFileException If the object does not exist
+     * @throws IOException If the object cannot be read
+     */
+    public ByteBuffer readStoredObject(String objectName) throws IOException {
+        return testCaseStorage.read(objectName);
+    }
+    
+    /**
+     * Opens a ranged read of an object exactly as stored; only the range is fetched.
+     * @param objectName The object name
+     * @param offset Position of the first byte
+     * @param length Number of bytes to read
+     * @return The stream of stored bytes; the caller must close it
+     * @throws IOException If the object cannot be opened
+     */
+    public InputStream openStoredRange(String objectName, long offset, long length) throws IOException {
+        return Channels.newInputStream(testCaseStorage.openReader(objectName, offset, length));
+    }
+    
+    /**
+     * Writes an object made of a head followed by byte ranges of other stored objects,
+     * copied as stored. Adjacent ranges of the same object are fetched with one request,
+     * and the next ranges are fetched on the I/O executor while the current one is written.
+     * Nothing becomes visible under the name unless every range is copied in full.
+     * @param objectName The object to write
+     * @param head Bytes written first
+     * @param ranges The ranges, in output order
+     * @return Metadata of the written object
+     * @throws IOException If a range cannot be read in full or the write fails
+     */
+    public TestCaseStorage.StoredObject writeConcatenated(String objectName, byte[] head, List<ObjectRange> ranges)
+            throws IOException {
+        List<ObjectRange> merged = mergeAdjacent(ranges);
+        Deque<CompletableFuture<PrefetchedFile>> window = new ArrayDeque<>();
+        int next = 0;
+        TestCaseStorage.ObjectUpload upload = testCaseStorage.startUpload(objectName);
+        boolean committed = false;
         try {
-            String blobName = String.format("testcases/%d/%d/%s", problemId, testCaseId, fileName);
-            
-            BlobId blobId = BlobId.of(getBucketName(), blobName);
-            boolean deleted = storage.delete(blobId);
-            
-            if (!deleted) {
-                throw new RuntimeException("Failed to delete test case file: " + blobName);
+            OutputStream out = upload.stream();
+            out.write(head);
+            for (ObjectRange range : merged) {
+                while (next < merged.size() && window.size() < archivePrefetchWindow) {
+                    ObjectRange ahead = merged.get(next++);
+                    window.add(CompletableFuture.supplyAsync(() -> prefetch(ahead), ioExecutor));
+                }
+                PrefetchedFile fetched = await(window.poll());
+                long copied = fetched.head().length;
+                out.write(fetched.head());
+                if (fetched.rest() != null) {
+                    try (InputStream rest = fetched.rest()) {
+                        copied += rest.transferTo(out);
+                    }
+                }
+                if (copied != range.length()) {
+                    throw new IOException("Expected " + range.length() + " bytes of " + range.objectName()
+                            + " at " + range.offset() + ", read " + copied);
+                }
+            }
+            TestCaseStorage.StoredObject stored = upload.commit();
+            committed = true;
+            return stored;
+        } finally {
+            if (!committed) {
+                upload.abort();
+            }
+            for (CompletableFuture<PrefetchedFile> pending : window) {
+                pending.thenAccept(fetched -> closeQuietly(fetched.rest()));
             }
-        } catch (Exception e) {
-            // Log the error but don't fail the request
-            System.err.println("Failed to delete test case file from Cloud Storage: " + e.getMessage());
-            // Don't throw exception to allow the operation to continue
         }
     }
     
     /**
-     * Deletes all test case files for a specific test case.
-     * @param problemId The problem ID
-     * @param testCaseId The test case ID
+     * Describes a stored test case file from its blob row, or by looking up a legacy object.
+     * @param testCase The test case
+     * @param fileName The file name (input.txt or output.txt)
+     * @return The stored file; rawSize is -1 and the codec is detected for legacy files of unknown size
+     * @throws java.nio.file.NoSuchFileException If the file is missing
+     * @throws IOException If storage cannot be queried
      */
-    public void deleteTestCaseFiles(Long problemId, Long testCaseId) {
-        deleteTestCaseFile(problemId, testCaseId, "input.txt");
-        deleteTestCaseFile(problemId, testCaseId, "output.txt");
+    public StoredFile describeStoredFile(TestCase testCase, String fileName) throws IOException {
+        boolean input = fileName.equals(testCase.getInputFileName());
+        String sha256 = input ? testCase.getInputSha256() : testCase.getOutputSha256();
+        if (sha256 != null) {
+            StoredFile blob = describeBlob(sha256);
+            if (blob == null) {
+                throw new NoSuchFileException(blobName(sha256));
+            }
+            return blob;
+        }
+        String name = objectName(testCase, fileName);
+        TestCaseStorage.StoredObject stored = testCaseStorage.stat(name);
+        if (stored == null) {
+            throw new NoSuchFileException(name);
+        }
+        Long rawSize = input ? testCase.getInputFileSize() : testCase.getOutputFileSize();
+        return new StoredFile(null, rawSize != null ? rawSize : -1, stored.size(), detectStoredCodec(name),
+                expectedCrc32c(testCase, fileName));
     }
     
     /**
-     * Gets the file size of a test case file.
-     * @param problemId The problem ID
-     * @param testCaseId The test case ID
+     * Wraps a decoded stream so that reaching its end verifies a recorded checksum.
+     * @param decoded The decoded content
+     * @param objectName Name reported if the check fails
+     * @param expectedCrc32c The recorded CRC32C, or null to skip the check
+     * @return The verifying stream
+     */
+    public static InputStream verifiedContent(InputStream decoded, String objectName, Long expectedCrc32c) {
+        return expectedCrc32c != null ? new VerifyingInputStream(decoded, objectName, expectedCrc32c) : decoded;
+    }
+    
+    /**
+     * Determines the codec of a stored object from its leading bytes.
+     * @param objectName The object name
+     * @return The codec; NONE for uncompressed content
+     * @throws java.nio.file.NoSuchFileException If the object does not exist
+     * @throws IOException If the object cannot be read
+     */
+    public TestCaseCodec detectStoredCodec(String objectName) throws IOException {
+        try (InputStream in = Channels.newInputStream(testCaseStorage.openReader(objectName, 0, 4))) {
+            byte[] header = in.readNBytes(4);
+            return TestCaseCodec.detect(header, header.length);
+        }
+    }
+    
+    /**
+     * Signs a short-lived download URL for a test case file on the storage I/O executor.
+     * The file never passes through this service; the caller must already have checked
+     * that the user may read it.
+     * @param testCase The test case
      * @param fileName The file name (input.txt or output.txt)
-     * @return The file size in bytes
+     * @return Completes with the signed URL
+     */
+    public CompletableFuture<SignedFileUrl> signTestCaseFileAsync(TestCase testCase, String fileName) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                String objectName = objectName(testCase, fileName);
+                // Taken before signing, so the URL is never reported as valid for longer than it is
+                Instant expiresAt = Instant.now().plus(SIGNED_URL_TTL);
+                TestCaseCodec fileCodec = codecOf(testCase, fileName);
+                if (fileCodec == null) {
+                    fileCodec = detectStoredCodec(objectName);
+                }
+                return new SignedFileUrl(testCaseStorage.signReadUrl(objectName, SIGNED_URL_TTL), expiresAt, fileCodec);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ioExecutor);
+    }
+    
+    /**
+     * Writes test case files to a zip stream in the given order.
+     * The next files are fetched on the I/O executor while the current one is written, up
+     * to one file per I/O thread ahead; only the first ARCHIVE_PREFETCH_BYTES of each
+     * prefetched file are held in memory and the rest is streamed when its entry is written.
+     * Nothing is written to temporary files.
+     * @param files The files, in archive order
+     * @param out The destination stream (not closed)
+     * @return The number of raw bytes written into entries
+     * @throws IOException If a file cannot be read or the destination fails
+     */
+    public long writeZipArchive(List<ArchiveFile> files, OutputStream out) throws IOException {
+        Deque<CompletableFuture<PrefetchedFile>> window = new ArrayDeque<>();
+        int next = 0;
+        long total = 0;
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // Throughput matters more than ratio here, and stored blobs are already compressed at rest
+        zip.setLevel(Deflater.BEST_SPEED);
+        try {
+            for (ArchiveFile file : files) {
+                while (next < files.size() && window.size() < archivePrefetchWindow) {
+                    ArchiveFile ahead = files.get(next++);
+                    window.add(CompletableFuture.supplyAsync(() -> prefetch(ahead), ioExecutor));
+                }
+                PrefetchedFile fetched = await(window.poll());
+                try (InputStream rest = fetched.rest()) {
+                    zip.putNextEntry(new ZipEntry(file.entryName()));
+                    zip.write(fetched.head());
+                    total += fetched.head().length;
+                    if (rest != null) {
+                        total += rest.transferTo(zip);
+                    }
+                    zip.closeEntry();
+                }
+            }
+            zip.finish();
+            return total;
+        } finally {
+            // Close streams opened ahead of a failure
+            for (CompletableFuture<PrefetchedFile> pending : window) {
+                pending.thenAccept(fetched -> closeQuietly(fetched.rest()));
+            }
+        }
+    }
+    
+    /**
+     * Releases one stored file of a test case: drops its blob reference, or deletes the
+     * legacy object. Failures are logged rather than thrown.
+     * @param testCase The test case
+     * @param fileName The file name (input.txt or output.txt)
+     */
+    public void deleteTestCaseFile(TestCase testCase, String fileName) {
+        String sha256 = fileName.equals(testCase.getInputFileName())
+                ? testCase.getInputSha256() : testCase.getOutputSha256();
+        deleteFiles(testCase, sha256 != null ? List.of(sha256) : List.of(),
+                sha256 != null ? List.of() : List.of(objectName(testCase.getProblem().getId(), testCase.getId(), fileName)));
+    }
+    
+    /**
+     * Releases both stored files of a test case in one batch.
+     * @param testCase The test case
+     */
+    public void deleteTestCaseFiles(TestCase testCase) {
+        List<String> hashes = new ArrayList<>(2);
+        List<String> legacyNames = new ArrayList<>(2);
+        if (testCase.isGenerated()) {
+            // No stored files; only the program sources are referenced
+            hashes.add(testCase.getGeneratorSha256());
+            hashes.add(testCase.getSolutionSha256());
+            deleteFiles(testCase, hashes, legacyNames);
+            return;
+        }
+        for (String fileName : List.of(testCase.getInputFileName(), testCase.getOutputFileName())) {
+            String sha256 = fileName.equals(testCase.getInputFileName())
+                    ? testCase.getInputSha256() : testCase.getOutputSha256();
+            if (sha256 != null) {
+                hashes.add(sha256);
+            } else {
+                legacyNames.add(objectName(testCase.getProblem().getId(), testCase.getId(), fileName));
+            }
+        }
+        deleteFiles(testCase, hashes, legacyNames);
+    }
+    
+    /**
+     * Queues removal of all files of a deleted problem: releases the blob references its
+     * test cases held, then deletes everything under the legacy testcases/{problemId}/ prefix
+     * and the problem's packed test bundles.
+     * The prefix is listed page by page and each page is deleted as parallel batch requests,
+     * so a problem with hundreds of test cases costs a handful of requests.
+     * @param problemId The deleted problem's ID
+     * @param blobHashes Blob hashes referenced by the problem's test cases, one entry per reference
+     * @return Completes with the number of legacy and bundle objects deleted
+     */
+    public CompletableFuture<Integer> purgeProblemFiles(Long problemId, List<String> blobHashes) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                releaseBlobs(blobHashes);
+                int deleted = deletePrefix(String.format("testcases/%d/", problemId))
+                        + deletePrefix(TestCaseBundleService.bundlePrefix(problemId));
+                System.out.println("Purged files of problem " + problemId + ": " + blobHashes.size()
+                        + " blob reference(s) released, " + deleted + " legacy and bundle object(s) deleted");
+                return deleted;
+            } catch (IOException | RuntimeException e) {
+                // Left for the storage reconciler to clean up
+                System.err.println("Failed to purge files of problem " + problemId + ": " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        }, purgeExecutor);
+    }
+    
+    /**
+     * Lists one page of objects under a prefix on the I/O executor, so the caller can work
+     * through the previous page meanwhile.
+     * @param prefix The name prefix
+     * @param pageToken The token of the page to list, or null for the first page
+     * @param pageSize Maximum number of objects per page
+     * @return Completes with the page, in lexicographic name order
+     */
+    public CompletableFuture<TestCaseStorage.ObjectPage> listObjectsAsync(String prefix, String pageToken, int pageSize) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return testCaseStorage.list(prefix, pageToken, pageSize);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ioExecutor);
+    }
+    
+    /**
+     * Deletes objects that no database row refers to, as parallel batch requests.
+     * Used by the storage reconciler; test case files are released through their blob references.
+     * @param objectNames The object names
+     * @return The number of objects deleted
+     * @throws IOException If a batch fails
+     */
+    public int deleteObjects(List<String> objectNames) throws IOException {
+        int deleted = 0;
+        for (CompletableFuture<Integer> batch : deleteInBatches(objectNames)) {
+            deleted += await(batch);
+        }
+        return deleted;
+    }
+    
+    /**
+     * Invalidates cached content of a test case whose files are being replaced.
+     * @param testCase The test case
+     */
+    public void invalidateCachedContent(TestCase testCase) {
+        contentCache.invalidate(testCase.getProblem().getId(), testCase.getId());
+    }
+    
+    /**
+     * Gets the size of a test case file at rest.
+     * For compressed files this is the compressed size; the raw size is tracked on the TestCase.
+     * @param testCase The test case
+     * @param fileName The file name (input.txt or output.txt)
+     * @return The stored file size in bytes
      */
-    public long getTestCaseFileSize(Long problemId, Long testCaseId, String fileName) {
+    public long getTestCaseFileSize(TestCase testCase, String fileName) {
         try {
-            String blobName = String.format("testcases/%d/%d/%s", problemId, testCaseId, fileName);
-            String bucketName = getBucketName();
+            String blobName = objectName(testCase, fileName);
             
-            System.out.println("Getting file size from Cloud Storage - Bucket: " + bucketName + ", Blob: " + blobName);
+            System.out.println("Getting file size for test case file: " + blobName);
             
-            Blob blob = storage.get(BlobId.of(bucketName, blobName));
-            if (blob == null) {
-                System.out.println("Blob not found in Cloud Storage");
+            TestCaseStorage.StoredObject stored = testCaseStorage.stat(blobName);
+            if (stored == null) {
+                System.out.println("Test case file not found in storage");
                 return 0;
             }
             
-            long size = blob.getSize();
-            System.out.println("File size from Cloud Storage: " + size + " bytes");
+            long size = stored.size();
+            System.out.println("File size from storage: " + size + " bytes");
             return size;
         } catch (Exception e) {
             // Log the error but don't fail the request
-            System.err.println("Failed to get test case file size from Cloud Storage: " + e.getMessage());
+            System.err.println("Failed to get test case file size: " + e.getMessage());
             e.printStackTrace();
             // Return a default size based on content if available
             return 0;
         }
     }
     
+    private StoredFile storeContent(String content) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        String sha256 = HexFormat.of().formatHex(sha256Digest().digest(raw));
+        long crc32c = crc32c(raw);
+        StoredFile existing = reference(sha256, crc32c);
+        if (existing != null) {
+            // A hash lookup replaces the upload
+            System.out.println("Deduplicated test case file: " + blobName(sha256) + ", Size: " + raw.length);
+            return existing;
+        }
+        try {
+            TestCaseStorage.StoredObject stored = codec == TestCaseCodec.NONE
+                    ? testCaseStorage.write(blobName(sha256), raw)
+                    : testCaseStorage.write(blobName(sha256), codec.encode(new ByteArrayInputStream(raw)));
+            System.out.println("Successfully uploaded test case file: " + blobName(sha256) + ", Size: " + raw.length
+                    + ", Stored: " + stored.size() + " (" + codec + ")");
+            return register(sha256, crc32c, raw.length, stored.size());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to upload test case file " + blobName(sha256) + ": " + e.getMessage());
+            throw new IllegalStateException("Failed to store test case file", e);
+        }
+    }
+    
     /**
-     * Calculates file size from content string.
+     * Adds a reference to an already registered blob.
+     * @param crc32c CRC32C of the content, filled in for blobs registered without one
+     * @return The stored file, or null if the blob is not registered
+     */
+    private StoredFile reference(String sha256, long crc32c) {
+        if (storedBlobRepository.incrementRefCount(sha256) == 0) {
+            return null;
+        }
+        // Our reference keeps the row alive, so it cannot disappear before this read
+        StoredFile blob = describeBlob(sha256);
+        return blob.crc32c() != null ? blob
+                : new StoredFile(blob.sha256(), blob.rawSize(), blob.storedSize(), blob.codec(), crc32c);
+    }
+    
+    /**
+     * Registers a freshly written blob with a single reference.
+     */
+    private StoredFile register(String sha256, long crc32c, long rawSize, long storedSize) {
+        try {
+            storedBlobRepository.saveAndFlush(StoredBlob.builder()
+                    .sha256(sha256)
+                    .rawSize(rawSize)
+                    .storedSize(storedSize)
+                    .codec(codec.name())
+                    .crc32c(crc32c)
+                    .build());
+            return new StoredFile(sha256, rawSize, storedSize, codec, crc32c);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent upload of the same content registered it first; the bytes are identical
+            StoredFile existing = reference(sha256, crc32c);
+            if (existing == null) {
+                throw e;
+            }
+            return existing;
+        }
+    }
+    
+    /**
+     * Determines the codec of a stored file without reading it.
+     * @return The codec, or null if unknown
+     */
+    private TestCaseCodec codecOf(TestCase testCase, String fileName) {
+        if (testCase.getStorageCodec() != null) {
+            return TestCaseCodec.fromName(testCase.getStorageCodec());
+        }
+        String sha256 = fileName.equals(testCase.getInputFileName())
+                ? testCase.getInputSha256() : testCase.getOutputSha256();
+        StoredFile blob = sha256 != null ? describeBlob(sha256) : null;
+        return blob != null ? blob.codec() : null;
+    }
+    
+    private static boolean skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    return false;
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+        return true;
+    }
+    
+    private static FileRange sliceRange(byte[] window, long offset, int maxBytes, int maxLines) {
+        int end = Math.min(window.length, maxBytes);
+        if (maxLines > 0) {
+            int lines = 0;
+            for (int i = 0; i < end; i++) {
+                if (window[i] == '\n' && ++lines == maxLines) {
+                    end = i + 1;
+                    break;
+                }
+            }
+        }
+        if (end < window.length) {
+            // Don't split a UTF-8 sequence: back off to the start of the character at the cut
+            int cut = end;
+            while (cut > 0 && (window[cut] & 0xC0) == 0x80) {
+                cut--;
+            }
+            if (cut > 0) {
+                end = cut;
+            }
+        }
+        return new FileRange(Arrays.copyOf(window, end), offset, end < window.length);
+    }
+    
+    /**
+     * Turns a fully written staging object into a blob reference: an existing blob with the
+     * same content gains a reference (the caller deletes the staging copy), otherwise the
+     * staging object is moved to the blob name and registered.
+     */
+    private StoredFile promote(String staging, String sha256, long crc32c, long rawSize, long storedSize)
+            throws IOException {
+        StoredFile existing = reference(sha256, crc32c);
+        if (existing != null) {
+            System.out.println("Deduplicated streamed test case file: " + blobName(sha256));
+            return existing;
+        }
+        testCaseStorage.move(staging, blobName(sha256));
+        System.out.println("Successfully streamed test case file: " + blobName(sha256) + ", Size: "
+                + rawSize + ", Stored: " + storedSize + " (" + codec + ")");
+        return register(sha256, crc32c, rawSize, storedSize);
+    }
+    
+    private void deleteFiles(TestCase testCase, List<String> hashes, List<String> legacyNames) {
+        contentCache.invalidate(testCase.getProblem().getId(), testCase.getId());
+        try {
+            if (!legacyNames.isEmpty()) {
+                testCaseStorage.deleteAll(legacyNames);
+            }
+            if (!hashes.isEmpty()) {
+                releaseBlobs(hashes);
+            }
+        } catch (Exception e) {
+            // Log the error but don't fail the request
+            System.err.println("Failed to delete test case file: " + e.getMessage());
+        }
+    }
+    
+    private int deletePrefix(String prefix) throws IOException {
+        List<CompletableFuture<Integer>> batches = new ArrayList<>();
+        String pageToken = null;
+        do {
+            TestCaseStorage.ObjectPage page = testCaseStorage.list(prefix, pageToken, PURGE_PAGE_SIZE);
+            batches.addAll(deleteInBatches(page.names()));
+            pageToken = page.nextPageToken();
+        } while (pageToken != null);
+        return batches.stream().mapToInt(CompletableFuture::join).sum();
+    }
+    
+    /**
+     * Starts parallel batch deletes of the given objects on the I/O executor.
+     */
+    private List<CompletableFuture<Integer>> deleteInBatches(List<String> names) {
+        List<CompletableFuture<Integer>> batches = new ArrayList<>();
+        for (int from = 0; from < names.size(); from += DELETE_BATCH_SIZE) {
+            List<String> batch = List.copyOf(names.subList(from, Math.min(from + DELETE_BATCH_SIZE, names.size())));
+            batches.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return testCaseStorage.deleteAll(batch);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, ioExecutor));
+        }
+        return batches;
+    }
+    
+    private void deleteObjectsQuietly(List<String> objectNames) {
+        try {
+            testCaseStorage.deleteAll(objectNames);
+        } catch (Exception e) {
+            System.err.println("Failed to delete " + objectNames.size() + " object(s): " + e.getMessage());
+        }
+    }
+    
+    private PrefetchedFile prefetch(ArchiveFile file) {
+        InputStream in = null;
+        try {
+            in = verified(TestCaseCodec.decode(Channels.newInputStream(
+                    testCaseStorage.openReader(objectName(file.testCase(), file.fileName())))),
+                    file.testCase(), file.fileName());
+            byte[] head = in.readNBytes(ARCHIVE_PREFETCH_BYTES);
+            if (head.length < ARCHIVE_PREFETCH_BYTES) {
+                in.close();
+                return new PrefetchedFile(head, null);
+            }
+            return new PrefetchedFile(head, in);
+        } catch (IOException e) {
+            closeQuietly(in);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(in);
+            throw e;
+        }
+    }
+    
+    private PrefetchedFile prefetch(ObjectRange range) {
+        InputStream in = null;
+        try {
+            in = openStoredRange(range.objectName(), range.offset(), range.length());
+            byte[] head = in.readNBytes((int) Math.min(range.length(), ARCHIVE_PREFETCH_BYTES));
+            if (head.length == range.length()) {
+                in.close();
+                return new PrefetchedFile(head, null);
+            }
+            return new PrefetchedFile(head, in);
+        } catch (IOException e) {
+            closeQuietly(in);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(in);
+            throw e;
+        }
+    }
+    
+    private static List<ObjectRange> mergeAdjacent(List<ObjectRange> ranges) {
+        List<ObjectRange> merged = new ArrayList<>(ranges.size());
+        for (ObjectRange range : ranges) {
+            ObjectRange last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last.objectName().equals(range.objectName())
+                    && last.offset() + last.length() == range.offset()) {
+                merged.set(merged.size() - 1, new ObjectRange(last.objectName(), last.offset(), last.length() + range.length()));
+            } else if (range.length() > 0) {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+    
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+    
+    private static void closeQuietly(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            in.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close test case file stream: " + e.getMessage());
+        }
+    }
+    
+    private void deleteQuietly(String objectName) {
+        try {
+            testCaseStorage.delete(objectName);
+        } catch (Exception e) {
+            System.err.println("Failed to delete object " + objectName + ": " + e.getMessage());
+        }
+    }
+    
+    private static StoredFile toStoredFile(StoredBlob blob) {
+        return new StoredFile(blob.getSha256(), blob.getRawSize(), blob.getStoredSize(),
+                TestCaseCodec.fromName(blob.getCodec()), blob.getCrc32c());
+    }
+    
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Required on every JVM
+        }
+    }
+    
+    private record DecodedText(String text, long rawSize) {
+    }
+    
+    private DecodedText readText(String blobName, Long expectedCrc32c) throws IOException {
+        ByteBuffer stored = testCaseStorage.read(blobName);
+        byte[] header = new byte[Math.min(4, stored.remaining())];
+        stored.duplicate().get(header);
+        if (TestCaseCodec.detect(header, header.length) == TestCaseCodec.NONE) {
+            // Uncompressed: checksum and decode straight from the (possibly memory-mapped) buffer
+            if (expectedCrc32c != null) {
+                CRC32C crc = new CRC32C();
+                crc.update(stored.duplicate());
+                verifyChecksum(blobName, expectedCrc32c, crc.getValue());
+            }
+            long size = stored.remaining();
+            return new DecodedText(StandardCharsets.UTF_8.decode(stored).toString(), size);
+        }
+        byte[] raw;
+        try (InputStream in = TestCaseCodec.decode(asInputStream(stored))) {
+            raw = in.readAllBytes();
+        }
+        if (expectedCrc32c != null) {
+            verifyChecksum(blobName, expectedCrc32c, crc32c(raw));
+        }
+        return new DecodedText(new String(raw, StandardCharsets.UTF_8), raw.length);
+    }
+    
+    /**
+     * Checks content read from storage against the checksum recorded when it was stored.
+     * @throws IOException If they differ; the object is corrupt and must not be served
+     */
+    private static void verifyChecksum(String objectName, long expected, long actual) throws IOException {
+        if (expected != actual) {
+            System.err.println("Checksum mismatch for " + objectName + ": expected CRC32C "
+                    + Long.toHexString(expected) + ", read " + Long.toHexString(actual));
+            throw new IOException("Test case file " + objectName + " failed its integrity check");
+        }
+    }
+    
+    /**
+     * Wraps a decoded test case file so that reaching its end verifies the recorded checksum.
+     * Files without a recorded checksum are returned unwrapped.
+     */
+    private static InputStream verified(InputStream decoded, TestCase testCase, String fileName) {
+        Long expected = expectedCrc32c(testCase, fileName);
+        return expected != null
+                ? new VerifyingInputStream(decoded, objectName(testCase, fileName), expected)
+                : decoded;
+    }
+    
+    /**
+     * Decoded content stream that checks its CRC32C when the end is reached, so a corrupt
+     * file fails the read instead of being served silently.
+     */
+    private static final class VerifyingInputStream extends CheckedInputStream {
+        private final String objectName;
+        private final long expected;
+        
+        VerifyingInputStream(InputStream in, String objectName, long expected) {
+            super(in, new CRC32C());
+            this.objectName = objectName;
+            this.expected = expected;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                verifyChecksum(objectName, expected, getChecksum().getValue());
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n == -1) {
+                verifyChecksum(objectName, expected, getChecksum().getValue());
+            }
+            return n;
+        }
+    }
+    
+    /**
+     * Gets a stream over the remaining bytes of a buffer, copying only if it has no array.
+     */
+    static InputStream asInputStream(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new ByteArrayInputStream(bytes);
+    }
+    
+    /**
+     * Calculates the UTF-8 encoded size of a content string without encoding it.
      * @param content The file content
      * @return The file size in bytes
      */
@@ -188,8 +1566,21 @@ public class CloudStorageService {
             System.out.println("Content is null, returning 0 bytes");
             return 0;
         }
-        long size = content.getBytes(StandardCharsets.UTF_8).length;
+        long size = utf8Length(content);
         System.out.println("Calculated file size from content: " + size + " bytes");
         return size;
     }
+    
+    /**
+     * Size of content as stored, that is as encoded by String.getBytes, without encoding it
+     * when it is well-formed.
+     */
+    private static long utf8Length(String content) {
+        try {
+            return Utf8.encodedLength(content);
+        } catch (IllegalArgumentException e) {
+            // Unpaired surrogates are encoded as a single '?' byte by String.getBytes
+            return content.getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,375 @@
+package com.codearena.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node-local disk cache of compiled submissions, in front of ProgramRunner.compile.
+ *
+ * Contestants resubmit the same source and rejudges recompile every submission, so compiled
+ * files are kept and copied into the working directory instead of compiling again:
+ * - Entries are keyed by SHA-256 of the language, the compiler version (the first line of
+ *   its --version output, read once per language), the compile command with its flags, and
+ *   the source. A compiler upgrade therefore misses; it is picked up on restart.
+ * - Total size is bounded in bytes, evicting the least recently used entries.
+ * - Concurrent compiles of the same key share one compilation, and its compile error.
+ * - Only successful compilations are kept. Interpreted languages have nothing to cache.
+ * Compiled files are copied, never linked, so a program cannot change the cached copy.
+ *
+ * Metrics (Micrometer), per language: judge.compile.requests{language,result=hit|miss|coalesced},
+ * judge.compile.hit.ratio{language}, judge.compile.time{language} (compilations run) and
+ * judge.compile.time.saved{language} (compile time of the entries served instead); overall
+ * judge.compile.cache.size.bytes and judge.compile.cache.evictions.
+ */
+@Component
+public class CompilationCache {
+
+    /**
+     * A compiled program. Mutable fields are guarded by the cache monitor.
+     */
+    private static final class Entry {
+        final Path dir;
+        final long sizeBytes;
+        final long compileNanos;
+        int leases;
+        boolean evicted;
+
+        Entry(Path dir, long sizeBytes, long compileNanos) {
+            this.dir = dir;
+            this.sizeBytes = sizeBytes;
+            this.compileNanos = compileNanos;
+        }
+    }
+
+    /**
+     * Meters of one language.
+     */
+    private record LanguageMeters(Counter hits, Counter misses, Counter coalesced, Timer compileTime,
+                                  Counter timeSaved) {
+
+        double hitRatio() {
+            double served = hits.count() + coalesced.count();
+            double total = served + misses.count();
+            return total > 0 ? served / total : 0;
+        }
+    }
+
+    private final ProgramRunner programRunner;
+    private final long maxBytes;
+    private final Path dir;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private final Map<ProgramLanguage, Optional<String>> compilerVersions = new ConcurrentHashMap<>();
+    private final Map<ProgramLanguage, LanguageMeters> meters = new EnumMap<>(ProgramLanguage.class);
+    private volatile long sizeBytes;
+
+    private final Counter evictions;
+
+    public CompilationCache(ProgramRunner programRunner,
+                            MeterRegistry meterRegistry,
+                            @Value("${judge.compile.cache.enabled:true}") boolean enabled,
+                            @Value("${judge.compile.cache.max-bytes:1073741824}") long maxBytes,
+                            @Value("${judge.compile.cache.dir:${java.io.tmpdir}/codearena-compile-cache}") String dir) throws IOException {
+        this.programRunner = programRunner;
+        // Disabled: every submission is compiled, still through the cache so identical compiles coalesce
+        this.maxBytes = enabled ? maxBytes : 0;
+        this.dir = Path.of(dir);
+
+        // The index lives in memory, so files left by a previous run are unreachable
+        FileSystemUtils.deleteRecursively(this.dir);
+        Files.createDirectories(this.dir);
+
+        for (ProgramLanguage language : ProgramLanguage.values()) {
+            if (language.getCompileCommand() == null) {
+                continue;
+            }
+            String tag = language.name().toLowerCase(Locale.ROOT);
+            LanguageMeters languageMeters = new LanguageMeters(
+                    Counter.builder("judge.compile.requests").tag("language", tag).tag("result", "hit")
+                            .register(meterRegistry),
+                    Counter.builder("judge.compile.requests").tag("language", tag).tag("result", "miss")
+                            .register(meterRegistry),
+                    Counter.builder("judge.compile.requests").tag("language", tag).tag("result", "coalesced")
+                            .register(meterRegistry),
+                    Timer.builder("judge.compile.time").tag("language", tag)
+                            .description("Time spent compiling submissions")
+                            .register(meterRegistry),
+                    Counter.builder("judge.compile.time.saved").tag("language", tag)
+                            .description("Compile time avoided by serving cached compilations")
+                            .baseUnit("seconds")
+                            .register(meterRegistry));
+            meters.put(language, languageMeters);
+            Gauge.builder("judge.compile.hit.ratio", languageMeters, LanguageMeters::hitRatio)
+                    .tag("language", tag)
+                    .register(meterRegistry);
+        }
+        this.evictions = Counter.builder("judge.compile.cache.evictions").register(meterRegistry);
+        Gauge.builder("judge.compile.cache.size.bytes", this, c -> c.sizeBytes).register(meterRegistry);
+    }
+
+    /**
+     * Compiles a program whose source is already in its working directory, or copies the
+     * compiled files of an identical earlier compilation into it.
+     * @param language The language
+     * @param workDir The working directory holding language.sourceFile(workDir)
+     * @return The compiled program
+     * @throws IllegalArgumentException If compilation fails; the message carries the compiler output
+     * @throws IOException If the compiler cannot be started or the files cannot be copied
+     */
+    public ProgramRunner.Program compile(ProgramLanguage language, Path workDir) throws IOException {
+        Optional<String> compilerVersion = language.getCompileCommand() != null
+                ? compilerVersions.computeIfAbsent(language, CompilationCache::readCompilerVersion)
+                : null;
+        if (compilerVersion == null || compilerVersion.isEmpty()) {
+            return programRunner.compile(language, workDir); // Nothing to cache, or no version to key it by
+        }
+        LanguageMeters languageMeters = meters.get(language);
+        String key = key(language, compilerVersion.get(), Files.readAllBytes(language.sourceFile(workDir)));
+        while (true) {
+            Entry entry;
+            synchronized (this) {
+                entry = entries.get(key);
+                if (entry != null) {
+                    entry.leases++;
+                }
+            }
+            if (entry != null) {
+                languageMeters.hits().increment();
+                languageMeters.timeSaved().increment(entry.compileNanos / 1e9);
+                return copyOut(entry, language, workDir);
+            }
+
+            CompletableFuture<Entry> flight = new CompletableFuture<>();
+            CompletableFuture<Entry> running = inFlight.putIfAbsent(key, flight);
+            if (running != null) {
+                // Another worker is compiling this source; share its result while the files exist
+                Entry compiled = await(running);
+                synchronized (this) {
+                    if (!compiled.evicted || compiled.leases > 0) {
+                        compiled.leases++;
+                    } else {
+                        continue;
+                    }
+                }
+                languageMeters.coalesced().increment();
+                languageMeters.timeSaved().increment(compiled.compileNanos / 1e9);
+                return copyOut(compiled, language, workDir);
+            }
+
+            languageMeters.misses().increment();
+            try {
+                Entry compiled = compileEntry(language, workDir, languageMeters);
+                synchronized (this) {
+                    compiled.leases++;
+                    if (compiled.sizeBytes <= maxBytes) {
+                        insert(key, compiled);
+                    } else {
+                        compiled.evicted = true;
+                    }
+                }
+                flight.complete(compiled);
+                return copyOut(compiled, language, workDir);
+            } catch (IOException | RuntimeException e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+    }
+
+    /**
+     * Gets the total size of the cached compiled files.
+     * @return The size in bytes
+     */
+    public long sizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Builds the cache key of a compilation.
+     * @param language The language
+     * @param compilerVersion The compiler version line
+     * @param source The source code
+     * @return Hex SHA-256 over the language, compiler version, compile command and source
+     */
+    static String key(ProgramLanguage language, String compilerVersion, byte[] source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // Fields are NUL-separated, so no two different inputs hash the same bytes
+            for (String field : List.of(language.name(), compilerVersion, String.join(" ", language.getCompileCommand()))) {
+                digest.update(field.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            digest.update(source);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Compiles a copy of the source in a directory of its own, which becomes the entry once
+     * the source is removed.
+     */
+    private Entry compileEntry(ProgramLanguage language, Path workDir, LanguageMeters languageMeters)
+            throws IOException {
+        Path entryDir = dir.resolve(UUID.randomUUID().toString());
+        try {
+            Files.createDirectory(entryDir);
+            Files.copy(language.sourceFile(workDir), language.sourceFile(entryDir));
+            long start = System.nanoTime();
+            programRunner.compile(language, entryDir);
+            long compileNanos = System.nanoTime() - start;
+            languageMeters.compileTime().record(compileNanos, TimeUnit.NANOSECONDS);
+            Files.delete(language.sourceFile(entryDir));
+            long size = 0;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(entryDir)) {
+                for (Path file : files) {
+                    size += Files.size(file);
+                }
+            }
+            return new Entry(entryDir, size, compileNanos);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(List.of(entryDir));
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the compiled files of a leased entry into a working directory and releases the lease.
+     */
+    private ProgramRunner.Program copyOut(Entry entry, ProgramLanguage language, Path workDir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(entry.dir)) {
+            for (Path file : files) {
+                Files.copy(file, workDir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        } finally {
+            release(entry);
+        }
+        return new ProgramRunner.Program(language, workDir);
+    }
+
+    private void insert(String key, Entry entry) {
+        List<Path> stale = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                evict(previous, stale);
+            }
+            sizeBytes += entry.sizeBytes;
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (sizeBytes > maxBytes && it.hasNext()) {
+                Entry eldest = it.next().getValue();
+                it.remove();
+                evict(eldest, stale);
+                evictions.increment();
+            }
+        }
+        deleteQuietly(stale);
+    }
+
+    /**
+     * Drops an entry removed from the index; its files are deleted now or with its last lease.
+     * Must hold the cache monitor.
+     */
+    private void evict(Entry entry, List<Path> stale) {
+        entry.evicted = true;
+        sizeBytes -= entry.sizeBytes;
+        if (entry.leases == 0) {
+            stale.add(entry.dir);
+        }
+    }
+
+    private void release(Entry entry) {
+        boolean delete;
+        synchronized (this) {
+            entry.leases--;
+            delete = entry.evicted && entry.leases == 0;
+        }
+        if (delete) {
+            deleteQuietly(List.of(entry.dir));
+        }
+    }
+
+    /**
+     * Reads the first line the compiler prints for --version.
+     * @return The version line; empty if the compiler does not answer, which disables caching for the
+     *         language; null if interrupted, to ask again next time
+     */
+    private static Optional<String> readCompilerVersion(ProgramLanguage language) {
+        String compiler = language.getCompileCommand().get(0);
+        try {
+            Process process = new ProcessBuilder(compiler, "--version").redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (!process.waitFor(10, TimeUnit.SECONDS) || process.exitValue() != 0 || output.isBlank()) {
+                process.destroyForcibly();
+                System.err.println("Could not read the " + compiler + " version; " + language + " compilations are not cached");
+                return Optional.empty();
+            }
+            return Optional.of(output.strip().lines().findFirst().orElseThrow());
+        } catch (IOException e) {
+            System.err.println("Could not run " + compiler + " --version: " + e.getMessage());
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+
+    private static void deleteQuietly(List<Path> dirs) {
+        for (Path entryDir : dirs) {
+            try {
+                FileSystemUtils.deleteRecursively(entryDir);
+            } catch (IOException e) {
+                System.err.println("Failed to delete compile cache entry " + entryDir + ": " + e.getMessage());
+            }
+        }
+    }
+}
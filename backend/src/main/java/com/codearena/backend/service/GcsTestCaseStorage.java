@@ -0,0 +1,223 @@
+package com.codearena.backend.service;
+
+import com.google.api.gax.paging.Page;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.CopyWriter;
+import com.google.cloud.storage.HttpMethod;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageBatch;
+import com.google.cloud.storage.StorageBatchResult;
+import com.google.cloud.storage.StorageException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test case storage backed by a Google Cloud Storage bucket.
+ *
+ * Object names are used as blob names within the configured bucket.
+ * Streaming writes go through a resumable WriteChannel and streaming reads through a
+ * ReadChannel, both with a fixed chunk size so memory use does not grow with file size.
+ * Incremental uploads keep the WriteChannel open across calls, so content that arrives over
+ * several requests becomes one resumable upload session.
+ * Multi-object deletes go through the JSON batch API, up to 100 deletes per HTTP request.
+ */
+public class GcsTestCaseStorage implements TestCaseStorage {
+
+    /** Chunk size for streaming transfers; GCS requires a multiple of 256 KiB. */
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    /** Smallest chunk size for ranged reads, so tiny previews still cost a single request. */
+    static final int MIN_RANGE_CHUNK_SIZE = 16 * 1024;
+
+    /** Maximum number of calls in one GCS batch request. */
+    static final int BATCH_SIZE = 100;
+
+    private final Storage storage;
+    private final String bucketName;
+
+    public GcsTestCaseStorage(Storage storage, String bucketName) {
+        this.storage = storage;
+        this.bucketName = bucketName;
+    }
+
+    @Override
+    public StoredObject write(String objectName, byte[] content) {
+        BlobInfo blobInfo = BlobInfo.newBuilder(blobId(objectName))
+                .setContentType("text/plain")
+                .build();
+        Blob blob = storage.create(blobInfo, content);
+        return toStoredObject(blob);
+    }
+
+    @Override
+    public StoredObject write(String objectName, InputStream content) throws IOException {
+        BlobInfo blobInfo = BlobInfo.newBuilder(blobId(objectName))
+                .setContentType("text/plain")
+                .build();
+        // createFrom pipes the stream into a WriteChannel one chunk at a time
+        Blob blob = storage.createFrom(blobInfo, content, CHUNK_SIZE);
+        return toStoredObject(blob);
+    }
+
+    @Override
+    public ObjectUpload startUpload(String objectName) {
+        BlobInfo blobInfo = BlobInfo.newBuilder(blobId(objectName))
+                .setContentType("text/plain")
+                .build();
+        // Resumable upload session: each full chunk is sent as it fills, the last one on close
+        WriteChannel writer = storage.writer(blobInfo);
+        writer.setChunkSize(CHUNK_SIZE);
+        OutputStream stream = Channels.newOutputStream(writer);
+        return new ObjectUpload() {
+            @Override
+            public OutputStream stream() {
+                return stream;
+            }
+
+            @Override
+            public StoredObject commit() throws IOException {
+                stream.close(); // Finalizes the upload session
+                StoredObject stored = stat(objectName);
+                if (stored == null) {
+                    throw new NoSuchFileException(objectName);
+                }
+                return stored;
+            }
+
+            @Override
+            public void abort() {
+                // An unfinalized session never creates the object and expires on the GCS side
+            }
+        };
+    }
+
+    @Override
+    public ByteBuffer read(String objectName) throws IOException {
+        try {
+            // Single request; get() followed by getContent() would cost two round trips
+            return ByteBuffer.wrap(storage.readAllBytes(blobId(objectName)));
+        } catch (StorageException e) {
+            if (e.getCode() == 404) {
+                throw new NoSuchFileException(objectName);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public ReadableByteChannel openReader(String objectName) {
+        ReadChannel reader = storage.reader(blobId(objectName));
+        reader.setChunkSize(CHUNK_SIZE);
+        return reader;
+    }
+
+    @Override
+    public ReadableByteChannel openReader(String objectName, long offset, long limit) throws IOException {
+        ReadChannel reader = storage.reader(blobId(objectName));
+        // Ranged GET: fetch only the requested window instead of whole 1 MiB chunks
+        reader.setChunkSize((int) Math.max(MIN_RANGE_CHUNK_SIZE, Math.min(CHUNK_SIZE, limit)));
+        reader.seek(offset);
+        if (limit < Long.MAX_VALUE - offset) {
+            reader.limit(offset + limit);
+        }
+        return reader;
+    }
+
+    @Override
+    public StoredObject stat(String objectName) {
+        Blob blob = storage.get(blobId(objectName));
+        return blob != null ? toStoredObject(blob) : null;
+    }
+
+    @Override
+    public StoredObject move(String sourceName, String targetName) {
+        // Server-side copy: the content never leaves the bucket
+        CopyWriter copy = storage.copy(Storage.CopyRequest.of(blobId(sourceName), blobId(targetName)));
+        Blob blob = copy.getResult();
+        storage.delete(blobId(sourceName));
+        return toStoredObject(blob);
+    }
+
+    @Override
+    public boolean delete(String objectName) {
+        return storage.delete(blobId(objectName));
+    }
+
+    @Override
+    public int deleteAll(List<String> objectNames) {
+        int deleted = 0;
+        for (int from = 0; from < objectNames.size(); from += BATCH_SIZE) {
+            List<String> chunk = objectNames.subList(from, Math.min(from + BATCH_SIZE, objectNames.size()));
+            StorageBatch batch = storage.batch();
+            List<StorageBatchResult<Boolean>> results = new ArrayList<>(chunk.size());
+            for (String objectName : chunk) {
+                results.add(batch.delete(blobId(objectName)));
+            }
+            batch.submit();
+            for (StorageBatchResult<Boolean> result : results) {
+                if (Boolean.TRUE.equals(result.get())) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public ObjectPage list(String prefix, String pageToken, int pageSize) {
+        List<Storage.BlobListOption> options = new ArrayList<>(List.of(
+                Storage.BlobListOption.prefix(prefix),
+                Storage.BlobListOption.pageSize(pageSize),
+                Storage.BlobListOption.fields(Storage.BlobField.NAME, Storage.BlobField.SIZE,
+                        Storage.BlobField.GENERATION)));
+        if (pageToken != null) {
+            options.add(Storage.BlobListOption.pageToken(pageToken));
+        }
+        Page<Blob> page = storage.list(bucketName, options.toArray(Storage.BlobListOption[]::new));
+        List<StoredObject> objects = new ArrayList<>();
+        for (Blob blob : page.getValues()) {
+            objects.add(toStoredObject(blob));
+        }
+        return new ObjectPage(objects, page.hasNextPage() ? page.getNextPageToken() : null);
+    }
+
+    @Override
+    public URI signReadUrl(String objectName, Duration ttl) throws IOException {
+        try {
+            // Signed locally with the service account key, or through IAM signBlob on workload credentials
+            URL url = storage.signUrl(BlobInfo.newBuilder(blobId(objectName)).build(), ttl.toSeconds(),
+                    TimeUnit.SECONDS, Storage.SignUrlOption.withV4Signature(),
+                    Storage.SignUrlOption.httpMethod(HttpMethod.GET));
+            return url.toURI();
+        } catch (URISyntaxException e) {
+            throw new IOException("Malformed signed URL for " + objectName, e);
+        }
+    }
+
+    private BlobId blobId(String objectName) {
+        return BlobId.of(bucketName, objectName);
+    }
+
+    private static StoredObject toStoredObject(Blob blob) {
+        long size = blob.getSize() != null ? blob.getSize() : 0L;
+        long generation = blob.getGeneration() != null ? blob.getGeneration() : 0L;
+        return new StoredObject(blob.getName(), size, generation);
+    }
+}
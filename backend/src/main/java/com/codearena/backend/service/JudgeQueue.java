@@ -0,0 +1,189 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.SubmissionStatus;
+import com.codearena.backend.entity.Verdict;
+import com.codearena.backend.repository.SubmissionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded in-process queue of submissions waiting to be judged, drained by a fixed pool of
+ * judge workers (see SubmissionJudge).
+ *
+ * Submitting never waits for a worker: a submission is stored, queued, and judged when a
+ * worker is free. A full queue rejects new submissions instead of growing without bound.
+ * judge.workers sets how many submissions are judged at once. It defaults to 0, a node that
+ * accepts submissions without judging them: they are stored QUEUED, not queued in memory,
+ * and left for the judging node to queue when it next starts. Judging runs untrusted code,
+ * so enable workers only on a node with the CgroupSandbox. The queue lives in memory, so on
+ * startup submissions a restart left queued or half-judged are queued again, as far as
+ * capacity allows: run workers on one node.
+ *
+ * Metrics (Micrometer): judge.queue.depth, judge.queue.capacity, judge.queue.rejected,
+ * judge.queue.wait (time from submission to a worker picking it up), judge.workers,
+ * judge.workers.busy, and judge.submission.time{verdict} (time a worker spends judging).
+ * Sustained wait time with all workers busy means more workers are needed.
+ */
+@Service
+public class JudgeQueue {
+
+    /**
+     * A queued submission.
+     * @param submissionId The submission ID
+     * @param enqueuedNanos When it was queued, from System.nanoTime
+     */
+    private record Job(Long submissionId, long enqueuedNanos) {
+    }
+
+    private final SubmissionJudge submissionJudge;
+    private final SubmissionRepository submissionRepository;
+    private final MeterRegistry meterRegistry;
+    private final int workers;
+    private final BlockingQueue<Job> queue;
+    private final ExecutorService executor;
+    private final AtomicInteger busy = new AtomicInteger();
+
+    private final Counter rejected;
+    private final Timer waitTime;
+
+    public JudgeQueue(SubmissionJudge submissionJudge,
+                      SubmissionRepository submissionRepository,
+                      MeterRegistry meterRegistry,
+                      @Value("${judge.workers:0}") int workers,
+                      @Value("${judge.queue.capacity:1000}") int capacity) {
+        if (workers < 0 || capacity < 1) {
+            throw new IllegalArgumentException("judge.workers must be at least 0 and judge.queue.capacity at least 1");
+        }
+        this.submissionJudge = submissionJudge;
+        this.submissionRepository = submissionRepository;
+        this.meterRegistry = meterRegistry;
+        this.workers = workers;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        this.rejected = Counter.builder("judge.queue.rejected")
+                .description("Submissions refused because the judge queue was full")
+                .register(meterRegistry);
+        this.waitTime = Timer.builder("judge.queue.wait")
+                .description("Time from submission until a judge worker picks it up")
+                .register(meterRegistry);
+        Gauge.builder("judge.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("judge.queue.capacity", () -> capacity).register(meterRegistry);
+        Gauge.builder("judge.workers", () -> workers).register(meterRegistry);
+        Gauge.builder("judge.workers.busy", busy, AtomicInteger::get).register(meterRegistry);
+
+        this.executor = workers > 0
+                ? Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("judge-worker-"))
+                : null;
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::work);
+        }
+    }
+
+    /**
+     * Stops the judge workers on shutdown; submissions being judged are left JUDGING and
+     * queued again on the next startup.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Queues a stored submission for judging. Without workers, the submission is left as stored.
+     * @param submissionId The submission ID
+     * @return Whether it was queued, or left for the judging node; false if the queue is full
+     */
+    public boolean enqueue(Long submissionId) {
+        if (workers == 0) {
+            return true;
+        }
+        boolean queued = queue.offer(new Job(submissionId, System.nanoTime()));
+        if (!queued) {
+            rejected.increment();
+        }
+        return queued;
+    }
+
+    /**
+     * Queues again the submissions a previous run left queued or being judged.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void requeueInterrupted() {
+        if (workers == 0) {
+            return;
+        }
+        List<Long> interrupted = submissionRepository.findIdsByStatusIn(
+                List.of(SubmissionStatus.QUEUED, SubmissionStatus.JUDGING));
+        int queued = 0;
+        for (Long submissionId : interrupted) {
+            if (!enqueue(submissionId)) {
+                break;
+            }
+            queued++;
+        }
+        if (!interrupted.isEmpty()) {
+            System.out.println("Queued " + queued + " of " + interrupted.size() + " submissions left unjudged by a restart");
+        }
+    }
+
+    /**
+     * Gets the number of submissions waiting for a worker.
+     * @return The queue depth
+     */
+    public int depth() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of workers judging a submission right now.
+     * @return The busy worker count
+     */
+    public int busyWorkers() {
+        return busy.get();
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            waitTime.record(System.nanoTime() - job.enqueuedNanos(), TimeUnit.NANOSECONDS);
+            busy.incrementAndGet();
+            long start = System.nanoTime();
+            Verdict verdict = null;
+            try {
+                verdict = submissionJudge.judge(job.submissionId());
+            } catch (RuntimeException e) {
+                System.err.println("Judge worker failed on submission " + job.submissionId() + ": " + e.getMessage());
+            } finally {
+                busy.decrementAndGet();
+                Timer.builder("judge.submission.time")
+                        .description("Time a judge worker spends on one submission")
+                        .tag("verdict", verdict != null ? verdict.name() : "NONE")
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
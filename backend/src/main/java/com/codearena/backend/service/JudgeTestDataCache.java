@@ -0,0 +1,460 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.TestCase;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node-local disk cache of decoded test case files for judging.
+ *
+ * A judge runs a submission against files on local disk, so each node keeps the files it
+ * judged recently instead of fetching them from storage for every submission:
+ * - Entries are keyed by test case ID, file name and content version: the SHA-256 for
+ *   content-addressed blobs, the content generation and CRC32C for legacy files. A test case
+ *   rewritten on another node therefore misses instead of serving stale content.
+ * - Total size is bounded in bytes, evicting the least recently used entries.
+ * - Blobs never change under their name. Legacy objects can, so a legacy entry older than
+ *   judge.cache.revalidate-after is revalidated with a metadata request comparing the
+ *   object generation, and fetched again only if it changed.
+ * - Concurrent requests for the same file share one fetch.
+ * - Generated test cases have nothing to fetch: a miss materializes the input with the
+ *   generator and the output with the reference solution. Their version is derived from the
+ *   programs, arguments and seed, so the entries never need revalidation.
+ * - Token indexes of expected outputs (OutputTokenIndex) are cached like files, under the
+ *   version of the output they index. A stored index is fetched; outputs without one
+ *   (generated, legacy, or indexed late) are indexed locally from the cached output.
+ *
+ * Files are handed out as leases; an evicted file is deleted once its last lease is closed.
+ * Files larger than the whole cache are fetched for the lease only.
+ *
+ * Metrics (Micrometer): judge.cache.requests{result=hit|miss|coalesced},
+ * judge.cache.hit.ratio, judge.cache.bytes.saved, judge.cache.revalidations{result},
+ * judge.cache.evictions, judge.cache.size.bytes.
+ */
+@Component
+public class JudgeTestDataCache {
+
+    /**
+     * Cache key for one version of one test case file.
+     * @param testCaseId The test case ID
+     * @param fileName The file name (input.txt, output.txt or OutputTokenIndex.FILE_NAME)
+     * @param version SHA-256 of the content, the content generation and CRC32C of a legacy file,
+     *                or the programs and arguments a generated file is produced from
+     */
+    public record Key(Long testCaseId, String fileName, String version) {
+    }
+
+    /**
+     * A cached file. Mutable fields are guarded by the cache monitor.
+     */
+    private static final class Entry {
+        final Path path;
+        final long rawSize;
+        final long storedSize;
+        final long objectGeneration;
+        long validatedAtNanos;
+        int leases;
+        boolean evicted;
+
+        Entry(Path path, long rawSize, long storedSize, long objectGeneration) {
+            this.path = path;
+            this.rawSize = rawSize;
+            this.storedSize = storedSize;
+            this.objectGeneration = objectGeneration;
+            this.validatedAtNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * A test case file held in the cache until closed. The file must not be modified.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * Gets the local file.
+         * @return The path of the decoded content
+         */
+        public Path path() {
+            return entry.path;
+        }
+
+        /**
+         * Gets the size of the decoded content.
+         * @return The size in bytes
+         */
+        public long size() {
+            return entry.rawSize;
+        }
+
+        @Override
+        public void close() {
+            synchronized (JudgeTestDataCache.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(entry);
+        }
+    }
+
+    private final CloudStorageService cloudStorageService;
+    private final TestCaseGenerator testCaseGenerator;
+    private final long maxBytes;
+    private final long revalidateAfterNanos;
+    private final Path dir;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private volatile long sizeBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter bytesSaved;
+    private final Counter revalidatedUnchanged;
+    private final Counter revalidatedChanged;
+    private final Counter evictions;
+
+    public JudgeTestDataCache(CloudStorageService cloudStorageService,
+                              TestCaseGenerator testCaseGenerator,
+                              MeterRegistry meterRegistry,
+                              @Value("${judge.cache.enabled:true}") boolean enabled,
+                              @Value("${judge.cache.max-bytes:10737418240}") long maxBytes,
+                              @Value("${judge.cache.revalidate-after:PT30S}") Duration revalidateAfter,
+                              @Value("${judge.cache.dir:${java.io.tmpdir}/codearena-judge-cache}") String dir) throws IOException {
+        this.cloudStorageService = cloudStorageService;
+        this.testCaseGenerator = testCaseGenerator;
+        // Disabled: every file is fetched for its lease only
+        this.maxBytes = enabled ? maxBytes : 0;
+        this.revalidateAfterNanos = revalidateAfter.toNanos();
+        this.dir = Path.of(dir);
+
+        // The index lives in memory, so files left by a previous run are unreachable
+        FileSystemUtils.deleteRecursively(this.dir);
+        Files.createDirectories(this.dir);
+
+        this.hits = Counter.builder("judge.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("judge.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.coalesced = Counter.builder("judge.cache.requests").tag("result", "coalesced").register(meterRegistry);
+        this.bytesSaved = Counter.builder("judge.cache.bytes.saved")
+                .description("Stored bytes not fetched from storage thanks to the cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.revalidatedUnchanged = Counter.builder("judge.cache.revalidations").tag("result", "unchanged")
+                .register(meterRegistry);
+        this.revalidatedChanged = Counter.builder("judge.cache.revalidations").tag("result", "changed")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("judge.cache.evictions").register(meterRegistry);
+        Gauge.builder("judge.cache.size.bytes", this, c -> c.sizeBytes).register(meterRegistry);
+        Gauge.builder("judge.cache.hit.ratio", this, JudgeTestDataCache::hitRatio).register(meterRegistry);
+    }
+
+    /**
+     * Gets a test case file on local disk, fetching or generating it on a miss.
+     * @param testCase The test case
+     * @param fileName The file name (input.txt or output.txt)
+     * @return A lease on the local file; the caller must close it
+     * @throws IOException If the file cannot be fetched
+     * @throws IllegalStateException If a generated file cannot be produced
+     */
+    public Lease acquire(TestCase testCase, String fileName) throws IOException {
+        Key key = key(testCase, fileName);
+        while (true) {
+            Entry entry;
+            synchronized (this) {
+                entry = entries.get(key);
+                if (entry != null) {
+                    entry.leases++;
+                }
+            }
+            if (entry != null) {
+                if (isValid(testCase, fileName, entry)) {
+                    hits.increment();
+                    bytesSaved.increment(entry.storedSize);
+                    return new Lease(entry);
+                }
+                release(entry);
+                remove(key, entry);
+                continue;
+            }
+
+            CompletableFuture<Entry> flight = new CompletableFuture<>();
+            CompletableFuture<Entry> running = inFlight.putIfAbsent(key, flight);
+            if (running != null) {
+                // Another caller is fetching this file; share its result while the file exists
+                Entry fetched = await(running);
+                synchronized (this) {
+                    if (!fetched.evicted || fetched.leases > 0) {
+                        fetched.leases++;
+                        coalesced.increment();
+                        bytesSaved.increment(fetched.storedSize);
+                        return new Lease(fetched);
+                    }
+                }
+                continue;
+            }
+
+            misses.increment();
+            try {
+                Entry fetched = fetch(testCase, fileName);
+                synchronized (this) {
+                    fetched.leases++;
+                    if (fetched.rawSize <= maxBytes) {
+                        insert(key, fetched);
+                    } else {
+                        fetched.evicted = true;
+                    }
+                }
+                flight.complete(fetched);
+                return new Lease(fetched);
+            } catch (IOException | RuntimeException e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+    }
+
+    /**
+     * Gets the token index of a test case's expected output on local disk, fetching or
+     * building it on a miss.
+     * @param testCase The test case
+     * @return A lease on the index file, to be opened with OutputTokenIndex.open; the caller must close it
+     * @throws IOException If the index or the output cannot be fetched
+     */
+    public Lease acquireTokenIndex(TestCase testCase) throws IOException {
+        return acquire(testCase, OutputTokenIndex.FILE_NAME);
+    }
+
+    /**
+     * Gets the share of requests served without a fetch.
+     * @return Hits and coalesced requests over all requests, or 0 before the first request
+     */
+    public double hitRatio() {
+        double served = hits.count() + coalesced.count();
+        double total = served + misses.count();
+        return total > 0 ? served / total : 0;
+    }
+
+    /**
+     * Gets the total size of the cached files.
+     * @return The size in bytes
+     */
+    public long sizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Builds the cache key of a test case file.
+     * @param testCase The test case
+     * @param fileName The file name (input.txt or output.txt)
+     * @return The key
+     */
+    public static Key key(TestCase testCase, String fileName) {
+        if (fileName.equals(OutputTokenIndex.FILE_NAME)) {
+            // Derived from the output, so it changes exactly when the output does
+            return new Key(testCase.getId(), fileName, key(testCase, testCase.getOutputFileName()).version());
+        }
+        boolean input = fileName.equals(testCase.getInputFileName());
+        if (testCase.isGenerated()) {
+            String inputVersion = "gen-" + testCase.getGeneratorSha256() + "-" + testCase.getGeneratorSeed()
+                    + "-" + testCase.getGeneratorArgs();
+            return new Key(testCase.getId(), fileName,
+                    input ? inputVersion : "ref-" + testCase.getSolutionSha256() + "-" + inputVersion);
+        }
+        String sha256 = input ? testCase.getInputSha256() : testCase.getOutputSha256();
+        if (sha256 != null) {
+            return new Key(testCase.getId(), fileName, sha256);
+        }
+        Long crc32c = input ? testCase.getInputCrc32c() : testCase.getOutputCrc32c();
+        long generation = testCase.getContentGeneration() != null ? testCase.getContentGeneration() : 0;
+        return new Key(testCase.getId(), fileName, "legacy-" + generation + "-" + crc32c);
+    }
+
+    /**
+     * Tells whether a cached file may be served, revalidating a legacy file whose last
+     * check is older than the revalidation interval.
+     */
+    private boolean isValid(TestCase testCase, String fileName, Entry entry) throws IOException {
+        if (entry.objectGeneration < 0) {
+            return true; // Content-addressed blob
+        }
+        synchronized (this) {
+            if (System.nanoTime() - entry.validatedAtNanos < revalidateAfterNanos) {
+                return true;
+            }
+        }
+        TestCaseStorage.StoredObject stored;
+        try {
+            stored = cloudStorageService.statTestCaseFile(testCase, fileName);
+        } catch (IOException | RuntimeException e) {
+            release(entry);
+            throw e;
+        }
+        if (stored != null && stored.generation() == entry.objectGeneration) {
+            synchronized (this) {
+                entry.validatedAtNanos = System.nanoTime();
+            }
+            revalidatedUnchanged.increment();
+            return true;
+        }
+        revalidatedChanged.increment();
+        return false;
+    }
+
+    private Entry fetch(TestCase testCase, String fileName) throws IOException {
+        Path file = dir.resolve(UUID.randomUUID() + ".data");
+        try {
+            if (fileName.equals(OutputTokenIndex.FILE_NAME)) {
+                return fetchTokenIndex(testCase, file);
+            }
+            boolean input = fileName.equals(testCase.getInputFileName());
+            if (testCase.isGenerated()) {
+                if (input) {
+                    testCaseGenerator.generateInput(testCase, file);
+                } else {
+                    try (Lease inputLease = acquire(testCase, testCase.getInputFileName())) {
+                        testCaseGenerator.generateOutput(testCase, inputLease.path(), file);
+                    }
+                }
+                // Nothing was fetched from storage
+                return new Entry(file, Files.size(file), 0, -1);
+            }
+            long generation = -1;
+            if ((input ? testCase.getInputSha256() : testCase.getOutputSha256()) == null) {
+                // Read before the content: a rewrite in between makes the next revalidation fetch again
+                TestCaseStorage.StoredObject stored = cloudStorageService.statTestCaseFile(testCase, fileName);
+                generation = stored != null ? stored.generation() : 0;
+            }
+            long storedSize = cloudStorageService.copyTestCaseFile(testCase, fileName, file);
+            return new Entry(file, Files.size(file), storedSize, generation);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(List.of(file));
+            throw e;
+        }
+    }
+
+    private Entry fetchTokenIndex(TestCase testCase, Path file) throws IOException {
+        if (!testCase.isGenerated() && testCase.getOutputSha256() != null) {
+            try {
+                long fetched = cloudStorageService.copyTokenIndex(testCase.getOutputSha256(), file);
+                return new Entry(file, Files.size(file), fetched, -1);
+            } catch (NoSuchFileException e) {
+                // Not built yet; index the output here instead
+            }
+        }
+        try (Lease output = acquire(testCase, testCase.getOutputFileName());
+             InputStream in = Files.newInputStream(output.path())) {
+            OutputTokenIndex.write(in, file);
+        }
+        // Never revalidated: the key already changes with the output's version
+        return new Entry(file, Files.size(file), 0, -1);
+    }
+
+    private void insert(Key key, Entry entry) {
+        List<Path> stale = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                evict(previous, stale);
+            }
+            sizeBytes += entry.rawSize;
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while (sizeBytes > maxBytes && it.hasNext()) {
+                Entry eldest = it.next().getValue();
+                it.remove();
+                evict(eldest, stale);
+                evictions.increment();
+            }
+        }
+        deleteQuietly(stale);
+    }
+
+    private void remove(Key key, Entry expected) {
+        List<Path> stale = new ArrayList<>();
+        synchronized (this) {
+            if (entries.get(key) == expected) {
+                entries.remove(key);
+                evict(expected, stale);
+            }
+        }
+        deleteQuietly(stale);
+    }
+
+    /**
+     * Drops an entry removed from the index; its file is deleted now or with its last lease.
+     * Must hold the cache monitor.
+     */
+    private void evict(Entry entry, List<Path> stale) {
+        entry.evicted = true;
+        sizeBytes -= entry.rawSize;
+        if (entry.leases == 0) {
+            stale.add(entry.path);
+        }
+    }
+
+    private void release(Entry entry) {
+        boolean delete;
+        synchronized (this) {
+            entry.leases--;
+            delete = entry.evicted && entry.leases == 0;
+        }
+        if (delete) {
+            deleteQuietly(List.of(entry.path));
+        }
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+
+    private static void deleteQuietly(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Failed to delete judge cache file " + file + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.codearena.backend.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entry point of a pre-started JVM that runs compiled Java submissions one after another
+ * (see JvmWorkerPool). Runs in its own process with only this class on the classpath, so
+ * it must not depend on anything outside the JDK, nor compile to more than one class file.
+ *
+ * The pool passes a loopback port as the only argument and a startup token on standard input,
+ * which it then closes. The worker connects to the port and speaks the protocol over that
+ * socket, one line per message, so submissions writing to the process's standard output
+ * cannot take part; the socket is referenced only from main's locals:
+ * - worker: READY token once warmed up
+ * - pool: RUN, a nonce, the classes directory, input file (or -), output file and error
+ *   file, separated by tabs
+ * - worker: DONE nonce exit-code clean, where clean is 0 if the worker should be replaced
+ *   (an Error was thrown, or a thread started during the run is still alive, in any group)
+ * - worker: IDLE nonce once the run's garbage is collected, ready for the next run
+ * A submission calling System.exit ends the worker; the exit code is the process's. The
+ * worker measures no time: the pool judges runs by the CPU time of the whole process.
+ * Each run loads Main from a fresh class loader whose parent is the platform class loader,
+ * with System.in, System.out and System.err redirected to the run's files, on a thread with
+ * a 64MB stack like ProgramLanguage.JAVA's -Xss64m. Like the java launcher, the run ends once
+ * main has returned and every other non-daemon thread started during the run has ended.
+ * Threads are told apart by a snapshot of every live thread taken before the run, so a
+ * thread outliving its run cannot be hidden from the check by starting it in another group.
+ * Static state of JDK classes is shared between runs; only system properties, the default
+ * locale and the default time zone are restored.
+ */
+public final class JvmWorker {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final long STACK_BYTES = 64L * 1024 * 1024;
+
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private JvmWorker() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String token = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)).readLine();
+        warmUp();
+        Properties properties = (Properties) System.getProperties().clone();
+        Locale locale = Locale.getDefault();
+        TimeZone timeZone = TimeZone.getDefault();
+        // Output a submission buffered before calling System.exit is not lost
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.flush();
+            System.err.flush();
+        }));
+
+        try (Socket control = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]))) {
+            BufferedReader commands = new BufferedReader(
+                    new InputStreamReader(control.getInputStream(), StandardCharsets.UTF_8));
+            PrintStream replies = new PrintStream(control.getOutputStream(), true, StandardCharsets.UTF_8);
+            replies.println("READY " + token);
+
+            String command;
+            while ((command = commands.readLine()) != null) {
+                String[] fields = command.split("\t");
+                if (fields.length != 6 || !fields[0].equals("RUN")) {
+                    return;
+                }
+                Set<Thread> before = Thread.getAllStackTraces().keySet();
+                AtomicInteger exitCode = new AtomicInteger();
+                boolean clean = run(before, exitCode, Path.of(fields[2]),
+                        fields[3].equals("-") ? null : Path.of(fields[3]), Path.of(fields[4]), Path.of(fields[5]));
+                System.setProperties((Properties) properties.clone());
+                Locale.setDefault(locale);
+                TimeZone.setDefault(timeZone);
+                clean &= startedSince(before).isEmpty();
+                replies.println("DONE " + fields[1] + " " + exitCode.get() + " " + (clean ? 1 : 0));
+                System.gc(); // Garbage of this run does not count against the next one
+                replies.println("IDLE " + fields[1]);
+            }
+        }
+    }
+
+    /**
+     * Runs Main of one submission and waits for the non-daemon threads it started.
+     * @return Whether the worker can be reused
+     */
+    private static boolean run(Set<Thread> before, AtomicInteger exitCode, Path classes, Path input, Path output,
+                               Path error) throws Exception {
+        AtomicBoolean threwError = new AtomicBoolean();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()},
+                ClassLoader.getPlatformClassLoader());
+             InputStream in = input != null ? new BufferedInputStream(new FileInputStream(input.toFile()), BUFFER_BYTES)
+                     : InputStream.nullInputStream();
+             PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(output.toFile()), BUFFER_BYTES));
+             PrintStream err = new PrintStream(new FileOutputStream(error.toFile()), true)) {
+            Method main = loader.loadClass("Main").getMethod("main", String[].class);
+            System.setIn(in);
+            System.setOut(out);
+            System.setErr(err);
+            Thread thread = new Thread(null, () -> invoke(main, exitCode, threwError), "main", STACK_BYTES);
+            thread.start();
+            thread.join();
+            awaitNonDaemon(before);
+            out.flush();
+            return !threwError.get();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // No runnable Main: report it like the java launcher does
+            try (PrintStream err = new PrintStream(new FileOutputStream(error.toFile(), true), true)) {
+                err.println("Error: Could not find or load main class Main");
+                err.println("Caused by: " + e);
+            }
+            exitCode.set(1);
+            return true;
+        } finally {
+            System.setIn(InputStream.nullInputStream());
+            System.setOut(DISCARD);
+            System.setErr(DISCARD);
+        }
+    }
+
+    private static void invoke(Method main, AtomicInteger exitCode, AtomicBoolean threwError) {
+        try {
+            main.invoke(null, (Object) new String[0]);
+        } catch (InvocationTargetException e) {
+            // Reported like an uncaught exception in the java launcher
+            Throwable cause = e.getCause();
+            System.err.print("Exception in thread \"main\" ");
+            cause.printStackTrace();
+            exitCode.set(1);
+            threwError.set(cause instanceof Error);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("Error: Main method cannot be run: " + e);
+            exitCode.set(1);
+        }
+    }
+
+    /**
+     * Waits until no thread started since the snapshot but daemon threads is alive, as the JVM
+     * does before exiting.
+     */
+    private static void awaitNonDaemon(Set<Thread> before) throws InterruptedException {
+        boolean waited = true;
+        while (waited) {
+            waited = false;
+            for (Thread thread : startedSince(before)) {
+                if (!thread.isDaemon()) {
+                    thread.join();
+                    waited = true;
+                }
+            }
+        }
+    }
+
+    private static List<Thread> startedSince(Set<Thread> before) {
+        List<Thread> started = new ArrayList<>(Thread.getAllStackTraces().keySet());
+        started.removeAll(before);
+        return started;
+    }
+
+    /**
+     * Loads and exercises the classes competitive programs use most, so runs do not pay for it.
+     */
+    private static void warmUp() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append(i).append(i % 10 == 9 ? '\n' : ' ');
+        }
+        long sum = 0;
+        try (Scanner scanner = new Scanner(text.toString())) {
+            while (scanner.hasNextInt()) {
+                sum += scanner.nextInt();
+            }
+        }
+        try (BufferedReader reader = new BufferedReader(new StringReader(text.toString()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                StringTokenizer tokens = new StringTokenizer(line);
+                while (tokens.hasMoreTokens()) {
+                    sum += Long.parseLong(tokens.nextToken());
+                }
+            }
+        }
+        ArrayList<Integer> list = new ArrayList<>();
+        HashMap<Integer, Integer> map = new HashMap<>();
+        TreeMap<Integer, Integer> tree = new TreeMap<>();
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Collections.reverseOrder());
+        ArrayDeque<Integer> deque = new ArrayDeque<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(i);
+            map.merge(i % 7, i, Integer::sum);
+            tree.put(i, i);
+            heap.add(i);
+            deque.addLast(i);
+        }
+        int[] array = list.stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(array);
+        Collections.sort(list, Collections.reverseOrder());
+        BigInteger big = BigInteger.valueOf(sum).pow(3).mod(BigInteger.valueOf(1_000_000_007));
+        String formatted = String.format("%d %.6f %s", heap.peek() + deque.peekFirst(), Math.sqrt(sum), big);
+        if (formatted.isEmpty() || map.isEmpty() || tree.isEmpty()) {
+            throw new IllegalStateException("Warm-up failed");
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.codearena.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of pre-started JVMs (JvmWorker) that run compiled Java submissions, so JVM startup
+ * and loading of common library classes are neither paid per run nor measured.
+ *
+ * - Workers are started with -Xmx at the run's memory limit and kept per heap size;
+ *   judge.jvm-pool.size workers with judge.jvm-pool.warm-heap-mb are started when the
+ *   application is ready and kept warm. A run with no idle worker of its heap size starts one.
+ * - Each run loads the submission in a fresh class loader, and is judged by the CPU time of
+ *   the whole worker process, so work handed to other threads counts. The pool measures it
+ *   and stops the worker at the limit; nothing the worker reports about time is trusted.
+ * - Workers are driven over a loopback socket the worker connects to with a startup token,
+ *   not over its standard output, and each reply must carry its run's nonce.
+ * - A worker is replaced after judge.jvm-pool.max-runs runs, after a run that threw an
+ *   Error or left any thread it started running, after a run that exceeded its time limit
+ *   or called System.exit, which both end the worker process, and after any unexpected reply.
+ * Runs are not isolated from the judge node beyond being separate processes, and runs of
+ * different users share a worker's JDK static state, so the pool is off unless
+ * judge.jvm-pool.enabled is set, and off while the CgroupSandbox is enabled, with Java runs
+ * going through ProgramRunner instead.
+ *
+ * Metrics (Micrometer): judge.jvm-pool.runs{worker=warm|cold}, judge.jvm-pool.startup
+ * (time for a worker to become ready), judge.jvm-pool.recycled, judge.jvm-pool.idle.
+ */
+@Component
+public class JvmWorkerPool {
+
+    /** Tail of standard error kept in results, as in ProgramRunner. */
+    private static final int MAX_STDERR_BYTES = 8 * 1024;
+    private static final String EOF = "";
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(30);
+    /** Time for a worker to collect a run's garbage before it is replaced instead. */
+    private static final Duration IDLE_TIMEOUT = Duration.ofSeconds(10);
+    /** Shortest wait between two CPU time samples; the kernel counts in 10ms ticks. */
+    private static final long MIN_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    /**
+     * A started worker JVM. Used by one run at a time.
+     */
+    private static final class Worker {
+        final Process process;
+        final int heapMB;
+        final Socket control;
+        final Writer commands;
+        final BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+        int runs;
+        Duration cpuTime = Duration.ZERO;
+
+        Worker(Process process, int heapMB, Socket control) throws IOException {
+            this.process = process;
+            this.heapMB = heapMB;
+            this.control = control;
+            this.commands = new OutputStreamWriter(control.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Gets the CPU time of the whole process so far, or the last known one once it has ended.
+         */
+        Duration cpuTime() {
+            process.info().totalCpuDuration().ifPresent(cpu -> cpuTime = cpu);
+            return cpuTime;
+        }
+
+        void destroy() {
+            process.destroyForcibly();
+            try {
+                control.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    private final CgroupSandbox sandbox;
+    private final boolean enabled;
+    private final int size;
+    private final int warmHeapMB;
+    private final int maxRuns;
+    private final Path dir;
+
+    private final Map<Integer, Deque<Worker>> idle = new HashMap<>();
+    private final ExecutorService starter;
+    private final SecureRandom random = new SecureRandom();
+    private volatile boolean closed;
+
+    private final Counter warmRuns;
+    private final Counter coldRuns;
+    private final Counter recycled;
+    private final Timer startup;
+
+    public JvmWorkerPool(CgroupSandbox sandbox,
+                         MeterRegistry meterRegistry,
+                         @Value("${judge.jvm-pool.enabled:false}") boolean enabled,
+                         @Value("${judge.jvm-pool.size:2}") int size,
+                         @Value("${judge.jvm-pool.warm-heap-mb:256}") int warmHeapMB,
+                         @Value("${judge.jvm-pool.max-runs:100}") int maxRuns,
+                         @Value("${judge.jvm-pool.dir:${java.io.tmpdir}/codearena-jvm-pool}") String dir) throws IOException {
+        if (size < 0 || warmHeapMB < 1 || maxRuns < 1) {
+            throw new IllegalArgumentException("judge.jvm-pool.size must be at least 0, and warm-heap-mb and max-runs at least 1");
+        }
+        this.sandbox = sandbox;
+        this.enabled = enabled;
+        this.size = size;
+        this.warmHeapMB = warmHeapMB;
+        this.maxRuns = maxRuns;
+        this.dir = Path.of(dir);
+        this.starter = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("jvm-pool-starter-"));
+
+        this.warmRuns = Counter.builder("judge.jvm-pool.runs").tag("worker", "warm").register(meterRegistry);
+        this.coldRuns = Counter.builder("judge.jvm-pool.runs").tag("worker", "cold").register(meterRegistry);
+        this.recycled = Counter.builder("judge.jvm-pool.recycled")
+                .description("Worker JVMs replaced after their last run")
+                .register(meterRegistry);
+        this.startup = Timer.builder("judge.jvm-pool.startup")
+                .description("Time for a worker JVM to start and warm up")
+                .register(meterRegistry);
+        Gauge.builder("judge.jvm-pool.idle", this, JvmWorkerPool::idleWorkers).register(meterRegistry);
+
+        if (enabled) {
+            // The worker class runs with nothing else on its classpath
+            FileSystemUtils.deleteRecursively(this.dir);
+            String classFile = JvmWorker.class.getName().replace('.', '/') + ".class";
+            Path target = this.dir.resolve(classFile);
+            Files.createDirectories(target.getParent());
+            try (InputStream in = JvmWorker.class.getClassLoader().getResourceAsStream(classFile)) {
+                if (in == null) {
+                    throw new IllegalStateException("JvmWorker class file not found");
+                }
+                Files.copy(in, target);
+            }
+        }
+    }
+
+    /**
+     * Starts the warm workers in the background once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!isEnabled()) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            starter.execute(() -> startIdle(warmHeapMB));
+        }
+    }
+
+    /**
+     * Stops every worker.
+     */
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        starter.shutdownNow();
+        synchronized (this) {
+            idle.values().forEach(workers -> workers.forEach(Worker::destroy));
+            idle.clear();
+        }
+    }
+
+    /**
+     * Tells whether Java runs go through the pool.
+     * @return Whether the pool is enabled and the CgroupSandbox is not
+     */
+    public boolean isEnabled() {
+        return enabled && !sandbox.isEnabled();
+    }
+
+    /**
+     * Runs a compiled Java program on a pooled worker.
+     * @param program The program; its working directory holds Main.class
+     * @param stdin File to read standard input from, or null for none
+     * @param stdout File to write standard output to
+     * @param timeLimit CPU time limit of the worker process during the run
+     * @param memoryLimitBytes Memory limit in bytes, applied as the worker's maximum heap
+     * @param outputLimitBytes Output limit in bytes, or 0 for none; checked like ProgramRunner does
+     * @return The outcome; cpuTime excludes JVM startup, memoryPeakBytes is not measured
+     * @throws IOException If no worker can be started, or the worker fails or replies unexpectedly
+     */
+    public ProgramRunner.RunResult run(ProgramRunner.Program program, Path stdin, Path stdout, Duration timeLimit,
+                                       long memoryLimitBytes, long outputLimitBytes) throws IOException {
+        if (program.language() != ProgramLanguage.JAVA) {
+            throw new IllegalArgumentException("The JVM pool only runs Java programs");
+        }
+        int heapMB = (int) Math.max(1, memoryLimitBytes >> 20);
+        Worker worker = takeIdle(heapMB);
+        if (worker != null) {
+            warmRuns.increment();
+        } else {
+            worker = start(heapMB);
+            coldRuns.increment();
+        }
+
+        Path stderr = Files.createTempFile(program.workDir(), "stderr-", ".txt");
+        boolean reusable = false;
+        try {
+            String nonce = token();
+            Duration cpuBefore = worker.cpuTime();
+            long start = System.nanoTime();
+            worker.commands.write(String.join("\t", "RUN", nonce, program.workDir().toAbsolutePath().toString(),
+                    stdin != null ? stdin.toAbsolutePath().toString() : "-", stdout.toAbsolutePath().toString(),
+                    stderr.toAbsolutePath().toString()) + "\n");
+            worker.commands.flush();
+            // Backstop for programs that block or sleep, which use no CPU time
+            long wallDeadline = start + timeLimit.multipliedBy(2).plusSeconds(1).toNanos();
+            Duration cpuTime = Duration.ZERO;
+            String reply;
+            while ((reply = worker.replies.poll(pollNanos(timeLimit.minus(cpuTime), outputLimitBytes),
+                    TimeUnit.NANOSECONDS)) == null) {
+                cpuTime = worker.cpuTime().minus(cpuBefore);
+                boolean outputLimitExceeded = outputLimitExceeded(stdout, outputLimitBytes);
+                if (outputLimitExceeded || cpuTime.compareTo(timeLimit) > 0 || System.nanoTime() - wallDeadline > 0) {
+                    worker.destroy();
+                    return new ProgramRunner.RunResult(-1, !outputLimitExceeded,
+                            Duration.ofNanos(System.nanoTime() - start), cpuTime, -1, false, outputLimitExceeded,
+                            tail(stderr));
+                }
+            }
+            cpuTime = worker.cpuTime().minus(cpuBefore);
+            Duration wallTime = Duration.ofNanos(System.nanoTime() - start);
+            boolean outputLimitExceeded = outputLimitExceeded(stdout, outputLimitBytes);
+            boolean timedOut = !outputLimitExceeded && cpuTime.compareTo(timeLimit) > 0;
+            if (reply.equals(EOF)) {
+                // The program called System.exit, or the JVM itself crashed
+                int exitCode = worker.process.waitFor(5, TimeUnit.SECONDS) ? worker.process.exitValue() : -1;
+                return new ProgramRunner.RunResult(exitCode, timedOut, wallTime, cpuTime, -1, false,
+                        outputLimitExceeded, tail(stderr));
+            }
+            String[] fields = reply.split(" ");
+            if (fields.length != 4 || !fields[0].equals("DONE") || !fields[1].equals(nonce)) {
+                throw new IOException("Unexpected reply from JVM worker: " + reply);
+            }
+            worker.runs++;
+            if (fields[3].equals("1") && worker.runs < maxRuns) {
+                reusable = ("IDLE " + nonce).equals(worker.replies.poll(IDLE_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS));
+            }
+            return new ProgramRunner.RunResult(Integer.parseInt(fields[2]), timedOut, wallTime, cpuTime, -1,
+                    false, outputLimitExceeded, tail(stderr));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running a Java program", e);
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected reply from JVM worker", e);
+        } finally {
+            Files.deleteIfExists(stderr);
+            if (reusable) {
+                release(worker);
+            } else {
+                retire(worker);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of workers waiting for a run.
+     * @return The idle worker count
+     */
+    public synchronized int idleWorkers() {
+        return idle.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    private synchronized Worker takeIdle(int heapMB) {
+        Deque<Worker> workers = idle.get(heapMB);
+        while (workers != null && !workers.isEmpty()) {
+            Worker worker = workers.pollFirst();
+            if (worker.process.isAlive()) {
+                return worker;
+            }
+        }
+        return null;
+    }
+
+    private void release(Worker worker) {
+        boolean keep;
+        synchronized (this) {
+            Deque<Worker> workers = idle.computeIfAbsent(worker.heapMB, heap -> new ArrayDeque<>());
+            keep = !closed && workers.size() < Math.max(1, size);
+            if (keep) {
+                workers.addLast(worker);
+            }
+        }
+        if (!keep) {
+            worker.destroy();
+        }
+    }
+
+    /**
+     * Ends a worker after its last run and starts a replacement in the background.
+     */
+    private void retire(Worker worker) {
+        worker.destroy();
+        recycled.increment();
+        if (!closed) {
+            starter.execute(() -> startIdle(worker.heapMB));
+        }
+    }
+
+    private void startIdle(int heapMB) {
+        try {
+            release(start(heapMB));
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Failed to start a JVM worker: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Starts a worker and waits until it has warmed up and connected back with its token.
+     */
+    private Worker start(int heapMB) throws IOException {
+        long begin = System.nanoTime();
+        String token = token();
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Process process = new ProcessBuilder("java", "-Xmx" + heapMB + "m", "-cp", dir.toString(),
+                    JvmWorker.class.getName(), String.valueOf(server.getLocalPort()))
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            try {
+                try (Writer stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+                    stdin.write(token + "\n");
+                }
+                Worker worker = accept(server, process, heapMB, token, begin + STARTUP_TIMEOUT.toNanos());
+                Thread reader = new Thread(() -> readReplies(worker), "jvm-pool-reader-" + process.pid());
+                reader.setDaemon(true);
+                reader.start();
+                startup.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+                return worker;
+            } catch (IOException | RuntimeException e) {
+                process.destroyForcibly();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Accepts connections until the worker's, which starts with READY and its token.
+     */
+    private static Worker accept(ServerSocket server, Process process, int heapMB, String token, long deadline)
+            throws IOException {
+        while (true) {
+            long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (left <= 0 || !process.isAlive()) {
+                throw new IOException("JVM worker did not start" + (left <= 0 ? " in time" : ""));
+            }
+            server.setSoTimeout((int) Math.min(left, 1000));
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (SocketTimeoutException e) {
+                continue;
+            }
+            try {
+                socket.setSoTimeout((int) Math.min(left, 1000));
+                String hello = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))
+                        .readLine();
+                if (("READY " + token).equals(hello)) {
+                    socket.setSoTimeout(0);
+                    return new Worker(process, heapMB, socket);
+                }
+            } catch (SocketTimeoutException e) {
+                // Connected without a word
+            }
+            socket.close(); // Not the worker
+        }
+    }
+
+    private static void readReplies(Worker worker) {
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(worker.control.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                worker.replies.add(line);
+            }
+        } catch (IOException e) {
+            // The worker was destroyed
+        } finally {
+            worker.replies.add(EOF);
+        }
+    }
+
+    /**
+     * Gets how long to wait for a reply before sampling CPU time again: a program using every
+     * core reaches its limit sooner than its remaining CPU time.
+     */
+    private static long pollNanos(Duration cpuLeft, long outputLimitBytes) {
+        long wait = Math.max(MIN_POLL_NANOS, cpuLeft.toNanos() / Runtime.getRuntime().availableProcessors());
+        return outputLimitBytes > 0 ? Math.min(wait, ProgramRunner.OUTPUT_CHECK_NANOS) : wait;
+    }
+
+    private static boolean outputLimitExceeded(Path stdout, long outputLimitBytes) throws IOException {
+        // The worker creates the output file once the run starts
+        return outputLimitBytes > 0 && Files.exists(stdout) && Files.size(stdout) > outputLimitBytes;
+    }
+
+    private String token() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static String tail(Path file) throws IOException {
+        long size = Files.size(file);
+        try (InputStream in = Files.newInputStream(file)) {
+            in.skipNBytes(Math.max(0, size - MAX_STDERR_BYTES));
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.codearena.backend.service;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Test case storage backed by a local directory.
+ *
+ * Uses the same testcases/{problemId}/{testCaseId}/{fileName} layout as the bucket, rooted at
+ * a configurable directory. The flat content-addressed families (blobs/ and tokens/) are
+ * sharded on disk by the first two characters of the name, so blobs/{sha256} is stored as
+ * blobs/{sha256[0..2]}/{sha256}; files an older version left unsharded are moved into their
+ * shards on startup. Reads are served through memory-mapped FileChannels so repeated
+ * reads of hot test data are page-cache hits rather than network calls.
+ *
+ * Writes go to a temporary file in the target directory and are atomically moved into place,
+ * so readers never observe a partially written file. Listings skip those temporary files and
+ * use the last returned name as the page token. A page walks directories in name order and
+ * skips every directory whose names all sort at or before the token, so paging through a
+ * family reads each shard about once instead of the whole family per page.
+ *
+ * Signed download URLs point at this service's signed download endpoint and are
+ * HMAC-signed by a LocalUrlSigner, mirroring Cloud Storage signed URLs.
+ */
+public class LocalDiskTestCaseStorage implements TestCaseStorage {
+
+    private static final List<String> SHARDED_FAMILIES = List.of("blobs/", "tokens/");
+    private static final int SHARD_CHARS = 2;
+    private static final String TEMP_FILE_PREFIX = ".upload-";
+
+    /**
+     * A directory entry met while listing.
+     * @param key The object name of a file, or what every name under a directory starts with
+     * @param path The entry
+     * @param directory Whether it is a directory
+     */
+    private record ListedEntry(String key, Path path, boolean directory) {
+    }
+
+    private final Path root;
+    private final LocalUrlSigner urlSigner;
+
+    public LocalDiskTestCaseStorage(Path root) throws IOException {
+        this(root, null);
+    }
+
+    /**
+     * Creates local-disk storage that can hand out signed download URLs.
+     * @param root Directory holding test case files
+     * @param urlSigner Signer for download URLs, or null if signed URLs are not served
+     * @throws IOException If the root directory cannot be created
+     */
+    public LocalDiskTestCaseStorage(Path root, LocalUrlSigner urlSigner) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.urlSigner = urlSigner;
+        Files.createDirectories(this.root);
+        shardUnshardedFiles();
+    }
+
+    @Override
+    public StoredObject write(String objectName, byte[] content) throws IOException {
+        Path target = resolve(objectName);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), TEMP_FILE_PREFIX, ".tmp");
+        try {
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return stat(objectName);
+    }
+
+    @Override
+    public StoredObject write(String objectName, InputStream content) throws IOException {
+        Path target = resolve(objectName);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), TEMP_FILE_PREFIX, ".tmp");
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return stat(objectName);
+    }
+
+    @Override
+    public ObjectUpload startUpload(String objectName) throws IOException {
+        Path target = resolve(objectName);
+        Files.createDirectories(target.getParent());
+        // Appended to across calls; moved into place on commit like any other write
+        Path temp = Files.createTempFile(target.getParent(), TEMP_FILE_PREFIX, ".tmp");
+        OutputStream stream = Files.newOutputStream(temp, StandardOpenOption.APPEND);
+        return new ObjectUpload() {
+            @Override
+            public OutputStream stream() {
+                return stream;
+            }
+
+            @Override
+            public StoredObject commit() throws IOException {
+                stream.close();
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                return stat(objectName);
+            }
+
+            @Override
+            public void abort() {
+                try {
+                    stream.close();
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    System.err.println("Failed to discard upload " + temp + ": " + e.getMessage());
+                }
+            }
+        };
+    }
+
+    @Override
+    public ByteBuffer read(String objectName) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(objectName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Test case file too large to map: " + objectName + " (" + size + " bytes)");
+            }
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    @Override
+    public ReadableByteChannel openReader(String objectName) throws IOException {
+        return FileChannel.open(resolve(objectName), StandardOpenOption.READ);
+    }
+
+    @Override
+    public ReadableByteChannel openReader(String objectName, long offset, long limit) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(objectName), StandardOpenOption.READ);
+        channel.position(offset);
+        if (limit == Long.MAX_VALUE) {
+            return channel;
+        }
+        return Channels.newChannel(ByteStreams.limit(Channels.newInputStream(channel), limit));
+    }
+
+    @Override
+    public StoredObject stat(String objectName) throws IOException {
+        Path path = resolve(objectName);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new StoredObject(objectName, attributes.size(),
+                attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS));
+    }
+
+    @Override
+    public StoredObject move(String sourceName, String targetName) throws IOException {
+        Path target = resolve(targetName);
+        Files.createDirectories(target.getParent());
+        Files.move(resolve(sourceName), target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return stat(targetName);
+    }
+
+    @Override
+    public boolean delete(String objectName) throws IOException {
+        return Files.deleteIfExists(resolve(objectName));
+    }
+
+    @Override
+    public int deleteAll(List<String> objectNames) throws IOException {
+        int deleted = 0;
+        for (String objectName : objectNames) {
+            if (delete(objectName)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public ObjectPage list(String prefix, String pageToken, int pageSize) throws IOException {
+        // Walk the deepest directory that contains every name with the prefix
+        int slash = prefix.lastIndexOf('/');
+        Path dir = slash < 0 ? root : root.resolve(prefix.substring(0, slash)).normalize();
+        if (!dir.startsWith(root) || !Files.isDirectory(dir)) {
+            return new ObjectPage(List.of(), null);
+        }
+        List<String> names = new ArrayList<>();
+        collect(dir, prefix, pageToken, pageSize + 1, names);
+        List<StoredObject> objects = new ArrayList<>(Math.min(names.size(), pageSize));
+        for (String name : names.subList(0, Math.min(names.size(), pageSize))) {
+            StoredObject object = stat(name);
+            if (object != null) { // Skip files deleted since the walk
+                objects.add(object);
+            }
+        }
+        return new ObjectPage(objects, names.size() <= pageSize ? null : names.get(pageSize - 1));
+    }
+
+    /**
+     * Adds the names under a directory that have the prefix and sort after the page token, in
+     * name order, until there are limit names. Each directory is read as a sorted list of its
+     * own entries; subdirectories are keyed by what all names under them start with, and are
+     * not read when those names cannot have the prefix or all sort at or before the token.
+     */
+    private void collect(Path dir, String prefix, String pageToken, int limit, List<String> names)
+            throws IOException {
+        List<ListedEntry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                if (Files.isDirectory(child)) {
+                    entries.add(new ListedEntry(directoryKey(child), child, true));
+                } else if (!child.getFileName().toString().startsWith(TEMP_FILE_PREFIX)) {
+                    entries.add(new ListedEntry(objectName(child), child, false));
+                }
+            }
+        }
+        // Files before directories with the same key: every name under the directory is longer
+        entries.sort(Comparator.comparing(ListedEntry::key).thenComparing(ListedEntry::directory));
+        for (ListedEntry entry : entries) {
+            if (names.size() >= limit) {
+                return;
+            }
+            String key = entry.key();
+            if (entry.directory()) {
+                boolean afterToken = pageToken == null || key.compareTo(pageToken) > 0 || pageToken.startsWith(key);
+                if ((key.startsWith(prefix) || prefix.startsWith(key)) && afterToken) {
+                    collect(entry.path(), prefix, pageToken, limit, names);
+                }
+            } else if (key.startsWith(prefix) && (pageToken == null || key.compareTo(pageToken) > 0)) {
+                names.add(key);
+            }
+        }
+    }
+
+    /**
+     * Gets what every object name under a directory starts with.
+     */
+    private String directoryKey(Path dir) {
+        String name = root.relativize(dir).toString().replace('\\', '/');
+        return isShard(name) ? name : name + "/";
+    }
+
+    /**
+     * Gets the object name of a file, leaving out its shard directory.
+     */
+    private String objectName(Path file) {
+        String name = root.relativize(file).toString().replace('\\', '/');
+        Path parent = file.getParent();
+        if (!parent.equals(root) && isShard(root.relativize(parent).toString().replace('\\', '/'))) {
+            return name.substring(0, name.lastIndexOf('/') - SHARD_CHARS) + file.getFileName();
+        }
+        return name;
+    }
+
+    /**
+     * Tells whether a directory, given relative to the root, is the shard of a sharded family.
+     */
+    private static boolean isShard(String dir) {
+        return SHARDED_FAMILIES.stream().anyMatch(family -> dir.length() == family.length() + SHARD_CHARS
+                && dir.startsWith(family));
+    }
+
+    /**
+     * Gets the path of an object name relative to the root: the name itself, except that
+     * names in a sharded family go into their shard.
+     */
+    private static String shardedPath(String objectName) {
+        for (String family : SHARDED_FAMILIES) {
+            if (objectName.startsWith(family)) {
+                String rest = objectName.substring(family.length());
+                if (rest.length() >= SHARD_CHARS && rest.indexOf('/') < 0 && !rest.startsWith(".")) {
+                    return family + rest.substring(0, SHARD_CHARS) + "/" + rest;
+                }
+            }
+        }
+        return objectName;
+    }
+
+    /**
+     * Moves files of sharded families that are stored directly in the family directory, as
+     * before sharding, into their shards.
+     */
+    private void shardUnshardedFiles() throws IOException {
+        int moved = 0;
+        for (String family : SHARDED_FAMILIES) {
+            Path dir = root.resolve(family);
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            List<Path> files;
+            try (Stream<Path> children = Files.list(dir)) {
+                files = children.filter(Files::isRegularFile).toList();
+            }
+            for (Path file : files) {
+                String objectName = family + file.getFileName();
+                String sharded = shardedPath(objectName);
+                if (!sharded.equals(objectName)) {
+                    Path target = root.resolve(sharded);
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    moved++;
+                }
+            }
+        }
+        if (moved > 0) {
+            System.out.println("Moved " + moved + " stored files into their shard directories");
+        }
+    }
+
+    @Override
+    public URI signReadUrl(String objectName, Duration ttl) {
+        if (urlSigner == null) {
+            throw new UnsupportedOperationException("Signed URLs are not configured for local storage");
+        }
+        resolve(objectName); // Rejects names outside the root before they are signed
+        return urlSigner.sign(objectName, ttl);
+    }
+
+    /**
+     * Resolves an object name to a path under the storage root.
+     * @param objectName The object name
+     * @return The absolute file path
+     * @throws IllegalArgumentException If the name escapes the storage root
+     */
+    Path resolve(String objectName) {
+        Path path = root.resolve(objectName).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IllegalArgumentException("Invalid object name: " + objectName);
+        }
+        return root.resolve(shardedPath(root.relativize(path).toString().replace('\\', '/')));
+    }
+}
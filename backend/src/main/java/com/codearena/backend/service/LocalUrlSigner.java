@@ -0,0 +1,85 @@
+package com.codearena.backend.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Signs and verifies download URLs for objects in local-disk test case storage.
+ *
+ * This is the local counterpart of Cloud Storage V4 signed URLs: a URL names the object and
+ * an expiry time, and carries an HMAC-SHA256 over both, so the download endpoint can serve
+ * it without authenticating the caller. Every node that serves such URLs must share the key.
+ */
+public class LocalUrlSigner {
+
+    /** Path of the endpoint that serves signed local URLs. */
+    public static final String DOWNLOAD_PATH = "/api/testcases/signed/";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final String baseUrl;
+    private final Clock clock;
+
+    /**
+     * Creates a signer.
+     * @param key The HMAC key
+     * @param baseUrl Public URL of this service, e.g. https://api.example.com; empty for
+     *                URLs relative to the API host
+     * @param clock Clock used for expiry times
+     */
+    public LocalUrlSigner(byte[] key, String baseUrl, Clock clock) {
+        if (key.length == 0) {
+            throw new IllegalArgumentException("Signing key must not be empty");
+        }
+        this.key = new SecretKeySpec(key, ALGORITHM);
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.clock = clock;
+    }
+
+    /**
+     * Signs a download URL for an object.
+     * @param objectName The object name
+     * @param ttl How long the URL stays valid
+     * @return The signed URL
+     */
+    public URI sign(String objectName, Duration ttl) {
+        long expires = clock.instant().plus(ttl).getEpochSecond();
+        return URI.create(baseUrl + DOWNLOAD_PATH + objectName
+                + "?expires=" + expires + "&signature=" + signature(objectName, expires));
+    }
+
+    /**
+     * Checks a signed URL's parameters.
+     * @param objectName The object name from the URL path
+     * @param expires The expiry time from the URL, in epoch seconds
+     * @param signature The signature from the URL
+     * @return Whether the signature is valid for the object and has not expired
+     */
+    public boolean verify(String objectName, long expires, String signature) {
+        if (signature == null || clock.instant().getEpochSecond() > expires) {
+            return false;
+        }
+        // Constant-time comparison, so a forger learns nothing from response timing
+        return MessageDigest.isEqual(signature(objectName, expires).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String signature(String objectName, long expires) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] digest = mac.doFinal((objectName + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e); // Required on every JVM
+        }
+    }
+}
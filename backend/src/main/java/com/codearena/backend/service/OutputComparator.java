@@ -0,0 +1,542 @@
+package com.codearena.backend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compares the output of a program with the expected output of a test, streaming.
+ *
+ * The expected output is random-access: a buffer or a memory-mapped file, typically a file
+ * leased from JudgeTestDataCache. The actual output is consumed once, in chunks, as it comes
+ * out of the program's stdout. Nothing is allocated per line or token, neither output is
+ * held in memory beyond the mapping, and reading stops at the first difference.
+ *
+ * Modes:
+ * - EXACT: the outputs are byte-for-byte equal
+ * - LINE: the outputs have the same lines, ignoring trailing spaces, tabs and carriage
+ *   returns on each line and blank lines at the end
+ * - TOKEN: the outputs have the same whitespace-separated tokens, however they are spaced
+ * - FLOAT: as TOKEN, but tokens that are both decimal numbers match if they differ by at
+ *   most epsilon, absolutely or relative to the expected value
+ *
+ * A comparator is immutable and can be shared; each comparison keeps its own state.
+ */
+public final class OutputComparator {
+
+    /**
+     * How outputs are compared.
+     */
+    public enum Mode {
+        EXACT, LINE, TOKEN, FLOAT
+    }
+
+    /**
+     * First difference between an actual output and the expected one.
+     * @param actualOffset Byte offset of the difference in the actual output
+     * @param expectedOffset Byte offset of the difference in the expected output
+     * @param actualLine 1-based line of the difference in the actual output
+     * @param expectedLine 1-based line of the difference in the expected output, or 0 past its end
+     * @param token 0-based index of the token that differs, or -1 outside the token modes
+     * @param message What differs
+     */
+    public record Mismatch(long actualOffset, long expectedOffset, long actualLine, long expectedLine,
+                           long token, String message) {
+    }
+
+    /** Default tolerance of FLOAT comparisons. */
+    public static final double DEFAULT_EPSILON = 1e-6;
+
+    /** Longest token FLOAT mode reads as a number; longer tokens must match exactly. */
+    static final int MAX_NUMBER_BYTES = 64;
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_SIGNIFICANT_DIGITS = 18;
+
+    private final Mode mode;
+    private final double epsilon;
+
+    private OutputComparator(Mode mode, double epsilon) {
+        this.mode = mode;
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Creates a comparator, with the default epsilon in FLOAT mode.
+     * @param mode How to compare
+     * @return The comparator
+     */
+    public static OutputComparator of(Mode mode) {
+        return of(mode, DEFAULT_EPSILON);
+    }
+
+    /**
+     * Creates a comparator.
+     * @param mode How to compare
+     * @param epsilon Tolerance of FLOAT comparisons; ignored by the other modes
+     * @return The comparator
+     * @throws IllegalArgumentException If the epsilon is negative or not finite
+     */
+    public static OutputComparator of(Mode mode, double epsilon) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Comparison mode is required");
+        }
+        if (!(epsilon >= 0) || Double.isInfinite(epsilon)) {
+            throw new IllegalArgumentException("Epsilon must be a non-negative number");
+        }
+        return new OutputComparator(mode, epsilon);
+    }
+
+    /**
+     * Gets how this comparator compares.
+     * @return The mode
+     */
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Gets the tolerance of FLOAT comparisons.
+     * @return The epsilon
+     */
+    public double epsilon() {
+        return epsilon;
+    }
+
+    /**
+     * Compares two outputs held in buffers.
+     * @param expected The expected output, from its position to its limit
+     * @param actual The actual output, from its position to its limit
+     * @return The first difference, or null if the outputs match
+     */
+    public Mismatch compare(ByteBuffer expected, ByteBuffer actual) {
+        Scan scan = new Scan(expected.slice());
+        return scan.feed(actual.slice()) ? scan.finish() : scan.mismatch;
+    }
+
+    /**
+     * Compares an actual output read from a channel with an expected one held in a buffer.
+     * @param expected The expected output, from its position to its limit
+     * @param actual The actual output; read up to the first difference but not closed
+     * @return The first difference, or null if the outputs match
+     * @throws IOException If the actual output cannot be read
+     */
+    public Mismatch compare(ByteBuffer expected, ReadableByteChannel actual) throws IOException {
+        Scan scan = new Scan(expected.slice());
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        while (actual.read(buffer.clear()) >= 0) {
+            if (!scan.feed(buffer.flip())) {
+                return scan.mismatch;
+            }
+        }
+        return scan.finish();
+    }
+
+    /**
+     * Compares an actual output read from a channel with an expected one stored in a file,
+     * which is memory-mapped for the comparison.
+     * @param expected The expected output file
+     * @param actual The actual output; read up to the first difference but not closed
+     * @return The first difference, or null if the outputs match
+     * @throws IOException If the expected output cannot be mapped or the actual one cannot be read
+     */
+    public Mismatch compare(Path expected, ReadableByteChannel actual) throws IOException {
+        try (FileChannel channel = FileChannel.open(expected, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Expected output " + expected + " is too large to map");
+            }
+            return compare(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), actual);
+        }
+    }
+
+    /**
+     * Compares an actual output, such as a process's stdout, with an expected one stored in a file.
+     * @param expected The expected output file
+     * @param actual The actual output; read up to the first difference but not closed
+     * @return The first difference, or null if the outputs match
+     * @throws IOException If the expected output cannot be mapped or the actual one cannot be read
+     */
+    public Mismatch compare(Path expected, InputStream actual) throws IOException {
+        return compare(expected, Channels.newChannel(actual));
+    }
+
+    /**
+     * Compares an actual output read from a channel with the tokens of an expected output.
+     * Reported expected offsets are into the index data; lines are those of the original output.
+     * @param expected The token index of the expected output
+     * @param actual The actual output; read up to the first difference but not closed
+     * @return The first difference, or null if the outputs match
+     * @throws IOException If the actual output cannot be read
+     * @throws IllegalArgumentException If this comparator is not in a token mode
+     */
+    public Mismatch compare(OutputTokenIndex expected, ReadableByteChannel actual) throws IOException {
+        if (mode != Mode.TOKEN && mode != Mode.FLOAT) {
+            throw new IllegalArgumentException("A token index can only be compared by tokens, not in " + mode + " mode");
+        }
+        Mismatch mismatch = compare(expected.data(), actual);
+        if (mismatch == null) {
+            return null;
+        }
+        return new Mismatch(mismatch.actualOffset(), mismatch.expectedOffset(), mismatch.actualLine(),
+                expected.lineAt(mismatch.expectedOffset()), mismatch.token(), mismatch.message());
+    }
+
+    /**
+     * Parses a decimal number: an optional sign, digits with an optional fraction, and an
+     * optional exponent. Only the first 18 significant digits are kept, which is well within
+     * any useful epsilon.
+     * @param buffer The buffer holding the text
+     * @param from Offset of the first byte
+     * @param to Offset past the last byte
+     * @return The value, or NaN if the text is not a decimal number
+     */
+    static double parseNumber(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buffer.get(i) == '+' || buffer.get(i) == '-')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significant = 0;
+        int exponent = 0;
+        boolean digits = false;
+        for (; i < to && isDigit(buffer.get(i)); i++) {
+            digits = true;
+            if (significant < MAX_SIGNIFICANT_DIGITS) {
+                mantissa = mantissa * 10 + (buffer.get(i) - '0');
+                significant += mantissa > 0 ? 1 : 0;
+            } else {
+                exponent++;
+            }
+        }
+        if (i < to && buffer.get(i) == '.') {
+            for (i++; i < to && isDigit(buffer.get(i)); i++) {
+                digits = true;
+                if (significant < MAX_SIGNIFICANT_DIGITS) {
+                    mantissa = mantissa * 10 + (buffer.get(i) - '0');
+                    significant += mantissa > 0 ? 1 : 0;
+                    exponent--;
+                }
+            }
+        }
+        if (!digits) {
+            return Double.NaN;
+        }
+        if (i < to && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (buffer.get(i) == '+' || buffer.get(i) == '-')) {
+                negativeExponent = buffer.get(i) == '-';
+                i++;
+            }
+            int value = 0;
+            boolean exponentDigits = false;
+            for (; i < to && isDigit(buffer.get(i)); i++) {
+                exponentDigits = true;
+                value = Math.min(value * 10 + (buffer.get(i) - '0'), 100_000);
+            }
+            if (!exponentDigits) {
+                return Double.NaN;
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (i != to) {
+            return Double.NaN;
+        }
+        double value = mantissa;
+        if (mantissa != 0 && exponent > 0) {
+            value *= Math.pow(10, exponent);
+        } else if (mantissa != 0 && exponent < 0) {
+            value /= Math.pow(10, -exponent);
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Tells whether a byte may trail a line in LINE mode: space, tab or carriage return.
+     */
+    private static boolean isLineSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * State of one comparison. The actual output is fed chunk by chunk; the expected one is
+     * read at absolute offsets, so neither is copied.
+     */
+    private final class Scan {
+
+        private final ByteBuffer expected;
+        private final int limit;
+        private int position;         // Next expected byte
+        private long actualOffset;    // Actual bytes consumed before the current chunk
+        private long actualLine = 1;
+        private Mismatch mismatch;
+
+        // LINE mode
+        private boolean trailing;     // Inside trailing whitespace of an actual line
+        private boolean expectedEnded; // Every expected line has been matched
+
+        // Token modes
+        private long token;
+        private boolean inToken;
+        private int tokenStart;       // Expected offset of the current token
+        private long tokenActualStart;
+        private long tokenActualLine;
+        private boolean exact;        // The current token matched byte for byte so far
+        private final ByteBuffer number;
+        private int numberLength;
+
+        Scan(ByteBuffer expected) {
+            this.expected = expected;
+            this.limit = expected.limit();
+            this.number = mode == Mode.FLOAT ? ByteBuffer.allocate(MAX_NUMBER_BYTES) : null;
+        }
+
+        /**
+         * Consumes a chunk of the actual output.
+         * @return Whether the outputs still match; once false, mismatch is set
+         */
+        boolean feed(ByteBuffer chunk) {
+            int start = chunk.position();
+            int end = chunk.limit();
+            boolean matches = switch (mode) {
+                case EXACT -> feedExact(chunk, start, end);
+                case LINE -> feedLine(chunk, start, end);
+                case TOKEN, FLOAT -> feedTokens(chunk, start, end);
+            };
+            actualOffset += end - start;
+            chunk.position(end);
+            return matches;
+        }
+
+        /**
+         * Checks the expected output once the actual one has ended.
+         * @return The first difference, or null if the outputs match
+         */
+        Mismatch finish() {
+            switch (mode) {
+                case EXACT -> {
+                    if (position < limit) {
+                        return fail(actualOffset, position, "Output is shorter than expected");
+                    }
+                }
+                case LINE -> {
+                    // Trailing whitespace and blank lines of the expected output are not required
+                    skipWhitespace();
+                    if (position < limit) {
+                        return fail(actualOffset, position, "Output has fewer lines than expected");
+                    }
+                }
+                case TOKEN, FLOAT -> {
+                    if (inToken && !endToken(actualOffset)) {
+                        return mismatch;
+                    }
+                    skipWhitespace();
+                    if (position < limit) {
+                        return fail(actualOffset, position, "Output ended after " + token + " tokens");
+                    }
+                }
+            }
+            return null;
+        }
+
+        private boolean feedExact(ByteBuffer chunk, int start, int end) {
+            long base = actualOffset - start;
+            for (int i = start; i < end; i++) {
+                byte b = chunk.get(i);
+                if (position >= limit) {
+                    return failed(base + i, position, "Output is longer than expected");
+                }
+                if (b != expected.get(position)) {
+                    return failed(base + i, position, "Output differs from the expected one");
+                }
+                position++;
+                if (b == '\n') {
+                    actualLine++;
+                }
+            }
+            return true;
+        }
+
+        private boolean feedLine(ByteBuffer chunk, int start, int end) {
+            long base = actualOffset - start;
+            for (int i = start; i < end; i++) {
+                byte b = chunk.get(i);
+                if (b == '\n') {
+                    if (!expectedEnded && !endExpectedLine()) {
+                        return failed(base + i, position, "Output line is shorter than expected");
+                    }
+                    trailing = false;
+                    actualLine++;
+                } else if (expectedEnded) {
+                    if (!isLineSpace(b)) {
+                        return failed(base + i, limit, "Output has more lines than expected");
+                    }
+                } else if (trailing) {
+                    if (!isLineSpace(b)) {
+                        return failed(base + i, position, lineDifference());
+                    }
+                } else if (position < limit && expected.get(position) == b) {
+                    position++;
+                } else if (isLineSpace(b)) {
+                    // Whitespace the expected line does not have is only allowed at the end of the line
+                    trailing = true;
+                } else if (position >= limit) {
+                    return failed(base + i, position, "Output has more lines than expected");
+                } else {
+                    return failed(base + i, position, lineDifference());
+                }
+            }
+            return true;
+        }
+
+        private String lineDifference() {
+            return position >= limit || expected.get(position) == '\n'
+                    ? "Output line is longer than expected"
+                    : "Output line differs from the expected one";
+        }
+
+        /**
+         * Moves past the end of the current expected line, skipping its trailing whitespace.
+         * @return Whether the expected line ends here
+         */
+        private boolean endExpectedLine() {
+            while (position < limit && isLineSpace(expected.get(position))) {
+                position++;
+            }
+            if (position >= limit) {
+                expectedEnded = true;
+                return true;
+            }
+            if (expected.get(position) == '\n') {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean feedTokens(ByteBuffer chunk, int start, int end) {
+            long base = actualOffset - start;
+            for (int i = start; i < end; i++) {
+                byte b = chunk.get(i);
+                if (OutputTokenIndex.isWhitespace(b)) {
+                    if (inToken && !endToken(base + i)) {
+                        return false;
+                    }
+                    if (b == '\n') {
+                        actualLine++;
+                    }
+                    continue;
+                }
+                if (!inToken) {
+                    skipWhitespace();
+                    if (position >= limit) {
+                        return failed(base + i, limit, "Output has more tokens than expected");
+                    }
+                    inToken = true;
+                    tokenStart = position;
+                    tokenActualStart = base + i;
+                    tokenActualLine = actualLine;
+                    exact = true;
+                    numberLength = 0;
+                }
+                if (number != null) {
+                    if (numberLength < MAX_NUMBER_BYTES) {
+                        number.put(numberLength, b);
+                    }
+                    numberLength++;
+                }
+                if (!exact) {
+                    continue;
+                }
+                if (position < limit && expected.get(position) == b) {
+                    position++;
+                } else if (number != null) {
+                    exact = false; // May still be the same number written differently
+                } else {
+                    return failed(base + i, position,
+                            position >= limit || OutputTokenIndex.isWhitespace(expected.get(position))
+                                    ? "Output token is longer than expected"
+                                    : "Output token differs from the expected one");
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Ends the current actual token and checks it against the expected one.
+         * @param offset Actual offset just past the token
+         * @return Whether the tokens match
+         */
+        private boolean endToken(long offset) {
+            inToken = false;
+            if (exact && (position >= limit || OutputTokenIndex.isWhitespace(expected.get(position)))) {
+                token++;
+                return true;
+            }
+            if (number == null) {
+                return failed(offset, position, "Output token is shorter than expected");
+            }
+            int tokenEnd = tokenStart;
+            while (tokenEnd < limit && !OutputTokenIndex.isWhitespace(expected.get(tokenEnd))) {
+                tokenEnd++;
+            }
+            if (numberLength <= MAX_NUMBER_BYTES && tokenEnd - tokenStart <= MAX_NUMBER_BYTES) {
+                double want = parseNumber(expected, tokenStart, tokenEnd);
+                double got = parseNumber(number, 0, numberLength);
+                double difference = Math.abs(got - want);
+                if (difference <= epsilon || difference <= epsilon * Math.abs(want)) {
+                    position = tokenEnd;
+                    token++;
+                    return true;
+                }
+            }
+            mismatch = new Mismatch(tokenActualStart, tokenStart, tokenActualLine, expectedLine(tokenStart), token,
+                    "Output token differs from the expected one by more than " + epsilon);
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (position < limit && OutputTokenIndex.isWhitespace(expected.get(position))) {
+                position++;
+            }
+        }
+
+        private boolean failed(long actualAt, int expectedAt, String message) {
+            fail(actualAt, expectedAt, message);
+            return false;
+        }
+
+        private Mismatch fail(long actualAt, int expectedAt, String message) {
+            long tokenIndex = mode == Mode.TOKEN || mode == Mode.FLOAT ? token : -1;
+            mismatch = new Mismatch(actualAt, expectedAt, actualLine, expectedLine(expectedAt), tokenIndex, message);
+            return mismatch;
+        }
+
+        /**
+         * Counts the lines before an expected offset; only done once, for the mismatch.
+         */
+        private long expectedLine(int offset) {
+            if (offset >= limit) {
+                return 0;
+            }
+            long line = 1;
+            for (int i = 0; i < offset; i++) {
+                if (expected.get(i) == '\n') {
+                    line++;
+                }
+            }
+            return line;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.codearena.backend.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Pre-tokenized form of an expected output, built once when the output is stored so that
+ * checkers compare against it without re-reading and splitting the text.
+ *
+ * Layout (big-endian, fixed-width so a file can be memory-mapped as is):
+ * - Header: int magic "CATI", int version, long token count, long line count, long data length
+ * - Data: every token of the output in order, each followed by one separator byte: a space
+ *   if the next token is on the same line, a newline after the last token of a line
+ * - Line table: for every line holding a token, a long offset of its first token in the data
+ *   and the long 1-based number of the line in the original output
+ *
+ * The data is itself whitespace-normalized text, so OutputComparator's token modes compare an
+ * actual output with it in a single linear scan; the line table maps a position back to the
+ * original line.
+ */
+public final class OutputTokenIndex {
+
+    /** File name under which judges cache the index of a test case's output. */
+    public static final String FILE_NAME = "output.tokens";
+
+    static final int MAGIC = 0x43415449; // "CATI"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    private static final int LINE_ENTRY_BYTES = 16;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final OutputComparator TOKENS = OutputComparator.of(OutputComparator.Mode.TOKEN);
+
+    private final ByteBuffer data;
+    private final ByteBuffer lines;
+    private final long tokenCount;
+    private final int lineCount;
+
+    private OutputTokenIndex(ByteBuffer data, ByteBuffer lines, long tokenCount, int lineCount) {
+        this.data = data;
+        this.lines = lines;
+        this.tokenCount = tokenCount;
+        this.lineCount = lineCount;
+    }
+
+    /**
+     * Tokenizes an output and writes its index to a file, streaming: neither the output nor
+     * the index is held in memory.
+     * @param output The raw output; read to the end but not closed
+     * @param target The index file to create or replace
+     * @return The size of the index in bytes
+     * @throws IOException If the output cannot be read or the index cannot be written
+     */
+    public static long write(InputStream output, Path target) throws IOException {
+        Path lineFile = Files.createTempFile(target.toAbsolutePath().getParent(), "lines-", ".tmp");
+        try {
+            long tokens = 0;
+            long lineEntries = 0;
+            long offset = 0;
+            try (OutputStream data = new BufferedOutputStream(Files.newOutputStream(target), BUFFER_BYTES);
+                 DataOutputStream lines = new DataOutputStream(
+                         new BufferedOutputStream(Files.newOutputStream(lineFile), BUFFER_BYTES))) {
+                data.write(new byte[HEADER_BYTES]);
+                byte[] buffer = new byte[BUFFER_BYTES];
+                long line = 1;
+                boolean lineHasToken = false;
+                boolean inToken = false;
+                int read;
+                while ((read = output.read(buffer)) > 0) {
+                    int runStart = -1;
+                    for (int i = 0; i < read; i++) {
+                        byte b = buffer[i];
+                        if (isWhitespace(b)) {
+                            if (runStart >= 0) {
+                                data.write(buffer, runStart, i - runStart);
+                                offset += i - runStart;
+                                runStart = -1;
+                            }
+                            inToken = false;
+                            if (b == '\n') {
+                                line++;
+                                lineHasToken = false;
+                            }
+                        } else if (!inToken) {
+                            if (tokens > 0) {
+                                data.write(lineHasToken ? ' ' : '\n');
+                                offset++;
+                            }
+                            if (!lineHasToken) {
+                                lines.writeLong(offset);
+                                lines.writeLong(line);
+                                lineEntries++;
+                                lineHasToken = true;
+                            }
+                            tokens++;
+                            inToken = true;
+                            runStart = i;
+                        } else if (runStart < 0) {
+                            runStart = i; // Token continued from the previous chunk
+                        }
+                    }
+                    if (runStart >= 0) {
+                        data.write(buffer, runStart, read - runStart);
+                        offset += read - runStart;
+                    }
+                }
+                if (tokens > 0) {
+                    data.write('\n');
+                    offset++;
+                }
+            }
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                channel.position(channel.size());
+                try (FileChannel lineChannel = FileChannel.open(lineFile, StandardOpenOption.READ)) {
+                    long size = lineChannel.size();
+                    for (long copied = 0; copied < size; ) {
+                        copied += lineChannel.transferTo(copied, size - copied, channel);
+                    }
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                        .putInt(MAGIC).putInt(VERSION).putLong(tokens).putLong(lineEntries).putLong(offset)
+                        .flip();
+                channel.write(header, 0);
+                return channel.size();
+            }
+        } finally {
+            Files.deleteIfExists(lineFile);
+        }
+    }
+
+    /**
+     * Memory-maps an index file.
+     * @param file The index file
+     * @return The index
+     * @throws IOException If the file cannot be mapped or is not a valid index
+     */
+    public static OutputTokenIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Token index " + file + " is too large to map");
+            }
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads an index from a buffer holding a whole index file.
+     * @param buffer The buffer, from its position to its limit
+     * @return The index, sharing the buffer's content
+     * @throws IOException If the buffer does not hold a valid index
+     */
+    public static OutputTokenIndex wrap(ByteBuffer buffer) throws IOException {
+        ByteBuffer index = buffer.slice();
+        if (index.remaining() < HEADER_BYTES || index.getInt(0) != MAGIC) {
+            throw new IOException("Not a token index");
+        }
+        if (index.getInt(4) != VERSION) {
+            throw new IOException("Unsupported token index version " + index.getInt(4));
+        }
+        long tokens = index.getLong(8);
+        long lineEntries = index.getLong(16);
+        long dataLength = index.getLong(24);
+        if (tokens < 0 || lineEntries < 0 || dataLength < 0
+                || HEADER_BYTES + dataLength + lineEntries * LINE_ENTRY_BYTES != index.remaining()) {
+            throw new IOException("Truncated or corrupt token index");
+        }
+        ByteBuffer data = index.slice(HEADER_BYTES, (int) dataLength).asReadOnlyBuffer();
+        ByteBuffer lines = index.slice(HEADER_BYTES + (int) dataLength, (int) (lineEntries * LINE_ENTRY_BYTES))
+                .asReadOnlyBuffer();
+        return new OutputTokenIndex(data, lines, tokens, (int) lineEntries);
+    }
+
+    /**
+     * Gets the number of tokens in the output.
+     * @return The token count
+     */
+    public long tokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Gets the number of lines holding at least one token.
+     * @return The line count
+     */
+    public int lineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Gets the normalized token data.
+     * @return A read-only view of the data, positioned at its start
+     */
+    public ByteBuffer data() {
+        return data.duplicate();
+    }
+
+    /**
+     * Gets the line of the original output a data offset falls on.
+     * @param dataOffset Offset into the data
+     * @return The 1-based line number, or 0 for an offset at or past the end of the data
+     */
+    public long lineAt(long dataOffset) {
+        if (dataOffset < 0 || dataOffset >= data.limit() || lineCount == 0) {
+            return 0;
+        }
+        // Last line entry starting at or before the offset
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lines.getLong(mid * LINE_ENTRY_BYTES) <= dataOffset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return lines.getLong(low * LINE_ENTRY_BYTES + 8);
+    }
+
+    /**
+     * Compares an actual output with the expected tokens, ignoring how either is spaced.
+     * Scans both once and stops at the first difference; no memory is allocated per token.
+     * @param actual The actual output; read up to the first difference but not closed
+     * @return The first difference, or null if the outputs have the same tokens
+     * @throws IOException If the actual output cannot be read
+     */
+    public OutputComparator.Mismatch compare(ReadableByteChannel actual) throws IOException {
+        return TOKENS.compare(this, actual);
+    }
+
+    /**
+     * Tells whether a byte separates tokens: space, tab, line feed, vertical tab, form feed
+     * or carriage return.
+     * @param b The byte
+     * @return Whether it is whitespace
+     */
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r');
+    }
+}
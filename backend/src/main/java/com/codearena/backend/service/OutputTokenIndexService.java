@@ -0,0 +1,113 @@
+package com.codearena.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds the token indexes (see OutputTokenIndex) of expected outputs when they are stored.
+ *
+ * Indexes are derived from output blobs and stored next to them as tokens/{sha256}, so an
+ * output shared by several test cases is indexed once, and an index is deleted with its blob.
+ * Building runs in the background and never fails an upload: a judge that finds no index
+ * builds one locally from the output it fetched.
+ */
+@Service
+public class OutputTokenIndexService {
+
+    /**
+     * Opens the raw content of an output.
+     */
+    @FunctionalInterface
+    interface OutputSource {
+        InputStream open() throws IOException;
+    }
+
+    private final CloudStorageService cloudStorageService;
+    private final boolean enabled;
+    private final ExecutorService executor;
+    private final Set<String> building = ConcurrentHashMap.newKeySet();
+
+    public OutputTokenIndexService(CloudStorageService cloudStorageService,
+                                   @Value("${testcase.token-index.enabled:true}") boolean enabled) {
+        this.cloudStorageService = cloudStorageService;
+        this.enabled = enabled;
+        this.executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("testcase-token-index-"));
+    }
+
+    /**
+     * Stops the index executor on shutdown.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Indexes an output whose content is at hand, in the background.
+     * @param sha256 Hex SHA-256 of the output blob
+     * @param content The output content
+     */
+    public void indexOutput(String sha256, String content) {
+        submit(sha256, () -> new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Indexes a stored output in the background, streaming it from its blob.
+     * @param sha256 Hex SHA-256 of the output blob
+     */
+    public void indexStoredOutput(String sha256) {
+        submit(sha256, () -> cloudStorageService.openBlob(sha256));
+    }
+
+    /**
+     * Builds and stores the index of an output unless it exists already.
+     * @param sha256 Hex SHA-256 of the output blob
+     * @param source The output content
+     * @return Whether an index was built
+     * @throws IOException If the output cannot be read or the index cannot be stored
+     */
+    boolean ensureIndex(String sha256, OutputSource source) throws IOException {
+        if (cloudStorageService.hasTokenIndex(sha256)) {
+            return false;
+        }
+        Path file = Files.createTempFile("token-index-", ".bin");
+        try {
+            try (InputStream in = source.open()) {
+                OutputTokenIndex.write(in, file);
+            }
+            cloudStorageService.writeTokenIndex(sha256, file);
+            return true;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void submit(String sha256, OutputSource source) {
+        // An index already being built for this content is not built twice
+        if (!enabled || sha256 == null || !building.add(sha256)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                ensureIndex(sha256, source);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to build token index of blob " + sha256 + ": " + e.getMessage());
+            } finally {
+                building.remove(sha256);
+            }
+        });
+    }
+}
@@ -4,15 +4,22 @@ import com.codearena.backend.dto.ProblemCreateDTO;
 import com.codearena.backend.dto.ProblemUpdateDTO;
 import com.codearena.backend.dto.ProblemResponseDTO;
 import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.ScoringMode;
+import com.codearena.backend.entity.TestCase;
 import com.codearena.backend.entity.User;
 import com.codearena.backend.repository.ProblemRepository;
+import com.codearena.backend.repository.SubmissionRepository;
+import com.codearena.backend.repository.SubmissionTestResultRepository;
+import com.codearena.backend.repository.TestCaseRepository;
 import com.codearena.backend.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.security.access.AccessDeniedException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -25,11 +32,22 @@ import java.util.stream.Collectors;
 public class ProblemService {
     private final ProblemRepository problemRepository;
     private final UserRepository userRepository;
+    private final TestCaseRepository testCaseRepository;
+    private final CloudStorageService cloudStorageService;
+    private final SubmissionRepository submissionRepository;
+    private final SubmissionTestResultRepository submissionTestResultRepository;
 
     @Autowired
-    public ProblemService(ProblemRepository problemRepository, UserRepository userRepository) {
+    public ProblemService(ProblemRepository problemRepository, UserRepository userRepository,
+                          TestCaseRepository testCaseRepository, CloudStorageService cloudStorageService,
+                          SubmissionRepository submissionRepository,
+                          SubmissionTestResultRepository submissionTestResultRepository) {
         this.problemRepository = problemRepository;
         this.userRepository = userRepository;
+        this.testCaseRepository = testCaseRepository;
+        this.cloudStorageService = cloudStorageService;
+        this.submissionRepository = submissionRepository;
+        this.submissionTestResultRepository = submissionTestResultRepository;
     }
 
     /**
@@ -45,6 +63,7 @@ public class ProblemService {
                 .difficulty(dto.getDifficulty())
                 .timeLimitMillis(dto.getTimeLimitMillis())
                 .memoryLimitMB(dto.getMemoryLimitMB())
+                .scoringMode(dto.getScoringMode() != null ? scoringMode(dto.getScoringMode()) : ScoringMode.ICPC)
                 .tags(dto.getTags() != null ? dto.getTags() : Set.of())
                 .isPublic(Boolean.TRUE.equals(dto.getIsPublic()))
                 .createdBy(creator)
@@ -74,6 +93,7 @@ public class ProblemService {
         problem.setDifficulty(dto.getDifficulty());
         problem.setTimeLimitMillis(dto.getTimeLimitMillis());
         problem.setMemoryLimitMB(dto.getMemoryLimitMB());
+        if (dto.getScoringMode() != null) problem.setScoringMode(scoringMode(dto.getScoringMode()));
         problem.setTags(dto.getTags() != null ? dto.getTags() : Set.of());
         if (dto.getIsPublic() != null) problem.setIsPublic(dto.getIsPublic());
         problem.setUpdatedAt(LocalDateTime.now());
@@ -83,6 +103,7 @@ public class ProblemService {
 
     /**
      * Deletes a problem by ID.
+     * Test case rows and submissions are removed with the problem; test files are purged in the background.
      * @param id Problem ID
      * @param deleter The user deleting the problem
      */
@@ -93,7 +114,23 @@ public class ProblemService {
         if (!problem.getCreatedBy().getFirebaseUid().equals(deleter.getFirebaseUid()) && !isAdmin(deleter)) {
             throw new AccessDeniedException("You do not have permission to delete this problem");
         }
+        List<String> blobHashes = new ArrayList<>();
+        for (TestCase testCase : testCaseRepository.findByProblemId(id)) {
+            if (testCase.getInputSha256() != null) {
+                blobHashes.add(testCase.getInputSha256());
+            }
+            if (testCase.getOutputSha256() != null) {
+                blobHashes.add(testCase.getOutputSha256());
+            }
+            if (testCase.isGenerated()) {
+                blobHashes.add(testCase.getGeneratorSha256());
+                blobHashes.add(testCase.getSolutionSha256());
+            }
+        }
+        submissionTestResultRepository.deleteByProblemId(id);
+        submissionRepository.deleteByProblemId(id);
         problemRepository.delete(problem);
+        cloudStorageService.purgeProblemFiles(id, blobHashes);
     }
 
     /**
@@ -129,6 +166,10 @@ public class ProblemService {
         return problems.stream().map(this::toResponseDTO).collect(Collectors.toList());
     }
 
+    private static ScoringMode scoringMode(String name) {
+        return ScoringMode.valueOf(name.trim().toUpperCase(Locale.ROOT)); // Validated by the DTO
+    }
+
     private boolean isAdmin(User user) {
         return user.getRoles().stream().anyMatch(r -> r.getName().equals("ADMIN"));
     }
@@ -145,6 +186,7 @@ public class ProblemService {
         dto.setDifficulty(problem.getDifficulty());
         dto.setTimeLimitMillis(problem.getTimeLimitMillis());
         dto.setMemoryLimitMB(problem.getMemoryLimitMB());
+        dto.setScoringMode(problem.getScoringMode() != null ? problem.getScoringMode().name() : ScoringMode.ICPC.name());
         dto.setTags(problem.getTags());
         dto.setIsPublic(problem.getIsPublic());
         dto.setCreatedBy(problem.getCreatedBy() != null ? problem.getCreatedBy().getDisplayName() : null);
@@ -0,0 +1,77 @@
+package com.codearena.backend.service;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Languages programs run by the platform (test generators, reference solutions) can be written in.
+ * Each language names its source file and the commands that compile and run it in a working
+ * directory; Java sources must declare a class Main.
+ */
+public enum ProgramLanguage {
+    C("main.c", List.of("gcc", "-O2", "-std=gnu11", "-o", "main", "main.c", "-lm"), List.of("./main")),
+    CPP("main.cpp", List.of("g++", "-O2", "-std=gnu++17", "-o", "main", "main.cpp"), List.of("./main")),
+    JAVA("Main.java", List.of("javac", "-encoding", "UTF-8", "Main.java"), List.of("java", "-Xss64m", "-cp", ".", "Main")),
+    PYTHON3("main.py", null, List.of("python3", "main.py"));
+
+    private final String sourceFileName;
+    private final List<String> compileCommand;
+    private final List<String> runCommand;
+
+    ProgramLanguage(String sourceFileName, List<String> compileCommand, List<String> runCommand) {
+        this.sourceFileName = sourceFileName;
+        this.compileCommand = compileCommand;
+        this.runCommand = runCommand;
+    }
+
+    /**
+     * Parses a language name, case-insensitively.
+     * @param name The language name: c, cpp, java or python3
+     * @return The language
+     * @throws IllegalArgumentException If the name is blank or unknown
+     */
+    public static ProgramLanguage fromName(String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Program language is required");
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown program language: " + name + " (expected c, cpp, java or python3)");
+        }
+    }
+
+    /**
+     * Gets the name of the source file in the working directory.
+     * @return The file name
+     */
+    public String getSourceFileName() {
+        return sourceFileName;
+    }
+
+    /**
+     * Gets the source file of a program.
+     * @param workDir The program's working directory
+     * @return The source path
+     */
+    public Path sourceFile(Path workDir) {
+        return workDir.resolve(sourceFileName);
+    }
+
+    /**
+     * Gets the command that compiles the source in the working directory.
+     * @return The command, or null for interpreted languages
+     */
+    public List<String> getCompileCommand() {
+        return compileCommand;
+    }
+
+    /**
+     * Gets the command that runs the compiled program in the working directory.
+     * @return The command, without program arguments
+     */
+    public List<String> getRunCommand() {
+        return runCommand;
+    }
+}
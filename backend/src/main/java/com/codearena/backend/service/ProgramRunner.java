@@ -0,0 +1,292 @@
+package com.codearena.backend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiles and runs programs in working directories on the local machine.
+ *
+ * Standard input and output are redirected to files, so program data never passes through
+ * the JVM heap. Runs are bounded by wall time; a program past its limit is killed together
+ * with its child processes. Runs can also be bounded in memory, and in the size of their
+ * output: the output file is checked every 10ms, and a program that has written past its
+ * limit is killed, so a program printing in a loop cannot fill the disk.
+ *
+ * With the CgroupSandbox enabled, runs go into their own cgroup instead: the time limit
+ * applies to CPU time (with wall time capped at twice the limit plus a second, for programs
+ * that sleep or block), memory is bounded by the kernel for the whole process tree, and
+ * results carry the CPU time and memory peak the kernel accounted. Compilation is not
+ * sandboxed.
+ */
+@Component
+public class ProgramRunner {
+
+    /** Tail of standard error kept in results; enough for compiler messages and stack traces. */
+    private static final int MAX_STDERR_BYTES = 8 * 1024;
+
+    /** Shortest wait between CPU time checks of a sandboxed run. */
+    private static final long MIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** Longest wait between output size checks of a run with an output limit. */
+    static final long OUTPUT_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Duration compileTimeLimit;
+    private final CgroupSandbox sandbox;
+
+    /**
+     * A program ready to run.
+     * @param language The language
+     * @param workDir The directory holding the source and compiled files
+     */
+    public record Program(ProgramLanguage language, Path workDir) {
+    }
+
+    /**
+     * Outcome of one run.
+     * @param exitCode The exit code, or -1 if the program was killed
+     * @param timedOut Whether the time limit was exceeded
+     * @param wallTime Elapsed wall time
+     * @param cpuTime CPU time of the program and its children, or null if not measured (no sandbox)
+     * @param memoryPeakBytes Most memory used at once, or -1 if not measured
+     * @param outOfMemory Whether the sandbox killed the program for exceeding its memory limit
+     * @param outputLimitExceeded Whether the program wrote more output than its limit
+     * @param stderr Tail of standard error
+     */
+    public record RunResult(int exitCode, boolean timedOut, Duration wallTime, Duration cpuTime,
+                            long memoryPeakBytes, boolean outOfMemory, boolean outputLimitExceeded, String stderr) {
+
+        /**
+         * Tells whether the program finished in time and within its output limit with exit code 0.
+         * @return Whether the run succeeded
+         */
+        public boolean succeeded() {
+            return !timedOut && !outputLimitExceeded && exitCode == 0;
+        }
+
+        /**
+         * Gets the time the run is judged by: CPU time when measured, wall time otherwise.
+         * @return The run time
+         */
+        public Duration time() {
+            return cpuTime != null ? cpuTime : wallTime;
+        }
+    }
+
+    /**
+     * Creates a runner that runs programs directly, without a sandbox.
+     * @param compileTimeLimit Wall time limit for compilers
+     */
+    public ProgramRunner(Duration compileTimeLimit) {
+        this(compileTimeLimit, null);
+    }
+
+    @Autowired
+    public ProgramRunner(@Value("${judge.compile.time-limit:PT30S}") Duration compileTimeLimit,
+                         CgroupSandbox sandbox) {
+        this.compileTimeLimit = compileTimeLimit;
+        this.sandbox = sandbox;
+    }
+
+    /**
+     * Compiles a program whose source is already in its working directory.
+     * @param language The language
+     * @param workDir The working directory holding language.sourceFile(workDir)
+     * @return The compiled program
+     * @throws IllegalArgumentException If compilation fails; the message carries the compiler output
+     * @throws IOException If the compiler cannot be started
+     */
+    public Program compile(ProgramLanguage language, Path workDir) throws IOException {
+        if (language.getCompileCommand() != null) {
+            RunResult result = execute(language.getCompileCommand(), workDir, null, null, compileTimeLimit, 0, null);
+            if (!result.succeeded()) {
+                throw new IllegalArgumentException("Compilation failed" + (result.timedOut() ? " (time limit exceeded)" : "")
+                        + ": " + result.stderr());
+            }
+        }
+        return new Program(language, workDir);
+    }
+
+    /**
+     * Runs a compiled program.
+     * @param program The program
+     * @param args Program arguments
+     * @param stdin File to read standard input from, or null for none
+     * @param stdout File to write standard output to
+     * @param timeLimit Wall time limit
+     * @return The outcome
+     * @throws IOException If the program cannot be started
+     */
+    public RunResult run(Program program, List<String> args, Path stdin, Path stdout, Duration timeLimit)
+            throws IOException {
+        return run(program, args, stdin, stdout, timeLimit, 0);
+    }
+
+    /**
+     * Runs a compiled program with bounded memory. Java programs get the limit as their
+     * maximum heap. Without the sandbox, others run under an address space limit
+     * (ulimit -v), so an allocation past it fails inside the program; in the sandbox the
+     * kernel kills the program once it uses more, and the result reports outOfMemory.
+     * @param program The program
+     * @param args Program arguments
+     * @param stdin File to read standard input from, or null for none
+     * @param stdout File to write standard output to
+     * @param timeLimit Time limit: CPU time in the sandbox, wall time otherwise
+     * @param memoryLimitBytes Memory limit in bytes, or 0 for none
+     * @return The outcome
+     * @throws IOException If the program cannot be started
+     */
+    public RunResult run(Program program, List<String> args, Path stdin, Path stdout, Duration timeLimit,
+                         long memoryLimitBytes) throws IOException {
+        return run(program, args, stdin, stdout, timeLimit, memoryLimitBytes, 0);
+    }
+
+    /**
+     * Runs a compiled program with bounded memory and output. A program whose output grows
+     * past the limit is killed, and the result reports outputLimitExceeded.
+     * @param program The program
+     * @param args Program arguments
+     * @param stdin File to read standard input from, or null for none
+     * @param stdout File to write standard output to
+     * @param timeLimit Time limit: CPU time in the sandbox, wall time otherwise
+     * @param memoryLimitBytes Memory limit in bytes, or 0 for none
+     * @param outputLimitBytes Output limit in bytes, or 0 for none
+     * @return The outcome
+     * @throws IOException If the program cannot be started
+     */
+    public RunResult run(Program program, List<String> args, Path stdin, Path stdout, Duration timeLimit,
+                         long memoryLimitBytes, long outputLimitBytes) throws IOException {
+        List<String> command = new ArrayList<>(program.language().getRunCommand());
+        command.addAll(args);
+        if (sandbox != null && sandbox.isEnabled()) {
+            if (memoryLimitBytes > 0 && program.language() == ProgramLanguage.JAVA) {
+                command = limitMemory(program.language(), command, memoryLimitBytes);
+            }
+            try (CgroupSandbox.Group group = sandbox.createGroup(memoryLimitBytes)) {
+                return execute(group.wrap(command), program.workDir(), stdin, stdout, timeLimit, outputLimitBytes,
+                        group);
+            }
+        }
+        if (memoryLimitBytes > 0) {
+            command = limitMemory(program.language(), command, memoryLimitBytes);
+        }
+        return execute(command, program.workDir(), stdin, stdout, timeLimit, outputLimitBytes, null);
+    }
+
+    private static List<String> limitMemory(ProgramLanguage language, List<String> command, long memoryLimitBytes) {
+        if (language == ProgramLanguage.JAVA) {
+            command.add(1, "-Xmx" + Math.max(1, memoryLimitBytes >> 20) + "m");
+            return command;
+        }
+        List<String> limited = new ArrayList<>(List.of("sh", "-c",
+                "ulimit -v " + Math.max(1, memoryLimitBytes >> 10) + " && exec \"$@\"", "sh"));
+        limited.addAll(command);
+        return limited;
+    }
+
+    private static RunResult execute(List<String> command, Path workDir, Path stdin, Path stdout, Duration timeLimit,
+                                     long outputLimitBytes, CgroupSandbox.Group group) throws IOException {
+        Path stderr = Files.createTempFile(workDir, "stderr-", ".txt");
+        try {
+            ProcessBuilder builder = new ProcessBuilder(command)
+                    .directory(workDir.toFile())
+                    .redirectError(stderr.toFile());
+            builder.redirectInput(stdin != null ? ProcessBuilder.Redirect.from(stdin.toFile())
+                    : ProcessBuilder.Redirect.from(nullFile()));
+            builder.redirectOutput(stdout != null ? ProcessBuilder.Redirect.to(stdout.toFile())
+                    : ProcessBuilder.Redirect.DISCARD);
+            long start = System.nanoTime();
+            Process process = builder.start();
+            long outputLimit = stdout != null ? outputLimitBytes : 0;
+            boolean finished;
+            try {
+                finished = waitFor(process, group, timeLimit, stdout, outputLimit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                kill(process);
+                throw new IOException("Interrupted while running " + command.get(0), e);
+            }
+            Duration wallTime = Duration.ofNanos(System.nanoTime() - start);
+            if (!finished) {
+                kill(process);
+            }
+            int exitCode = finished ? process.exitValue() : -1;
+            boolean outputLimitExceeded = outputLimit > 0 && Files.size(stdout) > outputLimit;
+            if (group == null) {
+                return new RunResult(exitCode, !finished && !outputLimitExceeded, wallTime, null, -1, false,
+                        outputLimitExceeded, tail(stderr));
+            }
+            Duration cpuTime = group.cpuTime();
+            boolean timedOut = !outputLimitExceeded && (!finished || cpuTime.compareTo(timeLimit) > 0);
+            return new RunResult(exitCode, timedOut, wallTime, cpuTime, group.memoryPeakBytes(),
+                    group.outOfMemory(), outputLimitExceeded, tail(stderr));
+        } finally {
+            Files.deleteIfExists(stderr);
+        }
+    }
+
+    /**
+     * Waits until a program exits, runs out of time, or writes past its output limit. Outside
+     * the sandbox the limit is wall time. In the sandbox it is CPU time: limited to one CPU,
+     * the group cannot use more CPU time than the wall time waited, so the wait sleeps through
+     * whatever CPU time is left instead of polling, unless output has to be checked.
+     * @return Whether the program exited within its limits
+     */
+    private static boolean waitFor(Process process, CgroupSandbox.Group group, Duration timeLimit, Path stdout,
+                                   long outputLimitBytes) throws IOException, InterruptedException {
+        Duration wallLimit = group != null ? timeLimit.multipliedBy(2).plusSeconds(1) : timeLimit;
+        long deadline = System.nanoTime() + wallLimit.toNanos();
+        while (true) {
+            long left = deadline - System.nanoTime();
+            if (group != null) {
+                left = Math.min(left, timeLimit.minus(group.cpuTime()).toNanos());
+            }
+            if (left <= 0) {
+                return false;
+            }
+            long wait = Math.max(left, MIN_WAIT_NANOS);
+            if (outputLimitBytes > 0) {
+                wait = Math.min(wait, OUTPUT_CHECK_NANOS);
+            }
+            if (process.waitFor(wait, TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+            if (outputLimitBytes > 0 && Files.size(stdout) > outputLimitBytes) {
+                return false;
+            }
+        }
+    }
+
+    private static void kill(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+        try {
+            process.waitFor(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static File nullFile() {
+        return new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null");
+    }
+
+    private static String tail(Path file) throws IOException {
+        long size = Files.size(file);
+        try (InputStream in = Files.newInputStream(file)) {
+            in.skipNBytes(Math.max(0, size - MAX_STDERR_BYTES));
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,536 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.StoredBlob;
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.repository.StoredBlobRepository;
+import com.codearena.backend.repository.TestCaseRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Periodically reconciles test case storage with the database.
+ *
+ * Uploads and deletes tolerate storage failures, which leaves rows without files and files
+ * without rows behind. Four object families are checked:
+ * - blobs/{sha256} against StoredBlob rows
+ * - tokens/{sha256}, token indexes derived from blobs, against the same rows; a blob
+ *   without an index is not a finding, since indexes can be built later
+ * - legacy testcases/{problemId}/{testCaseId}/{fileName} against the TestCase rows still using it
+ * - staging/{id}, which only exists while a streamed upload is being promoted
+ *
+ * Each family is walked as two streams in the same sorted key order, the storage listing and
+ * a keyset-paginated query, and merged like a sort-merge join, so memory stays flat however
+ * many objects there are. The next page of each side is fetched while the current one is
+ * merged, and the blob and legacy walks run in parallel.
+ *
+ * Findings:
+ * - Orphans (objects no row refers to) are reported. With testcase.reconcile.delete-orphans
+ *   they are deleted once seen in two consecutive runs, so an upload in flight is never touched.
+ * - Missing files (rows whose object is gone) are reported.
+ * - Legacy test cases whose recorded sizes disagree with storage are corrected.
+ * - Blobs whose size disagrees with their row are reported as corrupt; blobs never change.
+ *
+ * Run it on one node only. Metrics (Micrometer) describe the last run:
+ * testcase.reconcile.orphans, testcase.reconcile.missing, testcase.reconcile.size.fixes,
+ * testcase.reconcile.corrupt.
+ */
+@Service
+@ConditionalOnProperty(name = "testcase.reconcile.enabled", havingValue = "true", matchIfMissing = true)
+public class StorageReconciler {
+
+    /** Objects and rows fetched per page on each side of a merge. */
+    static final int PAGE_SIZE = 1000;
+
+    /** Orphans remembered between runs; beyond this, further orphans are only reported. */
+    static final int MAX_TRACKED_ORPHANS = 100_000;
+
+    /** Findings of one kind logged individually per walk; the rest only count. */
+    private static final int MAX_LOGGED_FINDINGS = 20;
+
+    private static final String BLOB_PREFIX = "blobs/";
+    private static final String LEGACY_PREFIX = "testcases/";
+    private static final String STAGING_PREFIX = "staging/";
+    private static final String TOKEN_PREFIX = "tokens/";
+
+    /**
+     * Outcome of one reconciliation run.
+     * @param startedAt When the run started
+     * @param duration How long it took
+     * @param objectsScanned Objects listed from storage
+     * @param rowsScanned Database rows read
+     * @param orphans Objects no row refers to
+     * @param orphansDeleted Orphans deleted in this run
+     * @param missing Files whose object is gone
+     * @param sizesFixed Test cases whose recorded sizes were corrected
+     * @param corrupt Blobs whose size disagrees with their row
+     */
+    public record Report(Instant startedAt, Duration duration, long objectsScanned, long rowsScanned,
+                         int orphans, int orphansDeleted, int missing, int sizesFixed, int corrupt) {
+    }
+
+    /**
+     * Counts of one walk; each walk runs on a single thread.
+     */
+    private static final class Tally {
+        final String family;
+        final List<String> pendingDeletes = new ArrayList<>();
+        final Map<String, Integer> logged = new LinkedHashMap<>();
+        long objects;
+        long rows;
+        int orphans;
+        int orphansDeleted;
+        int missing;
+        int sizesFixed;
+        int corrupt;
+
+        Tally(String family) {
+            this.family = family;
+        }
+    }
+
+    private record Page<T>(List<T> items, String nextToken) {
+    }
+
+    private final CloudStorageService cloudStorageService;
+    private final TestCaseRepository testCaseRepository;
+    private final StoredBlobRepository storedBlobRepository;
+    private final boolean deleteOrphans;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Set<String> previousOrphans = Set.of();
+    private volatile Report lastReport;
+
+    public StorageReconciler(CloudStorageService cloudStorageService,
+                             TestCaseRepository testCaseRepository,
+                             StoredBlobRepository storedBlobRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${testcase.reconcile.delete-orphans:false}") boolean deleteOrphans) {
+        this.cloudStorageService = cloudStorageService;
+        this.testCaseRepository = testCaseRepository;
+        this.storedBlobRepository = storedBlobRepository;
+        this.deleteOrphans = deleteOrphans;
+        // The legacy walk plus one page prefetch per walk; nothing queued here ever waits on another task
+        this.executor = Executors.newFixedThreadPool(3, new CustomizableThreadFactory("testcase-reconcile-"));
+        Gauge.builder("testcase.reconcile.orphans", this, r -> r.lastValue(Report::orphans)).register(meterRegistry);
+        Gauge.builder("testcase.reconcile.missing", this, r -> r.lastValue(Report::missing)).register(meterRegistry);
+        Gauge.builder("testcase.reconcile.size.fixes", this, r -> r.lastValue(Report::sizesFixed)).register(meterRegistry);
+        Gauge.builder("testcase.reconcile.corrupt", this, r -> r.lastValue(Report::corrupt)).register(meterRegistry);
+    }
+
+    /**
+     * Stops the reconciler executor on shutdown.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs a reconciliation on schedule. Failures are logged; the next run starts over.
+     */
+    @Scheduled(fixedDelayString = "${testcase.reconcile.interval:PT6H}",
+            initialDelayString = "${testcase.reconcile.initial-delay:PT10M}")
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            System.err.println("Storage reconciliation failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reconciles storage with the database once.
+     * @return The report of the run
+     * @throws IOException If storage cannot be listed
+     * @throws IllegalStateException If a run is already in progress
+     */
+    public Report reconcile() throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A storage reconciliation is already running");
+        }
+        try {
+            Instant startedAt = Instant.now();
+            Set<String> orphans = ConcurrentHashMap.newKeySet();
+            CompletableFuture<Tally> legacy = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return reconcileLegacy(orphans);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor);
+            Tally blobs;
+            Tally staging;
+            Tally tokens;
+            try {
+                blobs = reconcileBlobs(orphans);
+                staging = reconcileStaging(orphans);
+                tokens = reconcileTokenIndexes(orphans);
+            } finally {
+                // Never leave the legacy walk running into the next run
+                await(legacy.exceptionally(t -> null));
+            }
+            List<Tally> tallies = List.of(blobs, await(legacy), staging, tokens);
+            previousOrphans = orphans;
+            Report report = new Report(startedAt, Duration.between(startedAt, Instant.now()),
+                    tallies.stream().mapToLong(t -> t.objects).sum(),
+                    tallies.stream().mapToLong(t -> t.rows).sum(),
+                    tallies.stream().mapToInt(t -> t.orphans).sum(),
+                    tallies.stream().mapToInt(t -> t.orphansDeleted).sum(),
+                    tallies.stream().mapToInt(t -> t.missing).sum(),
+                    tallies.stream().mapToInt(t -> t.sizesFixed).sum(),
+                    tallies.stream().mapToInt(t -> t.corrupt).sum());
+            lastReport = report;
+            System.out.println("Storage reconciliation finished: " + report);
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Gets the report of the last completed run.
+     * @return The report, or null if no run has completed yet
+     */
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    private Tally reconcileBlobs(Set<String> orphans) throws IOException {
+        Tally tally = new Tally("blobs");
+        Cursor<TestCaseStorage.StoredObject> objects = objectCursor(BLOB_PREFIX);
+        Cursor<StoredBlob> rows = rowCursor(after -> storedBlobRepository.findBySha256GreaterThanOrderBySha256Asc(
+                after, PageRequest.of(0, PAGE_SIZE)), StoredBlob::getSha256);
+        while (objects.peek() != null || rows.peek() != null) {
+            TestCaseStorage.StoredObject object = objects.peek();
+            StoredBlob row = rows.peek();
+            int order = object == null ? 1
+                    : row == null ? -1
+                    : object.name().substring(BLOB_PREFIX.length()).compareTo(row.getSha256());
+            if (order < 0) {
+                tally.objects++;
+                orphan(objects.take().name(), orphans, tally);
+            } else if (order > 0) {
+                tally.rows++;
+                rows.take();
+                tally.missing++;
+                log(tally, "missing", "Blob " + row.getSha256() + " is registered with " + row.getRefCount()
+                        + " reference(s) but missing from storage");
+            } else {
+                tally.objects++;
+                tally.rows++;
+                objects.take();
+                rows.take();
+                if (object.size() != row.getStoredSize()) {
+                    tally.corrupt++;
+                    log(tally, "corrupt", "Blob " + row.getSha256() + " is " + object.size()
+                            + " bytes in storage but was stored as " + row.getStoredSize());
+                }
+            }
+            flushDeletes(tally, false, this::isUnregisteredBlob);
+        }
+        flushDeletes(tally, true, this::isUnregisteredBlob);
+        return tally;
+    }
+
+    private Tally reconcileLegacy(Set<String> orphans) throws IOException {
+        Tally tally = new Tally("legacy");
+        Cursor<TestCaseStorage.StoredObject> objects = objectCursor(LEGACY_PREFIX);
+        Cursor<TestCase> rows = rowCursor(after -> testCaseRepository.findLegacyAfter(
+                after, PageRequest.of(0, PAGE_SIZE)), StorageReconciler::legacyKey);
+        while (objects.peek() != null || rows.peek() != null) {
+            String objectKey = objects.peek() != null ? legacyKey(objects.peek().name()) : null;
+            TestCase row = rows.peek();
+            int order = objectKey == null ? 1
+                    : row == null ? -1
+                    : objectKey.compareTo(legacyKey(row));
+            if (order < 0) {
+                tally.objects++;
+                orphan(objects.take().name(), orphans, tally);
+            } else {
+                // All objects of the row's prefix are consecutive in the listing
+                Map<String, TestCaseStorage.StoredObject> files = new LinkedHashMap<>();
+                while (order == 0 && objects.peek() != null && legacyKey(objects.peek().name()).equals(objectKey)) {
+                    TestCaseStorage.StoredObject object = objects.take();
+                    files.put(object.name(), object);
+                }
+                tally.objects += files.size();
+                tally.rows++;
+                rows.take();
+                checkLegacyFiles(row, files, orphans, tally);
+            }
+            flushDeletes(tally, false, name -> true);
+        }
+        flushDeletes(tally, true, name -> true);
+        return tally;
+    }
+
+    private Tally reconcileStaging(Set<String> orphans) throws IOException {
+        // Staging objects are moved or deleted right after their upload; any that stay are orphans
+        Tally tally = new Tally("staging");
+        Cursor<TestCaseStorage.StoredObject> objects = objectCursor(STAGING_PREFIX);
+        while (objects.peek() != null) {
+            tally.objects++;
+            orphan(objects.take().name(), orphans, tally);
+            flushDeletes(tally, false, name -> true);
+        }
+        flushDeletes(tally, true, name -> true);
+        return tally;
+    }
+
+    private Tally reconcileTokenIndexes(Set<String> orphans) throws IOException {
+        // An index is an orphan once its blob is gone; rows only advance the merge
+        Tally tally = new Tally("tokens");
+        Cursor<TestCaseStorage.StoredObject> objects = objectCursor(TOKEN_PREFIX);
+        Cursor<StoredBlob> rows = rowCursor(after -> storedBlobRepository.findBySha256GreaterThanOrderBySha256Asc(
+                after, PageRequest.of(0, PAGE_SIZE)), StoredBlob::getSha256);
+        while (objects.peek() != null) {
+            TestCaseStorage.StoredObject object = objects.peek();
+            StoredBlob row = rows.peek();
+            int order = row == null ? -1 : object.name().substring(TOKEN_PREFIX.length()).compareTo(row.getSha256());
+            if (order > 0) {
+                tally.rows++;
+                rows.take();
+                continue;
+            }
+            tally.objects++;
+            objects.take();
+            if (order < 0) {
+                orphan(object.name(), orphans, tally);
+            } else {
+                tally.rows++;
+                rows.take();
+            }
+            flushDeletes(tally, false, this::isUnregisteredTokenIndex);
+        }
+        flushDeletes(tally, true, this::isUnregisteredTokenIndex);
+        return tally;
+    }
+
+    /**
+     * Compares a legacy test case with the objects under its prefix: reports missing files,
+     * treats unexpected objects as orphans, and corrects drifted sizes.
+     */
+    private void checkLegacyFiles(TestCase testCase, Map<String, TestCaseStorage.StoredObject> objects,
+                                  Set<String> orphans, Tally tally) throws IOException {
+        String[] fileNames = {testCase.getInputFileName(), testCase.getOutputFileName()};
+        String[] sha256s = {testCase.getInputSha256(), testCase.getOutputSha256()};
+        Long[] rawSizes = {testCase.getInputFileSize(), testCase.getOutputFileSize()};
+        TestCaseStorage.StoredObject[] legacy = new TestCaseStorage.StoredObject[2];
+        long storedSize = 0;
+        boolean complete = true;
+        for (int i = 0; i < 2; i++) {
+            if (sha256s[i] != null) {
+                // This half already moved to a blob; the blob walk checks it
+                CloudStorageService.StoredFile blob = cloudStorageService.describeBlob(sha256s[i]);
+                if (blob == null) {
+                    complete = false;
+                } else {
+                    storedSize += blob.storedSize();
+                    rawSizes[i] = blob.rawSize();
+                }
+                continue;
+            }
+            String name = CloudStorageService.objectName(testCase.getProblem().getId(), testCase.getId(), fileNames[i]);
+            legacy[i] = objects.remove(name);
+            if (legacy[i] == null) {
+                complete = false;
+                tally.missing++;
+                log(tally, "missing", "Test case " + testCase.getId() + " is missing " + name);
+            } else {
+                storedSize += legacy[i].size();
+            }
+        }
+        for (String name : objects.keySet()) {
+            orphan(name, orphans, tally);
+        }
+        if (!complete || Objects.equals(testCase.getStoredFileSize(), storedSize)) {
+            return;
+        }
+        // Uncompressed objects give the raw size too; compressed ones keep the recorded raw size
+        for (int i = 0; i < 2; i++) {
+            if (legacy[i] != null && cloudStorageService.detectStoredCodec(legacy[i].name()) == TestCaseCodec.NONE) {
+                rawSizes[i] = legacy[i].size();
+            }
+        }
+        Long fileSize = rawSizes[0] != null && rawSizes[1] != null ? rawSizes[0] + rawSizes[1] : testCase.getFileSize();
+        long generation = testCase.getContentGeneration() != null ? testCase.getContentGeneration() : 0L;
+        // Skipped if the files were rewritten since the row was read
+        if (testCaseRepository.updateFileSizes(testCase.getId(), generation,
+                rawSizes[0], rawSizes[1], fileSize, storedSize) > 0) {
+            tally.sizesFixed++;
+            log(tally, "size", "Corrected sizes of test case " + testCase.getId() + ": stored "
+                    + testCase.getStoredFileSize() + " -> " + storedSize + ", raw " + testCase.getFileSize() + " -> " + fileSize);
+        }
+    }
+
+    /**
+     * Reports an orphan and queues it for deletion if it was already an orphan in the previous run.
+     */
+    private void orphan(String objectName, Set<String> orphans, Tally tally) {
+        tally.orphans++;
+        log(tally, "orphan", "Orphaned object " + objectName);
+        if (orphans.size() < MAX_TRACKED_ORPHANS) {
+            orphans.add(objectName);
+        }
+        if (deleteOrphans && previousOrphans.contains(objectName)) {
+            tally.pendingDeletes.add(objectName);
+        }
+    }
+
+    /**
+     * Deletes queued orphans once a page has accumulated, or all of them at the end of a walk.
+     * Each is re-checked just before deletion.
+     */
+    private void flushDeletes(Tally tally, boolean all, Predicate<String> stillOrphaned) {
+        if (tally.pendingDeletes.isEmpty() || (!all && tally.pendingDeletes.size() < PAGE_SIZE)) {
+            return;
+        }
+        List<String> names = tally.pendingDeletes.stream().filter(stillOrphaned).toList();
+        tally.pendingDeletes.clear();
+        try {
+            tally.orphansDeleted += cloudStorageService.deleteObjects(names);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to delete " + names.size() + " orphaned " + tally.family + " object(s): "
+                    + e.getMessage());
+        }
+    }
+
+    private boolean isUnregisteredBlob(String objectName) {
+        return !storedBlobRepository.existsById(objectName.substring(BLOB_PREFIX.length()));
+    }
+
+    private boolean isUnregisteredTokenIndex(String objectName) {
+        return !storedBlobRepository.existsById(objectName.substring(TOKEN_PREFIX.length()));
+    }
+
+    private static void log(Tally tally, String kind, String message) {
+        int count = tally.logged.merge(kind, 1, Integer::sum);
+        if (count <= MAX_LOGGED_FINDINGS) {
+            System.out.println("Storage reconciliation (" + tally.family + "): " + message);
+        } else if (count == MAX_LOGGED_FINDINGS + 1) {
+            System.out.println("Storage reconciliation (" + tally.family + "): further " + kind + " findings not logged");
+        }
+    }
+
+    /**
+     * Gets the "{problemId}/{testCaseId}/" key of a legacy object: its name after the prefix, up
+     * to and including the second slash (or the whole remainder for malformed names). Keys
+     * never decrease along a sorted listing.
+     */
+    static String legacyKey(String objectName) {
+        String rest = objectName.substring(LEGACY_PREFIX.length());
+        int first = rest.indexOf('/');
+        int second = first < 0 ? -1 : rest.indexOf('/', first + 1);
+        return second < 0 ? rest : rest.substring(0, second + 1);
+    }
+
+    private static String legacyKey(TestCase testCase) {
+        return testCase.getProblem().getId() + "/" + testCase.getId() + "/";
+    }
+
+    private double lastValue(Function<Report, Integer> value) {
+        Report report = lastReport;
+        return report != null ? value.apply(report) : 0;
+    }
+
+    private Cursor<TestCaseStorage.StoredObject> objectCursor(String prefix) throws IOException {
+        return new Cursor<>(token -> cloudStorageService.listObjectsAsync(prefix, token, PAGE_SIZE)
+                .thenApply(page -> new Page<>(page.objects(), page.nextPageToken())));
+    }
+
+    /**
+     * Opens a cursor over a keyset-paginated query; the token is the key of the last row read.
+     */
+    private <T> Cursor<T> rowCursor(Function<String, List<T>> query, Function<T, String> key) throws IOException {
+        return new Cursor<>(token -> supplyAsync(() -> {
+            List<T> rows = query.apply(token != null ? token : "");
+            return new Page<>(rows, rows.size() < PAGE_SIZE ? null : key.apply(rows.get(rows.size() - 1)));
+        }));
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, executor);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Forward-only cursor over a paged source that requests the next page as soon as the
+     * current one arrives, so fetching overlaps with merging.
+     */
+    private static final class Cursor<T> {
+        private final Function<String, CompletableFuture<Page<T>>> fetch;
+        private CompletableFuture<Page<T>> next;
+        private Iterator<T> current = Collections.emptyIterator();
+        private T head;
+
+        Cursor(Function<String, CompletableFuture<Page<T>>> fetch) throws IOException {
+            this.fetch = fetch;
+            this.next = fetch.apply(null);
+            advance();
+        }
+
+        T peek() {
+            return head;
+        }
+
+        T take() throws IOException {
+            T taken = head;
+            advance();
+            return taken;
+        }
+
+        private void advance() throws IOException {
+            while (!current.hasNext() && next != null) {
+                Page<T> page = await(next);
+                next = page.nextToken() != null ? fetch.apply(page.nextToken()) : null;
+                current = page.items().iterator();
+            }
+            head = current.hasNext() ? current.next() : null;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.ScoringMode;
+import com.codearena.backend.entity.Submission;
+import com.codearena.backend.entity.SubmissionStatus;
+import com.codearena.backend.entity.SubmissionTestResult;
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.entity.Verdict;
+import com.codearena.backend.repository.SubmissionRepository;
+import com.codearena.backend.repository.SubmissionTestResultRepository;
+import com.codearena.backend.repository.TestCaseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Judges one submission: compiles it and runs it on the test cases of its problem within
+ * the problem's time and memory limits, recording a verdict per test and overall.
+ *
+ * ICPC problems are judged fail-fast: tests run in order of how many submissions they failed,
+ * most first, and judging stops at the first test that is not accepted, so most wrong
+ * submissions are rejected after a test or two. IOI problems run every test in name order.
+ * Either way, each test that was not accepted has its failure count incremented.
+ *
+ * Submissions are compiled through the CompilationCache, so resubmitted and rejudged sources
+ * are not compiled again. Test files come from the node-local JudgeTestDataCache, and
+ * outputs are checked by tokens against the cached token index of the expected output (see
+ * OutputComparator), streaming the program's output from disk. Each submission runs in its
+ * own working directory under judge.dir, removed once judged.
+ *
+ * Limits are enforced by ProgramRunner. In the CgroupSandbox, time is CPU time and memory is
+ * what the kernel accounted for the run; without it, time is wall time and memory is bounded
+ * per language, except that Java programs run on the pre-started JVMs of the JvmWorkerPool
+ * when it is enabled, and are judged by the CPU time of the worker process. A run killed for
+ * its memory, or dying on an allocation failure, is judged MEMORY_LIMIT_EXCEEDED. Output is bounded by
+ * judge.output.max-bytes; a run killed for writing more is judged OUTPUT_LIMIT_EXCEEDED.
+ */
+@Service
+public class SubmissionJudge {
+
+    private static final OutputComparator COMPARATOR = OutputComparator.of(OutputComparator.Mode.TOKEN);
+    private static final String STDOUT_FILE = "stdout.txt";
+
+    private static final Comparator<TestCase> NAME_ORDER = Comparator.comparing(TestCase::getName,
+            TestCaseArchive.TEST_ORDER);
+    // Tests that failed the most submissions first, in name order among equals
+    private static final Comparator<TestCase> FAILURE_ORDER = Comparator
+            .comparingLong((TestCase testCase) -> testCase.getFailureCount() != null ? testCase.getFailureCount() : 0)
+            .reversed()
+            .thenComparing(NAME_ORDER);
+
+    // What languages print when an allocation fails under the memory limit
+    private static final List<String> OUT_OF_MEMORY_MARKERS = List.of(
+            "java.lang.OutOfMemoryError", "MemoryError", "std::bad_alloc");
+
+    private final SubmissionRepository submissionRepository;
+    private final SubmissionTestResultRepository testResultRepository;
+    private final TestCaseRepository testCaseRepository;
+    private final JudgeTestDataCache judgeTestDataCache;
+    private final ProgramRunner programRunner;
+    private final CompilationCache compilationCache;
+    private final JvmWorkerPool jvmWorkerPool;
+    private final long outputLimitBytes;
+    private final Path dir;
+
+    public SubmissionJudge(SubmissionRepository submissionRepository,
+                           SubmissionTestResultRepository testResultRepository,
+                           TestCaseRepository testCaseRepository,
+                           JudgeTestDataCache judgeTestDataCache,
+                           ProgramRunner programRunner,
+                           CompilationCache compilationCache,
+                           JvmWorkerPool jvmWorkerPool,
+                           @Value("${judge.output.max-bytes:67108864}") long outputLimitBytes,
+                           @Value("${judge.dir:${java.io.tmpdir}/codearena-judge}") String dir) throws IOException {
+        this.submissionRepository = submissionRepository;
+        this.testResultRepository = testResultRepository;
+        this.testCaseRepository = testCaseRepository;
+        this.judgeTestDataCache = judgeTestDataCache;
+        this.programRunner = programRunner;
+        this.compilationCache = compilationCache;
+        this.jvmWorkerPool = jvmWorkerPool;
+        this.outputLimitBytes = outputLimitBytes;
+        this.dir = Path.of(dir);
+
+        // Working directories of submissions interrupted by a restart
+        FileSystemUtils.deleteRecursively(this.dir);
+        Files.createDirectories(this.dir);
+    }
+
+    /**
+     * Judges a submission and records its verdict. Results of an earlier, interrupted
+     * attempt are replaced.
+     * @param submissionId The submission ID
+     * @return The verdict, or null if the submission no longer exists
+     */
+    public Verdict judge(Long submissionId) {
+        Submission submission = submissionRepository.findWithProblemById(submissionId).orElse(null);
+        if (submission == null) {
+            System.err.println("Submission " + submissionId + " was deleted before it was judged");
+            return null;
+        }
+        testResultRepository.deleteBySubmissionId(submissionId);
+        submission.setStatus(SubmissionStatus.JUDGING);
+        submission.setStartedAt(LocalDateTime.now());
+        submission.setMaxMemoryBytes(null);
+        // The loaded instance is kept: it holds the problem, which the merged copy may hold as a proxy
+        submissionRepository.save(submission);
+
+        Path workDir = dir.resolve("submission-" + submissionId);
+        try {
+            FileSystemUtils.deleteRecursively(workDir);
+            Files.createDirectories(workDir);
+            return judge(submission, workDir);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to judge submission " + submissionId + ": " + e.getMessage());
+            return finish(submission, Verdict.INTERNAL_ERROR, 0, null, null,
+                    "The judge failed to run this submission. Please resubmit.");
+        } finally {
+            try {
+                FileSystemUtils.deleteRecursively(workDir);
+            } catch (IOException e) {
+                System.err.println("Failed to remove judge directory " + workDir + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Verdict judge(Submission submission, Path workDir) throws IOException {
+        Problem problem = submission.getProblem();
+        ProgramLanguage language = ProgramLanguage.fromName(submission.getLanguage());
+        Files.writeString(language.sourceFile(workDir), submission.getSourceCode());
+
+        boolean failFast = problem.getScoringMode() != ScoringMode.IOI;
+        List<TestCase> testCases = new ArrayList<>(testCaseRepository.findByProblemId(problem.getId()));
+        testCases.sort(failFast ? FAILURE_ORDER : NAME_ORDER);
+        if (testCases.isEmpty()) {
+            return finish(submission, Verdict.INTERNAL_ERROR, 0, 0, null, "The problem has no test cases yet.");
+        }
+
+        ProgramRunner.Program program;
+        try {
+            program = compilationCache.compile(language, workDir);
+        } catch (IllegalArgumentException e) {
+            return finish(submission, Verdict.COMPILATION_ERROR, 0, testCases.size(), null, e.getMessage());
+        }
+
+        Duration timeLimit = Duration.ofMillis(problem.getTimeLimitMillis());
+        long memoryLimitBytes = problem.getMemoryLimitMB() * 1024L * 1024L;
+        Verdict verdict = Verdict.ACCEPTED;
+        String message = null;
+        int passed = 0;
+        long maxTimeMillis = 0;
+        Long maxMemoryBytes = null;
+        List<Long> failedTestCaseIds = new ArrayList<>();
+        for (TestCase testCase : testCases) {
+            SubmissionTestResult result = runTest(program, testCase, workDir, timeLimit, memoryLimitBytes);
+            result.setSubmission(submission);
+            testResultRepository.save(result);
+            maxTimeMillis = Math.max(maxTimeMillis, result.getTimeMillis());
+            if (result.getMemoryBytes() != null) {
+                maxMemoryBytes = Math.max(maxMemoryBytes != null ? maxMemoryBytes : 0, result.getMemoryBytes());
+            }
+            if (result.getVerdict() == Verdict.ACCEPTED) {
+                passed++;
+                continue;
+            }
+            failedTestCaseIds.add(testCase.getId());
+            if (verdict == Verdict.ACCEPTED) {
+                verdict = result.getVerdict();
+                message = "Test " + testCase.getName() + (result.getMessage() != null ? ": " + result.getMessage() : "");
+            }
+            if (failFast) {
+                break;
+            }
+        }
+        recordFailures(failedTestCaseIds);
+        submission.setMaxMemoryBytes(maxMemoryBytes);
+        return finish(submission, verdict, passed, testCases.size(), maxTimeMillis, message);
+    }
+
+    private SubmissionTestResult runTest(ProgramRunner.Program program, TestCase testCase, Path workDir,
+                                         Duration timeLimit, long memoryLimitBytes) throws IOException {
+        Path stdout = workDir.resolve(STDOUT_FILE);
+        // Test data is on local disk before the clock starts
+        try (JudgeTestDataCache.Lease input = judgeTestDataCache.acquire(testCase, testCase.getInputFileName());
+             JudgeTestDataCache.Lease expected = judgeTestDataCache.acquireTokenIndex(testCase)) {
+            ProgramRunner.RunResult run = program.language() == ProgramLanguage.JAVA && jvmWorkerPool.isEnabled()
+                    ? jvmWorkerPool.run(program, input.path(), stdout, timeLimit, memoryLimitBytes, outputLimitBytes)
+                    : programRunner.run(program, List.of(), input.path(), stdout, timeLimit, memoryLimitBytes,
+                            outputLimitBytes);
+            Verdict verdict;
+            String message = null;
+            if (run.timedOut()) {
+                verdict = Verdict.TIME_LIMIT_EXCEEDED;
+            } else if (run.outputLimitExceeded()) {
+                verdict = Verdict.OUTPUT_LIMIT_EXCEEDED;
+            } else if (run.exitCode() != 0) {
+                verdict = run.outOfMemory() || outOfMemory(run.stderr())
+                        ? Verdict.MEMORY_LIMIT_EXCEEDED : Verdict.RUNTIME_ERROR;
+                message = "Exit code " + run.exitCode();
+            } else {
+                OutputComparator.Mismatch mismatch;
+                try (FileChannel actual = FileChannel.open(stdout, StandardOpenOption.READ)) {
+                    mismatch = COMPARATOR.compare(OutputTokenIndex.open(expected.path()), actual);
+                }
+                verdict = mismatch == null ? Verdict.ACCEPTED : Verdict.WRONG_ANSWER;
+                if (mismatch != null) {
+                    message = mismatch.message() + " (token " + (mismatch.token() + 1)
+                            + (mismatch.expectedLine() > 0 ? ", line " + mismatch.expectedLine() : "") + ")";
+                }
+            }
+            return SubmissionTestResult.builder()
+                    .testCaseId(testCase.getId())
+                    .testCaseName(testCase.getName())
+                    .verdict(verdict)
+                    .timeMillis(run.time().toMillis())
+                    .memoryBytes(run.memoryPeakBytes() >= 0 ? run.memoryPeakBytes() : null)
+                    .message(message)
+                    .build();
+        } finally {
+            Files.deleteIfExists(stdout);
+        }
+    }
+
+    private void recordFailures(List<Long> testCaseIds) {
+        if (testCaseIds.isEmpty()) {
+            return;
+        }
+        try {
+            testCaseRepository.incrementFailureCounts(testCaseIds);
+        } catch (RuntimeException e) {
+            // Only the order of later judging depends on the counts
+            System.err.println("Failed to record test failures " + testCaseIds + ": " + e.getMessage());
+        }
+    }
+
+    private Verdict finish(Submission submission, Verdict verdict, int passed, Integer total, Long maxTimeMillis,
+                           String message) {
+        submission.setStatus(SubmissionStatus.FINISHED);
+        submission.setVerdict(verdict);
+        submission.setPassedTests(passed);
+        submission.setTotalTests(total);
+        submission.setMaxTimeMillis(maxTimeMillis);
+        submission.setMessage(message);
+        submission.setFinishedAt(LocalDateTime.now());
+        submissionRepository.save(submission);
+        return verdict;
+    }
+
+    private static boolean outOfMemory(String stderr) {
+        return stderr != null && OUT_OF_MEMORY_MARKERS.stream().anyMatch(stderr::contains);
+    }
+}
@@ -0,0 +1,161 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.dto.SubmissionCreateDTO;
+import com.codearena.backend.dto.SubmissionResponseDTO;
+import com.codearena.backend.dto.SubmissionTestResultDTO;
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.Submission;
+import com.codearena.backend.entity.SubmissionStatus;
+import com.codearena.backend.entity.SubmissionTestResult;
+import com.codearena.backend.entity.User;
+import com.codearena.backend.exception.ApiException;
+import com.codearena.backend.repository.ProblemRepository;
+import com.codearena.backend.repository.SubmissionRepository;
+import com.codearena.backend.repository.SubmissionTestResultRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Service for submitting solutions and reading their verdicts.
+ * Submissions are judged asynchronously through the JudgeQueue.
+ */
+@Service
+public class SubmissionService {
+    private final SubmissionRepository submissionRepository;
+    private final SubmissionTestResultRepository testResultRepository;
+    private final ProblemRepository problemRepository;
+    private final JudgeQueue judgeQueue;
+
+    public SubmissionService(SubmissionRepository submissionRepository,
+                             SubmissionTestResultRepository testResultRepository,
+                             ProblemRepository problemRepository,
+                             JudgeQueue judgeQueue) {
+        this.submissionRepository = submissionRepository;
+        this.testResultRepository = testResultRepository;
+        this.problemRepository = problemRepository;
+        this.judgeQueue = judgeQueue;
+    }
+
+    /**
+     * Stores a submission and queues it for judging, without waiting for the verdict.
+     * @param problemId Problem ID
+     * @param dto The language and source code
+     * @param user The submitting user
+     * @return The queued submission as DTO
+     * @throws ApiException 400 if the language is not supported, 503 if the judge queue is full
+     */
+    public SubmissionResponseDTO submit(Long problemId, SubmissionCreateDTO dto, User user) {
+        Problem problem = problemRepository.findById(problemId)
+                .orElseThrow(() -> new EntityNotFoundException("Problem not found"));
+        if (!canViewProblem(problem, user)) {
+            throw new AccessDeniedException("You do not have permission to submit to this problem");
+        }
+        ProgramLanguage language;
+        try {
+            language = ProgramLanguage.fromName(dto.getLanguage());
+        } catch (IllegalArgumentException e) {
+            throw ApiException.badRequest(e.getMessage());
+        }
+        Submission submission = submissionRepository.save(Submission.builder()
+                .problem(problem)
+                .user(user)
+                .language(language.name().toLowerCase(Locale.ROOT))
+                .sourceCode(dto.getSourceCode())
+                .status(SubmissionStatus.QUEUED)
+                .createdAt(LocalDateTime.now())
+                .build());
+        if (!judgeQueue.enqueue(submission.getId())) {
+            submissionRepository.delete(submission);
+            throw new ApiException("Judge queue is full", HttpStatus.SERVICE_UNAVAILABLE, "JUDGE_QUEUE_FULL",
+                    "The judge is busy. Please submit again in a moment.");
+        }
+        return toResponseDTO(submission, user, null);
+    }
+
+    /**
+     * Gets a submission with its per-test results.
+     * @param id Submission ID
+     * @param user The requesting user: its author, the problem's creator, a tester or an admin
+     * @return The submission as DTO
+     */
+    public SubmissionResponseDTO getSubmission(Long id, User user) {
+        Submission submission = submissionRepository.findWithProblemById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Submission not found"));
+        Problem problem = submission.getProblem();
+        boolean author = submission.getUser().getFirebaseUid().equals(user.getFirebaseUid());
+        boolean creator = problem.getCreatedBy() != null
+                && problem.getCreatedBy().getFirebaseUid().equals(user.getFirebaseUid());
+        if (!author && !creator && !isAdmin(user) && !isTester(user)) {
+            throw new AccessDeniedException("You do not have permission to view this submission");
+        }
+        List<SubmissionTestResultDTO> results = testResultRepository.findBySubmissionIdOrderByIdAsc(id).stream()
+                .map(this::toTestResultDTO)
+                .collect(Collectors.toList());
+        return toResponseDTO(submission, submission.getUser(), results);
+    }
+
+    /**
+     * Lists the user's own submissions to a problem, newest first, without per-test results.
+     * @param problemId Problem ID
+     * @param user The requesting user
+     * @return List of submission DTOs
+     */
+    public List<SubmissionResponseDTO> listSubmissions(Long problemId, User user) {
+        return submissionRepository.findByProblemAndUser(problemId, user.getFirebaseUid()).stream()
+                .map(submission -> toResponseDTO(submission, submission.getUser(), null))
+                .collect(Collectors.toList());
+    }
+
+    private boolean canViewProblem(Problem problem, User user) {
+        return problem.getIsPublic()
+                || (problem.getCreatedBy() != null && problem.getCreatedBy().getFirebaseUid().equals(user.getFirebaseUid()))
+                || isAdmin(user) || isTester(user);
+    }
+
+    private boolean isAdmin(User user) {
+        return user.getRoles().stream().anyMatch(r -> r.getName().equals("ADMIN"));
+    }
+
+    private boolean isTester(User user) {
+        return user.getRoles().stream().anyMatch(r -> r.getName().equals("TESTER"));
+    }
+
+    private SubmissionResponseDTO toResponseDTO(Submission submission, User author,
+                                                List<SubmissionTestResultDTO> testResults) {
+        SubmissionResponseDTO dto = new SubmissionResponseDTO();
+        dto.setId(submission.getId());
+        dto.setProblemId(submission.getProblem().getId());
+        dto.setUser(author.getDisplayName());
+        dto.setLanguage(submission.getLanguage());
+        dto.setStatus(submission.getStatus().name());
+        dto.setVerdict(submission.getVerdict() != null ? submission.getVerdict().name() : null);
+        dto.setPassedTests(submission.getPassedTests());
+        dto.setTotalTests(submission.getTotalTests());
+        dto.setMaxTimeMillis(submission.getMaxTimeMillis());
+        dto.setMaxMemoryBytes(submission.getMaxMemoryBytes());
+        dto.setMessage(submission.getMessage());
+        dto.setCreatedAt(submission.getCreatedAt() != null ? submission.getCreatedAt().toString() : null);
+        dto.setStartedAt(submission.getStartedAt() != null ? submission.getStartedAt().toString() : null);
+        dto.setFinishedAt(submission.getFinishedAt() != null ? submission.getFinishedAt().toString() : null);
+        dto.setTestResults(testResults);
+        return dto;
+    }
+
+    private SubmissionTestResultDTO toTestResultDTO(SubmissionTestResult result) {
+        SubmissionTestResultDTO dto = new SubmissionTestResultDTO();
+        dto.setTestCaseId(result.getTestCaseId());
+        dto.setTestCaseName(result.getTestCaseName());
+        dto.setVerdict(result.getVerdict().name());
+        dto.setTimeMillis(result.getTimeMillis());
+        dto.setMemoryBytes(result.getMemoryBytes());
+        dto.setMessage(result.getMessage());
+        return dto;
+    }
+}
@@ -0,0 +1,180 @@
+package com.codearena.backend.service;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Forward-only reader over a test set archive (zip, tar.gz, or tar).
+ *
+ * Entries are read one at a time straight from the underlying stream, so an archive of
+ * any size is processed in a single pass without being buffered. Test files follow the
+ * usual package layout: NN.in holds the input of test NN, and NN.out or NN.ans its output.
+ */
+public class TestCaseArchive implements Closeable {
+
+    /** Buffer for the archive stream; also bounds the header peek used for format detection. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** A full tar header block, which holds the magic and version a plain tar is recognised by. */
+    private static final int TAR_HEADER_SIZE = 512;
+
+    /** Orders test names numerically when both are numbers (2 before 10), otherwise by text. */
+    public static final Comparator<String> TEST_ORDER = (a, b) -> {
+        boolean aNumeric = isNumeric(a);
+        boolean bNumeric = isNumeric(b);
+        if (aNumeric && bNumeric) {
+            String aDigits = stripLeadingZeros(a);
+            String bDigits = stripLeadingZeros(b);
+            int byValue = aDigits.length() != bDigits.length()
+                    ? Integer.compare(aDigits.length(), bDigits.length())
+                    : aDigits.compareTo(bDigits);
+            return byValue != 0 ? byValue : a.compareTo(b);
+        }
+        if (aNumeric != bNumeric) {
+            return aNumeric ? -1 : 1;
+        }
+        return a.compareTo(b);
+    };
+
+    /**
+     * An archive entry whose content is readable until the next call to next().
+     * @param name Path of the entry within the archive
+     * @param content Entry content; closing it does not close the archive
+     */
+    public record Entry(String name, InputStream content) {
+    }
+
+    /**
+     * Role of an archive entry in the test set.
+     * @param testName Name of the test the file belongs to (the file name without extension)
+     * @param input Whether the file is the test's input rather than its expected output
+     */
+    public record TestFile(String testName, boolean input) {
+    }
+
+    private final ArchiveInputStream<? extends ArchiveEntry> archive;
+
+    private TestCaseArchive(ArchiveInputStream<? extends ArchiveEntry> archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Opens an archive, detecting its format from the leading bytes.
+     * @param content The archive stream; closed when the archive is closed
+     * @return The archive reader
+     * @throws IOException If the stream cannot be read
+     * @throws IllegalArgumentException If the stream is not a zip, tar.gz, or tar archive
+     */
+    public static TestCaseArchive open(InputStream content) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(content, BUFFER_SIZE);
+        byte[] header = peek(in, TAR_HEADER_SIZE);
+        if (startsWith(header, 0x50, 0x4B, 0x03, 0x04)) {
+            return new TestCaseArchive(new ZipArchiveInputStream(in));
+        }
+        if (startsWith(header, 0x1F, 0x8B)) {
+            return new TestCaseArchive(new TarArchiveInputStream(new BufferedInputStream(
+                    new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE)));
+        }
+        if (TarArchiveInputStream.matches(header, header.length)) {
+            return new TestCaseArchive(new TarArchiveInputStream(in));
+        }
+        in.close();
+        throw new IllegalArgumentException("Unsupported archive format (expected .zip, .tar.gz or .tar)");
+    }
+
+    /**
+     * Advances to the next file entry, skipping directories.
+     * @return The entry, or null at the end of the archive
+     * @throws IOException If the archive cannot be read
+     */
+    public Entry next() throws IOException {
+        ArchiveEntry entry;
+        while ((entry = archive.getNextEntry()) != null) {
+            if (!entry.isDirectory() && archive.canReadEntryData(entry)) {
+                return new Entry(entry.getName(), new NonClosingInputStream(archive));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Classifies an entry by its file name.
+     * @param entryName Path of the entry within the archive
+     * @return The test file, or null if the entry is not an .in, .out or .ans file
+     *         (or is hidden, like macOS resource forks)
+     */
+    public static TestFile classify(String entryName) {
+        String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        int dot = fileName.lastIndexOf('.');
+        if (fileName.startsWith(".") || dot <= 0 || entryName.startsWith("__MACOSX/")) {
+            return null;
+        }
+        String testName = fileName.substring(0, dot);
+        return switch (fileName.substring(dot + 1).toLowerCase(Locale.ROOT)) {
+            case "in" -> new TestFile(testName, true);
+            case "out", "ans" -> new TestFile(testName, false);
+            default -> null;
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        archive.close();
+    }
+
+    private static byte[] peek(BufferedInputStream in, int length) throws IOException {
+        in.mark(length);
+        byte[] header = in.readNBytes(length);
+        in.reset();
+        return header;
+    }
+
+    private static boolean startsWith(byte[] header, int... magic) {
+        if (header.length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNumeric(String name) {
+        return !name.isEmpty() && name.chars().allMatch(c -> c >= '0' && c <= '9');
+    }
+
+    private static String stripLeadingZeros(String digits) {
+        int start = 0;
+        while (start < digits.length() - 1 && digits.charAt(start) == '0') {
+            start++;
+        }
+        return digits.substring(start);
+    }
+
+    /**
+     * Entry view that leaves the archive open when consumers close it.
+     */
+    private static class NonClosingInputStream extends FilterInputStream {
+        NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // The archive stays open for the following entries
+        }
+    }
+}
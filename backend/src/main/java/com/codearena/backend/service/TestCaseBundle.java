@@ -0,0 +1,218 @@
+package com.codearena.backend.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Binary layout of a packed test bundle: all input and output files of one revision of a
+ * problem's test set in a single object, so a judge fetches a whole test set with one request
+ * instead of two per test.
+ *
+ * Layout (big-endian):
+ * - Header, HEADER_BYTES: magic "CATB", format version, test set revision, entry count, reserved int
+ * - Index, ENTRY_BYTES per test in judging order: test case ID, flags (1 = sample, 2 = hidden),
+ *   then for the input and the output: SHA-256 (zeros for legacy files), codec ordinal,
+ *   absolute offset, stored length, raw length and CRC32C (-1 when unknown)
+ * - Data: each file exactly as stored (possibly compressed), inputs and outputs interleaved
+ *   in index order
+ *
+ * Entries have a fixed size, so the index of n tests is always indexBytes(n) long and a reader
+ * can range-read it, then range-read single files at their offsets.
+ */
+public final class TestCaseBundle {
+
+    /** Bytes before the first index entry. */
+    public static final int HEADER_BYTES = 24;
+
+    /** Bytes per index entry. */
+    public static final int ENTRY_BYTES = 8 + 1 + 2 * (32 + 1 + 8 + 8 + 8 + 8);
+
+    private static final int MAGIC = 0x43415442; // "CATB"
+    private static final int FORMAT_VERSION = 1;
+    private static final int SAMPLE = 1;
+    private static final int HIDDEN = 2;
+    private static final byte[] NO_SHA256 = new byte[32];
+
+    private TestCaseBundle() {
+    }
+
+    /**
+     * Location and metadata of one file in a bundle.
+     * @param sha256 Hex SHA-256 of the raw content, or null for a legacy file
+     * @param codec Codec the file is stored with
+     * @param offset Position of the file's first byte in the bundle
+     * @param storedSize Length of the file in the bundle
+     * @param rawSize Size of the decoded content, or null if unknown
+     * @param crc32c CRC32C of the decoded content, or null if unknown
+     */
+    public record File(String sha256, TestCaseCodec codec, long offset, long storedSize, Long rawSize, Long crc32c) {
+    }
+
+    /**
+     * Index entry of one test.
+     * @param testCaseId The test case ID
+     * @param sample Whether the test is a sample
+     * @param hidden Whether the test is hidden
+     * @param input The input file
+     * @param output The expected output file
+     */
+    public record Entry(long testCaseId, boolean sample, boolean hidden, File input, File output) {
+    }
+
+    /**
+     * The index of a bundle.
+     * @param revision Revision of the test set the bundle was built from
+     * @param entries Index entries in judging order
+     */
+    public record Index(long revision, List<Entry> entries) {
+
+        /**
+         * Finds the entry of a test case.
+         * @param testCaseId The test case ID
+         * @return The entry, or null if the test is not in the bundle
+         */
+        public Entry find(long testCaseId) {
+            for (Entry entry : entries) {
+                if (entry.testCaseId() == testCaseId) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Gets the size of the whole bundle.
+         * @return Index plus data, in bytes
+         */
+        public long bundleBytes() {
+            long end = indexBytes(entries.size());
+            for (Entry entry : entries) {
+                end = Math.max(end, Math.max(entry.input().offset() + entry.input().storedSize(),
+                        entry.output().offset() + entry.output().storedSize()));
+            }
+            return end;
+        }
+    }
+
+    /**
+     * Gets the size of the header and index of a bundle, which is where its data starts.
+     * @param entryCount Number of tests
+     * @return The size in bytes
+     */
+    public static long indexBytes(int entryCount) {
+        return HEADER_BYTES + (long) ENTRY_BYTES * entryCount;
+    }
+
+    /**
+     * Serializes the header and index of a bundle.
+     * @param index The index; file offsets must already be assigned
+     * @return Exactly indexBytes(entries) bytes
+     */
+    public static byte[] encode(Index index) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) indexBytes(index.entries().size()));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(index.revision());
+            out.writeInt(index.entries().size());
+            out.writeInt(0);
+            for (Entry entry : index.entries()) {
+                out.writeLong(entry.testCaseId());
+                out.writeByte((entry.sample() ? SAMPLE : 0) | (entry.hidden() ? HIDDEN : 0));
+                writeFile(out, entry.input());
+                writeFile(out, entry.output());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // In-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the entry count from a bundle header.
+     * @param header At least the first HEADER_BYTES of a bundle
+     * @return The number of tests
+     * @throws IOException If the bytes are not a bundle header
+     */
+    public static int entryCount(byte[] header) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        readHeader(in);
+        in.readLong();
+        return in.readInt();
+    }
+
+    /**
+     * Parses the header and index of a bundle.
+     * @param in Stream positioned at the start of the bundle; read up to the end of the index
+     * @return The index
+     * @throws IOException If the stream ends early or is not a bundle
+     */
+    public static Index decode(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        try {
+            readHeader(data);
+            long revision = data.readLong();
+            int count = data.readInt();
+            data.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupt test bundle index");
+            }
+            List<Entry> entries = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                long testCaseId = data.readLong();
+                int flags = data.readUnsignedByte();
+                File input = readFile(data);
+                File output = readFile(data);
+                entries.add(new Entry(testCaseId, (flags & SAMPLE) != 0, (flags & HIDDEN) != 0, input, output));
+            }
+            return new Index(revision, List.copyOf(entries));
+        } catch (EOFException e) {
+            throw new IOException("Truncated test bundle index", e);
+        }
+    }
+
+    private static void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a test bundle");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported test bundle format " + version);
+        }
+    }
+
+    private static void writeFile(DataOutputStream out, File file) throws IOException {
+        out.write(file.sha256() != null ? HexFormat.of().parseHex(file.sha256()) : NO_SHA256);
+        out.writeByte(file.codec().ordinal()); // NONE, GZIP, ZSTD: part of the format, never reordered
+        out.writeLong(file.offset());
+        out.writeLong(file.storedSize());
+        out.writeLong(file.rawSize() != null ? file.rawSize() : -1);
+        out.writeLong(file.crc32c() != null ? file.crc32c() : -1);
+    }
+
+    private static File readFile(DataInputStream in) throws IOException {
+        byte[] sha256 = new byte[32];
+        in.readFully(sha256);
+        int codec = in.readUnsignedByte();
+        if (codec >= TestCaseCodec.values().length) {
+            throw new IOException("Unknown codec in test bundle index: " + codec);
+        }
+        long offset = in.readLong();
+        long storedSize = in.readLong();
+        long rawSize = in.readLong();
+        long crc32c = in.readLong();
+        return new File(Arrays.equals(sha256, NO_SHA256) ? null : HexFormat.of().formatHex(sha256),
+                TestCaseCodec.values()[codec], offset, storedSize,
+                rawSize >= 0 ? rawSize : null, crc32c >= 0 ? crc32c : null);
+    }
+}
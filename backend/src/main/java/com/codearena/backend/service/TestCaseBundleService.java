@@ -0,0 +1,417 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.repository.ProblemRepository;
+import com.codearena.backend.repository.TestCaseRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds and reads packed test bundles: one object per revision of a problem's test set,
+ * holding every input and output file behind an offset index (see TestCaseBundle).
+ *
+ * A judge fetching a whole test set makes one request for the bundle instead of two per
+ * test, or range-reads the index and then single files.
+ *
+ * Every change to a problem's test cases increments Problem.testSetRevision. A rebuild is
+ * then scheduled after a short delay, so a burst of changes (an archive import, a series of
+ * edits) costs one rebuild. Rebuilds are incremental: files whose content the previous bundle
+ * already holds are copied from it, adjacent ranges in one request, and only new files are
+ * read from their blobs.
+ *
+ * Bundles are written under bundles/{problemId}/{revision}-{index hash} and never
+ * overwritten. The problem row points at the current one; the bundle it replaced is kept
+ * for readers that are still using it, and older ones are deleted.
+ *
+ * Generated test cases are left out: they have no stored files, and judges materialize them
+ * through the test data cache instead.
+ */
+@Service
+public class TestCaseBundleService {
+
+    private static final String BUNDLE_PREFIX = "bundles/";
+
+    /** Bytes fetched by the first ranged read of an index; enough for the index of about 400 tests. */
+    private static final int INDEX_PROBE_BYTES = 64 * 1024;
+
+    /** Bundle objects listed per page while removing superseded bundles. */
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    /**
+     * A built bundle.
+     * @param problemId The problem ID
+     * @param objectName The bundle object name
+     * @param index The bundle index
+     */
+    public record Bundle(Long problemId, String objectName, TestCaseBundle.Index index) {
+    }
+
+    /**
+     * A bundle fetched whole.
+     * @param bundle The bundle
+     * @param content The stored bundle bytes
+     */
+    public record FetchedBundle(Bundle bundle, ByteBuffer content) {
+
+        /**
+         * Opens the decoded content of one file of the bundle.
+         * @param file A file of the bundle index
+         * @return The raw content, verified against its CRC32C when read to the end
+         * @throws IOException If the content cannot be decoded
+         */
+        public InputStream open(TestCaseBundle.File file) throws IOException {
+            InputStream stored = CloudStorageService.asInputStream(
+                    content.slice(Math.toIntExact(file.offset()), Math.toIntExact(file.storedSize())));
+            return CloudStorageService.verifiedContent(TestCaseCodec.decode(stored), bundle.objectName(), file.crc32c());
+        }
+    }
+
+    private final TestCaseRepository testCaseRepository;
+    private final ProblemRepository problemRepository;
+    private final CloudStorageService cloudStorageService;
+    private final boolean enabled;
+    private final Duration rebuildDelay;
+    private final ScheduledExecutorService executor;
+    private final Set<Long> scheduled = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Object> rebuildLocks = new ConcurrentHashMap<>();
+
+    public TestCaseBundleService(TestCaseRepository testCaseRepository,
+                                 ProblemRepository problemRepository,
+                                 CloudStorageService cloudStorageService,
+                                 @Value("${testcase.bundle.enabled:true}") boolean enabled,
+                                 @Value("${testcase.bundle.rebuild-delay:PT2S}") Duration rebuildDelay) {
+        this.testCaseRepository = testCaseRepository;
+        this.problemRepository = problemRepository;
+        this.cloudStorageService = cloudStorageService;
+        this.enabled = enabled;
+        this.rebuildDelay = rebuildDelay;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("testcase-bundle-"));
+    }
+
+    /**
+     * Stops the rebuild executor on shutdown.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Gets the object name prefix of all bundles of a problem.
+     * @param problemId The problem ID
+     * @return The prefix
+     */
+    public static String bundlePrefix(Long problemId) {
+        return BUNDLE_PREFIX + problemId + "/";
+    }
+
+    /**
+     * Records a change to a problem's test cases and schedules a bundle rebuild.
+     * Must be called after the change is saved, so the rebuild sees it.
+     * @param problemId The problem ID
+     */
+    public void testSetChanged(Long problemId) {
+        problemRepository.incrementTestSetRevision(problemId);
+        scheduleRebuild(problemId);
+    }
+
+    /**
+     * Schedules a bundle rebuild after the rebuild delay, unless one is already scheduled.
+     * @param problemId The problem ID
+     */
+    public void scheduleRebuild(Long problemId) {
+        if (!enabled || !scheduled.add(problemId)) {
+            return;
+        }
+        executor.schedule(() -> {
+            // Cleared first: a change arriving during the rebuild schedules another one
+            scheduled.remove(problemId);
+            try {
+                rebuild(problemId);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to build test bundle for problem " + problemId + ": " + e.getMessage());
+            }
+        }, rebuildDelay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the current bundle of a problem, building it first if it is missing or stale.
+     * @param problemId The problem ID
+     * @return The bundle
+     * @throws IOException If the bundle cannot be read or built
+     */
+    public Bundle getBundle(Long problemId) throws IOException {
+        Optional<Bundle> current = findCurrentBundle(problemId);
+        return current.isPresent() ? current.get() : rebuild(problemId);
+    }
+
+    /**
+     * Gets the current bundle of a problem without building one.
+     * @param problemId The problem ID
+     * @return The bundle, or empty if none was built for the latest test set revision;
+     *         callers then read the test case files individually
+     * @throws IOException If the bundle index cannot be read
+     */
+    public Optional<Bundle> findCurrentBundle(Long problemId) throws IOException {
+        ProblemRepository.TestBundleState state = findState(problemId);
+        if (!isCurrent(state)) {
+            return Optional.empty();
+        }
+        return Optional.of(new Bundle(problemId, state.getTestBundleName(), readIndex(state.getTestBundleName())));
+    }
+
+    /**
+     * Fetches the current bundle of a problem whole, in one request.
+     * @param problemId The problem ID
+     * @return The bundle and its content
+     * @throws IOException If the bundle cannot be read or built
+     */
+    public FetchedBundle fetchBundle(Long problemId) throws IOException {
+        ProblemRepository.TestBundleState state = findState(problemId);
+        Bundle bundle;
+        ByteBuffer content;
+        if (isCurrent(state)) {
+            content = cloudStorageService.readStoredObject(state.getTestBundleName());
+            bundle = new Bundle(problemId, state.getTestBundleName(),
+                    TestCaseBundle.decode(CloudStorageService.asInputStream(content)));
+        } else {
+            bundle = rebuild(problemId);
+            content = cloudStorageService.readStoredObject(bundle.objectName());
+        }
+        if (content.remaining() != bundle.index().bundleBytes()) {
+            throw new IOException("Test bundle " + bundle.objectName() + " has " + content.remaining()
+                    + " bytes, expected " + bundle.index().bundleBytes());
+        }
+        return new FetchedBundle(bundle, content);
+    }
+
+    /**
+     * Opens one file of a bundle with a ranged read; only that file is fetched.
+     * @param bundle The bundle
+     * @param file A file of the bundle index
+     * @return The raw content, verified against its CRC32C when read to the end; the caller must close it
+     * @throws IOException If the file cannot be read
+     */
+    public InputStream openFile(Bundle bundle, TestCaseBundle.File file) throws IOException {
+        InputStream stored = cloudStorageService.openStoredRange(bundle.objectName(), file.offset(), file.storedSize());
+        try {
+            return CloudStorageService.verifiedContent(TestCaseCodec.decode(stored), bundle.objectName(), file.crc32c());
+        } catch (IOException | RuntimeException e) {
+            stored.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the index of a bundle with ranged reads: a fixed-size probe, and the rest of the
+     * index only if the probe was too short.
+     * @param objectName The bundle object name
+     * @return The index
+     * @throws IOException If the index cannot be read or is corrupt
+     */
+    public TestCaseBundle.Index readIndex(String objectName) throws IOException {
+        byte[] probe;
+        try (InputStream in = cloudStorageService.openStoredRange(objectName, 0, INDEX_PROBE_BYTES)) {
+            probe = in.readNBytes(INDEX_PROBE_BYTES);
+        }
+        long indexBytes = TestCaseBundle.indexBytes(TestCaseBundle.entryCount(probe));
+        if (indexBytes <= probe.length) {
+            return TestCaseBundle.decode(new ByteArrayInputStream(probe, 0, (int) indexBytes));
+        }
+        byte[] index = new byte[Math.toIntExact(indexBytes)];
+        System.arraycopy(probe, 0, index, 0, probe.length);
+        try (InputStream in = cloudStorageService.openStoredRange(objectName, probe.length, indexBytes - probe.length)) {
+            int read = in.readNBytes(index, probe.length, index.length - probe.length);
+            if (read != index.length - probe.length) {
+                throw new IOException("Truncated test bundle index in " + objectName);
+            }
+        }
+        return TestCaseBundle.decode(new ByteArrayInputStream(index));
+    }
+
+    /**
+     * Builds a bundle of the latest test set revision of a problem, unless it exists already.
+     * @param problemId The problem ID
+     * @return The current bundle
+     * @throws IOException If a test case file cannot be read or the bundle cannot be written
+     */
+    public Bundle rebuild(Long problemId) throws IOException {
+        synchronized (rebuildLocks.computeIfAbsent(problemId, id -> new Object())) {
+            ProblemRepository.TestBundleState state = findState(problemId);
+            if (isCurrent(state)) {
+                return new Bundle(problemId, state.getTestBundleName(), readIndex(state.getTestBundleName()));
+            }
+            // The revision is read before the test cases: if they change meanwhile, the
+            // revision moves on and this bundle is superseded by the next rebuild
+            long revision = state.getTestSetRevision();
+            String previous = state.getTestBundleName();
+            Map<String, TestCaseBundle.File> reusable = previous != null ? reusableFiles(previous) : Map.of();
+
+            List<TestCase> testCases = new ArrayList<>(testCaseRepository.findByProblemId(problemId));
+            testCases.removeIf(TestCase::isGenerated);
+            testCases.sort(Comparator.comparing(TestCase::getId));
+            List<String> newBlobs = new ArrayList<>();
+            for (TestCase testCase : testCases) {
+                for (String sha256 : new String[]{testCase.getInputSha256(), testCase.getOutputSha256()}) {
+                    if (sha256 != null && !reusable.containsKey(sha256)) {
+                        newBlobs.add(sha256);
+                    }
+                }
+            }
+            Map<String, CloudStorageService.StoredFile> blobs = cloudStorageService.describeBlobs(newBlobs);
+
+            long offset = TestCaseBundle.indexBytes(testCases.size());
+            List<TestCaseBundle.Entry> entries = new ArrayList<>(testCases.size());
+            List<CloudStorageService.ObjectRange> ranges = new ArrayList<>(testCases.size() * 2);
+            int copied = 0;
+            for (TestCase testCase : testCases) {
+                TestCaseBundle.File[] files = new TestCaseBundle.File[2];
+                for (int i = 0; i < 2; i++) {
+                    String fileName = i == 0 ? testCase.getInputFileName() : testCase.getOutputFileName();
+                    String sha256 = i == 0 ? testCase.getInputSha256() : testCase.getOutputSha256();
+                    TestCaseBundle.File old = sha256 != null ? reusable.get(sha256) : null;
+                    if (old != null) {
+                        files[i] = new TestCaseBundle.File(sha256, old.codec(), offset, old.storedSize(),
+                                old.rawSize(), old.crc32c());
+                        ranges.add(new CloudStorageService.ObjectRange(previous, old.offset(), old.storedSize()));
+                        copied++;
+                    } else {
+                        CloudStorageService.StoredFile stored = sha256 != null ? blobs.get(sha256)
+                                : cloudStorageService.describeStoredFile(testCase, fileName);
+                        if (stored == null) {
+                            throw new IOException("Missing blob " + sha256 + " of test case " + testCase.getId());
+                        }
+                        files[i] = new TestCaseBundle.File(sha256,
+                                stored.codec() != null ? stored.codec() : TestCaseCodec.NONE, offset,
+                                stored.storedSize(), stored.rawSize() >= 0 ? stored.rawSize() : null, stored.crc32c());
+                        ranges.add(new CloudStorageService.ObjectRange(sha256 != null
+                                ? CloudStorageService.blobName(sha256)
+                                : CloudStorageService.objectName(testCase, fileName), 0, stored.storedSize()));
+                    }
+                    offset += files[i].storedSize();
+                }
+                entries.add(new TestCaseBundle.Entry(testCase.getId(), Boolean.TRUE.equals(testCase.getIsSample()),
+                        Boolean.TRUE.equals(testCase.getIsHidden()), files[0], files[1]));
+            }
+
+            TestCaseBundle.Index index = new TestCaseBundle.Index(revision, List.copyOf(entries));
+            byte[] head = TestCaseBundle.encode(index);
+            String objectName = bundlePrefix(problemId) + revision + "-" + shortHash(head);
+            cloudStorageService.writeConcatenated(objectName, head, ranges);
+
+            if (problemRepository.updateTestBundle(problemId, objectName, revision) == 0) {
+                // Another node recorded this or a later revision first
+                String winner = findState(problemId).getTestBundleName();
+                if (objectName.equals(winner)) {
+                    return new Bundle(problemId, objectName, index);
+                }
+                deleteQuietly(List.of(objectName));
+                return new Bundle(problemId, winner, readIndex(winner));
+            }
+            removeSuperseded(problemId, objectName, previous);
+            System.out.println("Built test bundle " + objectName + ": " + testCases.size() + " tests, "
+                    + offset + " bytes, " + copied + " of " + testCases.size() * 2
+                    + " files copied from the previous bundle");
+            return new Bundle(problemId, objectName, index);
+        }
+    }
+
+    /**
+     * Indexes the files of a previous bundle by content hash; empty if it cannot be read,
+     * in which case every file is read from its blob.
+     */
+    private Map<String, TestCaseBundle.File> reusableFiles(String objectName) {
+        try {
+            Map<String, TestCaseBundle.File> files = new HashMap<>();
+            for (TestCaseBundle.Entry entry : readIndex(objectName).entries()) {
+                for (TestCaseBundle.File file : new TestCaseBundle.File[]{entry.input(), entry.output()}) {
+                    if (file.sha256() != null) {
+                        files.putIfAbsent(file.sha256(), file);
+                    }
+                }
+            }
+            return files;
+        } catch (IOException e) {
+            System.err.println("Failed to read previous test bundle " + objectName + ", rebuilding in full: "
+                    + e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * Deletes the bundles of a problem other than the current one and the one it replaced.
+     */
+    private void removeSuperseded(Long problemId, String current, String previous) {
+        try {
+            List<String> superseded = new ArrayList<>();
+            String pageToken = null;
+            do {
+                TestCaseStorage.ObjectPage page = cloudStorageService
+                        .listObjectsAsync(bundlePrefix(problemId), pageToken, LIST_PAGE_SIZE).join();
+                for (String name : page.names()) {
+                    if (!name.equals(current) && !name.equals(previous)) {
+                        superseded.add(name);
+                    }
+                }
+                pageToken = page.nextPageToken();
+            } while (pageToken != null);
+            deleteQuietly(superseded);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to list test bundles of problem " + problemId + ": " + e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(List<String> objectNames) {
+        if (objectNames.isEmpty()) {
+            return;
+        }
+        try {
+            cloudStorageService.deleteObjects(objectNames);
+        } catch (IOException e) {
+            // Left for a later rebuild, which deletes every superseded bundle
+            System.err.println("Failed to delete superseded test bundles " + objectNames + ": " + e.getMessage());
+        }
+    }
+
+    private ProblemRepository.TestBundleState findState(Long problemId) {
+        return problemRepository.findTestBundleState(problemId)
+                .orElseThrow(() -> new EntityNotFoundException("Problem not found"));
+    }
+
+    private static boolean isCurrent(ProblemRepository.TestBundleState state) {
+        return state.getTestBundleName() != null && state.getTestBundleRevision() != null
+                && state.getTestBundleRevision() >= state.getTestSetRevision();
+    }
+
+    private static String shortHash(byte[] head) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(head);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
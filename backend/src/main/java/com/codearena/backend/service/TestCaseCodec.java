@@ -0,0 +1,189 @@
+package com.codearena.backend.service;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression codec applied to test case files at rest.
+ *
+ * Test data is highly repetitive (numbers and whitespace), so gzip and zstd typically
+ * shrink it 5-10x. Encoding and decoding are both streaming: encode wraps the raw
+ * stream in a stream of compressed bytes, and decode detects the codec from the
+ * format's magic bytes, so objects written with any codec (or none) read back the same.
+ */
+public enum TestCaseCodec {
+    NONE(null),
+    GZIP("gzip"),
+    ZSTD("zstd");
+
+    /** Raw bytes pulled from the source per encoder step; bounds memory per stream. */
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int ZSTD_LEVEL = 3;
+
+    private final String contentEncoding;
+
+    TestCaseCodec(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Gets the HTTP Content-Encoding token for this codec.
+     * @return The token, or null for NONE
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * Parses a codec name, case-insensitively.
+     * @param name The codec name; null or blank means NONE
+     * @return The codec
+     */
+    public static TestCaseCodec fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return NONE;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * Wraps a raw stream so that reading it yields encoded bytes.
+     * @param raw The raw content
+     * @return A stream of encoded content
+     */
+    public InputStream encode(InputStream raw) {
+        if (this == NONE) {
+            return raw;
+        }
+        return new EncodingInputStream(raw, this);
+    }
+
+    /**
+     * Wraps a stored stream so that reading it yields raw bytes, detecting the codec
+     * from the leading magic bytes.
+     * @param stored The stored content
+     * @return A stream of raw content
+     * @throws IOException If the compressed header is invalid
+     */
+    public static InputStream decode(InputStream stored) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(stored, CHUNK_SIZE);
+        in.mark(4);
+        byte[] magic = in.readNBytes(4);
+        in.reset();
+        return switch (detect(magic, magic.length)) {
+            case GZIP -> new GZIPInputStream(in, CHUNK_SIZE);
+            case ZSTD -> new ZstdInputStream(in);
+            case NONE -> in;
+        };
+    }
+
+    /**
+     * Detects the codec of stored content from its first bytes.
+     * @param header The first bytes of the content
+     * @param length Number of valid bytes in header
+     * @return The detected codec, NONE if no magic matches
+     */
+    public static TestCaseCodec detect(byte[] header, int length) {
+        if (length >= 2 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b) {
+            return GZIP;
+        }
+        if (length >= 4 && (header[0] & 0xff) == 0x28 && (header[1] & 0xff) == 0xb5
+                && (header[2] & 0xff) == 0x2f && (header[3] & 0xff) == 0xfd) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+    /**
+     * Wraps a sink so that raw bytes written to it are encoded; for content that is pushed
+     * in pieces rather than pulled from a stream. Closing the encoder writes the trailer
+     * and closes the sink.
+     * @param sink Destination of the encoded content
+     * @return A stream accepting raw content
+     * @throws IOException If the encoder header cannot be written
+     */
+    public OutputStream newEncoder(OutputStream sink) throws IOException {
+        return switch (this) {
+            case GZIP -> new GZIPOutputStream(sink, CHUNK_SIZE);
+            case ZSTD -> new ZstdOutputStream(sink, ZSTD_LEVEL);
+            case NONE -> sink;
+        };
+    }
+
+    /**
+     * Pull-based adapter around an OutputStream encoder: each refill feeds one chunk
+     * of raw input through the encoder and serves whatever compressed bytes it emitted.
+     */
+    private static final class EncodingInputStream extends InputStream {
+        private final InputStream raw;
+        private final TestCaseCodec codec;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private final ExposedByteArrayOutputStream pending = new ExposedByteArrayOutputStream();
+        private OutputStream encoder;
+        private int position;
+        private boolean finished;
+
+        EncodingInputStream(InputStream raw, TestCaseCodec codec) {
+            this.raw = raw;
+            this.codec = codec;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == pending.size()) {
+                if (finished) {
+                    return -1;
+                }
+                refill();
+            }
+            int n = Math.min(len, pending.size() - position);
+            System.arraycopy(pending.buffer(), position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        private void refill() throws IOException {
+            pending.reset();
+            position = 0;
+            if (encoder == null) {
+                encoder = codec.newEncoder(pending);
+            }
+            int n = raw.read(chunk);
+            if (n == -1) {
+                encoder.close(); // Flushes the trailer into pending
+                finished = true;
+            } else {
+                encoder.write(chunk, 0, n);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            raw.close();
+        }
+    }
+
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
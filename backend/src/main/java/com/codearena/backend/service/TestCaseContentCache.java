@@ -0,0 +1,252 @@
+package com.codearena.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Read-through cache for test case file content, placed in front of TestCaseStorage.
+ *
+ * Two LRU tiers, each bounded by total bytes:
+ * - Heap tier for small files (typically samples shown on every problem page view)
+ * - Local-disk spill tier for larger files that would crowd the heap
+ * Files larger than the disk tier's per-entry limit are not cached.
+ *
+ * Keys include the test case's content generation, which is bumped whenever its files
+ * are rewritten. A node that did not see a write therefore misses instead of serving
+ * stale content; local writes and deletes also invalidate entries eagerly.
+ *
+ * Metrics (Micrometer): testcase.cache.hits{tier}, testcase.cache.misses,
+ * testcase.cache.evictions{tier}, testcase.cache.size.bytes{tier}.
+ */
+@Component
+public class TestCaseContentCache {
+
+    /**
+     * Cache key for one test case file at one content generation.
+     * @param problemId The problem ID
+     * @param testCaseId The test case ID
+     * @param fileName The file name (input.txt or output.txt), with a window suffix for cached previews
+     * @param generation The test case content generation
+     */
+    public record Key(Long problemId, Long testCaseId, String fileName, long generation) {
+    }
+
+    private record HeapEntry(String content, long size) {
+    }
+
+    private record DiskEntry(Path path, long size) {
+    }
+
+    private final boolean enabled;
+    private final long maxHeapBytes;
+    private final long maxHeapEntryBytes;
+    private final long maxDiskBytes;
+    private final long maxDiskEntryBytes;
+    private final Path diskDir;
+
+    // Access-ordered maps: iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, HeapEntry> heap = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Key, DiskEntry> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile long heapBytes;
+    private volatile long diskBytes;
+
+    private final Counter heapHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter heapEvictions;
+    private final Counter diskEvictions;
+
+    public TestCaseContentCache(MeterRegistry meterRegistry,
+                                @Value("${testcase.cache.enabled:true}") boolean enabled,
+                                @Value("${testcase.cache.heap.max-bytes:67108864}") long maxHeapBytes,
+                                @Value("${testcase.cache.heap.max-entry-bytes:262144}") long maxHeapEntryBytes,
+                                @Value("${testcase.cache.disk.max-bytes:1073741824}") long maxDiskBytes,
+                                @Value("${testcase.cache.disk.max-entry-bytes:67108864}") long maxDiskEntryBytes,
+                                @Value("${testcase.cache.disk.dir:${java.io.tmpdir}/codearena-content-cache}") String diskDir) throws IOException {
+        this.enabled = enabled;
+        this.maxHeapBytes = maxHeapBytes;
+        this.maxHeapEntryBytes = Math.min(maxHeapEntryBytes, maxHeapBytes);
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxDiskEntryBytes = Math.min(maxDiskEntryBytes, maxDiskBytes);
+        this.diskDir = Path.of(diskDir);
+
+        if (enabled) {
+            // The index lives in memory, so files left by a previous run are unreachable
+            FileSystemUtils.deleteRecursively(this.diskDir);
+            Files.createDirectories(this.diskDir);
+        }
+
+        this.heapHits = Counter.builder("testcase.cache.hits").tag("tier", "heap").register(meterRegistry);
+        this.diskHits = Counter.builder("testcase.cache.hits").tag("tier", "disk").register(meterRegistry);
+        this.misses = Counter.builder("testcase.cache.misses").register(meterRegistry);
+        this.heapEvictions = Counter.builder("testcase.cache.evictions").tag("tier", "heap").register(meterRegistry);
+        this.diskEvictions = Counter.builder("testcase.cache.evictions").tag("tier", "disk").register(meterRegistry);
+        Gauge.builder("testcase.cache.size.bytes", this, c -> c.heapBytes).tag("tier", "heap").register(meterRegistry);
+        Gauge.builder("testcase.cache.size.bytes", this, c -> c.diskBytes).tag("tier", "disk").register(meterRegistry);
+    }
+
+    /**
+     * Looks up cached content.
+     * @param key The cache key
+     * @return The cached content, or null on a miss
+     */
+    public String get(Key key) {
+        if (!enabled) {
+            return null;
+        }
+        HeapEntry heapEntry;
+        DiskEntry diskEntry = null;
+        synchronized (this) {
+            heapEntry = heap.get(key);
+            if (heapEntry == null) {
+                diskEntry = disk.get(key);
+            }
+        }
+        if (heapEntry != null) {
+            heapHits.increment();
+            return heapEntry.content();
+        }
+        if (diskEntry != null) {
+            try {
+                String content = Files.readString(diskEntry.path(), StandardCharsets.UTF_8);
+                diskHits.increment();
+                return content;
+            } catch (IOException e) {
+                // Evicted concurrently or removed from disk; treat as a miss
+                removeDiskEntry(key, diskEntry);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches content in the tier matching its size.
+     * @param key The cache key
+     * @param content The file content
+     * @param size The content size in bytes
+     */
+    public void put(Key key, String content, long size) {
+        if (!enabled) {
+            return;
+        }
+        if (size <= maxHeapEntryBytes) {
+            putHeap(key, content, size);
+        } else if (size <= maxDiskEntryBytes) {
+            putDisk(key, content, size);
+        }
+    }
+
+    /**
+     * Drops all cached generations of a test case's files.
+     * @param problemId The problem ID
+     * @param testCaseId The test case ID
+     */
+    public void invalidate(Long problemId, Long testCaseId) {
+        if (!enabled) {
+            return;
+        }
+        List<Path> stale = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Key, HeapEntry>> heapIt = heap.entrySet().iterator();
+            while (heapIt.hasNext()) {
+                Map.Entry<Key, HeapEntry> entry = heapIt.next();
+                if (matches(entry.getKey(), problemId, testCaseId)) {
+                    heapBytes -= entry.getValue().size();
+                    heapIt.remove();
+                }
+            }
+            Iterator<Map.Entry<Key, DiskEntry>> diskIt = disk.entrySet().iterator();
+            while (diskIt.hasNext()) {
+                Map.Entry<Key, DiskEntry> entry = diskIt.next();
+                if (matches(entry.getKey(), problemId, testCaseId)) {
+                    diskBytes -= entry.getValue().size();
+                    stale.add(entry.getValue().path());
+                    diskIt.remove();
+                }
+            }
+        }
+        deleteQuietly(stale);
+    }
+
+    private void putHeap(Key key, String content, long size) {
+        synchronized (this) {
+            HeapEntry previous = heap.put(key, new HeapEntry(content, size));
+            heapBytes += size - (previous != null ? previous.size() : 0);
+            Iterator<Map.Entry<Key, HeapEntry>> it = heap.entrySet().iterator();
+            while (heapBytes > maxHeapBytes && it.hasNext()) {
+                Map.Entry<Key, HeapEntry> eldest = it.next();
+                heapBytes -= eldest.getValue().size();
+                it.remove();
+                heapEvictions.increment();
+            }
+        }
+    }
+
+    private void putDisk(Key key, String content, long size) {
+        Path file = diskDir.resolve(UUID.randomUUID() + ".cache");
+        try {
+            Files.writeString(file, content, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Failed to spill test case content to disk cache: " + e.getMessage());
+            deleteQuietly(List.of(file));
+            return;
+        }
+        List<Path> stale = new ArrayList<>();
+        synchronized (this) {
+            DiskEntry previous = disk.put(key, new DiskEntry(file, size));
+            if (previous != null) {
+                diskBytes -= previous.size();
+                stale.add(previous.path());
+            }
+            diskBytes += size;
+            Iterator<Map.Entry<Key, DiskEntry>> it = disk.entrySet().iterator();
+            while (diskBytes > maxDiskBytes && it.hasNext()) {
+                Map.Entry<Key, DiskEntry> eldest = it.next();
+                diskBytes -= eldest.getValue().size();
+                stale.add(eldest.getValue().path());
+                it.remove();
+                diskEvictions.increment();
+            }
+        }
+        deleteQuietly(stale);
+    }
+
+    private void removeDiskEntry(Key key, DiskEntry expected) {
+        synchronized (this) {
+            if (disk.get(key) == expected) {
+                disk.remove(key);
+                diskBytes -= expected.size();
+            }
+        }
+    }
+
+    private static boolean matches(Key key, Long problemId, Long testCaseId) {
+        return key.problemId().equals(problemId) && key.testCaseId().equals(testCaseId);
+    }
+
+    private static void deleteQuietly(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Failed to delete disk cache file " + file + ": " + e.getMessage());
+            }
+        }
+    }
+}
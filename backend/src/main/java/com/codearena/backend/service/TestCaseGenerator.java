@@ -0,0 +1,167 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.repository.TestCaseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Materializes the files of generated test cases.
+ *
+ * A generated test case stores no input or output. Its input is produced by running the
+ * generator program with the test case's arguments and seed, and its output by running the
+ * reference solution on that input. Both programs are stored as content-addressed blobs;
+ * each is compiled once per node and reused for every test case that references it.
+ *
+ * Materialized sizes are written back to the test case, so fileSize reflects the data a
+ * judge actually works with.
+ */
+@Service
+public class TestCaseGenerator {
+
+    private final CloudStorageService cloudStorageService;
+    private final ProgramRunner programRunner;
+    private final TestCaseRepository testCaseRepository;
+    private final Duration timeLimit;
+    private final Path dir;
+
+    // Compiled programs by language and source hash; a failed compilation is not kept
+    private final Map<String, CompletableFuture<ProgramRunner.Program>> programs = new ConcurrentHashMap<>();
+
+    public TestCaseGenerator(CloudStorageService cloudStorageService,
+                             ProgramRunner programRunner,
+                             TestCaseRepository testCaseRepository,
+                             @Value("${testcase.generator.time-limit:PT60S}") Duration timeLimit,
+                             @Value("${testcase.generator.dir:${java.io.tmpdir}/codearena-generators}") String dir) throws IOException {
+        this.cloudStorageService = cloudStorageService;
+        this.programRunner = programRunner;
+        this.testCaseRepository = testCaseRepository;
+        this.timeLimit = timeLimit;
+        this.dir = Path.of(dir);
+
+        // Compiled programs are tracked in memory, so directories left by a previous run are unreachable
+        FileSystemUtils.deleteRecursively(this.dir);
+        Files.createDirectories(this.dir);
+    }
+
+    /**
+     * Produces the input of a generated test case by running its generator.
+     * @param testCase The generated test case
+     * @param target The file to write the input to
+     * @return The size of the input in bytes
+     * @throws IOException If the generator cannot be fetched or started
+     * @throws IllegalArgumentException If the generator does not compile
+     * @throws IllegalStateException If the generator fails or exceeds the time limit
+     */
+    public long generateInput(TestCase testCase, Path target) throws IOException {
+        ProgramRunner.Program generator = program(testCase.getGeneratorLanguage(), testCase.getGeneratorSha256());
+        ProgramRunner.RunResult result = programRunner.run(generator, arguments(testCase), null, target, timeLimit);
+        check(result, "Generator", testCase);
+        long size = Files.size(target);
+        if (testCase.getInputFileSize() == null || testCase.getInputFileSize() != size) {
+            testCaseRepository.updateGeneratedInputSize(testCase.getId(), size);
+            testCase.setInputFileSize(size);
+        }
+        return size;
+    }
+
+    /**
+     * Produces the expected output of a generated test case by running the reference solution.
+     * @param testCase The generated test case
+     * @param input The materialized input
+     * @param target The file to write the output to
+     * @return The size of the output in bytes
+     * @throws IOException If the solution cannot be fetched or started
+     * @throws IllegalArgumentException If the solution does not compile
+     * @throws IllegalStateException If the solution fails or exceeds the time limit
+     */
+    public long generateOutput(TestCase testCase, Path input, Path target) throws IOException {
+        ProgramRunner.Program solution = program(testCase.getSolutionLanguage(), testCase.getSolutionSha256());
+        ProgramRunner.RunResult result = programRunner.run(solution, List.of(), input, target, timeLimit);
+        check(result, "Reference solution", testCase);
+        long size = Files.size(target);
+        if (testCase.getOutputFileSize() == null || testCase.getOutputFileSize() != size) {
+            testCaseRepository.updateGeneratedOutputSize(testCase.getId(), size);
+            testCase.setOutputFileSize(size);
+        }
+        return size;
+    }
+
+    /**
+     * Builds the generator arguments of a test case: its arguments split on whitespace,
+     * followed by the seed if set.
+     * @param testCase The generated test case
+     * @return The arguments
+     */
+    public static List<String> arguments(TestCase testCase) {
+        List<String> arguments = new ArrayList<>();
+        String args = testCase.getGeneratorArgs();
+        if (args != null && !args.isBlank()) {
+            arguments.addAll(List.of(args.trim().split("\\s+")));
+        }
+        if (testCase.getGeneratorSeed() != null) {
+            arguments.add(testCase.getGeneratorSeed().toString());
+        }
+        return arguments;
+    }
+
+    private ProgramRunner.Program program(String languageName, String sha256) throws IOException {
+        ProgramLanguage language = ProgramLanguage.fromName(languageName);
+        String key = language.name().toLowerCase() + "-" + sha256;
+        CompletableFuture<ProgramRunner.Program> flight = new CompletableFuture<>();
+        CompletableFuture<ProgramRunner.Program> running = programs.putIfAbsent(key, flight);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            Path workDir = dir.resolve(key);
+            FileSystemUtils.deleteRecursively(workDir);
+            Files.createDirectories(workDir);
+            cloudStorageService.copyBlob(sha256, language.sourceFile(workDir));
+            ProgramRunner.Program program = programRunner.compile(language, workDir);
+            flight.complete(program);
+            return program;
+        } catch (IOException | RuntimeException e) {
+            programs.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static void check(ProgramRunner.RunResult result, String program, TestCase testCase) {
+        if (result.timedOut()) {
+            throw new IllegalStateException(program + " exceeded the time limit for test case " + testCase.getId());
+        }
+        if (result.exitCode() != 0) {
+            throw new IllegalStateException(program + " failed for test case " + testCase.getId()
+                    + " with exit code " + result.exitCode() + ": " + result.stderr());
+        }
+    }
+
+    private static ProgramRunner.Program await(CompletableFuture<ProgramRunner.Program> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+}
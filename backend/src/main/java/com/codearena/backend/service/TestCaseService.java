@@ -1,19 +1,42 @@
 package com.codearena.backend.service;
 
+import com.codearena.backend.dto.TestCaseArchiveImportDTO;
 import com.codearena.backend.dto.TestCaseCreateDTO;
+import com.codearena.backend.dto.TestCaseFilePreviewDTO;
+import com.codearena.backend.dto.TestCaseFileUrlDTO;
+import com.codearena.backend.dto.TestCaseGeneratorDTO;
+import com.codearena.backend.dto.TestCaseImportResultDTO;
 import com.codearena.backend.dto.TestCaseUpdateDTO;
 import com.codearena.backend.dto.TestCaseResponseDTO;
+import com.codearena.backend.dto.TestCaseUploadDTO;
+import com.codearena.backend.dto.TestCaseUploadSessionDTO;
 import com.codearena.backend.entity.TestCase;
 import com.codearena.backend.entity.Problem;
 import com.codearena.backend.entity.User;
+import com.codearena.backend.exception.ApiException;
 import com.codearena.backend.repository.TestCaseRepository;
 import com.codearena.backend.repository.ProblemRepository;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.security.access.AccessDeniedException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -28,20 +51,109 @@ import java.util.stream.Collectors;
  * 
  * Test cases are stored with metadata in the database and actual input/output files
  * in Google Cloud Storage for scalability and cost-effectiveness.
+ * 
+ * Responses include a preview of each visible file (the first DEFAULT_PREVIEW_BYTES bytes)
+ * rather than the whole content, so listing huge tests stays fast; the rest is read in
+ * windows through getTestCaseFileRange. Previews go through the content cache, so repeated
+ * lists and sample views do not read storage.
+ * 
+ * Very large files can be uploaded through resumable upload sessions: chunks are appended
+ * at explicit offsets over any number of requests, and the test case is created only when
+ * the session is finalized. Sessions live in memory and expire after a day without chunks.
+ * 
+ * Clients that fetch files themselves can ask for short-lived signed URLs instead of content
+ * (ContentMode.SIGNED_URL); the files then go straight from storage to the client.
+ * 
+ * Every stored expected output gets a token index (OutputTokenIndex) built in the background,
+ * so checkers compare against pre-tokenized data instead of splitting the text again.
+ * 
+ * Generated test cases store a generator and a reference solution instead of files. They
+ * have no content to preview, download, replace or export; judges materialize them.
  */
 @Service
 public class TestCaseService {
+    /** Bytes of each file included in test case responses by default. */
+    static final int DEFAULT_PREVIEW_BYTES = 4 * 1024;
+    
+    /** Largest window a single preview or range read may return. */
+    static final int MAX_PREVIEW_BYTES = 1024 * 1024;
+    
+    /** Upload sessions without activity for this long are discarded. */
+    static final Duration UPLOAD_SESSION_TIMEOUT = Duration.ofHours(24);
+    
     private final TestCaseRepository testCaseRepository;
     private final ProblemRepository problemRepository;
     private final CloudStorageService cloudStorageService;
+    private final TestCaseBundleService testCaseBundleService;
+    private final OutputTokenIndexService outputTokenIndexService;
+    private final ConcurrentMap<String, UploadSession> uploadSessions = new ConcurrentHashMap<>();
+
+    /**
+     * How file content is attached to test case responses.
+     */
+    public enum ContentMode {
+        /** The first bytes of each file. */
+        PREVIEW,
+        /** The whole content of each file. */
+        FULL,
+        /** A signed download URL per file, and no content. */
+        SIGNED_URL;
+
+        /**
+         * Maps request flags to a mode; signed URLs take precedence over full content.
+         * @param full Whether full content was requested
+         * @param signedUrls Whether signed URLs were requested
+         * @return The content mode
+         */
+        public static ContentMode of(boolean full, boolean signedUrls) {
+            return signedUrls ? SIGNED_URL : full ? FULL : PREVIEW;
+        }
+    }
+
+    /**
+     * A resumable upload of a test case's two files. The file uploads are started on
+     * their first chunk.
+     */
+    private static class UploadSession {
+        private final String id = UUID.randomUUID().toString();
+        private final Long problemId;
+        private final String ownerUid;
+        private final TestCaseUploadDTO metadata;
+        private CloudStorageService.FileUpload input;
+        private CloudStorageService.FileUpload output;
+        private volatile LocalDateTime lastActivity = LocalDateTime.now();
+
+        UploadSession(Long problemId, String ownerUid, TestCaseUploadDTO metadata) {
+            this.problemId = problemId;
+            this.ownerUid = ownerUid;
+            this.metadata = metadata;
+        }
+
+        boolean isExpired(LocalDateTime now) {
+            return lastActivity.plus(UPLOAD_SESSION_TIMEOUT).isBefore(now);
+        }
+
+        synchronized void abort() {
+            if (input != null) {
+                input.abort();
+            }
+            if (output != null) {
+                output.abort();
+            }
+        }
+    }
 
     @Autowired
     public TestCaseService(TestCaseRepository testCaseRepository, 
                           ProblemRepository problemRepository,
-                          CloudStorageService cloudStorageService) {
+                          CloudStorageService cloudStorageService,
+                          TestCaseBundleService testCaseBundleService,
+                          OutputTokenIndexService outputTokenIndexService) {
         this.testCaseRepository = testCaseRepository;
         this.problemRepository = problemRepository;
         this.cloudStorageService = cloudStorageService;
+        this.testCaseBundleService = testCaseBundleService;
+        this.outputTokenIndexService = outputTokenIndexService;
     }
 
     /**
@@ -65,10 +177,10 @@ public class TestCaseService {
             throw new IllegalArgumentException("Test case name already exists for this problem");
         }
         
-        // Calculate file sizes from content
-        long inputSize = cloudStorageService.calculateFileSize(dto.getInputContent());
-        long outputSize = cloudStorageService.calculateFileSize(dto.getOutputContent());
-        long totalFileSize = inputSize + outputSize;
+        // Store both files concurrently before the row exists: files point at content-addressed
+        // blobs, so no test case ID is needed and known content is not uploaded again
+        CloudStorageService.UploadedFiles uploaded = cloudStorageService.uploadTestCaseFiles(
+                dto.getInputContent(), dto.getOutputContent());
         
         // Create test case entity
         TestCase testCase = TestCase.builder()
@@ -76,7 +188,6 @@ public class TestCaseService {
                 .description(dto.getDescription())
                 .inputFileName("input.txt")
                 .outputFileName("output.txt")
-                .fileSize(totalFileSize) // Use calculated size
                 .isHidden(dto.getIsHidden())
                 .isSample(dto.getIsSample())
                 .problem(problem)
@@ -84,28 +195,361 @@ public class TestCaseService {
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .build();
+        applyStoredFiles(testCase, uploaded.input(), uploaded.output());
+        
+        TestCase saved = saveOrRelease(testCase, uploaded.input(), uploaded.output());
+        testCaseBundleService.testSetChanged(problemId);
+        outputTokenIndexService.indexOutput(saved.getOutputSha256(), dto.getOutputContent());
+        return toResponseDTO(saved, false); // Don't include content for regular users
+    }
+
+    /**
+     * Creates a new test case from streamed input and output files.
+     * Files are piped straight into storage and hashed while they stream, so their
+     * content is never held in memory.
+     * @param problemId The problem ID
+     * @param dto Test case metadata
+     * @param inputContent Input file stream
+     * @param outputContent Output file stream
+     * @param creator The user creating the test case
+     * @return The created test case as DTO
+     * @throws IOException If a file cannot be stored; the test case is not created
+     */
+    public TestCaseResponseDTO createTestCaseFromFiles(Long problemId, TestCaseUploadDTO dto,
+                                                       InputStream inputContent, InputStream outputContent,
+                                                       User creator) throws IOException {
+        Problem problem = problemRepository.findById(problemId)
+                .orElseThrow(() -> new EntityNotFoundException("Problem not found"));
+        
+        if (!canManageTestCases(problem, creator)) {
+            throw new AccessDeniedException("You do not have permission to create test cases for this problem");
+        }
+        
+        if (testCaseRepository.existsByProblemIdAndName(problemId, dto.getName())) {
+            throw new IllegalArgumentException("Test case name already exists for this problem");
+        }
+        
+        CloudStorageService.StoredFile input = cloudStorageService.uploadTestCaseFile(inputContent);
+        CloudStorageService.StoredFile output;
+        try {
+            output = cloudStorageService.uploadTestCaseFile(outputContent);
+        } catch (IOException | RuntimeException e) {
+            cloudStorageService.releaseBlob(input.sha256());
+            throw e;
+        }
+        
+        TestCase testCase = TestCase.builder()
+                .name(dto.getName())
+                .description(dto.getDescription())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .isHidden(dto.getIsHidden())
+                .isSample(dto.getIsSample())
+                .problem(problem)
+                .createdBy(creator)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        applyStoredFiles(testCase, input, output);
+        
+        TestCase saved = saveOrRelease(testCase, input, output);
+        testCaseBundleService.testSetChanged(problem.getId());
+        outputTokenIndexService.indexStoredOutput(saved.getOutputSha256());
+        return toResponseDTO(saved, false);
+    }
+
+    /**
+     * Creates a generated test case. Only the generator and reference solution sources are
+     * stored; both files are produced on the judges that need them, and the file sizes are
+     * recorded then.
+     * @param problemId The problem ID
+     * @param dto The programs and generator arguments
+     * @param creator The user creating the test case
+     * @return The created test case as DTO
+     */
+    public TestCaseResponseDTO createGeneratedTestCase(Long problemId, TestCaseGeneratorDTO dto, User creator) {
+        Problem problem = problemRepository.findById(problemId)
+                .orElseThrow(() -> new EntityNotFoundException("Problem not found"));
+        
+        if (!canManageTestCases(problem, creator)) {
+            throw new AccessDeniedException("You do not have permission to create test cases for this problem");
+        }
+        
+        if (testCaseRepository.existsByProblemIdAndName(problemId, dto.getName())) {
+            throw new IllegalArgumentException("Test case name already exists for this problem");
+        }
+        
+        // Fail before storing anything if a language is unknown
+        ProgramLanguage generatorLanguage = ProgramLanguage.fromName(dto.getGeneratorLanguage());
+        ProgramLanguage solutionLanguage = ProgramLanguage.fromName(dto.getSolutionLanguage());
+        
+        // Sources are content-addressed like test files, so tests sharing a generator share its blob
+        CloudStorageService.UploadedFiles programs = cloudStorageService.uploadTestCaseFiles(
+                dto.getGeneratorSource(), dto.getSolutionSource());
+        
+        TestCase testCase = TestCase.builder()
+                .name(dto.getName())
+                .description(dto.getDescription())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .fileSize(0L) // Nothing materialized yet
+                .storedFileSize(programs.input().storedSize() + programs.output().storedSize())
+                .generatorSha256(programs.input().sha256())
+                .generatorLanguage(generatorLanguage.name().toLowerCase())
+                .generatorArgs(dto.getGeneratorArgs())
+                .generatorSeed(dto.getGeneratorSeed())
+                .solutionSha256(programs.output().sha256())
+                .solutionLanguage(solutionLanguage.name().toLowerCase())
+                .isHidden(dto.getIsHidden())
+                .isSample(dto.getIsSample())
+                .problem(problem)
+                .createdBy(creator)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        
+        TestCase saved = saveOrRelease(testCase, programs.input(), programs.output());
+        testCaseBundleService.testSetChanged(problemId);
+        return toResponseDTO(saved, false);
+    }
+
+    /**
+     * Imports a whole test set from a zip, tar.gz or tar archive.
+     * The archive is read in a single pass: each NN.in and NN.out/NN.ans entry is streamed
+     * into storage as it is read, and a test case is formed once both files of a test have
+     * been seen. The rows are inserted together in JDBC batches at the end, so either every
+     * test in the archive is imported or none is.
+     * @param problemId The problem ID
+     * @param dto Options applied to every imported test case
+     * @param archive The archive stream
+     * @param creator The user importing the test set
+     * @return The import summary
+     * @throws IOException If the archive cannot be read or a file cannot be stored
+     */
+    public TestCaseImportResultDTO importTestCaseArchive(Long problemId, TestCaseArchiveImportDTO dto,
+                                                         InputStream archive, User creator) throws IOException {
+        Problem problem = problemRepository.findById(problemId)
+                .orElseThrow(() -> new EntityNotFoundException("Problem not found"));
         
-        testCase = testCaseRepository.save(testCase);
+        if (!canManageTestCases(problem, creator)) {
+            throw new AccessDeniedException("You do not have permission to create test cases for this problem");
+        }
         
-        // Upload files to Cloud Storage (with error handling)
+        Set<String> takenNames = new HashSet<>(testCaseRepository.findNamesByProblemId(problemId));
+        // Tests with one file stored so far: [input, output]
+        Map<String, CloudStorageService.StoredFile[]> pending = new LinkedHashMap<>();
+        List<TestCase> testCases = new ArrayList<>();
+        List<String> skippedEntries = new ArrayList<>();
         try {
-            cloudStorageService.uploadTestCaseFile(problemId, testCase.getId(), "input.txt", dto.getInputContent());
-            cloudStorageService.uploadTestCaseFile(problemId, testCase.getId(), "output.txt", dto.getOutputContent());
+            try (TestCaseArchive entries = TestCaseArchive.open(archive)) {
+                TestCaseArchive.Entry entry;
+                while ((entry = entries.next()) != null) {
+                    TestCaseArchive.TestFile testFile = TestCaseArchive.classify(entry.name());
+                    if (testFile == null) {
+                        skippedEntries.add(entry.name());
+                        continue;
+                    }
+                    String name = testFile.testName();
+                    if (takenNames.contains(name)) {
+                        throw new IllegalArgumentException("Test case name already exists for this problem: " + name);
+                    }
+                    CloudStorageService.StoredFile[] files = pending.computeIfAbsent(
+                            name, n -> new CloudStorageService.StoredFile[2]);
+                    int slot = testFile.input() ? 0 : 1;
+                    if (files[slot] != null) {
+                        throw new IllegalArgumentException("Archive contains more than one "
+                                + (testFile.input() ? "input" : "output") + " file for test " + name);
+                    }
+                    files[slot] = cloudStorageService.uploadTestCaseFile(entry.content());
+                    if (files[0] != null && files[1] != null) {
+                        pending.remove(name);
+                        takenNames.add(name);
+                        testCases.add(buildImportedTestCase(name, dto, problem, creator, files[0], files[1]));
+                    }
+                }
+            }
+            
+            // Halves of a test without a partner are not imported
+            pending.forEach((name, files) -> skippedEntries.add(name + (files[0] != null ? ".in" : ".out")
+                    + " (no matching " + (files[0] != null ? "output" : "input") + ")"));
+            releaseImportedFiles(List.of(), pending.values());
+            pending.clear();
             
-            // Update file size from Cloud Storage if available
-            long actualInputSize = cloudStorageService.getTestCaseFileSize(problemId, testCase.getId(), "input.txt");
-            long actualOutputSize = cloudStorageService.getTestCaseFileSize(problemId, testCase.getId(), "output.txt");
-            if (actualInputSize > 0 || actualOutputSize > 0) {
-                testCase.setFileSize(actualInputSize + actualOutputSize);
-                testCase = testCaseRepository.save(testCase);
+            if (testCases.isEmpty()) {
+                throw new IllegalArgumentException("Archive contains no .in/.out test file pairs");
+            }
+            testCases.sort((a, b) -> TestCaseArchive.TEST_ORDER.compare(a.getName(), b.getName()));
+            testCaseRepository.insertAll(testCases);
+        } catch (IOException | RuntimeException e) {
+            releaseImportedFiles(testCases, pending.values());
+            throw e;
+        }
+        testCaseBundleService.testSetChanged(problemId);
+        testCases.forEach(testCase -> outputTokenIndexService.indexStoredOutput(testCase.getOutputSha256()));
+        
+        System.out.println("Imported " + testCases.size() + " test cases for problem " + problemId
+                + ", skipped " + skippedEntries.size() + " archive entries");
+        TestCaseImportResultDTO result = new TestCaseImportResultDTO();
+        result.setImportedCount(testCases.size());
+        result.setTestCaseNames(testCases.stream().map(TestCase::getName).collect(Collectors.toList()));
+        result.setSkippedEntries(skippedEntries);
+        result.setTotalFileSize(testCases.stream().mapToLong(TestCase::getFileSize).sum());
+        return result;
+    }
+
+    /**
+     * Starts a resumable upload session for a new test case.
+     * @param problemId The problem ID
+     * @param dto Test case metadata
+     * @param creator The user creating the test case
+     * @return The new session, with both files empty
+     */
+    public TestCaseUploadSessionDTO startUploadSession(Long problemId, TestCaseUploadDTO dto, User creator) {
+        Problem problem = problemRepository.findById(problemId)
+                .orElseThrow(() -> new EntityNotFoundException("Problem not found"));
+        
+        if (!canManageTestCases(problem, creator)) {
+            throw new AccessDeniedException("You do not have permission to create test cases for this problem");
+        }
+        
+        if (testCaseRepository.existsByProblemIdAndName(problemId, dto.getName())) {
+            throw new IllegalArgumentException("Test case name already exists for this problem");
+        }
+        
+        expireUploadSessions();
+        UploadSession session = new UploadSession(problemId, creator.getFirebaseUid(), dto);
+        uploadSessions.put(session.id, session);
+        return toSessionDTO(session);
+    }
+
+    /**
+     * Gets the state of an upload session, for resuming after a dropped connection.
+     * @param sessionId The session ID
+     * @param user The user who started the session
+     * @return The session
+     */
+    public TestCaseUploadSessionDTO getUploadSession(String sessionId, User user) {
+        return toSessionDTO(findUploadSession(sessionId, user));
+    }
+
+    /**
+     * Appends a chunk to the input or output file of an upload session.
+     * The chunk is streamed into storage as it arrives. If the connection drops partway,
+     * the bytes received so far are kept and the session reports the offset to resume at.
+     * @param sessionId The session ID
+     * @param file Which file the chunk belongs to: "input" or "output"
+     * @param offset Position of the chunk in the file; must equal the bytes received so far
+     * @param content The chunk content
+     * @param user The user who started the session
+     * @return The session after the chunk
+     * @throws IOException If the chunk cannot be read or stored
+     */
+    public TestCaseUploadSessionDTO appendUploadChunk(String sessionId, String file, long offset,
+                                                      InputStream content, User user) throws IOException {
+        UploadSession session = findUploadSession(sessionId, user);
+        boolean isInput = isInputFile(file);
+        CloudStorageService.FileUpload upload;
+        synchronized (session) {
+            upload = isInput ? session.input : session.output;
+            if (upload == null) {
+                upload = cloudStorageService.startFileUpload();
+                if (isInput) {
+                    session.input = upload;
+                } else {
+                    session.output = upload;
+                }
+            }
+        }
+        synchronized (upload) {
+            if (offset != upload.size()) {
+                throw ApiException.conflict("Chunk offset " + offset + " does not match the " + file
+                        + " size " + upload.size() + "; resume from the current size");
+            }
+            try {
+                upload.append(content);
+            } catch (IOException | RuntimeException e) {
+                if (upload.isFailed()) {
+                    // The storage upload broke; the session cannot be resumed
+                    uploadSessions.remove(session.id, session);
+                    session.abort();
+                }
+                throw e;
+            } finally {
+                session.lastActivity = LocalDateTime.now();
+            }
+        }
+        return toSessionDTO(session);
+    }
+
+    /**
+     * Finishes an upload session and creates its test case.
+     * Both files are committed to storage, and the test case becomes visible only now.
+     * @param sessionId The session ID
+     * @param user The user who started the session
+     * @return The created test case as DTO
+     * @throws IOException If a file cannot be stored; the session is discarded
+     */
+    public TestCaseResponseDTO finalizeUploadSession(String sessionId, User user) throws IOException {
+        UploadSession session = findUploadSession(sessionId, user);
+        if (!uploadSessions.remove(session.id, session)) {
+            throw new EntityNotFoundException("Upload session not found");
+        }
+        Problem problem = problemRepository.findById(session.problemId)
+                .orElseThrow(() -> new EntityNotFoundException("Problem not found"));
+        
+        CloudStorageService.StoredFile input;
+        CloudStorageService.StoredFile output;
+        synchronized (session) {
+            try {
+                input = finishFile(session.input);
+            } catch (IOException | RuntimeException e) {
+                session.abort();
+                throw e;
+            }
+            try {
+                output = finishFile(session.output);
+            } catch (IOException | RuntimeException e) {
+                session.abort();
+                cloudStorageService.releaseBlob(input.sha256());
+                throw e;
             }
-        } catch (Exception e) {
-            // Log error but don't fail the request
-            System.err.println("Failed to upload test case files to Cloud Storage: " + e.getMessage());
-            // Continue with the test case creation using calculated file size
         }
         
-        return toResponseDTO(testCase, false); // Don't include content for regular users
+        TestCaseUploadDTO dto = session.metadata;
+        if (testCaseRepository.existsByProblemIdAndName(session.problemId, dto.getName())) {
+            cloudStorageService.releaseBlobs(List.of(input.sha256(), output.sha256()));
+            throw new IllegalArgumentException("Test case name already exists for this problem");
+        }
+        TestCase testCase = TestCase.builder()
+                .name(dto.getName())
+                .description(dto.getDescription())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .isHidden(dto.getIsHidden())
+                .isSample(dto.getIsSample())
+                .problem(problem)
+                .createdBy(user)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        applyStoredFiles(testCase, input, output);
+        
+        TestCase saved = saveOrRelease(testCase, input, output);
+        testCaseBundleService.testSetChanged(problem.getId());
+        outputTokenIndexService.indexStoredOutput(saved.getOutputSha256());
+        return toResponseDTO(saved, false);
+    }
+
+    /**
+     * Discards an upload session and everything uploaded through it.
+     * @param sessionId The session ID
+     * @param user The user who started the session
+     */
+    public void abortUploadSession(String sessionId, User user) {
+        UploadSession session = findUploadSession(sessionId, user);
+        if (uploadSessions.remove(session.id, session)) {
+            session.abort();
+        }
     }
 
     /**
@@ -137,42 +581,58 @@ public class TestCaseService {
         testCase.setIsSample(dto.getIsSample());
         testCase.setUpdatedAt(LocalDateTime.now());
         
-        // Calculate new file size if content is provided
-        long newFileSize = testCase.getFileSize(); // Keep existing size as default
-        if (dto.getInputContent() != null || dto.getOutputContent() != null) {
-            long inputSize = dto.getInputContent() != null ? 
-                cloudStorageService.calculateFileSize(dto.getInputContent()) : 
-                cloudStorageService.getTestCaseFileSize(testCase.getProblem().getId(), testCaseId, "input.txt");
-            long outputSize = dto.getOutputContent() != null ? 
-                cloudStorageService.calculateFileSize(dto.getOutputContent()) : 
-                cloudStorageService.getTestCaseFileSize(testCase.getProblem().getId(), testCaseId, "output.txt");
-            newFileSize = inputSize + outputSize;
+        // Clients send both files on every edit; content identical to what is stored is not written again.
+        // Generated test cases have no files to replace, so only their metadata is updated
+        boolean generated = testCase.isGenerated();
+        String inputContent = generated ? null : changedContent(testCase, testCase.getInputFileName(), dto.getInputContent());
+        String outputContent = generated ? null : changedContent(testCase, testCase.getOutputFileName(), dto.getOutputContent());
+        TestCase saved;
+        if (inputContent == null && outputContent == null) {
+            saved = saveOrRelease(testCase, null, null);
+        } else {
+            // Store changed files concurrently and take their sizes from the uploads;
+            // a file that was not replaced keeps its recorded blob
+            CloudStorageService.UploadedFiles uploaded = cloudStorageService.uploadTestCaseFiles(inputContent, outputContent);
+            saved = replaceStoredFiles(testCase, uploaded.input(), uploaded.output());
+            if (outputContent != null) {
+                outputTokenIndexService.indexOutput(saved.getOutputSha256(), outputContent);
+            }
         }
-        testCase.setFileSize(newFileSize);
+        // The sample and hidden flags are part of the bundle index, so metadata edits count too
+        testCaseBundleService.testSetChanged(testCase.getProblem().getId());
+        return toResponseDTO(saved, false);
+    }
+
+    /**
+     * Replaces the input or output file of a test case from a stream.
+     * @param testCaseId Test case ID
+     * @param file Which file to replace: "input" or "output"
+     * @param content New file content stream
+     * @param updater The user replacing the file
+     * @return The updated test case as DTO
+     * @throws IOException If the file cannot be stored
+     */
+    public TestCaseResponseDTO replaceTestCaseFile(Long testCaseId, String file, InputStream content, User updater) throws IOException {
+        TestCase testCase = testCaseRepository.findById(testCaseId)
+                .orElseThrow(() -> new EntityNotFoundException("Test case not found"));
         
-        // Update files if provided
-        try {
-            if (dto.getInputContent() != null) {
-                cloudStorageService.updateTestCaseFile(testCase.getProblem().getId(), testCaseId, "input.txt", dto.getInputContent());
-            }
-            if (dto.getOutputContent() != null) {
-                cloudStorageService.updateTestCaseFile(testCase.getProblem().getId(), testCaseId, "output.txt", dto.getOutputContent());
-            }
-            
-            // Update file size from Cloud Storage if available
-            long actualInputSize = cloudStorageService.getTestCaseFileSize(testCase.getProblem().getId(), testCaseId, "input.txt");
-            long actualOutputSize = cloudStorageService.getTestCaseFileSize(testCase.getProblem().getId(), testCaseId, "output.txt");
-            if (actualInputSize > 0 || actualOutputSize > 0) {
-                testCase.setFileSize(actualInputSize + actualOutputSize);
-            }
-        } catch (Exception e) {
-            // Log error but don't fail the request
-            System.err.println("Failed to update test case files in Cloud Storage: " + e.getMessage());
-            // Continue with the update using calculated file size
+        if (!canManageTestCases(testCase.getProblem(), updater)) {
+            throw new AccessDeniedException("You do not have permission to update this test case");
+        }
+        if (testCase.isGenerated()) {
+            throw new IllegalArgumentException("Generated test cases have no stored files to replace");
         }
         
-        testCase = testCaseRepository.save(testCase);
-        return toResponseDTO(testCase, false);
+        boolean isInput = resolveFileName(testCase, file).equals(testCase.getInputFileName());
+        
+        CloudStorageService.StoredFile stored = cloudStorageService.uploadTestCaseFile(content);
+        testCase.setUpdatedAt(LocalDateTime.now());
+        TestCase saved = replaceStoredFiles(testCase, isInput ? stored : null, isInput ? null : stored);
+        testCaseBundleService.testSetChanged(testCase.getProblem().getId());
+        if (!isInput) {
+            outputTokenIndexService.indexStoredOutput(saved.getOutputSha256());
+        }
+        return toResponseDTO(saved, false);
     }
 
     /**
@@ -189,11 +649,11 @@ public class TestCaseService {
             throw new AccessDeniedException("You do not have permission to delete this test case");
         }
         
-        // Delete files from Cloud Storage
-        cloudStorageService.deleteTestCaseFiles(testCase.getProblem().getId(), testCaseId);
-        
-        // Delete from database
+        // Delete from database, then drop the file references; a failure in between
+        // leaves an unreferenced blob rather than a test case without files
         testCaseRepository.delete(testCase);
+        cloudStorageService.deleteTestCaseFiles(testCase);
+        testCaseBundleService.testSetChanged(testCase.getProblem().getId());
     }
 
     /**
@@ -203,6 +663,32 @@ public class TestCaseService {
      * @return The test case as DTO
      */
     public TestCaseResponseDTO getTestCase(Long testCaseId, User user) {
+        return getTestCase(testCaseId, user, null, false);
+    }
+
+    /**
+     * Gets a test case by ID with a file preview of the given size.
+     * @param testCaseId Test case ID
+     * @param user The user requesting the test case
+     * @param previewBytes Bytes of each file to include, or null for the default
+     * @param full Whether to include the full file content instead of a preview
+     * @return The test case as DTO
+     */
+    public TestCaseResponseDTO getTestCase(Long testCaseId, User user, Integer previewBytes, boolean full) {
+        return getTestCase(testCaseId, user, previewBytes, ContentMode.of(full, false));
+    }
+
+    /**
+     * Gets a test case by ID with its files attached as the given mode prescribes.
+     * Signed URLs are only created once the view permission check has passed, and only
+     * for files whose content the user may see.
+     * @param testCaseId Test case ID
+     * @param user The user requesting the test case
+     * @param previewBytes Bytes of each file to include in PREVIEW mode, or null for the default
+     * @param mode How to attach the files
+     * @return The test case as DTO
+     */
+    public TestCaseResponseDTO getTestCase(Long testCaseId, User user, Integer previewBytes, ContentMode mode) {
         TestCase testCase = testCaseRepository.findById(testCaseId)
                 .orElseThrow(() -> new EntityNotFoundException("Test case not found"));
         
@@ -212,7 +698,140 @@ public class TestCaseService {
         }
         
         boolean includeContent = testCase.getIsSample() || canManageTestCases(testCase.getProblem(), user);
-        return toResponseDTO(testCase, includeContent);
+        return toResponseDTOs(List.of(testCase), tc -> includeContent, previewBytes, mode).get(0);
+    }
+
+    /**
+     * Gets a test case whose file content the user is allowed to download.
+     * Applies the same rules as getTestCase: sample files are visible to viewers,
+     * all files to users who can manage the problem's test cases.
+     * @param testCaseId Test case ID
+     * @param file Which file will be downloaded: "input" or "output"
+     * @param user The user requesting the download
+     * @return The test case
+     */
+    public TestCase getTestCaseForDownload(Long testCaseId, String file, User user) {
+        TestCase testCase = testCaseRepository.findById(testCaseId)
+                .orElseThrow(() -> new EntityNotFoundException("Test case not found"));
+        
+        if (!canViewTestCases(testCase.getProblem(), user)
+                || !(testCase.getIsSample() || canManageTestCases(testCase.getProblem(), user))) {
+            throw new AccessDeniedException("You do not have permission to download this test case");
+        }
+        if (testCase.isGenerated()) {
+            throw new IllegalArgumentException("Generated test cases have no stored files to download");
+        }
+        
+        resolveFileName(testCase, file); // Validate before the response starts streaming
+        return testCase;
+    }
+
+    /**
+     * Reads a window of a test case file, for previews and paging through large files.
+     * Applies the same access rules as getTestCaseForDownload.
+     * @param testCaseId Test case ID
+     * @param file Which file to read: "input" or "output"
+     * @param offset Byte offset to start at
+     * @param bytes Maximum number of bytes to return, or null for the default preview size
+     * @param lines Maximum number of lines to return, or null for no line limit
+     * @param user The user requesting the window
+     * @return The window as DTO
+     * @throws IOException If the file cannot be read
+     */
+    public TestCaseFilePreviewDTO getTestCaseFileRange(Long testCaseId, String file, long offset, Integer bytes,
+                                                       Integer lines, User user) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative");
+        }
+        if (lines != null && lines < 0) {
+            throw new IllegalArgumentException("Line count must not be negative");
+        }
+        TestCase testCase = getTestCaseForDownload(testCaseId, file, user);
+        String fileName = resolveFileName(testCase, file);
+        
+        CloudStorageService.FileRange range = cloudStorageService.readTestCaseFileRange(
+                testCase, fileName, offset, previewSize(bytes), lines != null ? lines : 0);
+        
+        TestCaseFilePreviewDTO dto = new TestCaseFilePreviewDTO();
+        dto.setTestCaseId(testCase.getId());
+        dto.setFile(file);
+        dto.setOffset(range.offset());
+        dto.setLength(range.content().length);
+        dto.setNextOffset(range.nextOffset());
+        dto.setTotalSize(fileName.equals(testCase.getInputFileName())
+                ? testCase.getInputFileSize() : testCase.getOutputFileSize());
+        dto.setHasMore(range.hasMore());
+        dto.setContent(range.text());
+        return dto;
+    }
+
+    /**
+     * Gets all test cases of a problem for an archive export, in test order.
+     * Exports include hidden tests, so only users who can manage the problem's test cases
+     * may export them. Generated test cases have no files and are left out.
+     * @param problemId Problem ID
+     * @param user The user requesting the export
+     * @return The test cases
+     */
+    public List<TestCase> getTestCasesForExport(Long problemId, User user) {
+        Problem problem = problemRepository.findById(problemId)
+                .orElseThrow(() -> new EntityNotFoundException("Problem not found"));
+        
+        if (!canManageTestCases(problem, user)) {
+            throw new AccessDeniedException("You do not have permission to export test cases for this problem");
+        }
+        
+        List<TestCase> testCases = new ArrayList<>(testCaseRepository.findByProblemId(problemId));
+        testCases.removeIf(TestCase::isGenerated);
+        testCases.sort((a, b) -> TestCaseArchive.TEST_ORDER.compare(a.getName(), b.getName()));
+        return testCases;
+    }
+
+    /**
+     * Writes test cases to a zip archive in the layout importTestCaseArchive reads:
+     * NAME.in and NAME.out for every test case, in the given order.
+     * Callers must check access with getTestCasesForExport first.
+     * @param testCases The test cases
+     * @param out The destination stream
+     * @throws IOException If a file cannot be read or written
+     */
+    public void writeTestCaseArchive(List<TestCase> testCases, OutputStream out) throws IOException {
+        List<CloudStorageService.ArchiveFile> files = new ArrayList<>(testCases.size() * 2);
+        for (TestCase testCase : testCases) {
+            // Entry names must not introduce directories
+            String baseName = testCase.getName().replace('/', '_').replace('\\', '_');
+            files.add(new CloudStorageService.ArchiveFile(baseName + ".in", testCase, testCase.getInputFileName()));
+            files.add(new CloudStorageService.ArchiveFile(baseName + ".out", testCase, testCase.getOutputFileName()));
+        }
+        long bytes = cloudStorageService.writeZipArchive(files, out);
+        System.out.println("Exported " + testCases.size() + " test cases (" + bytes + " bytes)");
+    }
+
+    /**
+     * Streams a test case file to an output stream.
+     * Callers must check access with getTestCaseForDownload first.
+     * @param testCase The test case
+     * @param file Which file to stream: "input" or "output"
+     * @param out The destination stream
+     * @param asStored Whether to stream the bytes as stored (encoded with getStorageCodec) instead of decoding them
+     * @throws IOException If the file cannot be read or written
+     */
+    public void streamTestCaseFile(TestCase testCase, String file, OutputStream out, boolean asStored) throws IOException {
+        String fileName = resolveFileName(testCase, file);
+        if (asStored) {
+            cloudStorageService.streamStoredTestCaseFile(testCase, fileName, out);
+        } else {
+            cloudStorageService.streamTestCaseFile(testCase, fileName, out);
+        }
+    }
+
+    /**
+     * Gets the codec shared by both stored files of a test case.
+     * @param testCase The test case
+     * @return The codec, or NONE if unknown, mixed, or uncompressed
+     */
+    public TestCaseCodec getStorageCodec(TestCase testCase) {
+        return TestCaseCodec.fromName(testCase.getStorageCodec());
     }
 
     /**
@@ -222,6 +841,30 @@ public class TestCaseService {
      * @return List of test case DTOs
      */
     public List<TestCaseResponseDTO> listTestCases(Long problemId, User user) {
+        return listTestCases(problemId, user, null, false);
+    }
+
+    /**
+     * Lists test cases for a problem with file previews of the given size.
+     * @param problemId Problem ID
+     * @param user The user requesting the test cases
+     * @param previewBytes Bytes of each file to include, or null for the default
+     * @param full Whether to include the full file content instead of previews
+     * @return List of test case DTOs
+     */
+    public List<TestCaseResponseDTO> listTestCases(Long problemId, User user, Integer previewBytes, boolean full) {
+        return listTestCases(problemId, user, previewBytes, ContentMode.of(full, false));
+    }
+
+    /**
+     * Lists test cases for a problem with their files attached as the given mode prescribes.
+     * @param problemId Problem ID
+     * @param user The user requesting the test cases
+     * @param previewBytes Bytes of each file to include in PREVIEW mode, or null for the default
+     * @param mode How to attach the files
+     * @return List of test case DTOs
+     */
+    public List<TestCaseResponseDTO> listTestCases(Long problemId, User user, Integer previewBytes, ContentMode mode) {
         Problem problem = problemRepository.findById(problemId)
                 .orElseThrow(() -> new EntityNotFoundException("Problem not found"));
         
@@ -239,9 +882,8 @@ public class TestCaseService {
             testCases = testCaseRepository.findByProblemIdAndIsHiddenFalse(problemId);
         }
         
-        return testCases.stream()
-                .map(tc -> toResponseDTO(tc, tc.getIsSample() || canManageTestCases(problem, user)))
-                .collect(Collectors.toList());
+        boolean canManage = canManageTestCases(problem, user);
+        return toResponseDTOs(testCases, tc -> tc.getIsSample() || canManage, previewBytes, mode);
     }
 
     /**
@@ -250,10 +892,239 @@ public class TestCaseService {
      * @return List of sample test case DTOs
      */
     public List<TestCaseResponseDTO> getSampleTestCases(Long problemId) {
+        return getSampleTestCases(problemId, null, false);
+    }
+
+    /**
+     * Gets sample test cases for a problem with file previews of the given size.
+     * @param problemId Problem ID
+     * @param previewBytes Bytes of each file to include, or null for the default
+     * @param full Whether to include the full file content instead of previews
+     * @return List of sample test case DTOs
+     */
+    public List<TestCaseResponseDTO> getSampleTestCases(Long problemId, Integer previewBytes, boolean full) {
         List<TestCase> sampleTestCases = testCaseRepository.findByProblemIdAndIsSampleTrue(problemId);
-        return sampleTestCases.stream()
-                .map(tc -> toResponseDTO(tc, true)) // Always include content for sample test cases
-                .collect(Collectors.toList());
+        return toResponseDTOs(sampleTestCases, tc -> true, previewBytes, ContentMode.of(full, false)); // Always include content for sample test cases
+    }
+
+    private UploadSession findUploadSession(String sessionId, User user) {
+        UploadSession session = uploadSessions.get(sessionId);
+        if (session == null || session.isExpired(LocalDateTime.now())) {
+            throw new EntityNotFoundException("Upload session not found");
+        }
+        if (!session.ownerUid.equals(user.getFirebaseUid())) {
+            throw new AccessDeniedException("You do not have permission to use this upload session");
+        }
+        return session;
+    }
+
+    /**
+     * Discards sessions that have seen no chunk within the timeout.
+     */
+    private void expireUploadSessions() {
+        LocalDateTime now = LocalDateTime.now();
+        uploadSessions.values().removeIf(session -> {
+            if (!session.isExpired(now)) {
+                return false;
+            }
+            System.out.println("Discarding expired test case upload session " + session.id);
+            session.abort();
+            return true;
+        });
+    }
+
+    private CloudStorageService.StoredFile finishFile(CloudStorageService.FileUpload upload) throws IOException {
+        // A file that never received a chunk is empty
+        return (upload != null ? upload : cloudStorageService.startFileUpload()).finish();
+    }
+
+    private static boolean isInputFile(String file) {
+        if ("input".equals(file)) {
+            return true;
+        }
+        if ("output".equals(file)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown test case file: " + file + " (expected input or output)");
+    }
+
+    private static TestCaseUploadSessionDTO toSessionDTO(UploadSession session) {
+        TestCaseUploadSessionDTO dto = new TestCaseUploadSessionDTO();
+        dto.setSessionId(session.id);
+        dto.setProblemId(session.problemId);
+        dto.setName(session.metadata.getName());
+        synchronized (session) {
+            dto.setInputSize(session.input != null ? session.input.size() : 0L);
+            dto.setOutputSize(session.output != null ? session.output.size() : 0L);
+        }
+        dto.setExpiresAt(session.lastActivity.plus(UPLOAD_SESSION_TIMEOUT).toString());
+        return dto;
+    }
+
+    private static int previewSize(Integer bytes) {
+        if (bytes == null) {
+            return DEFAULT_PREVIEW_BYTES;
+        }
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Preview size must be positive");
+        }
+        return Math.min(bytes, MAX_PREVIEW_BYTES);
+    }
+
+    private String resolveFileName(TestCase testCase, String file) {
+        if ("input".equals(file)) {
+            return testCase.getInputFileName();
+        }
+        if ("output".equals(file)) {
+            return testCase.getOutputFileName();
+        }
+        throw new IllegalArgumentException("Unknown test case file: " + file + " (expected input or output)");
+    }
+
+    /**
+     * Filters out content that the test case file already holds.
+     * @return The content, or null if it is null or unchanged
+     */
+    private static String changedContent(TestCase testCase, String fileName, String content) {
+        if (content == null || !CloudStorageService.hasContent(testCase, fileName, content)) {
+            return content;
+        }
+        System.out.println("Skipping unchanged test case file: " + fileName + " of test case " + testCase.getId());
+        return null;
+    }
+
+    /**
+     * Points a test case at newly stored files, saves it, and then releases the files it
+     * replaced. A null file keeps the current one. The files are released only once the
+     * versioned save succeeded, so two concurrent replacements never release the same blobs.
+     */
+    private TestCase replaceStoredFiles(TestCase testCase, CloudStorageService.StoredFile input,
+                                        CloudStorageService.StoredFile output) {
+        TestCase previous = TestCase.builder()
+                .id(testCase.getId())
+                .problem(testCase.getProblem())
+                .inputFileName(testCase.getInputFileName())
+                .outputFileName(testCase.getOutputFileName())
+                .inputSha256(testCase.getInputSha256())
+                .outputSha256(testCase.getOutputSha256())
+                .build();
+        cloudStorageService.invalidateCachedContent(testCase);
+        applyStoredFiles(testCase,
+                input != null ? input : currentStoredFile(testCase, testCase.getInputFileName()),
+                output != null ? output : currentStoredFile(testCase, testCase.getOutputFileName()));
+        testCase.setContentGeneration(nextGeneration(testCase));
+        TestCase saved = saveOrRelease(testCase, input, output);
+        if (input != null) {
+            cloudStorageService.deleteTestCaseFile(previous, previous.getInputFileName());
+        }
+        if (output != null) {
+            cloudStorageService.deleteTestCaseFile(previous, previous.getOutputFileName());
+        }
+        return saved;
+    }
+
+    private static TestCase buildImportedTestCase(String name, TestCaseArchiveImportDTO dto, Problem problem,
+                                                  User creator, CloudStorageService.StoredFile input,
+                                                  CloudStorageService.StoredFile output) {
+        TestCase testCase = TestCase.builder()
+                .name(name)
+                .description(dto.getDescription())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .isHidden(dto.getIsHidden())
+                .isSample(dto.getIsSample())
+                .problem(problem)
+                .createdBy(creator)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        applyStoredFiles(testCase, input, output);
+        return testCase;
+    }
+
+    /**
+     * Releases the files of test cases that were stored but will not be inserted.
+     */
+    private void releaseImportedFiles(List<TestCase> testCases, Iterable<CloudStorageService.StoredFile[]> halves) {
+        List<String> sha256s = new ArrayList<>();
+        for (TestCase testCase : testCases) {
+            sha256s.add(testCase.getInputSha256());
+            sha256s.add(testCase.getOutputSha256());
+        }
+        for (CloudStorageService.StoredFile[] files : halves) {
+            for (CloudStorageService.StoredFile file : files) {
+                if (file != null) {
+                    sha256s.add(file.sha256());
+                }
+            }
+        }
+        if (!sha256s.isEmpty()) {
+            cloudStorageService.releaseBlobs(sha256s);
+        }
+    }
+
+    /**
+     * Saves a test case, releasing the given newly stored files, if any, if the save fails.
+     * The save is conditional on the version the test case was read at: if another update
+     * saved it first, nothing is written and the caller keeps the files it would release.
+     * @throws ApiException 409 if the test case was changed since it was read
+     */
+    private TestCase saveOrRelease(TestCase testCase, CloudStorageService.StoredFile input,
+                                   CloudStorageService.StoredFile output) {
+        try {
+            return testCaseRepository.save(testCase);
+        } catch (RuntimeException e) {
+            if (input != null) {
+                cloudStorageService.releaseBlob(input.sha256());
+            }
+            if (output != null) {
+                cloudStorageService.releaseBlob(output.sha256());
+            }
+            if (e instanceof OptimisticLockingFailureException) {
+                throw ApiException.conflict("Test case was changed by another update. Reload it and try again.");
+            }
+            throw e;
+        }
+    }
+
+    private CloudStorageService.StoredFile currentStoredFile(TestCase testCase, String fileName) {
+        boolean isInput = fileName.equals(testCase.getInputFileName());
+        String sha256 = isInput ? testCase.getInputSha256() : testCase.getOutputSha256();
+        if (sha256 != null) {
+            CloudStorageService.StoredFile blob = cloudStorageService.describeBlob(sha256);
+            if (blob != null) {
+                return blob;
+            }
+        }
+        // Legacy per-test-case file: the raw size is recorded (or, before compression, equal
+        // to the stored size) and the codec is unknown
+        Long rawSize = isInput ? testCase.getInputFileSize() : testCase.getOutputFileSize();
+        long storedSize = cloudStorageService.getTestCaseFileSize(testCase, fileName);
+        Long crc32c = isInput ? testCase.getInputCrc32c() : testCase.getOutputCrc32c();
+        return new CloudStorageService.StoredFile(sha256, rawSize != null ? rawSize : storedSize, storedSize, null, crc32c);
+    }
+
+    private static void applyStoredFiles(TestCase testCase, CloudStorageService.StoredFile input,
+                                         CloudStorageService.StoredFile output) {
+        testCase.setInputSha256(input.sha256());
+        testCase.setOutputSha256(output.sha256());
+        testCase.setInputCrc32c(input.crc32c());
+        testCase.setOutputCrc32c(output.crc32c());
+        testCase.setInputFileSize(input.rawSize());
+        testCase.setOutputFileSize(output.rawSize());
+        testCase.setFileSize(input.rawSize() + output.rawSize());
+        testCase.setStoredFileSize(input.storedSize() + output.storedSize());
+        // Content-Encoding pass-through needs both files in one known codec
+        testCase.setStorageCodec(input.codec() != null && input.codec() == output.codec()
+                ? input.codec().name() : null);
+    }
+
+    private static long generationOf(TestCase testCase) {
+        return testCase.getContentGeneration() != null ? testCase.getContentGeneration() : 0L;
+    }
+
+    private static long nextGeneration(TestCase testCase) {
+        return generationOf(testCase) + 1;
     }
 
     private boolean canManageTestCases(Problem problem, User user) {
@@ -280,6 +1151,41 @@ public class TestCaseService {
         return user.getRoles().stream().anyMatch(r -> r.getName().equals("TESTER"));
     }
 
+    /**
+     * Converts test cases to DTOs carrying signed download URLs instead of content.
+     */
+    private List<TestCaseResponseDTO> toSignedUrlDTOs(List<TestCase> testCases, Predicate<TestCase> includeContent) {
+        List<TestCaseResponseDTO> dtos = new ArrayList<>(testCases.size());
+        List<CompletableFuture<Void>> signatures = new ArrayList<>();
+        for (TestCase testCase : testCases) {
+            TestCaseResponseDTO dto = toResponseDTO(testCase, false);
+            dtos.add(dto);
+            if (includeContent.test(testCase)) {
+                signatures.add(cloudStorageService.signTestCaseFileAsync(testCase, testCase.getInputFileName())
+                        .thenAccept(signed -> dto.setInputUrl(toFileUrlDTO(signed))));
+                signatures.add(cloudStorageService.signTestCaseFileAsync(testCase, testCase.getOutputFileName())
+                        .thenAccept(signed -> dto.setOutputUrl(toFileUrlDTO(signed))));
+            }
+        }
+        for (CompletableFuture<Void> signature : signatures) {
+            try {
+                signature.join();
+            } catch (Exception e) {
+                // Log error but don't fail the request
+                System.err.println("Failed to sign test case file URL: " + e.getMessage());
+            }
+        }
+        return dtos;
+    }
+
+    private static TestCaseFileUrlDTO toFileUrlDTO(CloudStorageService.SignedFileUrl signed) {
+        TestCaseFileUrlDTO dto = new TestCaseFileUrlDTO();
+        dto.setUrl(signed.url().toString());
+        dto.setExpiresAt(signed.expiresAt().toString());
+        dto.setContentEncoding(signed.codec().getContentEncoding());
+        return dto;
+    }
+
     private TestCaseResponseDTO toResponseDTO(TestCase testCase, boolean includeContent) {
         TestCaseResponseDTO dto = new TestCaseResponseDTO();
         dto.setId(testCase.getId());
@@ -287,19 +1193,32 @@ public class TestCaseService {
         dto.setDescription(testCase.getDescription());
         dto.setInputFileName(testCase.getInputFileName());
         dto.setOutputFileName(testCase.getOutputFileName());
+        dto.setInputSha256(testCase.getInputSha256());
+        dto.setOutputSha256(testCase.getOutputSha256());
+        dto.setInputCrc32c(testCase.getInputCrc32c());
+        dto.setOutputCrc32c(testCase.getOutputCrc32c());
         dto.setFileSize(testCase.getFileSize());
+        dto.setInputFileSize(testCase.getInputFileSize());
+        dto.setOutputFileSize(testCase.getOutputFileSize());
+        dto.setStoredFileSize(testCase.getStoredFileSize());
+        dto.setStorageCodec(testCase.getStorageCodec());
+        dto.setGenerated(testCase.isGenerated());
+        dto.setGeneratorLanguage(testCase.getGeneratorLanguage());
+        dto.setGeneratorArgs(testCase.getGeneratorArgs());
+        dto.setGeneratorSeed(testCase.getGeneratorSeed());
+        dto.setSolutionLanguage(testCase.getSolutionLanguage());
         dto.setIsHidden(testCase.getIsHidden());
         dto.setIsSample(testCase.getIsSample());
         dto.setCreatedBy(testCase.getCreatedBy() != null ? testCase.getCreatedBy().getDisplayName() : null);
         dto.setCreatedAt(testCase.getCreatedAt() != null ? testCase.getCreatedAt().toString() : null);
         dto.setUpdatedAt(testCase.getUpdatedAt() != null ? testCase.getUpdatedAt().toString() : null);
         
-        if (includeContent) {
+        if (includeContent && !testCase.isGenerated()) {
             try {
-                dto.setInputContent(cloudStorageService.downloadTestCaseFile(
-                    testCase.getProblem().getId(), testCase.getId(), "input.txt"));
-                dto.setOutputContent(cloudStorageService.downloadTestCaseFile(
-                    testCase.getProblem().getId(), testCase.getId(), "output.txt"));
+                dto.setInputContent(cloudStorageService.downloadTestCaseFile(testCase, testCase.getInputFileName()));
+                dto.setOutputContent(cloudStorageService.downloadTestCaseFile(testCase, testCase.getOutputFileName()));
+                dto.setInputContentTruncated(false);
+                dto.setOutputContentTruncated(false);
             } catch (Exception e) {
                 // Log error but don't fail the request
                 System.err.println("Failed to load test case content: " + e.getMessage());
@@ -308,4 +1227,53 @@ public class TestCaseService {
         
         return dto;
     }
+
+    /**
+     * Converts test cases to DTOs, attaching content to those matching includeContent.
+     * Previews (or signed URLs) of all files are fetched concurrently, so a list costs about
+     * one storage round trip regardless of its length.
+     */
+    private List<TestCaseResponseDTO> toResponseDTOs(List<TestCase> testCases, Predicate<TestCase> includeContent,
+                                                     Integer previewBytes, ContentMode mode) {
+        // Generated test cases have no stored content to attach
+        Predicate<TestCase> withContent = includeContent.and(tc -> !tc.isGenerated());
+        if (mode == ContentMode.FULL) {
+            return testCases.stream()
+                    .map(tc -> toResponseDTO(tc, withContent.test(tc)))
+                    .collect(Collectors.toList());
+        }
+        if (mode == ContentMode.SIGNED_URL) {
+            return toSignedUrlDTOs(testCases, withContent);
+        }
+        int maxBytes = previewSize(previewBytes);
+        List<TestCaseResponseDTO> dtos = new ArrayList<>(testCases.size());
+        List<CompletableFuture<Void>> previews = new ArrayList<>();
+        for (TestCase testCase : testCases) {
+            TestCaseResponseDTO dto = toResponseDTO(testCase, false);
+            dtos.add(dto);
+            if (withContent.test(testCase)) {
+                previews.add(cloudStorageService
+                        .readTestCaseFileRangeAsync(testCase, testCase.getInputFileName(), 0, maxBytes, 0)
+                        .thenAccept(range -> {
+                            dto.setInputContent(range.text());
+                            dto.setInputContentTruncated(range.hasMore());
+                        }));
+                previews.add(cloudStorageService
+                        .readTestCaseFileRangeAsync(testCase, testCase.getOutputFileName(), 0, maxBytes, 0)
+                        .thenAccept(range -> {
+                            dto.setOutputContent(range.text());
+                            dto.setOutputContentTruncated(range.hasMore());
+                        }));
+            }
+        }
+        for (CompletableFuture<Void> preview : previews) {
+            try {
+                preview.join();
+            } catch (Exception e) {
+                // Log error but don't fail the request
+                System.err.println("Failed to load test case preview: " + e.getMessage());
+            }
+        }
+        return dtos;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,186 @@
+package com.codearena.backend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Storage backend for test case files.
+ *
+ * Objects are addressed by name: content-addressed blobs/{sha256}, transient staging/{id} uploads,
+ * and the legacy testcases/{problemId}/{testCaseId}/{fileName} layout. Implementations map
+ * those names onto a Cloud Storage bucket or a local directory.
+ *
+ * Implementations throw on failure; CloudStorageService is the single caller and decides
+ * which failures are tolerated.
+ */
+public interface TestCaseStorage {
+
+    /**
+     * Writes an object, replacing any existing object with the same name.
+     * @param objectName The object name
+     * @param content The object content
+     * @return Metadata of the written object
+     * @throws IOException If the write fails
+     */
+    StoredObject write(String objectName, byte[] content) throws IOException;
+
+    /**
+     * Writes an object from a stream without holding the content in memory.
+     * The stream is read to the end but not closed.
+     * @param objectName The object name
+     * @param content The object content
+     * @return Metadata of the written object
+     * @throws IOException If reading the stream or writing the object fails
+     */
+    StoredObject write(String objectName, InputStream content) throws IOException;
+
+    /**
+     * Starts writing an object incrementally, for content that arrives over several requests.
+     * Nothing is visible under the name until the upload is committed.
+     * @param objectName The object name
+     * @return The upload in progress
+     * @throws IOException If the upload cannot be started
+     */
+    ObjectUpload startUpload(String objectName) throws IOException;
+
+    /**
+     * Reads the full content of an object.
+     * @param objectName The object name
+     * @return The object content, positioned at zero
+     * @throws java.nio.file.NoSuchFileException If the object does not exist
+     * @throws IOException If the read fails
+     */
+    ByteBuffer read(String objectName) throws IOException;
+
+    /**
+     * Opens a channel that streams the content of an object.
+     * The caller must close the channel.
+     * @param objectName The object name
+     * @return A channel positioned at the start of the object
+     * @throws IOException If the object cannot be opened
+     */
+    ReadableByteChannel openReader(String objectName) throws IOException;
+
+    /**
+     * Opens a channel that streams a byte range of an object, fetching no more than needed.
+     * The caller must close the channel.
+     * @param objectName The object name
+     * @param offset Position of the first byte to read
+     * @param limit Maximum number of bytes to read; Long.MAX_VALUE for the rest of the object
+     * @return A channel positioned at offset that ends after at most limit bytes
+     * @throws IOException If the object cannot be opened
+     */
+    ReadableByteChannel openReader(String objectName, long offset, long limit) throws IOException;
+
+    /**
+     * Looks up object metadata without reading the content.
+     * @param objectName The object name
+     * @return Metadata of the object, or null if it does not exist
+     * @throws IOException If the lookup fails
+     */
+    StoredObject stat(String objectName) throws IOException;
+
+    /**
+     * Renames an object, replacing any existing object with the target name.
+     * @param sourceName The current object name
+     * @param targetName The new object name
+     * @return Metadata of the object under its new name
+     * @throws IOException If the source does not exist or the rename fails
+     */
+    StoredObject move(String sourceName, String targetName) throws IOException;
+
+    /**
+     * Deletes an object.
+     * @param objectName The object name
+     * @return true if an object was deleted, false if it did not exist
+     * @throws IOException If the delete fails
+     */
+    boolean delete(String objectName) throws IOException;
+
+    /**
+     * Deletes several objects, batching requests where the backend supports it.
+     * Missing objects are skipped.
+     * @param objectNames The object names
+     * @return The number of objects deleted
+     * @throws IOException If a delete fails
+     */
+    int deleteAll(List<String> objectNames) throws IOException;
+
+    /**
+     * Lists objects under a prefix in lexicographic name order, one page at a time.
+     * @param prefix The name prefix, e.g. testcases/{problemId}/
+     * @param pageToken The token of the page to list, or null for the first page
+     * @param pageSize Maximum number of objects per page
+     * @return The page of objects with their metadata
+     * @throws IOException If listing fails
+     */
+    ObjectPage list(String prefix, String pageToken, int pageSize) throws IOException;
+
+    /**
+     * Creates a short-lived URL from which a client can download an object directly,
+     * without the content passing through this service. The URL serves the object exactly
+     * as stored, possibly compressed.
+     * @param objectName The object name
+     * @param ttl How long the URL stays valid
+     * @return The signed URL
+     * @throws UnsupportedOperationException If the backend is not configured to sign URLs
+     * @throws IOException If signing fails
+     */
+    URI signReadUrl(String objectName, Duration ttl) throws IOException;
+
+    /**
+     * One page of an object listing.
+     * @param objects Objects in lexicographic name order
+     * @param nextPageToken Token of the next page, or null if this is the last page
+     */
+    record ObjectPage(List<StoredObject> objects, String nextPageToken) {
+
+        /**
+         * Gets the names of the listed objects.
+         * @return Object names in lexicographic order
+         */
+        public List<String> names() {
+            return objects.stream().map(StoredObject::name).toList();
+        }
+    }
+
+    /**
+     * Metadata of a stored object.
+     * @param name The object name
+     * @param size The object size in bytes
+     * @param generation Backend-specific version that changes on every overwrite
+     */
+    record StoredObject(String name, long size, long generation) {
+    }
+
+    /**
+     * An object being written incrementally. Not thread-safe; callers serialize access.
+     */
+    interface ObjectUpload {
+
+        /**
+         * Gets the stream receiving the object content. At most one transfer chunk is
+         * buffered in memory; the rest has already been sent to the backend.
+         * @return The content stream
+         */
+        OutputStream stream();
+
+        /**
+         * Finishes the object and makes it visible under its name.
+         * @return Metadata of the stored object
+         * @throws IOException If the object cannot be finished
+         */
+        StoredObject commit() throws IOException;
+
+        /**
+         * Abandons the upload; nothing becomes visible. Failures are logged rather than thrown.
+         */
+        void abort();
+    }
+}
@@ -0,0 +1,252 @@
+package com.codearena.backend.benchmark;
+
+import com.codearena.backend.service.TestCaseStorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a storage backend and adds per-request latency and injected failures, so storage
+ * behavior can be tested and measured without a real bucket.
+ *
+ * Every request waits for the configured round-trip time (plus up to the configured jitter)
+ * before reaching the delegate, and then fails if a failure is pending or drawn for its
+ * operation. Signing is local on every backend and never waits. Failures surface as
+ * IOExceptions, as the interface declares. Requests are counted per operation.
+ * Settings may be changed while requests are in flight.
+ */
+public class FaultInjectingStorage implements TestCaseStorage {
+
+    /**
+     * Kinds of storage request.
+     */
+    public enum Operation {
+        WRITE, UPLOAD, READ, STAT, MOVE, DELETE, LIST, SIGN
+    }
+
+    private final TestCaseStorage delegate;
+    private final Map<Operation, AtomicLong> requests = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicInteger> pendingFailures = new EnumMap<>(Operation.class);
+    private final Map<Operation, Double> failureRates = new EnumMap<>(Operation.class);
+    private final SplittableRandom random;
+    private volatile long latencyNanos;
+    private volatile long jitterNanos;
+
+    /**
+     * Creates a wrapper without latency or failures.
+     * @param delegate The backend that serves requests
+     * @param seed Seed for jitter and random failures, so runs are repeatable
+     */
+    public FaultInjectingStorage(TestCaseStorage delegate, long seed) {
+        this.delegate = delegate;
+        this.random = new SplittableRandom(seed);
+        for (Operation operation : Operation.values()) {
+            requests.put(operation, new AtomicLong());
+            pendingFailures.put(operation, new AtomicInteger());
+            failureRates.put(operation, 0.0);
+        }
+    }
+
+    /**
+     * Sets the round-trip time added to every request.
+     * @param latency The fixed part of the delay
+     * @param jitter The upper bound of a uniformly random extra delay
+     * @return This storage
+     */
+    public FaultInjectingStorage withLatency(Duration latency, Duration jitter) {
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+        return this;
+    }
+
+    /**
+     * Makes a fraction of the requests of an operation fail.
+     * @param operation The operation
+     * @param rate Probability in [0, 1] that a request fails
+     * @return This storage
+     */
+    public FaultInjectingStorage withFailureRate(Operation operation, double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Failure rate must be between 0 and 1");
+        }
+        synchronized (failureRates) {
+            failureRates.put(operation, rate);
+        }
+        return this;
+    }
+
+    /**
+     * Makes the next requests of an operation fail, whatever the failure rate.
+     * @param operation The operation
+     * @param count Number of requests to fail
+     * @return This storage
+     */
+    public FaultInjectingStorage failNext(Operation operation, int count) {
+        pendingFailures.get(operation).addAndGet(count);
+        return this;
+    }
+
+    /**
+     * Gets the number of requests of an operation so far, failed ones included.
+     * @param operation The operation
+     * @return The request count
+     */
+    public long requestCount(Operation operation) {
+        return requests.get(operation).get();
+    }
+
+    /**
+     * Gets the number of requests so far across all operations.
+     * @return The request count
+     */
+    public long requestCount() {
+        return requests.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    /**
+     * Resets the request counters.
+     */
+    public void resetCounts() {
+        requests.values().forEach(count -> count.set(0));
+    }
+
+    @Override
+    public StoredObject write(String objectName, byte[] content) throws IOException {
+        request(Operation.WRITE, objectName);
+        return delegate.write(objectName, content);
+    }
+
+    @Override
+    public StoredObject write(String objectName, InputStream content) throws IOException {
+        request(Operation.WRITE, objectName);
+        return delegate.write(objectName, content);
+    }
+
+    @Override
+    public ObjectUpload startUpload(String objectName) throws IOException {
+        request(Operation.UPLOAD, objectName);
+        ObjectUpload upload = delegate.startUpload(objectName);
+        return new ObjectUpload() {
+            @Override
+            public OutputStream stream() {
+                return upload.stream();
+            }
+
+            @Override
+            public StoredObject commit() throws IOException {
+                // Finalizing the session is one more request
+                request(Operation.UPLOAD, objectName);
+                return upload.commit();
+            }
+
+            @Override
+            public void abort() {
+                upload.abort();
+            }
+        };
+    }
+
+    @Override
+    public ByteBuffer read(String objectName) throws IOException {
+        request(Operation.READ, objectName);
+        return delegate.read(objectName);
+    }
+
+    @Override
+    public ReadableByteChannel openReader(String objectName) throws IOException {
+        request(Operation.READ, objectName);
+        return delegate.openReader(objectName);
+    }
+
+    @Override
+    public ReadableByteChannel openReader(String objectName, long offset, long limit) throws IOException {
+        request(Operation.READ, objectName);
+        return delegate.openReader(objectName, offset, limit);
+    }
+
+    @Override
+    public StoredObject stat(String objectName) throws IOException {
+        request(Operation.STAT, objectName);
+        return delegate.stat(objectName);
+    }
+
+    @Override
+    public StoredObject move(String sourceName, String targetName) throws IOException {
+        request(Operation.MOVE, sourceName);
+        return delegate.move(sourceName, targetName);
+    }
+
+    @Override
+    public boolean delete(String objectName) throws IOException {
+        request(Operation.DELETE, objectName);
+        return delegate.delete(objectName);
+    }
+
+    @Override
+    public int deleteAll(List<String> objectNames) throws IOException {
+        request(Operation.DELETE, objectNames.size() + " objects");
+        return delegate.deleteAll(objectNames);
+    }
+
+    @Override
+    public ObjectPage list(String prefix, String pageToken, int pageSize) throws IOException {
+        request(Operation.LIST, prefix);
+        return delegate.list(prefix, pageToken, pageSize);
+    }
+
+    @Override
+    public URI signReadUrl(String objectName, Duration ttl) throws IOException {
+        requests.get(Operation.SIGN).incrementAndGet(); // Signing is local; no round trip
+        failIfInjected(Operation.SIGN, objectName);
+        return delegate.signReadUrl(objectName, ttl);
+    }
+
+    private void request(Operation operation, String target) throws IOException {
+        requests.get(operation).incrementAndGet();
+        long delay = latencyNanos;
+        if (jitterNanos > 0) {
+            synchronized (random) {
+                delay += random.nextLong(jitterNanos + 1);
+            }
+        }
+        if (delay > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+        failIfInjected(operation, target);
+    }
+
+    private void failIfInjected(Operation operation, String target) throws IOException {
+        boolean fail = pendingFailures.get(operation).getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+        if (!fail) {
+            double rate;
+            synchronized (failureRates) {
+                rate = failureRates.get(operation);
+            }
+            if (rate > 0) {
+                synchronized (random) {
+                    fail = random.nextDouble() < rate;
+                }
+            }
+        }
+        if (fail) {
+            throw new IOException("Injected " + operation + " failure: " + target);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.codearena.backend.benchmark;
+
+import com.codearena.backend.service.TestCaseStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for a Cloud Storage bucket.
+ *
+ * Behaves like GcsTestCaseStorage as far as CloudStorageService can tell: whole-object
+ * writes, uploads that become visible only on commit, ranged reads, a generation that changes
+ * on every overwrite, sorted paged listings, and signed URLs (which point nowhere). Objects
+ * live on the heap, so it suits tests and benchmarks of modest data sets.
+ * Wrap it in FaultInjectingStorage to add request latency and failures.
+ */
+public class InMemoryTestCaseStorage implements TestCaseStorage {
+
+    private record Entry(byte[] content, long generation) {
+    }
+
+    private final ConcurrentSkipListMap<String, Entry> objects = new ConcurrentSkipListMap<>();
+    private final AtomicLong generations = new AtomicLong();
+
+    @Override
+    public StoredObject write(String objectName, byte[] content) {
+        return put(objectName, content.clone());
+    }
+
+    @Override
+    public StoredObject write(String objectName, InputStream content) throws IOException {
+        return put(objectName, content.readAllBytes());
+    }
+
+    @Override
+    public ObjectUpload startUpload(String objectName) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        return new ObjectUpload() {
+            @Override
+            public OutputStream stream() {
+                return buffer;
+            }
+
+            @Override
+            public StoredObject commit() {
+                return put(objectName, buffer.toByteArray());
+            }
+
+            @Override
+            public void abort() {
+                buffer.reset();
+            }
+        };
+    }
+
+    @Override
+    public ByteBuffer read(String objectName) throws IOException {
+        return ByteBuffer.wrap(get(objectName).content()).asReadOnlyBuffer();
+    }
+
+    @Override
+    public ReadableByteChannel openReader(String objectName) throws IOException {
+        return Channels.newChannel(new ByteArrayInputStream(get(objectName).content()));
+    }
+
+    @Override
+    public ReadableByteChannel openReader(String objectName, long offset, long limit) throws IOException {
+        byte[] content = get(objectName).content();
+        int from = (int) Math.min(offset, content.length);
+        int length = (int) Math.min(limit, content.length - from);
+        return Channels.newChannel(new ByteArrayInputStream(content, from, length));
+    }
+
+    @Override
+    public StoredObject stat(String objectName) {
+        Entry entry = objects.get(objectName);
+        return entry != null ? toStoredObject(objectName, entry) : null;
+    }
+
+    @Override
+    public StoredObject move(String sourceName, String targetName) throws IOException {
+        Entry source = objects.remove(sourceName);
+        if (source == null) {
+            throw new NoSuchFileException(sourceName);
+        }
+        return put(targetName, source.content());
+    }
+
+    @Override
+    public boolean delete(String objectName) {
+        return objects.remove(objectName) != null;
+    }
+
+    @Override
+    public int deleteAll(List<String> objectNames) {
+        int deleted = 0;
+        for (String objectName : objectNames) {
+            if (delete(objectName)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public ObjectPage list(String prefix, String pageToken, int pageSize) {
+        NavigableMap<String, Entry> range = pageToken != null
+                ? objects.tailMap(pageToken, false)
+                : objects.tailMap(prefix, true);
+        List<StoredObject> page = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : range.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            if (page.size() == pageSize) {
+                return new ObjectPage(page, page.get(page.size() - 1).name());
+            }
+            page.add(toStoredObject(entry.getKey(), entry.getValue()));
+        }
+        return new ObjectPage(page, null);
+    }
+
+    @Override
+    public URI signReadUrl(String objectName, Duration ttl) {
+        return URI.create("https://storage.invalid/" + objectName + "?ttl=" + ttl.toSeconds());
+    }
+
+    /**
+     * Gets the number of stored objects.
+     * @return The object count
+     */
+    public int size() {
+        return objects.size();
+    }
+
+    /**
+     * Removes every object.
+     */
+    public void clear() {
+        objects.clear();
+    }
+
+    private StoredObject put(String objectName, byte[] content) {
+        Entry entry = new Entry(content, generations.incrementAndGet());
+        objects.put(objectName, entry);
+        return toStoredObject(objectName, entry);
+    }
+
+    private Entry get(String objectName) throws NoSuchFileException {
+        Entry entry = objects.get(objectName);
+        if (entry == null) {
+            throw new NoSuchFileException(objectName);
+        }
+        return entry;
+    }
+
+    private static StoredObject toStoredObject(String objectName, Entry entry) {
+        return new StoredObject(objectName, entry.content().length, entry.generation());
+    }
+}
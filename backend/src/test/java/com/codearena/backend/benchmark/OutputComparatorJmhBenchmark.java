@@ -0,0 +1,165 @@
+package com.codearena.backend.benchmark;
+
+import com.codearena.backend.service.OutputComparator;
+import com.codearena.backend.service.OutputTokenIndex;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH microbenchmarks of OutputComparator on a large output of floating-point numbers, per
+ * comparison mode.
+ *
+ * The expected output is a memory-mapped file and the actual one is streamed from a file the
+ * way a program's stdout is, so the numbers include the I/O a judge does. The actual output
+ * is spaced differently from the expected one (and, for FLOAT, printed with a different
+ * precision), except in EXACT and LINE modes, which need it as is. Runs with the GC profiler:
+ * gc.alloc.rate.norm must stay flat as the output grows, since nothing is allocated per token.
+ * The split-based checker is the naive baseline.
+ *
+ * Excluded from the default build; run with: mvn test -Pbenchmark -Dtest=OutputComparatorJmhBenchmark
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class OutputComparatorJmhBenchmark {
+
+    @Param({"EXACT", "LINE", "TOKEN", "FLOAT"})
+    public String mode;
+
+    @Param({"16777216"})
+    public int outputBytes;
+
+    private Path dir;
+    private Path expected;
+    private Path actual;
+    private Path index;
+    private OutputComparator comparator;
+    private ByteBuffer expectedBuffer;
+    private ByteBuffer actualBuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("comparator-jmh-");
+        comparator = OutputComparator.of(OutputComparator.Mode.valueOf(mode));
+        boolean sameText = comparator.mode() == OutputComparator.Mode.EXACT
+                || comparator.mode() == OutputComparator.Mode.LINE;
+
+        Random random = new Random(42);
+        StringBuilder want = new StringBuilder(outputBytes + 64);
+        StringBuilder got = new StringBuilder(outputBytes * 2);
+        while (want.length() < outputBytes) {
+            for (int column = 0; column < 8; column++) {
+                double value = random.nextDouble() * 1e6;
+                want.append(String.format(Locale.ROOT, "%.6f", value)).append(column < 7 ? ' ' : '\n');
+                if (sameText) {
+                    continue;
+                }
+                got.append(comparator.mode() == OutputComparator.Mode.FLOAT ? String.format(Locale.ROOT, "%.9f", value)
+                        : String.format(Locale.ROOT, "%.6f", value)).append(column < 7 ? "  " : "\r\n");
+            }
+        }
+        expected = Files.writeString(dir.resolve("output.txt"), want);
+        actual = Files.writeString(dir.resolve("actual.txt"), sameText ? want : got);
+        index = dir.resolve(OutputTokenIndex.FILE_NAME);
+        try (InputStream in = Files.newInputStream(expected)) {
+            OutputTokenIndex.write(in, index);
+        }
+        expectedBuffer = ByteBuffer.wrap(Files.readAllBytes(expected));
+        actualBuffer = ByteBuffer.wrap(Files.readAllBytes(actual));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public OutputComparator.Mismatch buffers() {
+        return check(comparator.compare(expectedBuffer, actualBuffer));
+    }
+
+    @Benchmark
+    public OutputComparator.Mismatch mappedFileAndStream() throws IOException {
+        try (FileChannel stdout = FileChannel.open(actual, StandardOpenOption.READ)) {
+            return check(comparator.compare(expected, stdout));
+        }
+    }
+
+    @Benchmark
+    public OutputComparator.Mismatch tokenIndexAndStream() throws IOException {
+        if (comparator.mode() != OutputComparator.Mode.TOKEN && comparator.mode() != OutputComparator.Mode.FLOAT) {
+            return null; // Token indexes only serve the token modes
+        }
+        try (FileChannel stdout = FileChannel.open(actual, StandardOpenOption.READ)) {
+            return check(comparator.compare(OutputTokenIndex.open(index), stdout));
+        }
+    }
+
+    /**
+     * The naive checker: both outputs read into strings and split into tokens.
+     */
+    @Benchmark
+    public boolean splitStrings() throws IOException {
+        String[] want = Files.readString(expected, StandardCharsets.UTF_8).trim().split("\\s+");
+        String[] got = Files.readString(actual, StandardCharsets.UTF_8).trim().split("\\s+");
+        if (want.length != got.length) {
+            return false;
+        }
+        for (int i = 0; i < want.length; i++) {
+            if (!want[i].equals(got[i])
+                    && Math.abs(Double.parseDouble(want[i]) - Double.parseDouble(got[i])) > OutputComparator.DEFAULT_EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void runBenchmarks() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OutputComparatorJmhBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    private static OutputComparator.Mismatch check(OutputComparator.Mismatch mismatch) {
+        if (mismatch != null) {
+            throw new IllegalStateException("Outputs should match: " + mismatch);
+        }
+        return null;
+    }
+}
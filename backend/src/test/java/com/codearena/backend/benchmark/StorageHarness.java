@@ -0,0 +1,180 @@
+package com.codearena.backend.benchmark;
+
+import com.codearena.backend.entity.StoredBlob;
+import com.codearena.backend.repository.StoredBlobRepository;
+import com.codearena.backend.service.CloudStorageService;
+import com.codearena.backend.service.TestCaseContentCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A CloudStorageService wired to an in-memory bucket behind FaultInjectingStorage, with an
+ * in-memory blob registry in place of the database. Shared by storage tests and benchmarks.
+ *
+ * The registry keeps StoredBlob rows in a map, so deduplication, reference counting and
+ * releases behave as with a database; row locking is not modeled.
+ */
+public final class StorageHarness implements AutoCloseable {
+
+    private final InMemoryTestCaseStorage bucket = new InMemoryTestCaseStorage();
+    private final FaultInjectingStorage storage;
+    private final Map<String, StoredBlob> blobs = new ConcurrentHashMap<>();
+    private final StoredBlobRepository storedBlobRepository = inMemoryBlobRepository(blobs);
+    private final CloudStorageService service;
+
+    /**
+     * Creates a harness without latency or failures.
+     * @param cacheDir Directory for the content cache's disk tier
+     * @param codec Codec for newly written files: none, gzip or zstd
+     * @param ioThreads Size of the storage I/O pool
+     * @param cacheEnabled Whether downloads go through the content cache
+     * @throws IOException If the cache directory cannot be created
+     */
+    public StorageHarness(Path cacheDir, String codec, int ioThreads, boolean cacheEnabled) throws IOException {
+        this.storage = new FaultInjectingStorage(bucket, 42);
+        TestCaseContentCache cache = new TestCaseContentCache(new SimpleMeterRegistry(), cacheEnabled,
+                64L * 1024 * 1024, 256 * 1024, 256L * 1024 * 1024, 64L * 1024 * 1024, cacheDir.toString());
+        this.service = new CloudStorageService(storage, cache, storedBlobRepository,
+                TransactionOperations.withoutTransaction(), ioThreads, codec);
+    }
+
+    /**
+     * Gets the service under test.
+     * @return The storage service
+     */
+    public CloudStorageService service() {
+        return service;
+    }
+
+    /**
+     * Gets the storage layer, for latency, failures and request counts.
+     * @return The fault-injecting storage
+     */
+    public FaultInjectingStorage storage() {
+        return storage;
+    }
+
+    /**
+     * Gets the in-memory bucket behind the fault injection.
+     * @return The bucket
+     */
+    public InMemoryTestCaseStorage bucket() {
+        return bucket;
+    }
+
+    /**
+     * Gets the blob registry.
+     * @return The repository backed by the in-memory registry
+     */
+    public StoredBlobRepository storedBlobRepository() {
+        return storedBlobRepository;
+    }
+
+    /**
+     * Gets a registered blob row.
+     * @param sha256 Hex SHA-256 of the content
+     * @return The row, or null if the blob is not registered
+     */
+    public StoredBlob blob(String sha256) {
+        return blobs.get(sha256);
+    }
+
+    /**
+     * Removes every object and blob row.
+     */
+    public void clear() {
+        bucket.clear();
+        blobs.clear();
+    }
+
+    @Override
+    public void close() {
+        service.shutdown();
+    }
+
+    /**
+     * Creates a StoredBlobRepository whose rows live in the given map. Only the methods
+     * CloudStorageService, StorageReconciler and TestCaseBundleService use are implemented.
+     * Invocations are not recorded, so it can serve long benchmark runs.
+     */
+    @SuppressWarnings("unchecked")
+    private static StoredBlobRepository inMemoryBlobRepository(Map<String, StoredBlob> blobs) {
+        StoredBlobRepository repository = mock(StoredBlobRepository.class, withSettings().stubOnly());
+        when(repository.incrementRefCount(anyString())).thenAnswer(invocation ->
+                blobs.computeIfPresent(invocation.getArgument(0), (sha256, blob) -> {
+                    blob.setRefCount(blob.getRefCount() + 1);
+                    return blob;
+                }) != null ? 1 : 0);
+        when(repository.saveAndFlush(any(StoredBlob.class))).thenAnswer(invocation -> {
+            StoredBlob blob = invocation.getArgument(0);
+            if (blobs.putIfAbsent(blob.getSha256(), blob) != null) {
+                throw new DataIntegrityViolationException("Duplicate blob " + blob.getSha256());
+            }
+            return blob;
+        });
+        when(repository.save(any(StoredBlob.class))).thenAnswer(invocation -> {
+            StoredBlob blob = invocation.getArgument(0);
+            blobs.put(blob.getSha256(), blob);
+            return blob;
+        });
+        when(repository.findById(anyString())).thenAnswer(invocation ->
+                Optional.ofNullable(blobs.get(invocation.getArgument(0))));
+        when(repository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<StoredBlob> found = new ArrayList<>();
+            for (String sha256 : (Iterable<String>) invocation.getArgument(0)) {
+                StoredBlob blob = blobs.get(sha256);
+                if (blob != null) {
+                    found.add(blob);
+                }
+            }
+            return found;
+        });
+        when(repository.existsById(anyString())).thenAnswer(invocation ->
+                blobs.containsKey(invocation.getArgument(0)));
+        when(repository.findAllForUpdate(anyCollection())).thenAnswer(invocation ->
+                ((Collection<String>) invocation.getArgument(0)).stream()
+                        .sorted()
+                        .map(blobs::get)
+                        .filter(Objects::nonNull)
+                        .toList());
+        when(repository.findBySha256GreaterThanOrderBySha256Asc(anyString(), any())).thenAnswer(invocation -> {
+            String after = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return blobs.keySet().stream()
+                    .filter(sha256 -> sha256.compareTo(after) > 0)
+                    .sorted()
+                    .limit(pageable.getPageSize())
+                    .map(blobs::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+        });
+        doAnswer(invocation -> {
+            for (StoredBlob blob : (Iterable<StoredBlob>) invocation.getArgument(0)) {
+                blobs.remove(blob.getSha256());
+            }
+            return null;
+        }).when(repository).deleteAll(anyIterable());
+        return repository;
+    }
+}
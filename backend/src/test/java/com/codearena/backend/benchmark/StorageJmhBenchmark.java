@@ -0,0 +1,164 @@
+package com.codearena.backend.benchmark;
+
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.service.CloudStorageService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JMH microbenchmarks of CloudStorageService upload, download, size lookup and delete against
+ * the in-memory bucket, per codec and injected round-trip time.
+ *
+ * With no latency the numbers are the service's own cost (hashing, checksums, compression,
+ * executor hand-offs); with latency they show how well concurrent clients hide round trips.
+ * Uploads are released and deletes are prepared outside the measured calls.
+ *
+ * Excluded from the default build; run with: mvn test -Pbenchmark -Dtest=StorageJmhBenchmark
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(4)
+public class StorageJmhBenchmark {
+
+    @Param({"none", "gzip", "zstd"})
+    public String codec;
+
+    @Param({"0", "2"})
+    public long latencyMillis;
+
+    @Param({"65536"})
+    public int fileBytes;
+
+    private Path cacheDir;
+    private StorageHarness harness;
+    private CloudStorageService service;
+    private byte[] payload;
+    private TestCase stored;
+    private final AtomicLong uniques = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // The service logs every request; keep that out of the measurements
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        cacheDir = Files.createTempDirectory("storage-jmh-");
+        harness = new StorageHarness(cacheDir, codec, 8, false);
+        harness.storage().withLatency(Duration.ofMillis(latencyMillis), Duration.ZERO);
+        service = harness.service();
+        String line = "1 2 3 4 5\n";
+        payload = line.repeat(fileBytes / line.length() + 1).substring(0, fileBytes).getBytes(StandardCharsets.UTF_8);
+        CloudStorageService.StoredFile file = service.uploadTestCaseFile(new ByteArrayInputStream(payload));
+        stored = TestCase.builder()
+                .id(1L)
+                .problem(Problem.builder().id(1L).build())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256(file.sha256())
+                .inputCrc32c(file.crc32c())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        harness.close();
+        FileSystemUtils.deleteRecursively(cacheDir);
+    }
+
+    /**
+     * Per-thread upload state: the blob uploaded by the last call, released after it.
+     */
+    @State(Scope.Thread)
+    public static class Upload {
+        CloudStorageService.StoredFile uploaded;
+
+        @TearDown(Level.Invocation)
+        public void release(StorageJmhBenchmark benchmark) {
+            benchmark.service.releaseBlob(uploaded.sha256());
+        }
+    }
+
+    /**
+     * Per-thread delete state: a fresh blob for each call to delete.
+     */
+    @State(Scope.Thread)
+    public static class Delete {
+        String sha256;
+
+        @Setup(Level.Invocation)
+        public void upload(StorageJmhBenchmark benchmark) throws IOException {
+            sha256 = benchmark.service.uploadTestCaseFile(benchmark.uniqueContent()).sha256();
+        }
+    }
+
+    @Benchmark
+    public CloudStorageService.StoredFile upload(Upload state) throws IOException {
+        state.uploaded = service.uploadTestCaseFile(uniqueContent());
+        return state.uploaded;
+    }
+
+    @Benchmark
+    public long download() throws IOException {
+        return service.streamTestCaseFile(stored, "input.txt", OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public long sizeLookup() {
+        return service.getTestCaseFileSize(stored, "input.txt");
+    }
+
+    @Benchmark
+    public void delete(Delete state) {
+        service.releaseBlob(state.sha256);
+    }
+
+    @Test
+    void runBenchmarks() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StorageJmhBenchmark.class.getName())
+                .build()).run();
+    }
+
+    /**
+     * Gets the payload behind a unique first line, so every upload stores a new blob.
+     */
+    private InputStream uniqueContent() {
+        byte[] header = (uniques.incrementAndGet() + "\n").getBytes(StandardCharsets.UTF_8);
+        return new SequenceInputStream(new ByteArrayInputStream(header), new ByteArrayInputStream(payload));
+    }
+}
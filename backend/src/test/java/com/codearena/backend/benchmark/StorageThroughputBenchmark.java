@@ -0,0 +1,149 @@
+package com.codearena.backend.benchmark;
+
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.service.CloudStorageService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Throughput benchmark of the storage path against the in-memory bucket with a fixed
+ * per-request round-trip time.
+ *
+ * Runs uploads, downloads, size lookups and deletes from concurrent clients and reports
+ * operations per second, p50/p99 latency and storage requests per operation. Downloads are
+ * measured with and without the content cache.
+ *
+ * Excluded from the default build; run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class StorageThroughputBenchmark {
+
+    private static final long ROUND_TRIP_MILLIS = 10;
+    private static final int CLIENT_THREADS = 16;
+    private static final int IO_THREADS = 8;
+    private static final int OPERATIONS = 400;
+    private static final int CACHED_TEST_CASES = 16;
+
+    @TempDir
+    Path root;
+
+    /**
+     * One benchmarked call; index is the operation's sequence number.
+     */
+    @FunctionalInterface
+    private interface Operation {
+        void run(int index) throws Exception;
+    }
+
+    private record Result(long[] sortedNanos, double opsPerSecond, double requestsPerOp) {
+    }
+
+    @Test
+    void throughput_UploadDownloadSizeDelete() throws Exception {
+        Result uncached;
+        try (StorageHarness harness = harness("uncached", false)) {
+            CloudStorageService service = harness.service();
+            TestCase[] testCases = new TestCase[OPERATIONS];
+
+            report("upload", run(harness, i -> testCases[i] = testCase(i,
+                    service.uploadTestCaseFiles(input(i), output(i)))));
+            report("size lookup", run(harness, i -> service.getTestCaseFileSize(testCases[i], "input.txt")));
+            uncached = run(harness, i -> service.downloadTestCaseFile(testCases[i], "input.txt"));
+            report("download (no cache)", uncached);
+            report("delete", run(harness, i -> service.deleteTestCaseFiles(testCases[i])));
+        }
+
+        Result cached;
+        try (StorageHarness harness = harness("cached", true)) {
+            CloudStorageService service = harness.service();
+            TestCase[] testCases = new TestCase[CACHED_TEST_CASES];
+            for (int i = 0; i < CACHED_TEST_CASES; i++) {
+                testCases[i] = testCase(i, service.uploadTestCaseFiles(input(i), output(i)));
+            }
+            cached = run(harness, i -> service.downloadTestCaseFile(testCases[i % CACHED_TEST_CASES], "input.txt"));
+            report("download (cached, " + CACHED_TEST_CASES + " test cases)", cached);
+        }
+
+        assertTrue(percentile(cached.sortedNanos(), 50) < percentile(uncached.sortedNanos(), 50),
+                "Cached downloads should be faster at p50");
+    }
+
+    private StorageHarness harness(String name, boolean cacheEnabled) throws IOException {
+        StorageHarness harness = new StorageHarness(root.resolve(name), "gzip", IO_THREADS, cacheEnabled);
+        harness.storage().withLatency(Duration.ofMillis(ROUND_TRIP_MILLIS), Duration.ofMillis(ROUND_TRIP_MILLIS / 5));
+        return harness;
+    }
+
+    private static Result run(StorageHarness harness, Operation operation) throws Exception {
+        harness.storage().resetCounts();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<Long>> samples = new ArrayList<>(OPERATIONS);
+            for (int i = 0; i < OPERATIONS; i++) {
+                int index = i;
+                samples.add(clients.submit(() -> {
+                    long began = System.nanoTime();
+                    operation.run(index);
+                    return System.nanoTime() - began;
+                }));
+            }
+            long[] sorted = new long[OPERATIONS];
+            for (int i = 0; i < OPERATIONS; i++) {
+                sorted[i] = samples.get(i).get();
+            }
+            long elapsed = System.nanoTime() - start;
+            Arrays.sort(sorted);
+            return new Result(sorted, OPERATIONS / (elapsed / 1e9),
+                    (double) harness.storage().requestCount() / OPERATIONS);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static void report(String label, Result result) {
+        System.out.printf("%s: %.0f ops/s, p50=%.1f ms, p99=%.1f ms, %.2f storage requests/op%n", label,
+                result.opsPerSecond(), percentile(result.sortedNanos(), 50) / 1e6,
+                percentile(result.sortedNanos(), 99) / 1e6, result.requestsPerOp());
+    }
+
+    private static String input(int index) {
+        return index + "\n" + "1 2 3 4 5\n".repeat(2000);
+    }
+
+    private static String output(int index) {
+        return index + "\n" + "15\n".repeat(2000);
+    }
+
+    private static TestCase testCase(int index, CloudStorageService.UploadedFiles files) {
+        return TestCase.builder()
+                .id((long) index + 1)
+                .problem(Problem.builder().id(1L).build())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256(files.input().sha256())
+                .inputCrc32c(files.input().crc32c())
+                .outputSha256(files.output().sha256())
+                .outputCrc32c(files.output().crc32c())
+                .build();
+    }
+}
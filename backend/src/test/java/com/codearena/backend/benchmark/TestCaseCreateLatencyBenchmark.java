@@ -0,0 +1,167 @@
+package com.codearena.backend.benchmark;
+
+import com.codearena.backend.dto.TestCaseCreateDTO;
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.Role;
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.entity.User;
+import com.codearena.backend.repository.ProblemRepository;
+import com.codearena.backend.repository.StoredBlobRepository;
+import com.codearena.backend.repository.TestCaseRepository;
+import com.codearena.backend.service.CloudStorageService;
+import com.codearena.backend.service.LocalDiskTestCaseStorage;
+import com.codearena.backend.service.OutputTokenIndexService;
+import com.codearena.backend.service.TestCaseBundleService;
+import com.codearena.backend.service.TestCaseContentCache;
+import com.codearena.backend.service.TestCaseService;
+import com.codearena.backend.service.TestCaseStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Latency benchmark for test case creation against a storage backend with a fixed
+ * per-request round-trip time.
+ *
+ * Compares the previous create path (two sequential uploads followed by two size
+ * lookups) with TestCaseService.createTestCase (two concurrent uploads, sizes taken
+ * from the upload responses), reporting p50/p99.
+ *
+ * Excluded from the default build; run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class TestCaseCreateLatencyBenchmark {
+
+    private static final long ROUND_TRIP_MILLIS = 20;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 200;
+
+    @TempDir
+    Path root;
+
+    private TestCaseStorage storage;
+    private CloudStorageService cloudStorageService;
+    private TestCaseService testCaseService;
+    private User user;
+    private final AtomicLong ids = new AtomicLong();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        TestCaseStorage storage = new FaultInjectingStorage(new LocalDiskTestCaseStorage(root), 42)
+                .withLatency(Duration.ofMillis(ROUND_TRIP_MILLIS), Duration.ZERO);
+        TestCaseContentCache cache = new TestCaseContentCache(new SimpleMeterRegistry(), false, 0, 0, 0, 0,
+                root.resolve("cache").toString());
+        // Every upload misses the blob registry, so each create performs both PUTs
+        this.storage = storage;
+        cloudStorageService = new CloudStorageService(storage, cache, mock(StoredBlobRepository.class),
+                TransactionOperations.withoutTransaction(), 8, "none");
+
+        Role role = new Role();
+        role.setName("PROBLEM_SETTER");
+        user = new User();
+        user.setFirebaseUid("bench-user");
+        user.setDisplayName("Bench User");
+        user.setRoles(Set.of(role));
+
+        Problem problem = new Problem();
+        problem.setId(1L);
+        problem.setCreatedBy(user);
+
+        ProblemRepository problemRepository = mock(ProblemRepository.class);
+        TestCaseRepository testCaseRepository = mock(TestCaseRepository.class);
+        when(problemRepository.findById(1L)).thenReturn(Optional.of(problem));
+        when(testCaseRepository.existsByProblemIdAndName(anyLong(), anyString())).thenReturn(false);
+        when(testCaseRepository.save(any())).thenAnswer(invocation -> {
+            TestCase testCase = invocation.getArgument(0);
+            if (testCase.getId() == null) {
+                testCase.setId(ids.incrementAndGet());
+            }
+            return testCase;
+        });
+        testCaseService = new TestCaseService(testCaseRepository, problemRepository, cloudStorageService,
+                mock(TestCaseBundleService.class), mock(OutputTokenIndexService.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cloudStorageService.shutdown();
+    }
+
+    @Test
+    void createLatency_SequentialVersusConcurrent() {
+        String input = "1 2 3 4 5\n".repeat(1000);
+        String output = "15\n".repeat(1000);
+
+        long[] before = measure(() -> {
+            long id = ids.incrementAndGet();
+            try {
+                storage.write(CloudStorageService.objectName(1L, id, "input.txt"), input.getBytes(StandardCharsets.UTF_8));
+                storage.write(CloudStorageService.objectName(1L, id, "output.txt"), output.getBytes(StandardCharsets.UTF_8));
+                storage.stat(CloudStorageService.objectName(1L, id, "input.txt"));
+                storage.stat(CloudStorageService.objectName(1L, id, "output.txt"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long[] after = measure(() -> testCaseService.createTestCase(1L, dto(input, output), user));
+
+        report("before (sequential uploads + size lookups)", before);
+        report("after  (concurrent uploads, sizes from responses)", after);
+        assertTrue(percentile(after, 50) < percentile(before, 50), "Concurrent create should be faster at p50");
+    }
+
+    private long[] measure(Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static void report(String label, long[] sorted) {
+        System.out.printf("%s: p50=%.1f ms, p99=%.1f ms%n", label,
+                percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6);
+    }
+
+    private TestCaseCreateDTO dto(String input, String output) {
+        TestCaseCreateDTO dto = new TestCaseCreateDTO();
+        dto.setName("bench-" + ids.get());
+        dto.setInputContent(input);
+        dto.setOutputContent(output);
+        dto.setIsHidden(false);
+        dto.setIsSample(false);
+        return dto;
+    }
+}
@@ -76,7 +76,8 @@ class ProblemControllerIntegrationTest {
                 .content(objectMapper.writeValueAsString(dto)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(true))
-                .andExpect(jsonPath("$.data.title").value("Test Problem"));
+                .andExpect(jsonPath("$.data.title").value("Test Problem"))
+                .andExpect(jsonPath("$.data.scoringMode").value("ICPC"));
     }
 
     @Test
@@ -122,6 +123,7 @@ class ProblemControllerIntegrationTest {
         updateDTO.setDifficulty("HARD");
         updateDTO.setTimeLimitMillis(4000);
         updateDTO.setMemoryLimitMB(1024);
+        updateDTO.setScoringMode("ioi");
         updateDTO.setTags(Set.of("new"));
         updateDTO.setIsPublic(true);
         mockMvc.perform(put("/api/problems/" + id)
@@ -129,7 +131,8 @@ class ProblemControllerIntegrationTest {
                 .content(objectMapper.writeValueAsString(updateDTO)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(true))
-                .andExpect(jsonPath("$.data.title").value("Updated"));
+                .andExpect(jsonPath("$.data.title").value("Updated"))
+                .andExpect(jsonPath("$.data.scoringMode").value("IOI"));
     }
 
     @Test
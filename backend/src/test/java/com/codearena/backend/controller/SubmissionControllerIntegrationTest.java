@@ -0,0 +1,120 @@
+package com.codearena.backend.controller;
+
+import com.codearena.backend.dto.SubmissionCreateDTO;
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.Role;
+import com.codearena.backend.entity.User;
+import com.codearena.backend.repository.ProblemRepository;
+import com.codearena.backend.repository.RoleRepository;
+import com.codearena.backend.repository.SubmissionRepository;
+import com.codearena.backend.repository.SubmissionTestResultRepository;
+import com.codearena.backend.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration tests for SubmissionController endpoints. The test profile runs no judge
+ * workers, so submissions stay QUEUED.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SubmissionControllerIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private ProblemRepository problemRepository;
+    @Autowired
+    private SubmissionRepository submissionRepository;
+    @Autowired
+    private SubmissionTestResultRepository submissionTestResultRepository;
+
+    private Problem problem;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        Role userRole = roleRepository.save(new Role(null, "USER"));
+        User solver = userRepository.save(new User("solver-uid", "solver@example.com", "Solver", true,
+                new HashSet<>(Set.of(userRole))));
+        problem = problemRepository.save(Problem.builder()
+                .title("A + B")
+                .description("Print the sum")
+                .difficulty("EASY")
+                .timeLimitMillis(1000)
+                .memoryLimitMB(256)
+                .isPublic(true)
+                .createdBy(solver)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanUp();
+    }
+
+    private void cleanUp() {
+        submissionTestResultRepository.deleteAll();
+        submissionRepository.deleteAll();
+        problemRepository.deleteAll();
+        userRepository.deleteAll();
+        roleRepository.deleteAll();
+    }
+
+    @Test
+    @WithMockUser(username = "solver-uid", roles = {"USER"})
+    void submit_queuesSubmission_andAuthorCanReadIt() throws Exception {
+        SubmissionCreateDTO dto = new SubmissionCreateDTO();
+        dto.setLanguage("python3");
+        dto.setSourceCode("print(sum(map(int, input().split())))");
+        String response = mockMvc.perform(post("/api/problems/" + problem.getId() + "/submissions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.status").value("QUEUED"))
+                .andReturn().getResponse().getContentAsString();
+        Integer id = com.jayway.jsonpath.JsonPath.read(response, "$.data.id");
+
+        mockMvc.perform(get("/api/submissions/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.user").value("Solver"))
+                .andExpect(jsonPath("$.data.language").value("python3"));
+        mockMvc.perform(get("/api/problems/" + problem.getId() + "/submissions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1));
+    }
+
+    @Test
+    @WithMockUser(username = "solver-uid", roles = {"USER"})
+    void submit_unsupportedLanguage_badRequest() throws Exception {
+        SubmissionCreateDTO dto = new SubmissionCreateDTO();
+        dto.setLanguage("cobol");
+        dto.setSourceCode("DISPLAY 'HI'.");
+        mockMvc.perform(post("/api/problems/" + problem.getId() + "/submissions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isBadRequest());
+    }
+}
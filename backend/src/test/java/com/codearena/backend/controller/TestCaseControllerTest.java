@@ -2,6 +2,7 @@ package com.codearena.backend.controller;
 
 import com.codearena.backend.dto.TestCaseCreateDTO;
 import com.codearena.backend.dto.TestCaseResponseDTO;
+import com.codearena.backend.dto.TestCaseUploadDTO;
 import com.codearena.backend.entity.Role;
 import com.codearena.backend.entity.User;
 import com.codearena.backend.config.TestConfig;
@@ -15,6 +16,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
@@ -24,7 +26,10 @@ import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -113,4 +118,25 @@ class TestCaseControllerTest {
                 .content(objectMapper.writeValueAsString(testCaseCreateDTO)))
                 .andExpect(status().isForbidden());
     }
-} 
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "test-user-uid", roles = {"PROBLEM_SETTER"})
+    void uploadTestCase_MultipartFiles_ReturnsSuccess() throws Exception {
+        // Arrange
+        when(userService.findByUid("test-user-uid")).thenReturn(java.util.Optional.of(testUser));
+        when(testCaseService.createTestCaseFromFiles(eq(1L), any(TestCaseUploadDTO.class), any(), any(), any(User.class)))
+                .thenReturn(testCaseResponseDTO);
+
+        // Act & Assert
+        mockMvc.perform(multipart("/api/testcases/problems/1/upload")
+                .file(new MockMultipartFile("input", "input.txt", "text/plain", "1 2 3".getBytes()))
+                .file(new MockMultipartFile("output", "output.txt", "text/plain", "6".getBytes()))
+                .param("name", "Test Case 1")
+                .param("isHidden", "false")
+                .param("isSample", "true")
+                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.name").value("Test Case 1"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.codearena.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for CgroupSandbox. The sandboxed runs need a delegated cgroup v2 group with the
+ * cpu, memory and pids controllers, named by the CODEARENA_TEST_CGROUP_ROOT environment
+ * variable, and python3 on the PATH; they are skipped otherwise.
+ */
+class CgroupSandboxTest {
+
+    private static final String CGROUP_ROOT = System.getenv("CODEARENA_TEST_CGROUP_ROOT");
+
+    @TempDir
+    Path workDir;
+
+    @Test
+    void createGroup_Disabled_Throws() throws IOException {
+        CgroupSandbox sandbox = new CgroupSandbox(false, workDir.toString(), 128);
+
+        assertFalse(sandbox.isEnabled());
+        assertThrows(IllegalStateException.class, () -> sandbox.createGroup(0));
+    }
+
+    @Test
+    void constructor_RootOutsideCgroupHierarchy_Throws() {
+        assertThrows(IllegalStateException.class,
+                () -> new CgroupSandbox(true, workDir.resolve("judge").toString(), 128));
+        assertFalse(Files.exists(workDir.resolve("judge")));
+    }
+
+    @Test
+    void run_BusyLoop_IsBoundedByCpuTime() throws IOException {
+        ProgramRunner runner = sandboxedRunner();
+        Files.writeString(ProgramLanguage.PYTHON3.sourceFile(workDir), "while True:\n    pass\n");
+
+        ProgramRunner.Program program = runner.compile(ProgramLanguage.PYTHON3, workDir);
+        ProgramRunner.RunResult result = runner.run(program, List.of(), null, workDir.resolve("out.txt"),
+                Duration.ofMillis(300), 0);
+
+        assertTrue(result.timedOut());
+        assertTrue(result.cpuTime().toMillis() >= 300);
+    }
+
+    @Test
+    void run_Sleeping_IsBoundedByWallTime() throws IOException {
+        ProgramRunner runner = sandboxedRunner();
+        Files.writeString(ProgramLanguage.PYTHON3.sourceFile(workDir), "import time\ntime.sleep(30)\n");
+
+        ProgramRunner.Program program = runner.compile(ProgramLanguage.PYTHON3, workDir);
+        ProgramRunner.RunResult result = runner.run(program, List.of(), null, workDir.resolve("out.txt"),
+                Duration.ofMillis(200), 0);
+
+        assertTrue(result.timedOut());
+        assertTrue(result.cpuTime().toMillis() < 200);
+        assertTrue(result.wallTime().toMillis() < 5000);
+    }
+
+    @Test
+    void run_PastMemoryLimit_IsKilledAndReported() throws IOException {
+        ProgramRunner runner = sandboxedRunner();
+        Files.writeString(ProgramLanguage.PYTHON3.sourceFile(workDir),
+                "x = bytearray(256 * 1024 * 1024)\nprint(len(x))\n");
+
+        ProgramRunner.Program program = runner.compile(ProgramLanguage.PYTHON3, workDir);
+        ProgramRunner.RunResult result = runner.run(program, List.of(), null, workDir.resolve("out.txt"),
+                Duration.ofSeconds(10), 64L * 1024 * 1024);
+
+        assertTrue(result.outOfMemory());
+        assertFalse(result.succeeded());
+    }
+
+    @Test
+    void run_WithinLimits_ReportsCpuTimeAndMemoryPeak() throws IOException {
+        ProgramRunner runner = sandboxedRunner();
+        Files.writeString(ProgramLanguage.PYTHON3.sourceFile(workDir),
+                "x = bytearray(32 * 1024 * 1024)\nprint(sum(range(10 ** 6)))\n");
+
+        ProgramRunner.Program program = runner.compile(ProgramLanguage.PYTHON3, workDir);
+        ProgramRunner.RunResult result = runner.run(program, List.of(), null, workDir.resolve("out.txt"),
+                Duration.ofSeconds(10), 256L * 1024 * 1024);
+
+        assertTrue(result.succeeded());
+        assertFalse(result.outOfMemory());
+        assertTrue(result.cpuTime().toNanos() > 0);
+        assertTrue(result.memoryPeakBytes() < 0 || result.memoryPeakBytes() >= 32L * 1024 * 1024);
+        assertEquals("499999500000\n", Files.readString(workDir.resolve("out.txt")));
+    }
+
+    private static ProgramRunner sandboxedRunner() throws IOException {
+        assumeTrue(CGROUP_ROOT != null, "CODEARENA_TEST_CGROUP_ROOT is not set");
+        return new ProgramRunner(Duration.ofSeconds(30), new CgroupSandbox(true, CGROUP_ROOT, 128));
+    }
+}
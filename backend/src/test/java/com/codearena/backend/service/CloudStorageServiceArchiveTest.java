@@ -0,0 +1,99 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.repository.StoredBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for streaming zip export in CloudStorageService.
+ */
+class CloudStorageServiceArchiveTest {
+
+    @TempDir
+    Path root;
+
+    private CloudStorageService cloudStorageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StoredBlobRepository storedBlobRepository = mock(StoredBlobRepository.class);
+        when(storedBlobRepository.incrementRefCount(anyString())).thenReturn(0);
+        TestCaseContentCache cache = new TestCaseContentCache(new SimpleMeterRegistry(), false, 0, 0, 0, 0,
+                root.resolve("cache").toString());
+        // Two I/O threads: a window of two files ahead of the writer
+        cloudStorageService = new CloudStorageService(new LocalDiskTestCaseStorage(root.resolve("store")), cache,
+                storedBlobRepository, TransactionOperations.withoutTransaction(), 2, "gzip");
+    }
+
+    @AfterEach
+    void tearDown() {
+        cloudStorageService.shutdown();
+    }
+
+    @Test
+    void writeZipArchive_WritesEntriesInOrder() throws IOException {
+        String large = "1000000 ".repeat(100_000); // Larger than the prefetched head
+        List<CloudStorageService.ArchiveFile> files = new ArrayList<>();
+        List<String> contents = List.of("1 2\n", "3\n", large, "4\n", "", "5 6\n");
+        for (int i = 0; i < contents.size(); i++) {
+            files.add(new CloudStorageService.ArchiveFile(i + ".in", store(contents.get(i)), "input.txt"));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = cloudStorageService.writeZipArchive(files, out);
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                int index = names.size();
+                names.add(entry.getName());
+                assertEquals(contents.get(index), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(List.of("0.in", "1.in", "2.in", "3.in", "4.in", "5.in"), names);
+        assertEquals(contents.stream().mapToLong(c -> c.getBytes(StandardCharsets.UTF_8).length).sum(), written);
+    }
+
+    @Test
+    void writeZipArchive_MissingFile_ThrowsIOException() {
+        TestCase missing = TestCase.builder()
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256("f".repeat(64))
+                .build();
+        List<CloudStorageService.ArchiveFile> files = List.of(
+                new CloudStorageService.ArchiveFile("1.in", store("1\n"), "input.txt"),
+                new CloudStorageService.ArchiveFile("2.in", missing, "input.txt"));
+
+        assertThrows(IOException.class, () -> cloudStorageService.writeZipArchive(files, new ByteArrayOutputStream()));
+    }
+
+    private TestCase store(String content) {
+        CloudStorageService.StoredFile stored = cloudStorageService.uploadTestCaseFiles(content, null).input();
+        return TestCase.builder()
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256(stored.sha256())
+                .build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.StoredBlob;
+import com.codearena.backend.repository.StoredBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for content-addressed storage in CloudStorageService.
+ */
+class CloudStorageServiceDeduplicationTest {
+
+    @TempDir
+    Path root;
+
+    private LocalDiskTestCaseStorage storage;
+    private StoredBlobRepository storedBlobRepository;
+    private CloudStorageService cloudStorageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storedBlobRepository = mock(StoredBlobRepository.class);
+        TestCaseContentCache cache = new TestCaseContentCache(new SimpleMeterRegistry(), false, 0, 0, 0, 0,
+                root.resolve("cache").toString());
+        storage = new LocalDiskTestCaseStorage(root.resolve("store"));
+        cloudStorageService = new CloudStorageService(storage, cache, storedBlobRepository,
+                TransactionOperations.withoutTransaction(), 2, "gzip");
+    }
+
+    @AfterEach
+    void tearDown() {
+        cloudStorageService.shutdown();
+    }
+
+    @Test
+    void uploadTestCaseFiles_NewContent_WritesBlobAndRegistersIt() {
+        when(storedBlobRepository.incrementRefCount(anyString())).thenReturn(0);
+
+        CloudStorageService.UploadedFiles uploaded = cloudStorageService.uploadTestCaseFiles("1 2\n", "3\n");
+
+        String sha = uploaded.input().sha256();
+        assertEquals(64, sha.length());
+        assertEquals(4L, uploaded.input().rawSize());
+        assertEquals(TestCaseCodec.GZIP, uploaded.input().codec());
+        assertTrue(Files.exists(storage.resolve(CloudStorageService.blobName(sha))));
+        verify(storedBlobRepository, times(2)).saveAndFlush(any(StoredBlob.class));
+    }
+
+    @Test
+    void uploadTestCaseFiles_KnownContent_SkipsUpload() throws Exception {
+        String sha = HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest("1 2\n".getBytes(StandardCharsets.UTF_8)));
+        when(storedBlobRepository.incrementRefCount(sha)).thenReturn(1);
+        when(storedBlobRepository.findById(sha)).thenReturn(Optional.of(blob(sha, 2L)));
+
+        CloudStorageService.StoredFile stored = cloudStorageService.uploadTestCaseFiles(null, "1 2\n").output();
+
+        assertEquals(sha, stored.sha256());
+        assertEquals(24L, stored.storedSize());
+        // The registry says the blob exists, so nothing was written
+        assertFalse(Files.exists(storage.resolve(CloudStorageService.blobName(sha))));
+        verify(storedBlobRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void uploadTestCaseFile_StreamedDuplicate_DiscardsStagingObject() throws IOException {
+        when(storedBlobRepository.incrementRefCount(anyString())).thenReturn(1);
+        when(storedBlobRepository.findById(anyString())).thenAnswer(i -> Optional.of(blob(i.getArgument(0), 2L)));
+
+        cloudStorageService.uploadTestCaseFile(new ByteArrayInputStream("1 2\n".getBytes(StandardCharsets.UTF_8)));
+
+        Path staging = root.resolve("store").resolve("staging");
+        try (var files = Files.list(staging)) {
+            assertEquals(0, files.count());
+        }
+        verify(storedBlobRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void releaseBlob_LastReference_DeletesBlob() {
+        when(storedBlobRepository.incrementRefCount(anyString())).thenReturn(0);
+        String sha = cloudStorageService.uploadTestCaseFiles("1 2\n", null).input().sha256();
+        StoredBlob blob = blob(sha, 1L);
+        when(storedBlobRepository.findAllForUpdate(List.of(sha))).thenReturn(List.of(blob));
+
+        cloudStorageService.releaseBlob(sha);
+
+        assertFalse(Files.exists(storage.resolve(CloudStorageService.blobName(sha))));
+        verify(storedBlobRepository).deleteAll(List.of(blob));
+    }
+
+    @Test
+    void releaseBlob_SharedBlob_OnlyDropsReference() {
+        when(storedBlobRepository.incrementRefCount(anyString())).thenReturn(0);
+        String sha = cloudStorageService.uploadTestCaseFiles("1 2\n", null).input().sha256();
+        StoredBlob blob = blob(sha, 2L);
+        when(storedBlobRepository.findAllForUpdate(List.of(sha))).thenReturn(List.of(blob));
+
+        cloudStorageService.releaseBlob(sha);
+
+        assertEquals(1L, blob.getRefCount());
+        assertTrue(Files.exists(storage.resolve(CloudStorageService.blobName(sha))));
+        verify(storedBlobRepository, never()).deleteAll(any());
+    }
+
+    private static StoredBlob blob(String sha, long refCount) {
+        return StoredBlob.builder()
+                .sha256(sha)
+                .rawSize(4L)
+                .storedSize(24L)
+                .codec("GZIP")
+                .refCount(refCount)
+                .build();
+    }
+}
@@ -0,0 +1,141 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.benchmark.FaultInjectingStorage.Operation;
+import com.codearena.backend.benchmark.StorageHarness;
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.TestCase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CloudStorageService against the in-memory bucket, with injected storage failures.
+ */
+class CloudStorageServiceFaultInjectionTest {
+
+    @TempDir
+    Path root;
+
+    private StorageHarness harness;
+    private CloudStorageService cloudStorageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        harness = new StorageHarness(root.resolve("cache"), "gzip", 2, true);
+        cloudStorageService = harness.service();
+    }
+
+    @AfterEach
+    void tearDown() {
+        harness.close();
+    }
+
+    @Test
+    void uploadTestCaseFiles_SameContentTwice_WritesOnce() {
+        CloudStorageService.StoredFile first = cloudStorageService.uploadTestCaseFiles("1 2\n", null).input();
+        CloudStorageService.StoredFile second = cloudStorageService.uploadTestCaseFiles("1 2\n", null).input();
+
+        assertEquals(first.sha256(), second.sha256());
+        assertEquals(1, harness.storage().requestCount(Operation.WRITE));
+        assertEquals(2L, harness.blob(first.sha256()).getRefCount());
+    }
+
+    @Test
+    void uploadTestCaseFiles_OneWriteFails_LeavesNothingBehind() throws Exception {
+        harness.storage().failNext(Operation.WRITE, 1);
+
+        assertThrows(IllegalStateException.class, () -> cloudStorageService.uploadTestCaseFiles("1 2\n", "3\n"));
+
+        // The upload that succeeded was released again
+        assertEquals(0, harness.bucket().size());
+        assertNull(harness.blob(sha256("1 2\n")));
+        assertNull(harness.blob(sha256("3\n")));
+    }
+
+    @Test
+    void uploadTestCaseFile_MoveFails_DiscardsStagingObject() {
+        harness.storage().failNext(Operation.MOVE, 1);
+
+        assertThrows(IOException.class, () -> cloudStorageService.uploadTestCaseFile(
+                new ByteArrayInputStream("1 2 3\n".getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(0, harness.bucket().size());
+    }
+
+    @Test
+    void downloadTestCaseFile_ReadFails_ServesPlaceholderUncached() {
+        TestCase testCase = testCase(cloudStorageService.uploadTestCaseFiles("1 2\n", "3\n"));
+        harness.storage().failNext(Operation.READ, 1);
+
+        String failed = cloudStorageService.downloadTestCaseFile(testCase, "input.txt");
+        String retried = cloudStorageService.downloadTestCaseFile(testCase, "input.txt");
+        String cached = cloudStorageService.downloadTestCaseFile(testCase, "input.txt");
+
+        assertNotEquals("1 2\n", failed);
+        assertEquals("1 2\n", retried);
+        assertEquals("1 2\n", cached);
+        assertEquals(2, harness.storage().requestCount(Operation.READ));
+    }
+
+    @Test
+    void getTestCaseFileSize_StatFails_ReturnsZero() {
+        TestCase testCase = testCase(cloudStorageService.uploadTestCaseFiles("1 2\n", "3\n"));
+        long size = cloudStorageService.getTestCaseFileSize(testCase, "input.txt");
+        harness.storage().failNext(Operation.STAT, 1);
+
+        assertTrue(size > 0);
+        assertEquals(0, cloudStorageService.getTestCaseFileSize(testCase, "input.txt"));
+    }
+
+    @Test
+    void deleteTestCaseFiles_LastReference_DeletesObjectsInOneBatch() {
+        TestCase testCase = testCase(cloudStorageService.uploadTestCaseFiles("1 2\n", "3\n"));
+        harness.storage().resetCounts();
+
+        cloudStorageService.deleteTestCaseFiles(testCase);
+
+        assertEquals(1, harness.storage().requestCount(Operation.DELETE));
+        assertEquals(0, harness.bucket().size());
+        assertNull(harness.blob(testCase.getInputSha256()));
+    }
+
+    @Test
+    void deleteTestCaseFiles_DeleteFails_DropsRowsAndLeavesOrphans() {
+        TestCase testCase = testCase(cloudStorageService.uploadTestCaseFiles("1 2\n", "3\n"));
+        harness.storage().failNext(Operation.DELETE, 1);
+
+        cloudStorageService.deleteTestCaseFiles(testCase);
+
+        // The objects are left for the storage reconciler
+        assertNull(harness.blob(testCase.getInputSha256()));
+        assertEquals(2, harness.bucket().size());
+    }
+
+    private static TestCase testCase(CloudStorageService.UploadedFiles files) {
+        return TestCase.builder()
+                .id(1L)
+                .problem(Problem.builder().id(1L).build())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256(files.input().sha256())
+                .inputCrc32c(files.input().crc32c())
+                .outputSha256(files.output().sha256())
+                .outputCrc32c(files.output().crc32c())
+                .build();
+    }
+
+    private static String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
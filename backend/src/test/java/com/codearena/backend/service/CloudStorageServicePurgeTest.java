@@ -0,0 +1,93 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.StoredBlob;
+import com.codearena.backend.repository.StoredBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for batched deletion and problem purges in CloudStorageService.
+ */
+class CloudStorageServicePurgeTest {
+
+    @TempDir
+    Path root;
+
+    private LocalDiskTestCaseStorage storage;
+    private StoredBlobRepository storedBlobRepository;
+    private CloudStorageService cloudStorageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storage = spy(new LocalDiskTestCaseStorage(root.resolve("store")));
+        storedBlobRepository = mock(StoredBlobRepository.class);
+        TestCaseContentCache cache = new TestCaseContentCache(new SimpleMeterRegistry(), false, 0, 0, 0, 0,
+                root.resolve("cache").toString());
+        cloudStorageService = new CloudStorageService(storage, cache, storedBlobRepository,
+                TransactionOperations.withoutTransaction(), 4, "none");
+    }
+
+    @AfterEach
+    void tearDown() {
+        cloudStorageService.shutdown();
+    }
+
+    @Test
+    void purgeProblemFiles_DeletesLegacyPrefixInBatches() throws IOException {
+        for (long testCaseId = 1; testCaseId <= 150; testCaseId++) {
+            storage.write(CloudStorageService.objectName(7L, testCaseId, "input.txt"), bytes("1"));
+            storage.write(CloudStorageService.objectName(7L, testCaseId, "output.txt"), bytes("1"));
+        }
+        storage.write(CloudStorageService.objectName(8L, 1L, "input.txt"), bytes("1"));
+
+        int deleted = cloudStorageService.purgeProblemFiles(7L, List.of()).join();
+
+        assertEquals(300, deleted);
+        assertTrue(storage.list("testcases/7/", null, 10).names().isEmpty());
+        assertNotNull(storage.stat(CloudStorageService.objectName(8L, 1L, "input.txt")));
+        verify(storage, times(3)).deleteAll(any());
+    }
+
+    @Test
+    void purgeProblemFiles_ReleasesSharedBlobReferencesTogether() throws IOException {
+        storage.write(CloudStorageService.blobName("aa"), bytes("YES"));
+        storage.write(CloudStorageService.blobName("bb"), bytes("1 2"));
+        StoredBlob shared = blob("aa", 3L);
+        StoredBlob single = blob("bb", 1L);
+        when(storedBlobRepository.findAllForUpdate(List.of("aa", "bb"))).thenReturn(List.of(shared, single));
+
+        cloudStorageService.purgeProblemFiles(7L, List.of("aa", "bb", "aa")).join();
+
+        assertEquals(1L, shared.getRefCount());
+        assertNotNull(storage.stat(CloudStorageService.blobName("aa")));
+        assertNull(storage.stat(CloudStorageService.blobName("bb")));
+        verify(storedBlobRepository).deleteAll(List.of(single));
+    }
+
+    private static StoredBlob blob(String sha, long refCount) {
+        return StoredBlob.builder()
+                .sha256(sha)
+                .rawSize(3L)
+                .storedSize(3L)
+                .codec("NONE")
+                .refCount(refCount)
+                .build();
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
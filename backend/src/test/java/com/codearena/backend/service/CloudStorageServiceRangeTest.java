@@ -0,0 +1,153 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.repository.StoredBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ranged test case file reads in CloudStorageService.
+ */
+class CloudStorageServiceRangeTest {
+
+    private static final String CONTENT = "line 1\nline 2\nline 3\nline 4\n";
+
+    @TempDir
+    Path root;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LocalDiskTestCaseStorage storage;
+    private CloudStorageService cloudStorageService;
+
+    @AfterEach
+    void tearDown() {
+        cloudStorageService.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"none", "gzip", "zstd"})
+    void readTestCaseFileRange_Offset_ReturnsWindow(String codec) throws IOException {
+        TestCase testCase = store(codec, CONTENT);
+
+        CloudStorageService.FileRange range = cloudStorageService.readTestCaseFileRange(
+                testCase, "input.txt", 7, 6, 0);
+
+        assertEquals("line 2", range.text());
+        assertEquals(13L, range.nextOffset());
+        assertTrue(range.hasMore());
+    }
+
+    @Test
+    void readTestCaseFileRange_LineLimit_CutsAfterLastLine() throws IOException {
+        TestCase testCase = store("gzip", CONTENT);
+
+        CloudStorageService.FileRange range = cloudStorageService.readTestCaseFileRange(
+                testCase, "input.txt", 0, 1024, 2);
+
+        assertEquals("line 1\nline 2\n", range.text());
+        assertTrue(range.hasMore());
+    }
+
+    @Test
+    void readTestCaseFileRange_WholeFile_HasNoMore() throws IOException {
+        TestCase testCase = store("none", CONTENT);
+
+        CloudStorageService.FileRange range = cloudStorageService.readTestCaseFileRange(
+                testCase, "input.txt", 0, 1024, 0);
+
+        assertEquals(CONTENT, range.text());
+        assertFalse(range.hasMore());
+    }
+
+    @Test
+    void readTestCaseFileRange_OffsetPastEnd_ReturnsEmpty() throws IOException {
+        TestCase testCase = store("gzip", CONTENT);
+
+        CloudStorageService.FileRange range = cloudStorageService.readTestCaseFileRange(
+                testCase, "input.txt", 1000, 16, 0);
+
+        assertEquals(0, range.content().length);
+        assertFalse(range.hasMore());
+    }
+
+    @Test
+    void readTestCaseFileRange_MultiByteCharacterAtCut_BacksOff() throws IOException {
+        TestCase testCase = store("none", "abécd");
+
+        // 'é' takes bytes 2-3, so a 3 byte window must stop before it
+        CloudStorageService.FileRange range = cloudStorageService.readTestCaseFileRange(
+                testCase, "input.txt", 0, 3, 0);
+
+        assertEquals("ab", range.text());
+        assertEquals(2L, range.nextOffset());
+        assertTrue(range.hasMore());
+    }
+
+    @Test
+    void readTestCaseFileRange_MultiBlockZstdFile_DecodesOnlyWhatTheWindowNeeds() throws IOException {
+        // About 2MB of varied lines: many zstd blocks, none of which decodes from a prefix of itself
+        String content = IntStream.range(0, 200_000)
+                .mapToObj(i -> (i * 7919L % 100_003) + " " + (i * 31L % 997) + "\n")
+                .collect(Collectors.joining());
+        TestCase testCase = store("zstd", content);
+
+        CloudStorageService.FileRange head = cloudStorageService.readTestCaseFileRange(testCase, "input.txt", 0, 1000, 0);
+        CloudStorageService.FileRange middle = cloudStorageService.readTestCaseFileRange(
+                testCase, "input.txt", 1_500_000, 100, 0);
+
+        assertEquals(content.substring(0, 1000), head.text());
+        assertTrue(head.hasMore());
+        assertEquals(content.substring(1_500_000, 1_500_100), middle.text());
+    }
+
+    @Test
+    void readTestCaseFileRangeAsync_RepeatedPreview_IsServedFromCache() throws Exception {
+        TestCase testCase = store("gzip", CONTENT);
+
+        for (int i = 0; i < 2; i++) {
+            CloudStorageService.FileRange range = cloudStorageService.readTestCaseFileRangeAsync(
+                    testCase, "input.txt", 0, 4096, 0).get();
+            assertEquals(CONTENT, range.text());
+            assertFalse(range.hasMore());
+        }
+
+        verify(storage, times(1)).openReader(anyString());
+        assertEquals(1, meterRegistry.get("testcase.cache.hits").tag("tier", "heap").counter().count());
+    }
+
+    private TestCase store(String codec, String content) throws IOException {
+        StoredBlobRepository storedBlobRepository = mock(StoredBlobRepository.class);
+        when(storedBlobRepository.incrementRefCount(anyString())).thenReturn(0);
+        TestCaseContentCache cache = new TestCaseContentCache(meterRegistry, true, 1024 * 1024, 64 * 1024, 0, 0,
+                root.resolve("cache").toString());
+        storage = spy(new LocalDiskTestCaseStorage(root.resolve("store")));
+        cloudStorageService = new CloudStorageService(storage, cache,
+                storedBlobRepository, TransactionOperations.withoutTransaction(), 2, codec);
+
+        CloudStorageService.StoredFile stored = cloudStorageService.uploadTestCaseFiles(content, null).input();
+        return TestCase.builder()
+                .id(1L)
+                .problem(Problem.builder().id(1L).build())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256(stored.sha256())
+                .inputFileSize(stored.rawSize())
+                .storageCodec(stored.codec().name())
+                .build();
+    }
+}
@@ -0,0 +1,161 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.repository.StoredBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for incremental test case file uploads in CloudStorageService.
+ */
+class CloudStorageServiceUploadTest {
+
+    @TempDir
+    Path root;
+
+    private CloudStorageService cloudStorageService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StoredBlobRepository storedBlobRepository = mock(StoredBlobRepository.class);
+        when(storedBlobRepository.incrementRefCount(anyString())).thenReturn(0);
+        TestCaseContentCache cache = new TestCaseContentCache(new SimpleMeterRegistry(), false, 0, 0, 0, 0,
+                root.resolve("cache").toString());
+        cloudStorageService = new CloudStorageService(new LocalDiskTestCaseStorage(root.resolve("store")), cache,
+                storedBlobRepository, TransactionOperations.withoutTransaction(), 2, "zstd");
+    }
+
+    @AfterEach
+    void tearDown() {
+        cloudStorageService.shutdown();
+    }
+
+    @Test
+    void finish_AppendedChunks_StoresConcatenation() throws Exception {
+        CloudStorageService.FileUpload upload = cloudStorageService.startFileUpload();
+        upload.append(stream("1 2 "));
+        upload.append(stream("3 4\n"));
+
+        CloudStorageService.StoredFile stored = upload.finish();
+
+        assertEquals(sha256("1 2 3 4\n"), stored.sha256());
+        assertEquals(8L, stored.rawSize());
+        assertEquals(TestCaseCodec.ZSTD, stored.codec());
+        assertEquals(CloudStorageService.crc32c("1 2 3 4\n".getBytes(StandardCharsets.UTF_8)), stored.crc32c());
+        assertEquals("1 2 3 4\n", download(stored.sha256(), stored.crc32c()));
+    }
+
+    @Test
+    void streamTestCaseFile_ChecksumMismatch_ThrowsIOException() throws Exception {
+        CloudStorageService.FileUpload upload = cloudStorageService.startFileUpload();
+        upload.append(stream("1 2 3\n"));
+        CloudStorageService.StoredFile stored = upload.finish();
+
+        assertThrows(IOException.class, () -> download(stored.sha256(), stored.crc32c() ^ 1));
+    }
+
+    @Test
+    void hasContent_ComparesAgainstStoredChecksums() throws Exception {
+        CloudStorageService.FileUpload upload = cloudStorageService.startFileUpload();
+        upload.append(stream("1 2 3\n"));
+        CloudStorageService.StoredFile stored = upload.finish();
+        TestCase testCase = TestCase.builder()
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256(stored.sha256())
+                .inputCrc32c(stored.crc32c())
+                .inputFileSize(stored.rawSize())
+                .build();
+
+        assertTrue(CloudStorageService.hasContent(testCase, "input.txt", "1 2 3\n"));
+        assertFalse(CloudStorageService.hasContent(testCase, "input.txt", "1 2 4\n"));
+        assertFalse(CloudStorageService.hasContent(testCase, "output.txt", "1 2 3\n"));
+    }
+
+    @Test
+    void hasContent_UnpairedSurrogate_ComparesEncodedContent() {
+        TestCase testCase = TestCase.builder()
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256("a".repeat(64))
+                .inputFileSize(2L)
+                .build();
+
+        // Encoded like String.getBytes does, as "?" then "1"
+        assertFalse(CloudStorageService.hasContent(testCase, "input.txt", "\uD800" + "1"));
+    }
+
+    @Test
+    void append_SourceFailsPartway_KeepsBytesReceived() throws Exception {
+        CloudStorageService.FileUpload upload = cloudStorageService.startFileUpload();
+        InputStream dropped = new SequenceInputStream(stream("1 2 "), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        });
+
+        assertThrows(IOException.class, () -> upload.append(dropped));
+        assertEquals(4L, upload.size());
+        assertFalse(upload.isFailed());
+
+        // Resume at the reported size
+        upload.append(stream("3\n"));
+        CloudStorageService.StoredFile stored = upload.finish();
+        assertEquals(sha256("1 2 3\n"), stored.sha256());
+        assertEquals(CloudStorageService.crc32c("1 2 3\n".getBytes(StandardCharsets.UTF_8)), stored.crc32c());
+    }
+
+    @Test
+    void abort_DiscardsUpload() throws IOException {
+        CloudStorageService.FileUpload upload = cloudStorageService.startFileUpload();
+        upload.append(stream("1 2 3\n"));
+
+        upload.abort();
+
+        assertThrows(IllegalStateException.class, upload::finish);
+        try (var files = Files.list(root.resolve("store").resolve("staging"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private String download(String sha256, Long crc32c) throws IOException {
+        TestCase testCase = TestCase.builder()
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256(sha256)
+                .inputCrc32c(crc32c)
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cloudStorageService.streamTestCaseFile(testCase, "input.txt", out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
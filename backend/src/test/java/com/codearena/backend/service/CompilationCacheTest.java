@@ -0,0 +1,161 @@
+package com.codearena.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for CompilationCache. Needs gcc and python3 on the PATH.
+ */
+class CompilationCacheTest {
+
+    private static final String SUM = "#include <stdio.h>\nint main(void) { int a, b; scanf(\"%d %d\", &a, &b); printf(\"%d\\n\", a + b); return 0; }\n";
+    private static final String PRODUCT = "#include <stdio.h>\nint main(void) { int a, b; scanf(\"%d %d\", &a, &b); printf(\"%d\\n\", a * b); return 0; }\n";
+
+    @TempDir
+    Path root;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ProgramRunner programRunner = new ProgramRunner(Duration.ofSeconds(30));
+
+    @Test
+    void compile_SameSourceAgain_CopiesCachedProgram() throws IOException {
+        CompilationCache cache = cache(programRunner, 64L * 1024 * 1024);
+
+        Path first = workDir("first", ProgramLanguage.C, SUM);
+        cache.compile(ProgramLanguage.C, first);
+        Files.writeString(first.resolve("main"), "tampered"); // A program changing its own binary
+        Path second = workDir("second", ProgramLanguage.C, SUM);
+        ProgramRunner.Program program = cache.compile(ProgramLanguage.C, second);
+
+        assertEquals("7\n", run(program, "3 4\n"));
+        assertEquals(1, requests("c", "miss"));
+        assertEquals(1, requests("c", "hit"));
+        assertEquals(0.5, meterRegistry.get("judge.compile.hit.ratio").tag("language", "c").gauge().value());
+        assertTrue(meterRegistry.get("judge.compile.time.saved").tag("language", "c").counter().count() > 0);
+        assertTrue(cache.sizeBytes() > 0);
+    }
+
+    @Test
+    void compile_CompileError_IsNotCached() throws IOException {
+        CompilationCache cache = cache(programRunner, 64L * 1024 * 1024);
+
+        for (String name : List.of("first", "second")) {
+            Path workDir = workDir(name, ProgramLanguage.C, "int main(void) { oops }\n");
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> cache.compile(ProgramLanguage.C, workDir));
+            assertTrue(e.getMessage().startsWith("Compilation failed"));
+        }
+
+        assertEquals(2, requests("c", "miss"));
+        assertEquals(0, cache.sizeBytes());
+    }
+
+    @Test
+    void compile_PastMaxBytes_EvictsLeastRecentlyUsed() throws IOException {
+        Path probe = workDir("probe", ProgramLanguage.C, SUM);
+        programRunner.compile(ProgramLanguage.C, probe);
+        long programBytes = Files.size(probe.resolve("main"));
+        CompilationCache cache = cache(programRunner, programBytes + programBytes / 2);
+
+        cache.compile(ProgramLanguage.C, workDir("sum", ProgramLanguage.C, SUM));
+        cache.compile(ProgramLanguage.C, workDir("product", ProgramLanguage.C, PRODUCT));
+        ProgramRunner.Program program = cache.compile(ProgramLanguage.C, workDir("sum-again", ProgramLanguage.C, SUM));
+
+        assertEquals("7\n", run(program, "3 4\n"));
+        assertEquals(3, requests("c", "miss"));
+        assertEquals(2, meterRegistry.get("judge.compile.cache.evictions").counter().count());
+    }
+
+    @Test
+    void compile_ConcurrentIdenticalSources_CompileOnce() throws Exception {
+        CountDownLatch compiling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProgramRunner slowRunner = mock(ProgramRunner.class);
+        when(slowRunner.compile(eq(ProgramLanguage.C), any(Path.class))).thenAnswer(invocation -> {
+            compiling.countDown();
+            release.await();
+            return programRunner.compile(ProgramLanguage.C, invocation.getArgument(1));
+        });
+        CompilationCache cache = cache(slowRunner, 64L * 1024 * 1024);
+        Path first = workDir("first", ProgramLanguage.C, SUM);
+        Path second = workDir("second", ProgramLanguage.C, SUM);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ProgramRunner.Program> leader = executor.submit(() -> cache.compile(ProgramLanguage.C, first));
+            assertTrue(compiling.await(5, TimeUnit.SECONDS));
+            Future<ProgramRunner.Program> follower = executor.submit(() -> cache.compile(ProgramLanguage.C, second));
+            Thread.sleep(200); // Lets the follower find the leader's compilation in flight
+            release.countDown();
+
+            assertEquals("7\n", run(leader.get(5, TimeUnit.SECONDS), "3 4\n"));
+            assertEquals("7\n", run(follower.get(5, TimeUnit.SECONDS), "3 4\n"));
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(slowRunner, times(1)).compile(eq(ProgramLanguage.C), any(Path.class));
+        assertEquals(1, requests("c", "miss"));
+        assertEquals(1, requests("c", "hit") + requests("c", "coalesced"));
+    }
+
+    @Test
+    void compile_InterpretedLanguage_BypassesCache() throws IOException {
+        CompilationCache cache = cache(programRunner, 64L * 1024 * 1024);
+
+        ProgramRunner.Program program = cache.compile(ProgramLanguage.PYTHON3,
+                workDir("python", ProgramLanguage.PYTHON3, "print(sum(map(int, input().split())))\n"));
+
+        assertEquals("7\n", run(program, "3 4\n"));
+        assertNull(meterRegistry.find("judge.compile.requests").tag("language", "python3").counter());
+        assertEquals(0, cache.sizeBytes());
+    }
+
+    @Test
+    void key_DependsOnEveryPart() {
+        String key = CompilationCache.key(ProgramLanguage.C, "gcc 12", SUM.getBytes());
+
+        assertEquals(key, CompilationCache.key(ProgramLanguage.C, "gcc 12", SUM.getBytes()));
+        assertNotEquals(key, CompilationCache.key(ProgramLanguage.CPP, "gcc 12", SUM.getBytes()));
+        assertNotEquals(key, CompilationCache.key(ProgramLanguage.C, "gcc 13", SUM.getBytes()));
+        assertNotEquals(key, CompilationCache.key(ProgramLanguage.C, "gcc 12", PRODUCT.getBytes()));
+    }
+
+    private CompilationCache cache(ProgramRunner runner, long maxBytes) throws IOException {
+        return new CompilationCache(runner, meterRegistry, true, maxBytes, root.resolve("cache").toString());
+    }
+
+    private Path workDir(String name, ProgramLanguage language, String source) throws IOException {
+        Path workDir = Files.createDirectories(root.resolve(name));
+        Files.writeString(language.sourceFile(workDir), source);
+        return workDir;
+    }
+
+    private String run(ProgramRunner.Program program, String input) throws IOException {
+        Path stdin = Files.writeString(program.workDir().resolve("in.txt"), input);
+        Path stdout = program.workDir().resolve("out.txt");
+        assertTrue(programRunner.run(program, List.of(), stdin, stdout, Duration.ofSeconds(10)).succeeded());
+        return Files.readString(stdout);
+    }
+
+    private double requests(String language, String result) {
+        return meterRegistry.get("judge.compile.requests").tag("language", language).tag("result", result)
+                .counter().count();
+    }
+}
@@ -0,0 +1,112 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.SubmissionStatus;
+import com.codearena.backend.entity.Verdict;
+import com.codearena.backend.repository.SubmissionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for JudgeQueue.
+ */
+class JudgeQueueTest {
+
+    private final SubmissionJudge submissionJudge = mock(SubmissionJudge.class);
+    private final SubmissionRepository submissionRepository = mock(SubmissionRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private JudgeQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    void enqueue_FullQueue_RejectsAndCounts() throws InterruptedException {
+        CountDownLatch judging = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(submissionJudge.judge(1L)).thenAnswer(invocation -> {
+            judging.countDown();
+            release.await();
+            return Verdict.ACCEPTED;
+        });
+        queue = new JudgeQueue(submissionJudge, submissionRepository, meterRegistry, 1, 1);
+
+        assertTrue(queue.enqueue(1L));
+        assertTrue(judging.await(5, TimeUnit.SECONDS));
+        assertTrue(queue.enqueue(2L)); // Waits while the only worker is busy
+        assertFalse(queue.enqueue(3L));
+
+        assertEquals(1, queue.depth());
+        assertEquals(1, queue.busyWorkers());
+        assertEquals(1, meterRegistry.get("judge.queue.rejected").counter().count());
+        assertEquals(1, meterRegistry.get("judge.queue.depth").gauge().value());
+        release.countDown();
+        verify(submissionJudge, timeout(5000)).judge(2L);
+    }
+
+    @Test
+    void enqueue_NoWorkers_LeavesSubmissionsStoredPastCapacity() {
+        queue = new JudgeQueue(submissionJudge, submissionRepository, meterRegistry, 0, 1);
+
+        assertTrue(queue.enqueue(1L));
+        assertTrue(queue.enqueue(2L));
+        assertTrue(queue.enqueue(3L));
+
+        assertEquals(0, queue.depth());
+        assertEquals(0, meterRegistry.get("judge.queue.rejected").counter().count());
+        verifyNoInteractions(submissionJudge);
+    }
+
+    @Test
+    void work_JudgedSubmissions_RecordWaitAndJudgeTime() throws InterruptedException {
+        when(submissionJudge.judge(anyLong())).thenReturn(Verdict.WRONG_ANSWER);
+        queue = new JudgeQueue(submissionJudge, submissionRepository, meterRegistry, 2, 10);
+
+        queue.enqueue(1L);
+        queue.enqueue(2L);
+
+        verify(submissionJudge, timeout(5000)).judge(1L);
+        verify(submissionJudge, timeout(5000)).judge(2L);
+        assertEquals(2, meterRegistry.get("judge.queue.wait").timer().count());
+        await(() -> meterRegistry.find("judge.submission.time").tag("verdict", "WRONG_ANSWER").timer() != null
+                && meterRegistry.get("judge.submission.time").tag("verdict", "WRONG_ANSWER").timer().count() == 2);
+    }
+
+    @Test
+    void requeueInterrupted_QueuesUnfinishedSubmissionsOnJudgingNodes() {
+        when(submissionRepository.findIdsByStatusIn(List.of(SubmissionStatus.QUEUED, SubmissionStatus.JUDGING)))
+                .thenReturn(List.of(4L, 5L, 6L));
+        queue = new JudgeQueue(submissionJudge, submissionRepository, meterRegistry, 0, 10);
+
+        queue.requeueInterrupted();
+
+        // A node without workers leaves them to the judging node
+        assertEquals(0, queue.depth());
+        queue.shutdown();
+
+        queue = new JudgeQueue(submissionJudge, submissionRepository, new SimpleMeterRegistry(), 1, 10);
+        queue.requeueInterrupted();
+
+        verify(submissionJudge, timeout(5000)).judge(4L);
+        verify(submissionJudge, timeout(5000)).judge(5L);
+        verify(submissionJudge, timeout(5000)).judge(6L);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
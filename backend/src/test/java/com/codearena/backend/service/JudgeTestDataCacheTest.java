@@ -0,0 +1,256 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.benchmark.FaultInjectingStorage.Operation;
+import com.codearena.backend.benchmark.StorageHarness;
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.repository.TestCaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for JudgeTestDataCache against the in-memory bucket.
+ */
+class JudgeTestDataCacheTest {
+
+    @TempDir
+    Path root;
+
+    private StorageHarness harness;
+    private CloudStorageService cloudStorageService;
+    private TestCaseRepository testCaseRepository;
+    private TestCaseGenerator testCaseGenerator;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        harness = new StorageHarness(root.resolve("content-cache"), "gzip", 4, false);
+        cloudStorageService = harness.service();
+        testCaseRepository = mock(TestCaseRepository.class);
+        testCaseGenerator = new TestCaseGenerator(cloudStorageService, new ProgramRunner(Duration.ofSeconds(30)),
+                testCaseRepository, Duration.ofSeconds(30), root.resolve("generators").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        harness.close();
+    }
+
+    @Test
+    void acquire_SecondRequest_ServedFromDisk() throws IOException {
+        JudgeTestDataCache cache = cache(1024 * 1024, Duration.ofMinutes(1));
+        TestCase testCase = testCase(1, "1 2 3\n", "6\n");
+        harness.storage().resetCounts();
+
+        try (JudgeTestDataCache.Lease first = cache.acquire(testCase, "input.txt")) {
+            assertEquals("1 2 3\n", Files.readString(first.path()));
+        }
+        try (JudgeTestDataCache.Lease second = cache.acquire(testCase, "input.txt")) {
+            assertEquals(6, second.size());
+        }
+
+        assertEquals(1, harness.storage().requestCount(Operation.READ));
+        assertEquals(0.5, cache.hitRatio());
+    }
+
+    @Test
+    void acquire_ConcurrentRequests_FetchOnce() throws Exception {
+        JudgeTestDataCache cache = cache(1024 * 1024, Duration.ofMinutes(1));
+        TestCase testCase = testCase(1, "1 2 3\n".repeat(1000), "6\n");
+        harness.storage().withLatency(Duration.ofMillis(50), Duration.ZERO).resetCounts();
+
+        ExecutorService judges = Executors.newFixedThreadPool(50);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Long>> sizes = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                sizes.add(judges.submit(() -> {
+                    start.await();
+                    try (JudgeTestDataCache.Lease lease = cache.acquire(testCase, "input.txt")) {
+                        return Files.size(lease.path());
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Long> size : sizes) {
+                assertEquals(6000L, size.get());
+            }
+        } finally {
+            judges.shutdownNow();
+        }
+
+        assertEquals(1, harness.storage().requestCount(Operation.READ));
+    }
+
+    @Test
+    void acquire_OverCapacity_EvictsLeastRecentlyUsedUnleasedFile() throws IOException {
+        JudgeTestDataCache cache = cache(10, Duration.ofMinutes(1));
+        TestCase first = testCase(1, "aaaaaa", "1");
+        TestCase second = testCase(2, "bbbbbb", "2");
+
+        Path evicted;
+        try (JudgeTestDataCache.Lease lease = cache.acquire(first, "input.txt")) {
+            evicted = lease.path();
+        }
+        try (JudgeTestDataCache.Lease lease = cache.acquire(second, "input.txt")) {
+            assertTrue(Files.exists(lease.path()));
+        }
+
+        assertFalse(Files.exists(evicted));
+        assertEquals(6, cache.sizeBytes());
+    }
+
+    @Test
+    void acquire_EvictedWhileLeased_KeepsFileUntilClosed() throws IOException {
+        JudgeTestDataCache cache = cache(10, Duration.ofMinutes(1));
+        TestCase first = testCase(1, "aaaaaa", "1");
+        TestCase second = testCase(2, "bbbbbb", "2");
+
+        JudgeTestDataCache.Lease held = cache.acquire(first, "input.txt");
+        cache.acquire(second, "input.txt").close();
+
+        assertEquals("aaaaaa", Files.readString(held.path()));
+        held.close();
+        assertFalse(Files.exists(held.path()));
+    }
+
+    @Test
+    void acquire_LegacyFile_RevalidatesByGeneration() throws IOException {
+        JudgeTestDataCache cache = cache(1024 * 1024, Duration.ZERO);
+        TestCase testCase = TestCase.builder()
+                .id(7L)
+                .problem(Problem.builder().id(3L).build())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .build();
+        String name = CloudStorageService.objectName(testCase, "input.txt");
+        harness.bucket().write(name, "old\n".getBytes(StandardCharsets.UTF_8));
+
+        cache.acquire(testCase, "input.txt").close();
+        harness.storage().resetCounts();
+        try (JudgeTestDataCache.Lease unchanged = cache.acquire(testCase, "input.txt")) {
+            assertEquals("old\n", Files.readString(unchanged.path()));
+        }
+        assertEquals(1, harness.storage().requestCount(Operation.STAT));
+        assertEquals(0, harness.storage().requestCount(Operation.READ));
+
+        harness.bucket().write(name, "new\n".getBytes(StandardCharsets.UTF_8));
+        try (JudgeTestDataCache.Lease changed = cache.acquire(testCase, "input.txt")) {
+            assertEquals("new\n", Files.readString(changed.path()));
+        }
+    }
+
+    @Test
+    void acquire_GeneratedTestCase_MaterializesOnceAndRecordsSizes() throws IOException {
+        JudgeTestDataCache cache = cache(1024 * 1024, Duration.ofMinutes(1));
+        CloudStorageService.UploadedFiles programs = cloudStorageService.uploadTestCaseFiles(
+                "import sys\nn, seed = int(sys.argv[1]), int(sys.argv[2])\nprint(n, seed)\n",
+                "a, b = map(int, input().split())\nprint(a + b)\n");
+        TestCase testCase = TestCase.builder()
+                .id(9L)
+                .problem(Problem.builder().id(1L).build())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .fileSize(0L)
+                .generatorSha256(programs.input().sha256())
+                .generatorLanguage("python3")
+                .generatorArgs(" 40 ")
+                .generatorSeed(2L)
+                .solutionSha256(programs.output().sha256())
+                .solutionLanguage("python3")
+                .build();
+        harness.storage().resetCounts();
+
+        try (JudgeTestDataCache.Lease output = cache.acquire(testCase, "output.txt")) {
+            assertEquals("42\n", Files.readString(output.path()));
+        }
+        try (JudgeTestDataCache.Lease input = cache.acquire(testCase, "input.txt")) {
+            assertEquals("40 2\n", Files.readString(input.path()));
+        }
+
+        // Only the two program sources were fetched; the second request was a hit
+        assertEquals(2, harness.storage().requestCount(Operation.READ));
+        assertEquals(1.0 / 3, cache.hitRatio(), 1e-9);
+        verify(testCaseRepository).updateGeneratedInputSize(9L, 5L);
+        verify(testCaseRepository).updateGeneratedOutputSize(9L, 3L);
+    }
+
+    @Test
+    void acquireTokenIndex_FetchesStoredIndexOrBuildsOneLocally() throws IOException {
+        JudgeTestDataCache cache = cache(1024 * 1024, Duration.ofMinutes(1));
+        TestCase indexed = testCase(1, "1\n", "3 4\n5\n");
+        TestCase unindexed = testCase(2, "2\n", "6  7\n");
+        new OutputTokenIndexService(cloudStorageService, true).ensureIndex(indexed.getOutputSha256(),
+                () -> new ByteArrayInputStream(bytes("3 4\n5\n")));
+        harness.storage().resetCounts();
+
+        try (JudgeTestDataCache.Lease lease = cache.acquireTokenIndex(indexed)) {
+            assertEquals(3, OutputTokenIndex.open(lease.path()).tokenCount());
+        }
+        assertEquals(1, harness.storage().requestCount(Operation.READ)); // The index only
+
+        try (JudgeTestDataCache.Lease lease = cache.acquireTokenIndex(unindexed)) {
+            assertNull(OutputTokenIndex.open(lease.path()).compare(
+                    Channels.newChannel(new ByteArrayInputStream(bytes("6 7")))));
+        }
+        // The output was fetched and cached on the way
+        assertEquals(2, harness.storage().requestCount(Operation.READ));
+        try (JudgeTestDataCache.Lease lease = cache.acquire(unindexed, "output.txt")) {
+            assertEquals(2, harness.storage().requestCount(Operation.READ));
+        }
+    }
+
+    @Test
+    void key_ContentVersionChanges_ChangesKey() {
+        TestCase testCase = testCase(1, "1\n", "2\n");
+        JudgeTestDataCache.Key before = JudgeTestDataCache.key(testCase, "output.txt");
+
+        testCase.setOutputSha256("f".repeat(64));
+
+        assertNotEquals(before, JudgeTestDataCache.key(testCase, "output.txt"));
+        assertEquals(JudgeTestDataCache.key(testCase, "input.txt"), JudgeTestDataCache.key(testCase, "input.txt"));
+    }
+
+    private JudgeTestDataCache cache(long maxBytes, Duration revalidateAfter) throws IOException {
+        return new JudgeTestDataCache(cloudStorageService, testCaseGenerator, new SimpleMeterRegistry(), true, maxBytes,
+                revalidateAfter, root.resolve("judge-cache").toString());
+    }
+
+    private TestCase testCase(long id, String input, String output) {
+        CloudStorageService.UploadedFiles files = cloudStorageService.uploadTestCaseFiles(input, output);
+        return TestCase.builder()
+                .id(id)
+                .problem(Problem.builder().id(1L).build())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256(files.input().sha256())
+                .inputCrc32c(files.input().crc32c())
+                .outputSha256(files.output().sha256())
+                .outputCrc32c(files.output().crc32c())
+                .build();
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
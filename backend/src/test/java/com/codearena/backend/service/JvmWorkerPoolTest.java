@@ -0,0 +1,247 @@
+package com.codearena.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JvmWorkerPool. Needs java and javac on the PATH.
+ */
+class JvmWorkerPoolTest {
+
+    private static final long MEMORY_LIMIT = 256L * 1024 * 1024;
+
+    @TempDir
+    Path root;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ProgramRunner programRunner = new ProgramRunner(Duration.ofSeconds(30));
+    private JvmWorkerPool pool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        pool = new JvmWorkerPool(new CgroupSandbox(false, root.toString(), 128), meterRegistry,
+                true, 1, 256, 2, root.resolve("pool").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void run_WarmWorker_RunsEachSubmissionInFreshClassLoader() throws Exception {
+        pool.warmUp();
+        awaitIdle();
+        String source = """
+                import java.util.*;
+                public class Main {
+                    static int runs;
+                    public static void main(String[] args) {
+                        Scanner in = new Scanner(System.in);
+                        System.out.println((in.nextInt() + in.nextInt()) + " " + (++runs));
+                    }
+                }
+                """;
+
+        for (String name : new String[]{"first", "second"}) {
+            ProgramRunner.Program program = compile(name, source);
+            ProgramRunner.RunResult result = pool.run(program, input(program, "3 4\n"), output(program),
+                    Duration.ofSeconds(2), MEMORY_LIMIT, 0);
+
+            assertTrue(result.succeeded());
+            assertNotNull(result.cpuTime());
+            assertEquals("7 1\n", Files.readString(output(program)));
+        }
+        assertEquals(2, meterRegistry.get("judge.jvm-pool.runs").tag("worker", "warm").counter().count());
+        // The second run was the worker's last
+        assertEquals(1, meterRegistry.get("judge.jvm-pool.recycled").counter().count());
+    }
+
+    @Test
+    void run_BusyLoop_IsStoppedAtCpuTimeLimit() throws Exception {
+        ProgramRunner.Program program = compile("loop",
+                "public class Main { public static void main(String[] args) { long x = 0; while (true) x++; } }");
+
+        ProgramRunner.RunResult result = pool.run(program, null, output(program),
+                Duration.ofMillis(300), MEMORY_LIMIT, 0);
+
+        assertTrue(result.timedOut());
+        assertTrue(result.cpuTime().toMillis() >= 300);
+        assertEquals(1, meterRegistry.get("judge.jvm-pool.runs").tag("worker", "cold").counter().count());
+    }
+
+    @Test
+    void run_ForgedReplyOnStandardOutput_IsIgnored() throws Exception {
+        ProgramRunner.Program program = compile("forger", """
+                import java.io.*;
+                public class Main {
+                    public static void main(String[] args) {
+                        PrintStream control = new PrintStream(new FileOutputStream(FileDescriptor.out), true);
+                        control.println("DONE 0 0 1");
+                        long x = 0;
+                        while (true) x++;
+                    }
+                }
+                """);
+
+        ProgramRunner.RunResult result = pool.run(program, null, output(program),
+                Duration.ofMillis(300), MEMORY_LIMIT, 0);
+
+        assertTrue(result.timedOut());
+        assertTrue(result.cpuTime().toMillis() >= 300);
+    }
+
+    @Test
+    void run_WorkOnOtherThreads_CountsTowardsCpuTimeLimit() throws Exception {
+        ProgramRunner.Program program = compile("threads", """
+                public class Main {
+                    public static void main(String[] args) {
+                        for (int i = 0; i < 2; i++) {
+                            new Thread(() -> { long x = 0; while (true) x++; }).start();
+                        }
+                    }
+                }
+                """);
+
+        ProgramRunner.RunResult result = pool.run(program, null, output(program),
+                Duration.ofMillis(300), MEMORY_LIMIT, 0);
+
+        assertTrue(result.timedOut());
+        assertTrue(result.cpuTime().toMillis() >= 300);
+    }
+
+    @Test
+    void run_OtherThreadPrintsAfterMainReturns_WaitsForIt() throws Exception {
+        ProgramRunner.Program program = compile("late", """
+                public class Main {
+                    public static void main(String[] args) {
+                        new Thread(() -> {
+                            try { Thread.sleep(200); } catch (InterruptedException e) { return; }
+                            System.out.println("late");
+                        }).start();
+                    }
+                }
+                """);
+
+        ProgramRunner.RunResult result = pool.run(program, null, output(program),
+                Duration.ofSeconds(2), MEMORY_LIMIT, 0);
+
+        assertTrue(result.succeeded());
+        assertEquals("late\n", Files.readString(output(program)));
+    }
+
+    @Test
+    void run_PastOutputLimit_IsStopped() throws Exception {
+        ProgramRunner.Program program = compile("printer",
+                "public class Main { public static void main(String[] args) { while (true) System.out.println(\"x\".repeat(1000)); } }");
+
+        ProgramRunner.RunResult result = pool.run(program, null, output(program), Duration.ofSeconds(10),
+                MEMORY_LIMIT, 1024 * 1024);
+
+        assertTrue(result.outputLimitExceeded());
+        assertFalse(result.timedOut());
+    }
+
+    @Test
+    void run_ThreadLeftInAnotherGroup_RetiresWorker() throws Exception {
+        ProgramRunner.Program program = compile("lurker", """
+                public class Main {
+                    public static void main(String[] args) {
+                        Thread lurker = new Thread(Thread.currentThread().getThreadGroup().getParent(), () -> {
+                            try { Thread.sleep(60_000); } catch (InterruptedException e) { }
+                        });
+                        lurker.setDaemon(true);
+                        lurker.start();
+                    }
+                }
+                """);
+
+        ProgramRunner.RunResult result = pool.run(program, null, output(program), Duration.ofSeconds(2),
+                MEMORY_LIMIT, 0);
+
+        assertTrue(result.succeeded());
+        assertEquals(1, meterRegistry.get("judge.jvm-pool.recycled").counter().count());
+    }
+
+    @Test
+    void run_UncaughtExceptionAndSystemExit_ReportExitCodes() throws Exception {
+        ProgramRunner.Program thrower = compile("thrower",
+                "public class Main { public static void main(String[] args) { throw new IllegalStateException(\"boom\"); } }");
+        ProgramRunner.Program exiter = compile("exiter",
+                "public class Main { public static void main(String[] args) { System.out.print(\"bye\"); System.exit(3); } }");
+
+        ProgramRunner.RunResult thrown = pool.run(thrower, null, output(thrower),
+                Duration.ofSeconds(2), MEMORY_LIMIT, 0);
+        ProgramRunner.RunResult exited = pool.run(exiter, null, output(exiter), Duration.ofSeconds(2), MEMORY_LIMIT, 0);
+
+        assertEquals(1, thrown.exitCode());
+        assertTrue(thrown.stderr().contains("java.lang.IllegalStateException: boom"));
+        assertEquals(3, exited.exitCode());
+        assertEquals("bye", Files.readString(output(exiter)));
+    }
+
+    @Test
+    void run_PastHeap_ReportsOutOfMemoryError() throws Exception {
+        ProgramRunner.Program program = compile("hog", """
+                import java.util.*;
+                public class Main {
+                    public static void main(String[] args) {
+                        List<long[]> blocks = new ArrayList<>();
+                        while (true) blocks.add(new long[1 << 20]);
+                    }
+                }
+                """);
+
+        ProgramRunner.RunResult result = pool.run(program, null, output(program), Duration.ofSeconds(5),
+                64L * 1024 * 1024, 0);
+
+        assertEquals(1, result.exitCode());
+        assertTrue(result.stderr().contains("java.lang.OutOfMemoryError"));
+    }
+
+    @Test
+    void isEnabled_WithCgroupSandbox_IsFalse() throws IOException {
+        CgroupSandbox sandbox = new CgroupSandbox(false, root.toString(), 128) {
+            @Override
+            public boolean isEnabled() {
+                return true;
+            }
+        };
+
+        assertTrue(pool.isEnabled());
+        assertFalse(new JvmWorkerPool(sandbox, meterRegistry, true, 1, 256, 2,
+                root.resolve("other-pool").toString()).isEnabled());
+    }
+
+    private ProgramRunner.Program compile(String name, String source) throws IOException {
+        Path workDir = Files.createDirectories(root.resolve(name));
+        Files.writeString(ProgramLanguage.JAVA.sourceFile(workDir), source);
+        return programRunner.compile(ProgramLanguage.JAVA, workDir);
+    }
+
+    private static Path input(ProgramRunner.Program program, String content) throws IOException {
+        return Files.writeString(program.workDir().resolve("in.txt"), content);
+    }
+
+    private static Path output(ProgramRunner.Program program) {
+        return program.workDir().resolve("out.txt");
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (pool.idleWorkers() == 0) {
+            assertTrue(System.nanoTime() < deadline, "No worker became ready");
+            Thread.sleep(10);
+        }
+    }
+}
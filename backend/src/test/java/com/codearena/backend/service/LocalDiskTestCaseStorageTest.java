@@ -0,0 +1,208 @@
+package com.codearena.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LocalDiskTestCaseStorage.
+ */
+class LocalDiskTestCaseStorageTest {
+
+    @TempDir
+    Path root;
+
+    private LocalDiskTestCaseStorage storage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storage = new LocalDiskTestCaseStorage(root);
+    }
+
+    @Test
+    void write_UsesTestCaseLayout() throws IOException {
+        TestCaseStorage.StoredObject stored = storage.write("testcases/1/2/input.txt", bytes("1 2 3"));
+
+        assertEquals("testcases/1/2/input.txt", stored.name());
+        assertEquals(5, stored.size());
+        assertTrue(Files.exists(root.resolve("testcases/1/2/input.txt")));
+    }
+
+    @Test
+    void read_ReturnsMappedContent() throws IOException {
+        storage.write("testcases/1/2/output.txt", bytes("6\n"));
+
+        ByteBuffer content = storage.read("testcases/1/2/output.txt");
+
+        assertEquals("6\n", StandardCharsets.UTF_8.decode(content).toString());
+    }
+
+    @Test
+    void read_MissingObject_ThrowsNoSuchFile() {
+        assertThrows(NoSuchFileException.class, () -> storage.read("testcases/1/2/input.txt"));
+    }
+
+    @Test
+    void write_Overwrite_ReplacesContent() throws IOException {
+        storage.write("testcases/1/2/input.txt", bytes("old content"));
+        storage.write("testcases/1/2/input.txt", bytes("new"));
+
+        assertEquals(3, storage.stat("testcases/1/2/input.txt").size());
+        assertEquals("new", StandardCharsets.UTF_8.decode(storage.read("testcases/1/2/input.txt")).toString());
+    }
+
+    @Test
+    void stat_MissingObject_ReturnsNull() throws IOException {
+        assertNull(storage.stat("testcases/1/2/input.txt"));
+    }
+
+    @Test
+    void delete_RemovesObject() throws IOException {
+        storage.write("testcases/1/2/input.txt", bytes("1"));
+
+        assertTrue(storage.delete("testcases/1/2/input.txt"));
+        assertFalse(storage.delete("testcases/1/2/input.txt"));
+        assertNull(storage.stat("testcases/1/2/input.txt"));
+    }
+
+    @Test
+    void list_PagesThroughPrefixInOrder() throws IOException {
+        storage.write("testcases/1/3/input.txt", bytes("1 2"));
+        storage.write("testcases/1/2/output.txt", bytes("1"));
+        storage.write("testcases/1/2/input.txt", bytes("1"));
+        storage.write("testcases/10/1/input.txt", bytes("1"));
+
+        TestCaseStorage.ObjectPage first = storage.list("testcases/1/", null, 2);
+        TestCaseStorage.ObjectPage second = storage.list("testcases/1/", first.nextPageToken(), 2);
+
+        assertEquals(List.of("testcases/1/2/input.txt", "testcases/1/2/output.txt"), first.names());
+        assertEquals(List.of("testcases/1/3/input.txt"), second.names());
+        assertEquals(3, second.objects().get(0).size());
+        assertNull(second.nextPageToken());
+    }
+
+    @Test
+    void list_ShardedFamily_PagesThroughEveryNameInOrder() throws IOException {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String name = "blobs/" + String.format("%064x", i * 7919L * 104729L);
+            storage.write(name, bytes(String.valueOf(i)));
+            expected.add(name);
+        }
+        storage.write("blobs-other/x", bytes("1"));
+        storage.write("tokens/" + "0".repeat(64), bytes("1"));
+        Collections.sort(expected);
+
+        List<String> listed = new ArrayList<>();
+        String pageToken = null;
+        int pages = 0;
+        do {
+            TestCaseStorage.ObjectPage page = storage.list("blobs/", pageToken, 7);
+            listed.addAll(page.names());
+            pageToken = page.nextPageToken();
+            pages++;
+        } while (pageToken != null);
+
+        assertEquals(expected, listed);
+        assertEquals(72, pages);
+        assertTrue(Files.exists(root.resolve("blobs").resolve(expected.get(0).substring(6, 8))
+                .resolve(expected.get(0).substring(6))));
+    }
+
+    @Test
+    void constructor_UnshardedFiles_AreMovedIntoShards() throws IOException {
+        String sha256 = "ab" + "1".repeat(62);
+        Files.createDirectories(root.resolve("blobs"));
+        Files.writeString(root.resolve("blobs").resolve(sha256), "1 2 3");
+
+        storage = new LocalDiskTestCaseStorage(root);
+
+        assertEquals("1 2 3", StandardCharsets.UTF_8.decode(storage.read("blobs/" + sha256)).toString());
+        assertEquals(List.of("blobs/" + sha256), storage.list("blobs/", null, 10).names());
+        assertFalse(Files.exists(root.resolve("blobs").resolve(sha256)));
+    }
+
+    @Test
+    void list_MissingPrefix_ReturnsEmptyPage() throws IOException {
+        TestCaseStorage.ObjectPage page = storage.list("testcases/42/", null, 10);
+
+        assertTrue(page.names().isEmpty());
+        assertNull(page.nextPageToken());
+    }
+
+    @Test
+    void deleteAll_SkipsMissingObjects() throws IOException {
+        storage.write("testcases/1/2/input.txt", bytes("1"));
+        storage.write("testcases/1/2/output.txt", bytes("1"));
+
+        int deleted = storage.deleteAll(List.of("testcases/1/2/input.txt", "testcases/1/2/output.txt", "testcases/1/3/input.txt"));
+
+        assertEquals(2, deleted);
+        assertNull(storage.stat("testcases/1/2/input.txt"));
+    }
+
+    @Test
+    void move_RenamesObject() throws IOException {
+        storage.write("staging/upload", bytes("1 2"));
+
+        TestCaseStorage.StoredObject moved = storage.move("staging/upload", "blobs/abc");
+
+        assertEquals("blobs/abc", moved.name());
+        assertNull(storage.stat("staging/upload"));
+    }
+
+    @Test
+    void openReader_Range_ReturnsOnlyWindow() throws IOException {
+        storage.write("blobs/abc", bytes("0123456789"));
+
+        try (InputStream in = Channels.newInputStream(storage.openReader("blobs/abc", 3, 4))) {
+            assertEquals("3456", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void startUpload_VisibleOnlyAfterCommit() throws IOException {
+        TestCaseStorage.ObjectUpload upload = storage.startUpload("staging/abc");
+        upload.stream().write(bytes("1 2 "));
+        upload.stream().write(bytes("3\n"));
+
+        assertNull(storage.stat("staging/abc"));
+        assertEquals(6, upload.commit().size());
+        assertEquals("1 2 3\n", StandardCharsets.UTF_8.decode(storage.read("staging/abc")).toString());
+    }
+
+    @Test
+    void startUpload_Abort_LeavesNothingBehind() throws IOException {
+        TestCaseStorage.ObjectUpload upload = storage.startUpload("staging/abc");
+        upload.stream().write(bytes("1 2 3"));
+
+        upload.abort();
+
+        try (var files = Files.list(root.resolve("staging"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void resolve_PathOutsideRoot_ThrowsException() {
+        assertThrows(IllegalArgumentException.class, () -> storage.resolve("../escape.txt"));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,63 @@
+package com.codearena.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LocalUrlSigner.
+ */
+class LocalUrlSignerTest {
+
+    private static final byte[] KEY = "test-signing-key".getBytes(StandardCharsets.UTF_8);
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private final LocalUrlSigner signer = new LocalUrlSigner(KEY, "https://api.example.com/", Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    void sign_ProducesVerifiableUrl() {
+        URI url = signer.sign("blobs/abc", Duration.ofMinutes(15));
+        Map<String, String> query = query(url);
+
+        assertEquals("/api/testcases/signed/blobs/abc", url.getPath());
+        assertEquals("https://api.example.com", url.getScheme() + "://" + url.getHost());
+        assertEquals(NOW.plusSeconds(900).getEpochSecond(), Long.parseLong(query.get("expires")));
+        assertTrue(signer.verify("blobs/abc", Long.parseLong(query.get("expires")), query.get("signature")));
+    }
+
+    @Test
+    void verify_OtherObjectOrExpiry_Rejected() {
+        Map<String, String> query = query(signer.sign("blobs/abc", Duration.ofMinutes(15)));
+        long expires = Long.parseLong(query.get("expires"));
+
+        assertFalse(signer.verify("blobs/abd", expires, query.get("signature")));
+        assertFalse(signer.verify("blobs/abc", expires + 3600, query.get("signature")));
+        assertFalse(signer.verify("blobs/abc", expires, null));
+    }
+
+    @Test
+    void verify_ExpiredUrl_Rejected() {
+        Map<String, String> query = query(signer.sign("blobs/abc", Duration.ofMinutes(15)));
+        LocalUrlSigner later = new LocalUrlSigner(KEY, "", Clock.fixed(NOW.plus(Duration.ofMinutes(16)), ZoneOffset.UTC));
+
+        assertFalse(later.verify("blobs/abc", Long.parseLong(query.get("expires")), query.get("signature")));
+    }
+
+    private static Map<String, String> query(URI url) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : url.getQuery().split("&")) {
+            int eq = pair.indexOf('=');
+            params.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+        return params;
+    }
+}
@@ -0,0 +1,180 @@
+package com.codearena.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OutputComparator.
+ */
+class OutputComparatorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void exact_ReportsFirstDifferingByte() {
+        OutputComparator exact = OutputComparator.of(OutputComparator.Mode.EXACT);
+
+        OutputComparator.Mismatch differs = compare(exact, "1 2\n3 4\n", "1 2\n3 5\n");
+        OutputComparator.Mismatch spaced = compare(exact, "1 2\n", "1 2 \n");
+
+        assertNull(compare(exact, "1 2\n", "1 2\n"));
+        assertEquals(6, differs.actualOffset());
+        assertEquals(2, differs.actualLine());
+        assertEquals(2, differs.expectedLine());
+        assertEquals(-1, differs.token());
+        assertEquals(3, spaced.actualOffset());
+        assertNotNull(compare(exact, "1 2\n", "1 2"));
+    }
+
+    @Test
+    void line_IgnoresTrailingWhitespaceAndBlankLinesAtEnd() {
+        OutputComparator line = OutputComparator.of(OutputComparator.Mode.LINE);
+
+        assertNull(compare(line, "1 2\n3\n", "1 2  \r\n3\t\n\n\n"));
+        assertNull(compare(line, "1 2 \n3\n\n", "1 2\n3"));
+        assertNotNull(compare(line, "1 2\n3\n", "1  2\n3\n"));
+        assertNotNull(compare(line, "1 2\n3\n", "1 2\n\n3\n"));
+        assertNotNull(compare(line, "1 2\n3\n", "1 2\n3\n4\n"));
+        assertNotNull(compare(line, "1 2\n3\n", "1 2\n"));
+    }
+
+    @Test
+    void line_ReportsLineOfDifference() {
+        OutputComparator line = OutputComparator.of(OutputComparator.Mode.LINE);
+
+        OutputComparator.Mismatch shorter = compare(line, "a\nb c\nd\n", "a\nb \nd\n");
+        OutputComparator.Mismatch longer = compare(line, "a\nb\n", "a\nb c\n");
+
+        assertEquals(2, shorter.actualLine());
+        assertEquals(2, shorter.expectedLine());
+        assertEquals(2, longer.actualLine());
+        assertEquals(4, longer.actualOffset());
+        assertEquals("Output line is longer than expected", longer.message());
+    }
+
+    @Test
+    void token_IgnoresSpacingAndReportsToken() {
+        OutputComparator token = OutputComparator.of(OutputComparator.Mode.TOKEN);
+
+        OutputComparator.Mismatch differs = compare(token, "10 20\n30 40\n", "10\n20\n31\n40\n");
+        OutputComparator.Mismatch extra = compare(token, "10 20\n", "10 20 30");
+
+        assertNull(compare(token, "10 20\n30 40\n", "  10 20 30\r\n40"));
+        assertEquals(2, differs.token());
+        assertEquals(3, differs.actualLine());
+        assertEquals(2, differs.expectedLine());
+        assertEquals(2, extra.token());
+        assertEquals(0, extra.expectedLine());
+        assertEquals(1, compare(token, "10 20\n", "10 2").token());
+        assertEquals(1, compare(token, "10 20\n", "10 200").token());
+        assertEquals(1, compare(token, "10 20\n", "10").token());
+    }
+
+    @Test
+    void float_ComparesNumbersWithinEpsilon() {
+        OutputComparator floats = OutputComparator.of(OutputComparator.Mode.FLOAT, 1e-6);
+
+        assertNull(compare(floats, "1 0.5 2.000000\n", "1.0 0.5000001 2\n"));
+        assertNull(compare(floats, "1000000000\n", "1000000000.5\n"));
+        assertNull(compare(floats, "YES 3.14159\n", "YES 3.1415905\n"));
+        assertEquals(1, compare(floats, "1 0.5\n", "1 0.51\n").token());
+        assertEquals(0, compare(floats, "YES\n", "yes\n").token());
+        assertEquals(0, compare(floats, "1\n", "1x\n").token());
+    }
+
+    @Test
+    void parseNumber_ReadsDecimalNumbers() {
+        assertEquals(-12.5, parse("-12.5"));
+        assertEquals(1e-9, parse("1e-9"), 1e-24);
+        assertEquals(0.25, parse(".25"));
+        assertEquals(3, parse("+3."));
+        assertEquals(12345678901234567890.0, parse("12345678901234567890"), 1e4);
+        assertTrue(Double.isNaN(parse("1e")));
+        assertTrue(Double.isNaN(parse("-")));
+        assertTrue(Double.isNaN(parse("0x10")));
+    }
+
+    @Test
+    void compare_ActualInTinyChunks_MatchesAcrossChunkBoundaries() throws IOException {
+        String expected = "3.14159 line one\nsecond   line\n";
+        for (OutputComparator.Mode mode : OutputComparator.Mode.values()) {
+            OutputComparator comparator = OutputComparator.of(mode);
+
+            assertNull(comparator.compare(buffer(expected), trickle(expected)), mode.name());
+            assertNotNull(comparator.compare(buffer(expected), trickle("3.14159 line one\nsecond   lime\n")),
+                    mode.name());
+        }
+    }
+
+    @Test
+    void compare_ExpectedFileAndActualStream_MapsFileAndStopsAtMismatch() throws IOException {
+        Path expected = Files.writeString(dir.resolve("output.txt"), "1\n2\n3\n");
+        byte[] actual = "1\n5\n3\n".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        ByteArrayInputStream stream = new ByteArrayInputStream(actual);
+
+        OutputComparator.Mismatch mismatch = OutputComparator.of(OutputComparator.Mode.TOKEN).compare(expected, stream);
+
+        assertEquals(1, mismatch.token());
+        assertEquals(2, mismatch.actualOffset());
+        assertEquals(2, mismatch.expectedOffset());
+        assertNull(OutputComparator.of(OutputComparator.Mode.EXACT)
+                .compare(expected, new ByteArrayInputStream("1\n2\n3\n".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void of_InvalidEpsilon_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> OutputComparator.of(OutputComparator.Mode.FLOAT, -1));
+        assertThrows(IllegalArgumentException.class, () -> OutputComparator.of(OutputComparator.Mode.FLOAT, Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> OutputComparator.of(null));
+    }
+
+    private static OutputComparator.Mismatch compare(OutputComparator comparator, String expected, String actual) {
+        return comparator.compare(buffer(expected), buffer(actual));
+    }
+
+    private static ByteBuffer buffer(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static double parse(String text) {
+        ByteBuffer buffer = buffer(text);
+        return OutputComparator.parseNumber(buffer, 0, buffer.limit());
+    }
+
+    /**
+     * A channel returning one byte per read, so every token spans chunks.
+     */
+    private static ReadableByteChannel trickle(String text) {
+        ByteBuffer source = buffer(text);
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer target) {
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                target.put(source.get());
+                return 1;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,94 @@
+package com.codearena.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OutputTokenIndex.
+ */
+class OutputTokenIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void write_NormalizesWhitespaceAndRecordsLines() throws IOException {
+        OutputTokenIndex index = index("  3 4\r\n\n\t5   \n6");
+
+        assertEquals(4, index.tokenCount());
+        assertEquals(3, index.lineCount());
+        assertEquals("3 4\n5\n6\n", StandardCharsets.UTF_8.decode(index.data()).toString());
+        assertEquals(1, index.lineAt(0));
+        assertEquals(3, index.lineAt(4));
+        assertEquals(4, index.lineAt(6));
+    }
+
+    @Test
+    void write_TokenSpanningReadChunks_IsKeptWhole() throws IOException {
+        String token = "7".repeat(200_000);
+
+        OutputTokenIndex index = index("1 " + token + " 2\n");
+
+        assertEquals(3, index.tokenCount());
+        assertEquals(200_005, index.data().remaining());
+        assertNull(index.compare(channel("1\n" + token + "\n2")));
+    }
+
+    @Test
+    void compare_DifferentSpacing_Matches() throws IOException {
+        OutputTokenIndex index = index("1 2\n3\n");
+
+        assertNull(index.compare(channel("1\n2 3")));
+        assertNull(index.compare(channel("   1   2\r\n3\n\n\n")));
+    }
+
+    @Test
+    void compare_ReportsFirstDifference() throws IOException {
+        OutputTokenIndex index = index("10 20\n30 40\n");
+
+        OutputComparator.Mismatch differs = index.compare(channel("10 20 31 40"));
+        OutputComparator.Mismatch shorter = index.compare(channel("10 2 30 40"));
+        OutputComparator.Mismatch longer = index.compare(channel("10 20 30 400"));
+        OutputComparator.Mismatch missing = index.compare(channel("10 20 30"));
+        OutputComparator.Mismatch extra = index.compare(channel("10 20 30 40 50"));
+
+        assertEquals(2, differs.token());
+        assertEquals(2, differs.expectedLine());
+        assertEquals(1, shorter.token());
+        assertEquals(3, longer.token());
+        assertEquals(3, missing.token());
+        assertEquals(4, extra.token());
+        assertEquals(0, extra.expectedLine());
+    }
+
+    @Test
+    void open_CorruptFile_Throws() throws IOException {
+        Path file = dir.resolve("corrupt.tokens");
+        OutputTokenIndex.write(new ByteArrayInputStream("1 2\n".getBytes(StandardCharsets.UTF_8)), file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThrows(IOException.class, () -> OutputTokenIndex.open(file));
+    }
+
+    private OutputTokenIndex index(String output) throws IOException {
+        Path file = Files.createTempFile(dir, "output-", ".tokens");
+        OutputTokenIndex.write(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)), file);
+        return OutputTokenIndex.open(file);
+    }
+
+    private static ReadableByteChannel channel(String output) {
+        return Channels.newChannel(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)));
+    }
+}
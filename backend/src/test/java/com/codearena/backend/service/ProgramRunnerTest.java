@@ -0,0 +1,76 @@
+package com.codearena.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProgramRunner. Needs python3 on the PATH.
+ */
+class ProgramRunnerTest {
+
+    @TempDir
+    Path workDir;
+
+    private final ProgramRunner runner = new ProgramRunner(Duration.ofSeconds(30));
+
+    @Test
+    void run_RedirectsStdinAndStdoutToFiles() throws IOException {
+        Files.writeString(ProgramLanguage.PYTHON3.sourceFile(workDir),
+                "import sys\nprint(sys.argv[1], sum(map(int, sys.stdin.read().split())))\n");
+        Path input = Files.writeString(workDir.resolve("in.txt"), "1 2 3\n");
+        Path output = workDir.resolve("out.txt");
+
+        ProgramRunner.Program program = runner.compile(ProgramLanguage.PYTHON3, workDir);
+        ProgramRunner.RunResult result = runner.run(program, List.of("sum"), input, output, Duration.ofSeconds(30));
+
+        assertTrue(result.succeeded());
+        assertEquals("sum 6\n", Files.readString(output));
+    }
+
+    @Test
+    void run_PastTimeLimit_KillsProgram() throws IOException {
+        Files.writeString(ProgramLanguage.PYTHON3.sourceFile(workDir), "while True:\n    pass\n");
+
+        ProgramRunner.Program program = runner.compile(ProgramLanguage.PYTHON3, workDir);
+        ProgramRunner.RunResult result = runner.run(program, List.of(), null, workDir.resolve("out.txt"),
+                Duration.ofMillis(300));
+
+        assertTrue(result.timedOut());
+        assertFalse(result.succeeded());
+    }
+
+    @Test
+    void run_PastOutputLimit_KillsProgram() throws IOException {
+        Files.writeString(ProgramLanguage.PYTHON3.sourceFile(workDir), "while True:\n    print('x' * 1000)\n");
+        Path output = workDir.resolve("out.txt");
+
+        ProgramRunner.Program program = runner.compile(ProgramLanguage.PYTHON3, workDir);
+        ProgramRunner.RunResult result = runner.run(program, List.of(), null, output, Duration.ofSeconds(30), 0,
+                1024 * 1024);
+
+        assertTrue(result.outputLimitExceeded());
+        assertFalse(result.timedOut());
+        assertFalse(result.succeeded());
+        assertTrue(result.wallTime().compareTo(Duration.ofSeconds(30)) < 0);
+    }
+
+    @Test
+    void run_NonZeroExit_KeepsStderr() throws IOException {
+        Files.writeString(ProgramLanguage.PYTHON3.sourceFile(workDir), "raise SystemExit('bad seed')\n");
+
+        ProgramRunner.Program program = runner.compile(ProgramLanguage.PYTHON3, workDir);
+        ProgramRunner.RunResult result = runner.run(program, List.of(), null, workDir.resolve("out.txt"),
+                Duration.ofSeconds(30));
+
+        assertEquals(1, result.exitCode());
+        assertTrue(result.stderr().contains("bad seed"));
+    }
+}
@@ -0,0 +1,155 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.StoredBlob;
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.repository.StoredBlobRepository;
+import com.codearena.backend.repository.TestCaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for StorageReconciler.
+ */
+class StorageReconcilerTest {
+
+    @TempDir
+    Path root;
+
+    private LocalDiskTestCaseStorage storage;
+    private StoredBlobRepository storedBlobRepository;
+    private TestCaseRepository testCaseRepository;
+    private CloudStorageService cloudStorageService;
+    private StorageReconciler reconciler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storage = new LocalDiskTestCaseStorage(root.resolve("store"));
+        storedBlobRepository = mock(StoredBlobRepository.class);
+        testCaseRepository = mock(TestCaseRepository.class);
+        when(storedBlobRepository.findBySha256GreaterThanOrderBySha256Asc(anyString(), any())).thenReturn(List.of());
+        when(testCaseRepository.findLegacyAfter(anyString(), any())).thenReturn(List.of());
+        TestCaseContentCache cache = new TestCaseContentCache(new SimpleMeterRegistry(), false, 0, 0, 0, 0,
+                root.resolve("cache").toString());
+        cloudStorageService = new CloudStorageService(storage, cache, storedBlobRepository,
+                TransactionOperations.withoutTransaction(), 2, "gzip");
+        reconciler = new StorageReconciler(cloudStorageService, testCaseRepository, storedBlobRepository,
+                new SimpleMeterRegistry(), true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reconciler.shutdown();
+        cloudStorageService.shutdown();
+    }
+
+    @Test
+    void reconcile_LegacySizeDrift_CorrectsSizes() throws IOException {
+        storage.write("testcases/7/11/input.txt", bytes("1 2\n"));
+        storage.write("testcases/7/11/output.txt", bytes("3\n"));
+        when(testCaseRepository.findLegacyAfter(eq(""), any())).thenReturn(List.of(legacyTestCase(100L)));
+        when(testCaseRepository.updateFileSizes(11L, 0L, 4L, 2L, 6L, 6L)).thenReturn(1);
+
+        StorageReconciler.Report report = reconciler.reconcile();
+
+        verify(testCaseRepository).updateFileSizes(11L, 0L, 4L, 2L, 6L, 6L);
+        assertEquals(1, report.sizesFixed());
+        assertEquals(0, report.orphans());
+        assertEquals(0, report.missing());
+        assertEquals(2, report.objectsScanned());
+        assertSame(report, reconciler.getLastReport());
+    }
+
+    @Test
+    void reconcile_Orphan_DeletedOnlyWhenSeenInTwoRuns() throws IOException {
+        String orphan = "blobs/" + "a".repeat(64);
+        storage.write(orphan, bytes("1 2 3\n"));
+        storage.write("testcases/7/12/input.txt", bytes("4\n"));
+        when(storedBlobRepository.existsById("a".repeat(64))).thenReturn(false);
+
+        StorageReconciler.Report first = reconciler.reconcile();
+
+        assertEquals(2, first.orphans());
+        assertEquals(0, first.orphansDeleted());
+        assertTrue(Files.exists(storage.resolve(orphan)));
+
+        StorageReconciler.Report second = reconciler.reconcile();
+
+        assertEquals(2, second.orphansDeleted());
+        assertFalse(Files.exists(storage.resolve(orphan)));
+        assertFalse(Files.exists(root.resolve("store/testcases/7/12/input.txt")));
+    }
+
+    @Test
+    void reconcile_MissingAndCorruptFiles_AreReportedNotChanged() throws IOException {
+        storage.write("blobs/" + "c".repeat(64), bytes("123"));
+        storage.write("testcases/7/11/input.txt", bytes("1 2\n"));
+        when(storedBlobRepository.findBySha256GreaterThanOrderBySha256Asc(eq(""), any())).thenReturn(List.of(
+                blob("b".repeat(64), 10L), blob("c".repeat(64), 10L)));
+        when(testCaseRepository.findLegacyAfter(eq(""), any())).thenReturn(List.of(legacyTestCase(6L)));
+
+        StorageReconciler.Report report = reconciler.reconcile();
+
+        assertEquals(2, report.missing()); // Blob b and the legacy output file
+        assertEquals(1, report.corrupt());
+        assertEquals(0, report.orphans());
+        verify(testCaseRepository, never()).updateFileSizes(anyLong(), anyLong(), any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void reconcile_TokenIndexWithoutBlob_IsOrphan() throws IOException {
+        storage.write("blobs/" + "c".repeat(64), bytes("1\n"));
+        storage.write("tokens/" + "c".repeat(64), bytes("index"));
+        storage.write("tokens/" + "d".repeat(64), bytes("index"));
+        when(storedBlobRepository.findBySha256GreaterThanOrderBySha256Asc(eq(""), any())).thenReturn(List.of(
+                blob("b".repeat(64), 2L), blob("c".repeat(64), 2L)));
+        when(storedBlobRepository.existsById("d".repeat(64))).thenReturn(false);
+
+        reconciler.reconcile();
+        StorageReconciler.Report second = reconciler.reconcile();
+
+        assertEquals(1, second.orphansDeleted());
+        assertTrue(Files.exists(storage.resolve("tokens/" + "c".repeat(64))));
+        assertFalse(Files.exists(storage.resolve("tokens/" + "d".repeat(64))));
+    }
+
+    private static TestCase legacyTestCase(Long storedFileSize) {
+        return TestCase.builder()
+                .id(11L)
+                .problem(Problem.builder().id(7L).build())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputFileSize(storedFileSize / 2)
+                .outputFileSize(storedFileSize / 2)
+                .fileSize(storedFileSize)
+                .storedFileSize(storedFileSize)
+                .build();
+    }
+
+    private static StoredBlob blob(String sha256, Long storedSize) {
+        return StoredBlob.builder()
+                .sha256(sha256)
+                .rawSize(storedSize)
+                .storedSize(storedSize)
+                .codec(TestCaseCodec.NONE.name())
+                .build();
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,233 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.benchmark.StorageHarness;
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.ScoringMode;
+import com.codearena.backend.entity.Submission;
+import com.codearena.backend.entity.SubmissionStatus;
+import com.codearena.backend.entity.SubmissionTestResult;
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.entity.Verdict;
+import com.codearena.backend.repository.SubmissionRepository;
+import com.codearena.backend.repository.SubmissionTestResultRepository;
+import com.codearena.backend.repository.TestCaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for SubmissionJudge, running Python submissions against test cases in the
+ * in-memory bucket. Needs python3 on the PATH.
+ */
+class SubmissionJudgeTest {
+
+    @TempDir
+    Path root;
+
+    private StorageHarness harness;
+    private CloudStorageService cloudStorageService;
+    private SubmissionRepository submissionRepository;
+    private SubmissionTestResultRepository testResultRepository;
+    private TestCaseRepository testCaseRepository;
+    private SubmissionJudge judge;
+    private final List<SubmissionTestResult> results = new ArrayList<>();
+    private final Problem problem = Problem.builder().id(1L).timeLimitMillis(1000).memoryLimitMB(256).build();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        harness = new StorageHarness(root.resolve("content-cache"), "gzip", 4, false);
+        cloudStorageService = harness.service();
+        submissionRepository = mock(SubmissionRepository.class);
+        testResultRepository = mock(SubmissionTestResultRepository.class);
+        testCaseRepository = mock(TestCaseRepository.class);
+        when(testResultRepository.save(any(SubmissionTestResult.class))).thenAnswer(invocation -> {
+            results.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        ProgramRunner programRunner = new ProgramRunner(Duration.ofSeconds(30));
+        TestCaseGenerator generator = new TestCaseGenerator(cloudStorageService, programRunner, testCaseRepository,
+                Duration.ofSeconds(30), root.resolve("generators").toString());
+        JudgeTestDataCache cache = new JudgeTestDataCache(cloudStorageService, generator, new SimpleMeterRegistry(),
+                true, 1024 * 1024, Duration.ofMinutes(1), root.resolve("judge-cache").toString());
+        CompilationCache compilationCache = new CompilationCache(programRunner, new SimpleMeterRegistry(),
+                true, 1024 * 1024, root.resolve("compile-cache").toString());
+        JvmWorkerPool jvmWorkerPool = new JvmWorkerPool(new CgroupSandbox(false, root.toString(), 128),
+                new SimpleMeterRegistry(), false, 0, 256, 100, root.resolve("jvm-pool").toString());
+        judge = new SubmissionJudge(submissionRepository, testResultRepository, testCaseRepository, cache,
+                programRunner, compilationCache, jvmWorkerPool, 1024 * 1024, root.resolve("judge").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        harness.close();
+    }
+
+    @Test
+    void judge_CorrectSolution_IsAccepted() {
+        givenTestCases(testCase(1, "1", "1 2\n", "3\n"), testCase(2, "2", "10 20\n", "30"));
+        Submission submission = submission("print(sum(map(int, input().split())))\n");
+
+        assertEquals(Verdict.ACCEPTED, judge.judge(submission.getId()));
+
+        assertEquals(SubmissionStatus.FINISHED, submission.getStatus());
+        assertEquals(Verdict.ACCEPTED, submission.getVerdict());
+        assertEquals(2, submission.getPassedTests());
+        assertEquals(2, submission.getTotalTests());
+        assertNotNull(submission.getFinishedAt());
+        assertEquals(List.of("1", "2"), results.stream().map(SubmissionTestResult::getTestCaseName).toList());
+        verify(testResultRepository).deleteBySubmissionId(submission.getId());
+        verify(testCaseRepository, never()).incrementFailureCounts(any());
+    }
+
+    @Test
+    void judge_IoiProblemWithFailingTests_RecordsVerdictPerTestAndFirstFailureOverall() {
+        problem.setScoringMode(ScoringMode.IOI);
+        givenTestCases(testCase(1, "1", "1\n", "1\n"), testCase(3, "3", "3\n", "3\n"),
+                testCase(2, "2", "2\n", "2\n"), testCase(10, "10", "4\n", "4\n"));
+        Submission submission = submission("""
+                import time
+                n = int(input())
+                if n == 2:
+                    print(5)
+                elif n == 3:
+                    time.sleep(5)
+                elif n == 4:
+                    raise SystemExit(3)
+                else:
+                    print(n)
+                """);
+
+        assertEquals(Verdict.WRONG_ANSWER, judge.judge(submission.getId()));
+
+        assertEquals(List.of(Verdict.ACCEPTED, Verdict.WRONG_ANSWER, Verdict.TIME_LIMIT_EXCEEDED, Verdict.RUNTIME_ERROR),
+                results.stream().map(SubmissionTestResult::getVerdict).toList());
+        assertEquals(1, submission.getPassedTests());
+        assertTrue(submission.getMessage().startsWith("Test 2: "));
+        assertEquals("Exit code 3", results.get(3).getMessage());
+        verify(testCaseRepository).incrementFailureCounts(List.of(2L, 3L, 10L));
+    }
+
+    @Test
+    void judge_IcpcProblem_RunsMostFailedTestsFirstAndStopsAtFirstFailure() {
+        TestCase easy = testCase(1, "1", "1\n", "1\n");
+        TestCase killer = testCase(2, "2", "2\n", "2\n");
+        killer.setFailureCount(5L);
+        TestCase tricky = testCase(3, "3", "3\n", "3\n");
+        tricky.setFailureCount(1L);
+        givenTestCases(easy, tricky, killer);
+        Submission submission = submission("n = int(input())\nprint(5 if n == 2 else n)\n");
+
+        assertEquals(Verdict.WRONG_ANSWER, judge.judge(submission.getId()));
+
+        assertEquals(List.of("2"), results.stream().map(SubmissionTestResult::getTestCaseName).toList());
+        assertEquals(0, submission.getPassedTests());
+        assertEquals(3, submission.getTotalTests());
+        assertTrue(submission.getMessage().startsWith("Test 2: "));
+        verify(testCaseRepository).incrementFailureCounts(List.of(2L));
+    }
+
+    @Test
+    void judge_IcpcProblemWithoutFailureHistory_RunsTestsInNameOrder() {
+        TestCase first = testCase(1, "1", "1\n", "1\n");
+        TestCase second = testCase(2, "2", "2\n", "2\n");
+        second.setFailureCount(null); // Imported before failures were counted
+        givenTestCases(testCase(10, "10", "3\n", "3\n"), second, first);
+        Submission submission = submission("n = int(input())\nprint(n if n < 3 else 0)\n");
+
+        assertEquals(Verdict.WRONG_ANSWER, judge.judge(submission.getId()));
+
+        assertEquals(List.of("1", "2", "10"), results.stream().map(SubmissionTestResult::getTestCaseName).toList());
+        assertEquals(2, submission.getPassedTests());
+        verify(testCaseRepository).incrementFailureCounts(List.of(10L));
+    }
+
+    @Test
+    void judge_AllocationPastMemoryLimit_IsMemoryLimitExceeded() {
+        problem.setMemoryLimitMB(64);
+        givenTestCases(testCase(1, "1", "1\n", "1\n"));
+        Submission submission = submission("x = bytearray(512 * 1024 * 1024)\nprint(1)\n");
+
+        assertEquals(Verdict.MEMORY_LIMIT_EXCEEDED, judge.judge(submission.getId()));
+    }
+
+    @Test
+    void judge_OutputPastLimit_IsOutputLimitExceeded() {
+        givenTestCases(testCase(1, "1", "1\n", "1\n"));
+        Submission submission = submission("while True:\n    print('1' * 1000)\n");
+
+        assertEquals(Verdict.OUTPUT_LIMIT_EXCEEDED, judge.judge(submission.getId()));
+
+        assertEquals(Verdict.OUTPUT_LIMIT_EXCEEDED, results.get(0).getVerdict());
+        verify(testCaseRepository).incrementFailureCounts(List.of(1L));
+    }
+
+    @Test
+    void judge_SubmissionThatDoesNotCompile_IsCompilationError() {
+        givenTestCases(testCase(1, "1", "1\n", "1\n"));
+        Submission submission = submission("print(1)\n");
+        submission.setLanguage("java");
+        submission.setSourceCode("public class Main { oops }");
+
+        assertEquals(Verdict.COMPILATION_ERROR, judge.judge(submission.getId()));
+
+        assertTrue(results.isEmpty());
+        assertTrue(submission.getMessage().startsWith("Compilation failed"));
+    }
+
+    @Test
+    void judge_MissingTestData_IsInternalError() {
+        TestCase testCase = testCase(1, "1", "1\n", "1\n");
+        givenTestCases(testCase);
+        harness.bucket().delete("blobs/" + testCase.getInputSha256());
+        Submission submission = submission("print(1)\n");
+
+        assertEquals(Verdict.INTERNAL_ERROR, judge.judge(submission.getId()));
+
+        assertEquals(SubmissionStatus.FINISHED, submission.getStatus());
+        assertFalse(Files.exists(root.resolve("judge").resolve("submission-" + submission.getId())));
+    }
+
+    private Submission submission(String source) {
+        Submission submission = Submission.builder()
+                .id(7L)
+                .problem(problem)
+                .language("python3")
+                .sourceCode(source)
+                .build();
+        when(submissionRepository.findWithProblemById(7L)).thenReturn(Optional.of(submission));
+        return submission;
+    }
+
+    private void givenTestCases(TestCase... testCases) {
+        when(testCaseRepository.findByProblemId(1L)).thenReturn(List.of(testCases));
+    }
+
+    private TestCase testCase(long id, String name, String input, String output) {
+        CloudStorageService.UploadedFiles files = cloudStorageService.uploadTestCaseFiles(input, output);
+        return TestCase.builder()
+                .id(id)
+                .name(name)
+                .problem(problem)
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256(files.input().sha256())
+                .inputCrc32c(files.input().crc32c())
+                .outputSha256(files.output().sha256())
+                .outputCrc32c(files.output().crc32c())
+                .build();
+    }
+}
@@ -0,0 +1,92 @@
+package com.codearena.backend.service;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TestCaseArchive.
+ */
+class TestCaseArchiveTest {
+
+    @Test
+    void next_TarGz_StreamsEntriesInOrder() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            writeTar(gzip);
+        }
+
+        assertEquals(List.of("tests/01.in=1 2\n", "tests/01.out=3\n"), readAll(bytes.toByteArray()));
+    }
+
+    @Test
+    void next_PlainTar_StreamsEntries() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeTar(bytes);
+
+        assertEquals(List.of("tests/01.in=1 2\n", "tests/01.out=3\n"), readAll(bytes.toByteArray()));
+    }
+
+    @Test
+    void open_UnknownFormat_ThrowsException() {
+        byte[] notAnArchive = "1 2\n".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> TestCaseArchive.open(new ByteArrayInputStream(notAnArchive)));
+    }
+
+    @Test
+    void classify_RecognisesPackageLayout() {
+        assertEquals(new TestCaseArchive.TestFile("01", true), TestCaseArchive.classify("tests/01.in"));
+        assertEquals(new TestCaseArchive.TestFile("01", false), TestCaseArchive.classify("01.OUT"));
+        assertEquals(new TestCaseArchive.TestFile("sample", false), TestCaseArchive.classify("sample.ans"));
+        assertNull(TestCaseArchive.classify("checker.cpp"));
+        assertNull(TestCaseArchive.classify("__MACOSX/tests/._01.in"));
+    }
+
+    @Test
+    void testOrder_SortsNumbersByValue() {
+        List<String> names = new ArrayList<>(List.of("10", "sample", "2", "01"));
+
+        names.sort(TestCaseArchive.TEST_ORDER);
+
+        assertEquals(List.of("01", "2", "10", "sample"), names);
+    }
+
+    private static void writeTar(OutputStream out) throws IOException {
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(out);
+        tar.putArchiveEntry(new TarArchiveEntry("tests/"));
+        tar.closeArchiveEntry();
+        for (String[] file : new String[][]{{"tests/01.in", "1 2\n"}, {"tests/01.out", "3\n"}}) {
+            byte[] content = file[1].getBytes(StandardCharsets.UTF_8);
+            TarArchiveEntry entry = new TarArchiveEntry(file[0]);
+            entry.setSize(content.length);
+            tar.putArchiveEntry(entry);
+            tar.write(content);
+            tar.closeArchiveEntry();
+        }
+        tar.finish();
+    }
+
+    private static List<String> readAll(byte[] archive) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (TestCaseArchive reader = TestCaseArchive.open(new ByteArrayInputStream(archive))) {
+            TestCaseArchive.Entry entry;
+            while ((entry = reader.next()) != null) {
+                entries.add(entry.name() + "=" + new String(entry.content().readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+}
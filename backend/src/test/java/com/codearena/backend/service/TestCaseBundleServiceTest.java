@@ -0,0 +1,189 @@
+package com.codearena.backend.service;
+
+import com.codearena.backend.benchmark.FaultInjectingStorage.Operation;
+import com.codearena.backend.benchmark.StorageHarness;
+import com.codearena.backend.entity.Problem;
+import com.codearena.backend.entity.TestCase;
+import com.codearena.backend.repository.ProblemRepository;
+import com.codearena.backend.repository.TestCaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for TestCaseBundleService against the in-memory bucket, with the problem row
+ * modeled in memory.
+ */
+class TestCaseBundleServiceTest {
+
+    private record State(Long getTestSetRevision, Long getTestBundleRevision, String getTestBundleName)
+            implements ProblemRepository.TestBundleState {
+    }
+
+    @TempDir
+    Path root;
+
+    private StorageHarness harness;
+    private CloudStorageService cloudStorageService;
+    private TestCaseBundleService bundleService;
+    private final List<TestCase> testCases = new ArrayList<>();
+    private long revision;
+    private Long bundleRevision;
+    private String bundleName;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        harness = new StorageHarness(root.resolve("cache"), "gzip", 2, false);
+        cloudStorageService = harness.service();
+        TestCaseRepository testCaseRepository = mock(TestCaseRepository.class);
+        ProblemRepository problemRepository = mock(ProblemRepository.class);
+        when(testCaseRepository.findByProblemId(1L)).thenAnswer(invocation -> List.copyOf(testCases));
+        when(problemRepository.findTestBundleState(1L)).thenAnswer(invocation ->
+                Optional.of(new State(revision, bundleRevision, bundleName)));
+        when(problemRepository.incrementTestSetRevision(1L)).thenAnswer(invocation -> {
+            revision++;
+            return 1;
+        });
+        when(problemRepository.updateTestBundle(anyLong(), anyString(), anyLong())).thenAnswer(invocation -> {
+            long built = invocation.getArgument(2);
+            if (bundleRevision != null && bundleRevision >= built) {
+                return 0;
+            }
+            bundleName = invocation.getArgument(1);
+            bundleRevision = built;
+            return 1;
+        });
+        bundleService = new TestCaseBundleService(testCaseRepository, problemRepository, cloudStorageService,
+                false, Duration.ZERO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bundleService.shutdown();
+        harness.close();
+    }
+
+    @Test
+    void fetchBundle_ReadsWholeTestSetInOneRequest() throws IOException {
+        addTestCase(1, "1 2\n", "3\n");
+        addTestCase(2, "4 5\n", "9\n");
+        addTestCase(3, "1 1\n", "2\n");
+        bundleService.testSetChanged(1L);
+        bundleService.rebuild(1L);
+        harness.storage().resetCounts();
+
+        TestCaseBundleService.FetchedBundle fetched = bundleService.fetchBundle(1L);
+
+        assertEquals(1, harness.storage().requestCount(Operation.READ));
+        TestCaseBundle.Entry second = fetched.bundle().index().entries().get(1);
+        assertEquals(2L, second.testCaseId());
+        assertEquals("4 5\n", text(fetched.open(second.input())));
+        assertEquals("9\n", text(fetched.open(second.output())));
+    }
+
+    @Test
+    void openFile_RangeReadsSingleEntry() throws IOException {
+        addTestCase(1, "1 2\n", "3\n");
+        addTestCase(2, "4 5\n", "9\n");
+        bundleService.testSetChanged(1L);
+        TestCaseBundleService.Bundle bundle = bundleService.getBundle(1L);
+        harness.storage().resetCounts();
+
+        String output = text(bundleService.openFile(bundle, bundle.index().find(2).output()));
+
+        assertEquals("9\n", output);
+        assertEquals(1, harness.storage().requestCount(Operation.READ));
+    }
+
+    @Test
+    void rebuild_OneTestChanged_CopiesTheRestFromPreviousBundle() throws IOException {
+        addTestCase(1, "1 2\n", "3\n");
+        addTestCase(2, "4 5\n", "9\n");
+        addTestCase(3, "1 1\n", "2\n");
+        bundleService.testSetChanged(1L);
+        String first = bundleService.rebuild(1L).objectName();
+
+        replaceOutput(testCases.get(2), "8\n");
+        bundleService.testSetChanged(1L);
+        harness.storage().resetCounts();
+        TestCaseBundleService.Bundle second = bundleService.rebuild(1L);
+
+        // Previous index, its first five files as one range, and the one new blob
+        assertEquals(3, harness.storage().requestCount(Operation.READ));
+        assertNotEquals(first, second.objectName());
+        assertEquals(2L, second.index().revision());
+        assertEquals("8\n", text(bundleService.openFile(second, second.index().find(3).output())));
+        assertEquals("1 1\n", text(bundleService.openFile(second, second.index().find(3).input())));
+    }
+
+    @Test
+    void rebuild_KeepsOnlyCurrentAndPreviousBundle() throws IOException {
+        addTestCase(1, "1 2\n", "3\n");
+        for (int i = 0; i < 3; i++) {
+            replaceOutput(testCases.get(0), i + "\n");
+            bundleService.testSetChanged(1L);
+            bundleService.rebuild(1L);
+        }
+
+        List<String> bundles = cloudStorageService.listObjectsAsync(
+                TestCaseBundleService.bundlePrefix(1L), null, 100).join().names();
+
+        assertEquals(2, bundles.size());
+        assertTrue(bundles.contains(bundleName));
+    }
+
+    @Test
+    void findCurrentBundle_TestSetChangedSinceBuild_ReturnsEmpty() throws IOException {
+        addTestCase(1, "1 2\n", "3\n");
+        bundleService.testSetChanged(1L);
+        bundleService.rebuild(1L);
+
+        bundleService.testSetChanged(1L);
+
+        assertTrue(bundleService.findCurrentBundle(1L).isEmpty());
+    }
+
+    private void addTestCase(long id, String input, String output) {
+        CloudStorageService.UploadedFiles files = cloudStorageService.uploadTestCaseFiles(input, output);
+        testCases.add(TestCase.builder()
+                .id(id)
+                .problem(Problem.builder().id(1L).build())
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256(files.input().sha256())
+                .inputCrc32c(files.input().crc32c())
+                .outputSha256(files.output().sha256())
+                .outputCrc32c(files.output().crc32c())
+                .isSample(false)
+                .isHidden(true)
+                .build());
+    }
+
+    private void replaceOutput(TestCase testCase, String output) {
+        CloudStorageService.StoredFile file = cloudStorageService.uploadTestCaseFiles(null, output).output();
+        testCase.setOutputSha256(file.sha256());
+        testCase.setOutputCrc32c(file.crc32c());
+    }
+
+    private static String text(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.codearena.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the TestCaseBundle index format.
+ */
+class TestCaseBundleTest {
+
+    @Test
+    void encode_RoundTripsIndex() throws IOException {
+        long data = TestCaseBundle.indexBytes(2);
+        TestCaseBundle.Index index = new TestCaseBundle.Index(7, List.of(
+                new TestCaseBundle.Entry(11, true, false,
+                        new TestCaseBundle.File("a".repeat(64), TestCaseCodec.GZIP, data, 20, 5L, 0x1234L),
+                        new TestCaseBundle.File("b".repeat(64), TestCaseCodec.ZSTD, data + 20, 15, 1L, 0x5678L)),
+                new TestCaseBundle.Entry(12, false, true,
+                        new TestCaseBundle.File(null, TestCaseCodec.NONE, data + 35, 3, null, null),
+                        new TestCaseBundle.File("b".repeat(64), TestCaseCodec.ZSTD, data + 38, 15, 1L, 0x5678L))));
+
+        byte[] encoded = TestCaseBundle.encode(index);
+        TestCaseBundle.Index decoded = TestCaseBundle.decode(new ByteArrayInputStream(encoded));
+
+        assertEquals(data, encoded.length);
+        assertEquals(2, TestCaseBundle.entryCount(encoded));
+        assertEquals(index, decoded);
+        assertEquals(data + 53, decoded.bundleBytes());
+        assertTrue(decoded.find(12).hidden());
+        assertNull(decoded.find(13));
+    }
+
+    @Test
+    void decode_TruncatedOrForeignBytes_Throws() {
+        byte[] encoded = TestCaseBundle.encode(new TestCaseBundle.Index(1, List.of(
+                new TestCaseBundle.Entry(1, false, false,
+                        new TestCaseBundle.File(null, TestCaseCodec.NONE, 0, 0, null, null),
+                        new TestCaseBundle.File(null, TestCaseCodec.NONE, 0, 0, null, null)))));
+
+        assertThrows(IOException.class, () -> TestCaseBundle.decode(
+                new ByteArrayInputStream(Arrays.copyOf(encoded, encoded.length - 1))));
+        assertThrows(IOException.class, () -> TestCaseBundle.decode(
+                new ByteArrayInputStream("PK\u0003\u0004 not a bundle at all".getBytes())));
+    }
+}
@@ -0,0 +1,54 @@
+package com.codearena.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TestCaseCodec.
+ */
+class TestCaseCodecTest {
+
+    private static final byte[] TEST_DATA = "1 2 3 4 5 6 7 8 9 10\n".repeat(20_000).getBytes(StandardCharsets.UTF_8);
+
+    @ParameterizedTest
+    @EnumSource(TestCaseCodec.class)
+    void decode_EncodedContent_ReturnsOriginal(TestCaseCodec codec) throws IOException {
+        byte[] encoded = codec.encode(new ByteArrayInputStream(TEST_DATA)).readAllBytes();
+
+        try (InputStream decoded = TestCaseCodec.decode(new ByteArrayInputStream(encoded))) {
+            assertArrayEquals(TEST_DATA, decoded.readAllBytes());
+        }
+        assertEquals(codec, TestCaseCodec.detect(encoded, encoded.length));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = TestCaseCodec.class, names = {"GZIP", "ZSTD"})
+    void encode_RepetitiveContent_ShrinksAtLeastFiveTimes(TestCaseCodec codec) throws IOException {
+        byte[] encoded = codec.encode(new ByteArrayInputStream(TEST_DATA)).readAllBytes();
+
+        assertTrue(encoded.length * 5 < TEST_DATA.length,
+                codec + " compressed " + TEST_DATA.length + " bytes to " + encoded.length);
+    }
+
+    @Test
+    void decode_EmptyContent_ReturnsEmpty() throws IOException {
+        try (InputStream decoded = TestCaseCodec.decode(new ByteArrayInputStream(new byte[0]))) {
+            assertEquals(0, decoded.readAllBytes().length);
+        }
+    }
+
+    @Test
+    void fromName_ParsesCaseInsensitively() {
+        assertEquals(TestCaseCodec.ZSTD, TestCaseCodec.fromName("zstd"));
+        assertEquals(TestCaseCodec.GZIP, TestCaseCodec.fromName(" GZIP "));
+        assertEquals(TestCaseCodec.NONE, TestCaseCodec.fromName(null));
+    }
+}
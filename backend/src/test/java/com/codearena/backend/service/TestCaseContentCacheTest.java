@@ -0,0 +1,97 @@
+package com.codearena.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TestCaseContentCache.
+ */
+class TestCaseContentCacheTest {
+
+    @TempDir
+    Path diskDir;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TestCaseContentCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        // Heap: 10 bytes total, entries up to 4 bytes. Disk: 20 bytes total, entries up to 10 bytes.
+        cache = new TestCaseContentCache(meterRegistry, true, 10, 4, 20, 10, diskDir.toString());
+    }
+
+    @Test
+    void get_AfterPut_ReturnsContentFromHeap() {
+        TestCaseContentCache.Key key = key(1L, "input.txt", 0);
+        cache.put(key, "1 2", 3);
+
+        assertEquals("1 2", cache.get(key));
+        assertEquals(1.0, meterRegistry.get("testcase.cache.hits").tag("tier", "heap").counter().count());
+    }
+
+    @Test
+    void get_LargeEntry_IsServedFromDisk() {
+        TestCaseContentCache.Key key = key(1L, "input.txt", 0);
+        cache.put(key, "123456789", 9);
+
+        assertEquals("123456789", cache.get(key));
+        assertEquals(1.0, meterRegistry.get("testcase.cache.hits").tag("tier", "disk").counter().count());
+    }
+
+    @Test
+    void get_DifferentGeneration_Misses() {
+        cache.put(key(1L, "input.txt", 0), "old", 3);
+
+        assertNull(cache.get(key(1L, "input.txt", 1)));
+        assertEquals(1.0, meterRegistry.get("testcase.cache.misses").counter().count());
+    }
+
+    @Test
+    void put_OverCapacity_EvictsLeastRecentlyUsed() {
+        TestCaseContentCache.Key first = key(1L, "input.txt", 0);
+        TestCaseContentCache.Key second = key(2L, "input.txt", 0);
+        TestCaseContentCache.Key third = key(3L, "input.txt", 0);
+        cache.put(first, "aaaa", 4);
+        cache.put(second, "bbbb", 4);
+        cache.get(first); // second is now least recently used
+        cache.put(third, "cccc", 4);
+
+        assertNull(cache.get(second));
+        assertEquals("aaaa", cache.get(first));
+        assertEquals("cccc", cache.get(third));
+        assertEquals(1.0, meterRegistry.get("testcase.cache.evictions").tag("tier", "heap").counter().count());
+    }
+
+    @Test
+    void invalidate_RemovesAllFilesOfTestCase() {
+        cache.put(key(1L, "input.txt", 0), "1", 1);
+        cache.put(key(1L, "output.txt", 0), "123456789", 9);
+        cache.put(key(2L, "input.txt", 0), "2", 1);
+
+        cache.invalidate(1L, 1L);
+
+        assertNull(cache.get(key(1L, "input.txt", 0)));
+        assertNull(cache.get(key(1L, "output.txt", 0)));
+        assertEquals("2", cache.get(key(2L, "input.txt", 0)));
+    }
+
+    @Test
+    void put_TooLargeForAnyTier_IsNotCached() {
+        TestCaseContentCache.Key key = key(1L, "input.txt", 0);
+        cache.put(key, "12345678901", 11);
+
+        assertNull(cache.get(key));
+    }
+
+    private static TestCaseContentCache.Key key(Long testCaseId, String fileName, long generation) {
+        return new TestCaseContentCache.Key(1L, testCaseId, fileName, generation);
+    }
+}
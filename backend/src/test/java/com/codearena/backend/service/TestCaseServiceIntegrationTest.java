@@ -87,7 +87,10 @@ class TestCaseServiceIntegrationTest {
             testCase.setId(1L);
             return testCase;
         });
-        when(cloudStorageService.getTestCaseFileSize(anyLong(), anyLong(), any())).thenReturn(10L);
+        when(cloudStorageService.uploadTestCaseFiles(any(), any()))
+                .thenReturn(new CloudStorageService.UploadedFiles(
+                        new CloudStorageService.StoredFile("a".repeat(64), 5L, 25L, TestCaseCodec.GZIP, 0x1234L),
+                        new CloudStorageService.StoredFile("b".repeat(64), 1L, 21L, TestCaseCodec.GZIP, 0x5678L)));
 
         // Act
         TestCaseResponseDTO result = testCaseService.createTestCase(1L, testCaseCreateDTO, testUser);
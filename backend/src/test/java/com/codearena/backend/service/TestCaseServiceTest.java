@@ -1,27 +1,51 @@
 package com.codearena.backend.service;
 
+import com.codearena.backend.dto.TestCaseArchiveImportDTO;
 import com.codearena.backend.dto.TestCaseCreateDTO;
+import com.codearena.backend.dto.TestCaseGeneratorDTO;
+import com.codearena.backend.dto.TestCaseImportResultDTO;
 import com.codearena.backend.dto.TestCaseResponseDTO;
+import com.codearena.backend.dto.TestCaseUpdateDTO;
 import com.codearena.backend.entity.Problem;
 import com.codearena.backend.entity.Role;
+import com.codearena.backend.entity.TestCase;
 import com.codearena.backend.entity.User;
+import com.codearena.backend.exception.ApiException;
 import com.codearena.backend.repository.ProblemRepository;
 import com.codearena.backend.repository.TestCaseRepository;
 import com.google.cloud.storage.Storage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -39,6 +63,12 @@ class TestCaseServiceTest {
     @Mock
     private CloudStorageService cloudStorageService;
 
+    @Mock
+    private TestCaseBundleService testCaseBundleService;
+
+    @Mock
+    private OutputTokenIndexService outputTokenIndexService;
+
     @Mock
     private Storage storage;
 
@@ -90,7 +120,10 @@ class TestCaseServiceTest {
             testCase.setId(1L);
             return testCase;
         });
-        when(cloudStorageService.getTestCaseFileSize(anyLong(), anyLong(), any())).thenReturn(10L);
+        when(cloudStorageService.uploadTestCaseFiles(any(), any()))
+                .thenReturn(new CloudStorageService.UploadedFiles(
+                        new CloudStorageService.StoredFile("a".repeat(64), 5L, 25L, TestCaseCodec.GZIP, 0x1234L),
+                        new CloudStorageService.StoredFile("b".repeat(64), 1L, 21L, TestCaseCodec.GZIP, 0x5678L)));
 
         // Act
         TestCaseResponseDTO result = testCaseService.createTestCase(1L, testCaseCreateDTO, testUser);
@@ -102,6 +135,13 @@ class TestCaseServiceTest {
         assertFalse(result.getIsHidden());
         assertTrue(result.getIsSample());
         assertEquals("Test User", result.getCreatedBy());
+        assertEquals(6L, result.getFileSize());
+        assertEquals(5L, result.getInputFileSize());
+        assertEquals(46L, result.getStoredFileSize());
+        assertEquals("GZIP", result.getStorageCodec());
+        assertEquals("a".repeat(64), result.getInputSha256());
+        verify(cloudStorageService, never()).getTestCaseFileSize(any(), any());
+        verify(outputTokenIndexService).indexOutput("b".repeat(64), "6");
     }
 
     @Test
@@ -126,4 +166,248 @@ class TestCaseServiceTest {
             testCaseService.createTestCase(1L, testCaseCreateDTO, testUser);
         });
     }
-} 
\ No newline at end of file
+
+    @Test
+    void createGeneratedTestCase_StoresProgramsOnly() {
+        // Arrange
+        when(problemRepository.findById(1L)).thenReturn(Optional.of(testProblem));
+        when(testCaseRepository.existsByProblemIdAndName(1L, "Random 1")).thenReturn(false);
+        when(testCaseRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cloudStorageService.uploadTestCaseFiles("print(5)", "print(int(input()) * 2)"))
+                .thenReturn(new CloudStorageService.UploadedFiles(
+                        new CloudStorageService.StoredFile("a".repeat(64), 8L, 28L, TestCaseCodec.GZIP, 0x1234L),
+                        new CloudStorageService.StoredFile("b".repeat(64), 23L, 43L, TestCaseCodec.GZIP, 0x5678L)));
+
+        // Act
+        TestCaseResponseDTO result = testCaseService.createGeneratedTestCase(1L, generatorDTO("Python3"), testUser);
+
+        // Assert
+        assertTrue(result.getGenerated());
+        assertEquals("python3", result.getGeneratorLanguage());
+        assertEquals(7L, result.getGeneratorSeed());
+        assertEquals(0L, result.getFileSize());
+        assertEquals(71L, result.getStoredFileSize());
+        assertNull(result.getInputSha256());
+        assertNull(result.getInputContent());
+        verify(testCaseBundleService).testSetChanged(1L);
+    }
+
+    @Test
+    void createGeneratedTestCase_UnknownLanguage_StoresNothing() {
+        // Arrange
+        when(problemRepository.findById(1L)).thenReturn(Optional.of(testProblem));
+        when(testCaseRepository.existsByProblemIdAndName(1L, "Random 1")).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> testCaseService.createGeneratedTestCase(1L, generatorDTO("cobol"), testUser));
+        verify(cloudStorageService, never()).uploadTestCaseFiles(any(), any());
+    }
+
+    @Test
+    void importTestCaseArchive_PairsEntries_InsertsInTestOrder() throws IOException {
+        // Arrange
+        when(problemRepository.findById(1L)).thenReturn(Optional.of(testProblem));
+        when(testCaseRepository.findNamesByProblemId(1L)).thenReturn(List.of());
+        when(cloudStorageService.uploadTestCaseFile(any()))
+                .thenReturn(new CloudStorageService.StoredFile("a".repeat(64), 5L, 25L, TestCaseCodec.GZIP, 0x1234L));
+        byte[] archive = zip("10.in", "10.out", "2.in", "README.md", "2.ans", "3.in");
+
+        // Act
+        TestCaseImportResultDTO result = testCaseService.importTestCaseArchive(
+                1L, new TestCaseArchiveImportDTO(), new ByteArrayInputStream(archive), testUser);
+
+        // Assert
+        assertEquals(List.of("2", "10"), result.getTestCaseNames());
+        assertEquals(List.of("README.md", "3.in (no matching output)"), result.getSkippedEntries());
+        ArgumentCaptor<List<TestCase>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(testCaseRepository).insertAll(inserted.capture());
+        assertEquals(2, inserted.getValue().size());
+        assertTrue(inserted.getValue().get(0).getIsHidden());
+        // The unpaired input is released
+        verify(cloudStorageService).releaseBlobs(List.of("a".repeat(64)));
+        verify(testCaseBundleService).testSetChanged(1L);
+    }
+
+    @Test
+    void importTestCaseArchive_ExistingName_ReleasesStoredFiles() throws IOException {
+        // Arrange
+        when(problemRepository.findById(1L)).thenReturn(Optional.of(testProblem));
+        when(testCaseRepository.findNamesByProblemId(1L)).thenReturn(List.of("2"));
+        when(cloudStorageService.uploadTestCaseFile(any()))
+                .thenReturn(new CloudStorageService.StoredFile("a".repeat(64), 5L, 25L, TestCaseCodec.GZIP, 0x1234L));
+        byte[] archive = zip("1.in", "1.out", "2.in", "2.out");
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> testCaseService.importTestCaseArchive(
+                1L, new TestCaseArchiveImportDTO(), new ByteArrayInputStream(archive), testUser));
+        verify(cloudStorageService).releaseBlobs(List.of("a".repeat(64), "a".repeat(64)));
+        verify(testCaseRepository, never()).insertAll(any());
+        verify(testCaseBundleService, never()).testSetChanged(any());
+    }
+
+    @Test
+    void updateTestCase_UnchangedContent_SkipsUpload() {
+        // Arrange
+        TestCase testCase = storedTestCase("1 2 3", "6");
+        when(testCaseRepository.findById(1L)).thenReturn(Optional.of(testCase));
+        when(testCaseRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        TestCaseResponseDTO result = testCaseService.updateTestCase(1L, updateDTO("1 2 3", "6"), testUser);
+
+        // Assert
+        assertEquals("Renamed", result.getName());
+        verify(cloudStorageService, never()).uploadTestCaseFiles(any(), any());
+        assertEquals(0L, testCase.getContentGeneration());
+        verify(outputTokenIndexService, never()).indexOutput(any(), any());
+        // Flags may have changed, so the bundle is still rebuilt
+        verify(testCaseBundleService).testSetChanged(1L);
+    }
+
+    @Test
+    void updateTestCase_ChangedOutput_UploadsOnlyOutput() {
+        // Arrange
+        TestCase testCase = storedTestCase("1 2 3", "6");
+        when(testCaseRepository.findById(1L)).thenReturn(Optional.of(testCase));
+        when(testCaseRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cloudStorageService.describeBlob(testCase.getInputSha256())).thenReturn(new CloudStorageService.StoredFile(
+                testCase.getInputSha256(), 5L, 25L, TestCaseCodec.GZIP, testCase.getInputCrc32c()));
+        when(cloudStorageService.uploadTestCaseFiles(null, "7"))
+                .thenReturn(new CloudStorageService.UploadedFiles(null,
+                        new CloudStorageService.StoredFile("b".repeat(64), 1L, 21L, TestCaseCodec.GZIP, 0x5678L)));
+
+        // Act
+        TestCaseResponseDTO result = testCaseService.updateTestCase(1L, updateDTO("1 2 3", "7"), testUser);
+
+        // Assert
+        assertEquals("b".repeat(64), result.getOutputSha256());
+        assertEquals(0x5678L, result.getOutputCrc32c());
+        assertEquals(1L, testCase.getContentGeneration());
+        verify(outputTokenIndexService).indexOutput("b".repeat(64), "7");
+    }
+
+    @Test
+    void updateTestCase_ConcurrentlyUpdated_ReleasesOnlyItsOwnUpload() {
+        // Arrange
+        TestCase testCase = storedTestCase("1 2 3", "6");
+        String previousOutput = testCase.getOutputSha256();
+        when(testCaseRepository.findById(1L)).thenReturn(Optional.of(testCase));
+        when(testCaseRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(TestCase.class, 1L));
+        when(cloudStorageService.describeBlob(testCase.getInputSha256())).thenReturn(new CloudStorageService.StoredFile(
+                testCase.getInputSha256(), 5L, 25L, TestCaseCodec.GZIP, testCase.getInputCrc32c()));
+        when(cloudStorageService.uploadTestCaseFiles(null, "7"))
+                .thenReturn(new CloudStorageService.UploadedFiles(null,
+                        new CloudStorageService.StoredFile("b".repeat(64), 1L, 21L, TestCaseCodec.GZIP, 0x5678L)));
+
+        // Act
+        ApiException e = assertThrows(ApiException.class,
+                () -> testCaseService.updateTestCase(1L, updateDTO("1 2 3", "7"), testUser));
+
+        // Assert: the other update owns the previous files now
+        assertEquals(HttpStatus.CONFLICT, e.getStatus());
+        verify(cloudStorageService).releaseBlob("b".repeat(64));
+        verify(cloudStorageService, never()).releaseBlob(previousOutput);
+        verify(cloudStorageService, never()).deleteTestCaseFile(any(), any());
+    }
+
+    @Test
+    void updateTestCase_MetadataOnlyConcurrentlyUpdated_IsConflict() {
+        // Arrange
+        TestCase testCase = storedTestCase("1 2 3", "6");
+        when(testCaseRepository.findById(1L)).thenReturn(Optional.of(testCase));
+        when(testCaseRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(TestCase.class, 1L));
+
+        // Act
+        ApiException e = assertThrows(ApiException.class,
+                () -> testCaseService.updateTestCase(1L, updateDTO("1 2 3", "6"), testUser));
+
+        // Assert: nothing was uploaded, so there is nothing to release
+        assertEquals(HttpStatus.CONFLICT, e.getStatus());
+        verify(cloudStorageService, never()).uploadTestCaseFiles(any(), any());
+        verify(cloudStorageService, never()).releaseBlob(any());
+    }
+
+    @Test
+    void getTestCase_SignedUrlMode_ReturnsUrlsInsteadOfContent() {
+        // Arrange
+        TestCase testCase = storedTestCase("1 2 3", "6");
+        when(testCaseRepository.findById(1L)).thenReturn(Optional.of(testCase));
+        when(cloudStorageService.signTestCaseFileAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(
+                new CloudStorageService.SignedFileUrl(URI.create("https://storage.example.com/blobs/a"),
+                        Instant.parse("2025-01-01T00:15:00Z"), TestCaseCodec.GZIP)));
+
+        // Act
+        TestCaseResponseDTO result = testCaseService.getTestCase(
+                1L, testUser, null, TestCaseService.ContentMode.SIGNED_URL);
+
+        // Assert
+        assertEquals("https://storage.example.com/blobs/a", result.getInputUrl().getUrl());
+        assertEquals("gzip", result.getOutputUrl().getContentEncoding());
+        assertEquals("2025-01-01T00:15:00Z", result.getOutputUrl().getExpiresAt());
+        assertNull(result.getInputContent());
+        verify(cloudStorageService, never()).downloadTestCaseFile(any(), any());
+    }
+
+    private TestCase storedTestCase(String input, String output) {
+        byte[] inputBytes = input.getBytes(StandardCharsets.UTF_8);
+        byte[] outputBytes = output.getBytes(StandardCharsets.UTF_8);
+        return TestCase.builder()
+                .id(1L)
+                .name("Test Case 1")
+                .inputFileName("input.txt")
+                .outputFileName("output.txt")
+                .inputSha256(sha256(inputBytes))
+                .outputSha256(sha256(outputBytes))
+                .inputCrc32c(CloudStorageService.crc32c(inputBytes))
+                .outputCrc32c(CloudStorageService.crc32c(outputBytes))
+                .inputFileSize((long) inputBytes.length)
+                .outputFileSize((long) outputBytes.length)
+                .fileSize((long) inputBytes.length + outputBytes.length)
+                .problem(testProblem)
+                .createdBy(testUser)
+                .build();
+    }
+
+    private static TestCaseUpdateDTO updateDTO(String input, String output) {
+        TestCaseUpdateDTO dto = new TestCaseUpdateDTO();
+        dto.setName("Renamed");
+        dto.setIsHidden(false);
+        dto.setIsSample(true);
+        dto.setInputContent(input);
+        dto.setOutputContent(output);
+        return dto;
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] zip(String... entryNames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String entryName : entryNames) {
+                zip.putNextEntry(new ZipEntry(entryName));
+                zip.write(entryName.getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static TestCaseGeneratorDTO generatorDTO(String generatorLanguage) {
+        TestCaseGeneratorDTO dto = new TestCaseGeneratorDTO();
+        dto.setName("Random 1");
+        dto.setGeneratorLanguage(generatorLanguage);
+        dto.setGeneratorSource("print(5)");
+        dto.setGeneratorArgs("--n 5");
+        dto.setGeneratorSeed(7L);
+        dto.setSolutionLanguage("python3");
+        dto.setSolutionSource("print(int(input()) * 2)");
+        return dto;
+    }
+}
@@ -23,6 +23,7 @@ const ProblemForm = ({
   const [memoryLimitMB, setMemoryLimitMB] = useState(
     initial.memoryLimitMB || 256
   );
+  const [scoringMode, setScoringMode] = useState(initial.scoringMode || "ICPC");
   const [tags, setTags] = useState(initial.tags || []);
   const [tagInput, setTagInput] = useState("");
   const [isPublic, setIsPublic] = useState(initial.isPublic || false);
@@ -34,6 +35,7 @@ const ProblemForm = ({
     setDifficulty(initial.difficulty || "EASY");
     setTimeLimitMillis(initial.timeLimitMillis || 2000);
     setMemoryLimitMB(initial.memoryLimitMB || 256);
+    setScoringMode(initial.scoringMode || "ICPC");
     setTags(initial.tags || []);
     setIsPublic(initial.isPublic || false);
   }, [initial.id]);
@@ -75,6 +77,7 @@ const ProblemForm = ({
       difficulty,
       timeLimitMillis: Number(timeLimitMillis),
       memoryLimitMB: Number(memoryLimitMB),
+      scoringMode,
       tags,
       isPublic,
     });
@@ -157,6 +160,17 @@ const ProblemForm = ({
           />
         </div>
       </div>
+      <div className="mb-4">
+        <label className="block text-sm font-medium mb-1">Scoring</label>
+        <select
+          value={scoringMode}
+          onChange={(e) => setScoringMode(e.target.value)}
+          className="w-full px-3 py-2 border border-gray-300 rounded focus:outline-none focus:ring-2 focus:ring-blue-500"
+        >
+          <option value="ICPC">ICPC (stop at first failed test)</option>
+          <option value="IOI">IOI (run every test)</option>
+        </select>
+      </div>
       <div className="mb-4">
         <label className="block text-sm font-medium mb-1">Tags</label>
         <div className="flex items-center space-x-2 mb-2">
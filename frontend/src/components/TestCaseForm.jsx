@@ -34,6 +34,10 @@ const TestCaseForm = ({
   const [bulkData, setBulkData] = useState("");
   const [bulkFormat, setBulkFormat] = useState("json");
 
+  // Files too large to load whole are shown as a preview and left unchanged on save
+  const inputTruncated = mode === "edit" && !!testCase?.inputContentTruncated;
+  const outputTruncated = mode === "edit" && !!testCase?.outputContentTruncated;
+
   // Character counters
   const [nameCount, setNameCount] = useState(0);
   const [descriptionCount, setDescriptionCount] = useState(0);
@@ -75,12 +79,12 @@ const TestCaseForm = ({
     }
 
     // Input content validation
-    if (!formData.inputContent.trim()) {
+    if (!inputTruncated && !formData.inputContent.trim()) {
       newErrors.inputContent = "Input content is required";
     }
 
     // Output content validation
-    if (!formData.outputContent.trim()) {
+    if (!outputTruncated && !formData.outputContent.trim()) {
       newErrors.outputContent = "Output content is required";
     }
 
@@ -102,7 +106,12 @@ const TestCaseForm = ({
       if (mode === "create") {
         await apiClient.post(`/testcases/problems/${problemId}`, formData);
       } else {
-        await apiClient.put(`/testcases/${testCase.id}`, formData);
+        // A null file keeps the stored content
+        await apiClient.put(`/testcases/${testCase.id}`, {
+          ...formData,
+          inputContent: inputTruncated ? null : formData.inputContent,
+          outputContent: outputTruncated ? null : formData.outputContent,
+        });
       }
 
       if (onSuccess) {
@@ -289,12 +298,20 @@ const TestCaseForm = ({
               name="inputContent"
               value={formData.inputContent}
               onChange={handleInputChange}
+              readOnly={inputTruncated}
               rows={8}
               className={`w-full px-3 py-2 border rounded-md font-mono text-sm focus:outline-none focus:ring-2 focus:ring-blue-500 ${
                 errors.inputContent ? "border-red-500" : "border-gray-300"
               }`}
               placeholder="Enter the input data for this test case..."
             />
+            {inputTruncated && (
+              <p className="text-sm text-gray-500">
+                Showing the first {formData.inputContent.length} characters of a{" "}
+                {testCase.inputFileSize} byte file. Large files are not editable here
+                and are kept unchanged when saving.
+              </p>
+            )}
             <span className="text-sm text-red-600">{errors.inputContent}</span>
           </div>
 
@@ -311,12 +328,20 @@ const TestCaseForm = ({
               name="outputContent"
               value={formData.outputContent}
               onChange={handleInputChange}
+              readOnly={outputTruncated}
               rows={8}
               className={`w-full px-3 py-2 border rounded-md font-mono text-sm focus:outline-none focus:ring-2 focus:ring-blue-500 ${
                 errors.outputContent ? "border-red-500" : "border-gray-300"
               }`}
               placeholder="Enter the expected output for this test case..."
             />
+            {outputTruncated && (
+              <p className="text-sm text-gray-500">
+                Showing the first {formData.outputContent.length} characters of a{" "}
+                {testCase.outputFileSize} byte file. Large files are not editable here
+                and are kept unchanged when saving.
+              </p>
+            )}
             <span className="text-sm text-red-600">{errors.outputContent}</span>
           </div>
 
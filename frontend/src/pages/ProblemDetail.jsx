@@ -76,6 +76,10 @@ const ProblemDetail = () => {
               Memory Limit:{" "}
               <span className="font-medium">{problem.memoryLimitMB} MB</span>
             </span>
+            <span className="mr-4">
+              Scoring:{" "}
+              <span className="font-medium">{problem.scoringMode}</span>
+            </span>
             <span>
               Public:{" "}
               {problem.isPublic ? (
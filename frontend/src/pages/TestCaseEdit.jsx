@@ -26,7 +26,10 @@ const TestCaseEdit = () => {
   const loadTestCase = async () => {
     try {
       setLoading(true);
-      const response = await apiClient.get(`/testcases/${testCaseId}`);
+      // Load up to 1 MiB of each file; larger files come back truncated
+      const response = await apiClient.get(
+        `/testcases/${testCaseId}?previewBytes=1048576`
+      );
       // Fix: Handle the correct response structure
       setTestCase(response.data);
     } catch (error) {